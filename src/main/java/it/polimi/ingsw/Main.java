@@ -6,6 +6,8 @@ import it.polimi.ingsw.server.Server;
 
 import java.io.File;
 import java.net.UnknownHostException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 
 /**
  * Main program entry point. Parses arguments and executes the correct code.
@@ -84,6 +86,17 @@ public class Main {
                     else
                         throw ParameterParsingException.missingParameter(args[i]);
                     break;
+                case "--unix-socket":
+                    if (i + 1 < args.length)
+                        try {
+                            ProgramOptions.setUnixSocket(Path.of(args[i + 1]));
+                            i++;
+                        } catch (InvalidPathException e) {
+                            throw ParameterParsingException.invalidParameter(args[i + 1], args[i], e.getMessage());
+                        }
+                    else
+                        throw ParameterParsingException.missingParameter(args[i]);
+                    break;
                 case "--persistence-store":
                     if (i + 1 < args.length)
                         try {
@@ -134,6 +147,95 @@ public class Main {
                     else
                         throw ParameterParsingException.missingParameter(args[i]);
                     break;
+                case "--io-threads":
+                    if (i + 1 < args.length)
+                        try {
+                            ProgramOptions.setIoThreads(Integer.parseInt(args[i + 1]));
+                            i++;
+                        } catch (IllegalArgumentException e) {
+                            throw ParameterParsingException.invalidParameter(args[i + 1], args[i], e.getMessage());
+                        }
+                    else
+                        throw ParameterParsingException.missingParameter(args[i]);
+                    break;
+                case "--match-threads":
+                    if (i + 1 < args.length)
+                        try {
+                            ProgramOptions.setMatchThreads(Integer.parseInt(args[i + 1]));
+                            i++;
+                        } catch (IllegalArgumentException e) {
+                            throw ParameterParsingException.invalidParameter(args[i + 1], args[i], e.getMessage());
+                        }
+                    else
+                        throw ParameterParsingException.missingParameter(args[i]);
+                    break;
+                case "--max-frame-size":
+                    if (i + 1 < args.length)
+                        try {
+                            ProgramOptions.setMaxFrameSize(Integer.parseInt(args[i + 1]));
+                            i++;
+                        } catch (IllegalArgumentException e) {
+                            throw ParameterParsingException.invalidParameter(args[i + 1], args[i], e.getMessage());
+                        }
+                    else
+                        throw ParameterParsingException.missingParameter(args[i]);
+                    break;
+                case "--send-queue-limit":
+                    if (i + 1 < args.length)
+                        try {
+                            ProgramOptions.setSendQueueLimit(Integer.parseInt(args[i + 1]));
+                            i++;
+                        } catch (IllegalArgumentException e) {
+                            throw ParameterParsingException.invalidParameter(args[i + 1], args[i], e.getMessage());
+                        }
+                    else
+                        throw ParameterParsingException.missingParameter(args[i]);
+                    break;
+                case "--max-connections":
+                    if (i + 1 < args.length)
+                        try {
+                            ProgramOptions.setMaxConnections(Integer.parseInt(args[i + 1]));
+                            i++;
+                        } catch (IllegalArgumentException e) {
+                            throw ParameterParsingException.invalidParameter(args[i + 1], args[i], e.getMessage());
+                        }
+                    else
+                        throw ParameterParsingException.missingParameter(args[i]);
+                    break;
+                case "--max-connections-per-ip":
+                    if (i + 1 < args.length)
+                        try {
+                            ProgramOptions.setMaxConnectionsPerIp(Integer.parseInt(args[i + 1]));
+                            i++;
+                        } catch (IllegalArgumentException e) {
+                            throw ParameterParsingException.invalidParameter(args[i + 1], args[i], e.getMessage());
+                        }
+                    else
+                        throw ParameterParsingException.missingParameter(args[i]);
+                    break;
+                case "--command-rate":
+                    if (i + 1 < args.length)
+                        try {
+                            ProgramOptions.setCommandRate(Integer.parseInt(args[i + 1]));
+                            i++;
+                        } catch (IllegalArgumentException e) {
+                            throw ParameterParsingException.invalidParameter(args[i + 1], args[i], e.getMessage());
+                        }
+                    else
+                        throw ParameterParsingException.missingParameter(args[i]);
+                    break;
+                case "--length-prefixed":
+                    ProgramOptions.setUseLengthPrefix(true);
+                    break;
+                case "--binary-updates":
+                    ProgramOptions.setUseBinaryEncoding(true);
+                    break;
+                case "--compress":
+                    ProgramOptions.setUseCompression(true);
+                    break;
+                case "--virtual-threads":
+                    ProgramOptions.setUseVirtualThreads(true);
+                    break;
                 case "--verbose":
                     ProgramOptions.setVerbose(true);
                     break;
@@ -3,6 +3,7 @@ package it.polimi.ingsw;
 import java.io.File;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.file.Path;
 
 /**
  * Simple bean for passing parsed CLI options. All values are initialized to their default.
@@ -22,6 +23,11 @@ public class ProgramOptions {
      * The address the server will be located at. Default is localhost
      */
     private static InetAddress address;
+    /**
+     * The path of the Unix domain socket the server listens on, alongside its TCP port, or the client connects to,
+     * instead of the TCP address and port. Default is null, meaning that only TCP is used
+     */
+    private static Path unixSocket = null;
     /**
      * Whether to send {@code PING} messages to clients (only if SERVER mode). Default is true
      */
@@ -52,11 +58,78 @@ public class ProgramOptions {
      * The amount of time between each of the client's reachability check (in milliseconds)
      */
     private static long connectivityCheckInterval = 5000;
+    /**
+     * The number of non-blocking I/O loops the server uses to serve its connections (only if SERVER mode). Default is
+     * half the available processors, but at least 1.
+     */
+    private static int ioThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    /**
+     * The number of workers running the commands of the matches (only if SERVER mode). Default is the number of
+     * available processors.
+     */
+    private static int matchThreads = Runtime.getRuntime().availableProcessors();
+    /**
+     * Whether to run connections, match workers and pingers on virtual threads (only if SERVER mode). Default is
+     * false
+     */
+    private static boolean useVirtualThreads = false;
+    /**
+     * The maximum size in bytes of a single message a client can send, delimiter included (only if SERVER mode).
+     * Default is 64 KiB
+     */
+    private static int maxFrameSize = 64 * 1024;
+    /**
+     * The high-water mark, in bytes, of the queue of messages waiting to be sent to a client: clients whose queue grows
+     * past it are disconnected (only if SERVER mode). Default is 1 MiB
+     */
+    private static int sendQueueLimit = 1024 * 1024;
+    /**
+     * The maximum number of clients connected at the same time: further connections are refused (only if SERVER
+     * mode). Default is unlimited ({@link Integer#MAX_VALUE}), so that the server can hold as many mostly-idle
+     * connections as the machine allows
+     */
+    private static int maxConnections = Integer.MAX_VALUE;
+    /**
+     * The maximum number of clients connected at the same time from a single address: further connections from it
+     * are refused (only if SERVER mode). Default is 32
+     */
+    private static int maxConnectionsPerIp = 32;
+    /**
+     * The number of messages per second a client can send on average; it can send up to twice as many in a burst.
+     * Clients that go over it are throttled and then disconnected (only if SERVER mode). Default is 20
+     */
+    private static int commandRate = 20;
+    /**
+     * Whether to ask the server for length-prefixed framing during the handshake (only if CLIENT mode). Default is
+     * false
+     */
+    private static boolean useLengthPrefix = false;
+    /**
+     * Whether to ask the server for the binary encoding of updates during the handshake (only if CLIENT mode). Default
+     * is false
+     */
+    private static boolean useBinaryEncoding = false;
+    /**
+     * Whether to ask the server for compressed payloads during the handshake (only if CLIENT mode). Default is false
+     */
+    private static boolean useCompression = false;
 
     static {
         setPersistenceStore(new File("./eryantis-store"));
     }
 
+    /**
+     * The minimum selectable maximum frame size.
+     */
+    private final static int MIN_FRAME_SIZE = 256;
+    /**
+     * The minimum selectable send queue limit.
+     */
+    private final static int MIN_SEND_QUEUE_LIMIT = 4096;
+    /**
+     * The minimum selectable connection limit, global or per address, and command rate.
+     */
+    private final static int MIN_LIMIT = 1;
     /**
      * The maximum selectable ping rate.
      */
@@ -291,6 +364,241 @@ public class ProgramOptions {
         ProgramOptions.connectivityCheckInterval = connectivityCheckInterval;
     }
 
+    /**
+     * Returns the number of non-blocking I/O loops the server uses to serve its connections.
+     *
+     * @return the number of I/O loops
+     */
+    public static int getIoThreads() {
+        return ioThreads;
+    }
+
+    /**
+     * Sets the number of non-blocking I/O loops the server uses to serve its connections.
+     *
+     * @param ioThreads the new number of I/O loops
+     * @throws IllegalArgumentException if {@code ioThreads} is not positive
+     */
+    public static void setIoThreads(int ioThreads) {
+        if (ioThreads <= 0) throw new IllegalArgumentException("ioThreads should be > 0");
+        ProgramOptions.ioThreads = ioThreads;
+    }
+
+    /**
+     * Returns the number of workers running the commands of the matches.
+     *
+     * @return the number of match workers
+     */
+    public static int getMatchThreads() {
+        return matchThreads;
+    }
+
+    /**
+     * Sets the number of workers running the commands of the matches. It must be called before any match is created.
+     *
+     * @param matchThreads the new number of match workers
+     * @throws IllegalArgumentException if {@code matchThreads} is not positive
+     */
+    public static void setMatchThreads(int matchThreads) {
+        if (matchThreads <= 0) throw new IllegalArgumentException("matchThreads should be > 0");
+        ProgramOptions.matchThreads = matchThreads;
+    }
+
+    /**
+     * Returns whether the server runs its connections, match workers and pingers on virtual threads.
+     *
+     * @return whether the server uses virtual threads
+     */
+    public static boolean usesVirtualThreads() {
+        return useVirtualThreads;
+    }
+
+    /**
+     * Sets the value of {@link #useVirtualThreads}.
+     *
+     * @param useVirtualThreads whether to use virtual threads or not
+     */
+    public static void setUseVirtualThreads(boolean useVirtualThreads) {
+        ProgramOptions.useVirtualThreads = useVirtualThreads;
+    }
+
+    /**
+     * Returns the maximum size in bytes of a single message a client can send.
+     *
+     * @return the maximum frame size
+     */
+    public static int getMaxFrameSize() {
+        return maxFrameSize;
+    }
+
+    /**
+     * Sets the maximum size in bytes of a single message a client can send.
+     *
+     * @param maxFrameSize the new maximum frame size
+     * @throws IllegalArgumentException if {@code maxFrameSize} is less than {@link #MIN_FRAME_SIZE}
+     */
+    public static void setMaxFrameSize(int maxFrameSize) {
+        if (maxFrameSize < MIN_FRAME_SIZE)
+            throw new IllegalArgumentException("maxFrameSize should be >= " + MIN_FRAME_SIZE);
+        ProgramOptions.maxFrameSize = maxFrameSize;
+    }
+
+    /**
+     * Returns the high-water mark in bytes of the queue of messages waiting to be sent to a client.
+     *
+     * @return the send queue limit
+     */
+    public static int getSendQueueLimit() {
+        return sendQueueLimit;
+    }
+
+    /**
+     * Sets the high-water mark in bytes of the queue of messages waiting to be sent to a client.
+     *
+     * @param sendQueueLimit the new send queue limit
+     * @throws IllegalArgumentException if {@code sendQueueLimit} is less than {@link #MIN_SEND_QUEUE_LIMIT}
+     */
+    public static void setSendQueueLimit(int sendQueueLimit) {
+        if (sendQueueLimit < MIN_SEND_QUEUE_LIMIT)
+            throw new IllegalArgumentException("sendQueueLimit should be >= " + MIN_SEND_QUEUE_LIMIT);
+        ProgramOptions.sendQueueLimit = sendQueueLimit;
+    }
+
+    /**
+     * Returns the maximum number of clients connected at the same time.
+     *
+     * @return the maximum number of connections
+     */
+    public static int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Sets the maximum number of clients connected at the same time.
+     *
+     * @param maxConnections the new maximum number of connections
+     * @throws IllegalArgumentException if {@code maxConnections} is less than {@link #MIN_LIMIT}
+     */
+    public static void setMaxConnections(int maxConnections) {
+        if (maxConnections < MIN_LIMIT)
+            throw new IllegalArgumentException("maxConnections should be >= " + MIN_LIMIT);
+        ProgramOptions.maxConnections = maxConnections;
+    }
+
+    /**
+     * Returns the maximum number of clients connected at the same time from a single address.
+     *
+     * @return the maximum number of connections per address
+     */
+    public static int getMaxConnectionsPerIp() {
+        return maxConnectionsPerIp;
+    }
+
+    /**
+     * Sets the maximum number of clients connected at the same time from a single address.
+     *
+     * @param maxConnectionsPerIp the new maximum number of connections per address
+     * @throws IllegalArgumentException if {@code maxConnectionsPerIp} is less than {@link #MIN_LIMIT}
+     */
+    public static void setMaxConnectionsPerIp(int maxConnectionsPerIp) {
+        if (maxConnectionsPerIp < MIN_LIMIT)
+            throw new IllegalArgumentException("maxConnectionsPerIp should be >= " + MIN_LIMIT);
+        ProgramOptions.maxConnectionsPerIp = maxConnectionsPerIp;
+    }
+
+    /**
+     * Returns the number of messages per second a client can send on average.
+     *
+     * @return the command rate
+     */
+    public static int getCommandRate() {
+        return commandRate;
+    }
+
+    /**
+     * Sets the number of messages per second a client can send on average.
+     *
+     * @param commandRate the new command rate
+     * @throws IllegalArgumentException if {@code commandRate} is less than {@link #MIN_LIMIT}
+     */
+    public static void setCommandRate(int commandRate) {
+        if (commandRate < MIN_LIMIT)
+            throw new IllegalArgumentException("commandRate should be >= " + MIN_LIMIT);
+        ProgramOptions.commandRate = commandRate;
+    }
+
+    /**
+     * Returns whether the client asks the server for length-prefixed framing.
+     *
+     * @return whether the client asks for length-prefixed framing
+     */
+    public static boolean usesLengthPrefix() {
+        return useLengthPrefix;
+    }
+
+    /**
+     * Sets the value of {@link #useLengthPrefix}.
+     *
+     * @param useLengthPrefix whether to ask for length-prefixed framing or not
+     */
+    public static void setUseLengthPrefix(boolean useLengthPrefix) {
+        ProgramOptions.useLengthPrefix = useLengthPrefix;
+    }
+
+    /**
+     * Returns whether the client asks the server for the binary encoding of updates.
+     *
+     * @return whether the client asks for the binary encoding of updates
+     */
+    public static boolean usesBinaryEncoding() {
+        return useBinaryEncoding;
+    }
+
+    /**
+     * Sets the value of {@link #useBinaryEncoding}.
+     *
+     * @param useBinaryEncoding whether to ask for the binary encoding of updates or not
+     */
+    public static void setUseBinaryEncoding(boolean useBinaryEncoding) {
+        ProgramOptions.useBinaryEncoding = useBinaryEncoding;
+    }
+
+    /**
+     * Returns the path of the Unix domain socket used for local connections, or null if only TCP is used.
+     *
+     * @return the path of the Unix domain socket, or null
+     */
+    public static Path getUnixSocket() {
+        return unixSocket;
+    }
+
+    /**
+     * Sets the value of {@link #unixSocket}.
+     *
+     * @param unixSocket the path of the Unix domain socket, or null for using only TCP
+     */
+    public static void setUnixSocket(Path unixSocket) {
+        ProgramOptions.unixSocket = unixSocket;
+    }
+
+    /**
+     * Returns whether the client asks the server for compressed payloads.
+     *
+     * @return whether the client asks for compressed payloads
+     */
+    public static boolean usesCompression() {
+        return useCompression;
+    }
+
+    /**
+     * Sets the value of {@link #useCompression}.
+     *
+     * @param useCompression whether to ask for compressed payloads or not
+     */
+    public static void setUseCompression(boolean useCompression) {
+        ProgramOptions.useCompression = useCompression;
+    }
+
     /**
      * Enum representing possible program launch modes
      */
@@ -303,10 +611,22 @@ public class ProgramOptions {
                 "\n mode=" + mode +
                 "\n port=" + port +
                 "\n address=" + address +
+                "\n unix-socket=" + unixSocket +
                 "\n persistence-store=" + persistenceStore +
                 "\n use-persistence=" + usePersistence +
                 "\n use-ping=" + usePing +
                 "\n max-ping=" + maximumPing +
+                "\n io-threads=" + ioThreads +
+                "\n match-threads=" + matchThreads +
+                "\n virtual-threads=" + useVirtualThreads +
+                "\n max-frame-size=" + maxFrameSize +
+                "\n send-queue-limit=" + sendQueueLimit +
+                "\n max-connections=" + maxConnections +
+                "\n max-connections-per-ip=" + maxConnectionsPerIp +
+                "\n command-rate=" + commandRate +
+                "\n length-prefixed=" + useLengthPrefix +
+                "\n binary-updates=" + useBinaryEncoding +
+                "\n compress=" + useCompression +
                 "\n verbose=" + verbose;
     }
 }
@@ -1,26 +1,56 @@
 package it.polimi.ingsw.client;
 
-import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
 import it.polimi.ingsw.ProgramOptions;
 import it.polimi.ingsw.client.control.Controller;
+import it.polimi.ingsw.net.ChannelSocket;
+import it.polimi.ingsw.net.Compression;
+import it.polimi.ingsw.net.ControlFrame;
+import it.polimi.ingsw.net.Encoding;
+import it.polimi.ingsw.net.FrameDecoder;
+import it.polimi.ingsw.net.FrameEncoder;
+import it.polimi.ingsw.net.FrameTooLongException;
+import it.polimi.ingsw.net.Framing;
+import it.polimi.ingsw.net.Handshake;
 
-import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Optional;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class handles Client's side communication.
+ * <p>
+ * The socket is read by a dedicated thread, which answers PINGs as soon as they are read and hands every other event
+ * to the thread that called {@link #exec()} through a queue. The {@link Controller}, and the view behind it, can then
+ * take as long as they need for each event without delaying the PONGs and getting the player timed out.
  *
  * @author Mattia Busso
  */
 public class Client {
+    /**
+     * The maximum size in bytes of a message sent by the server.
+     */
+    private static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+    /**
+     * The instant, as returned by {@link System#nanoTime()}, at which the last message was received from the server.
+     */
+    private static volatile long lastReceived;
+    /**
+     * Marks the end of the events read from the server.
+     */
+    private static final JsonObject END_OF_STREAM = new JsonObject();
 
     /**
      * Main entry point.
@@ -30,35 +60,39 @@ public class Client {
         final Timer timer = new Timer();
 
         controller.initUI(ProgramOptions.getMode());
-        try (Socket socket = new Socket(ProgramOptions.getAddress(), ProgramOptions.getPort())) {
+        try (Socket socket = connect()) {
             System.out.println("Connection established.\n");
             socket.setSoTimeout(ProgramOptions.getClientSocketTimeout());
-            try (BufferedReader socketIn = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
-                 OutputStreamWriter socketOut = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
-                timer.scheduleAtFixedRate(
-                        buildPeriodicConnectivityChecker(socketOut),
-                        0,
-                        ProgramOptions.getConnectivityCheckInterval());
-                controller.setOnUserMessage(userMessage -> {
+            InputStream socketIn = socket.getInputStream();
+            OutputStream socketOut = socket.getOutputStream();
+            FrameDecoder decoder = new FrameDecoder(MAX_FRAME_SIZE);
+            FrameEncoder encoder = handshake(decoder, socketIn, socketOut);
+            lastReceived = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(ProgramOptions.getConnectivityCheckInterval());
+            scheduleConnectivityCheck(timer, socketOut, encoder, 0);
+            controller.setOnUserMessage(userMessage -> {
+                try {
+                    writeObjectToStream(socketOut, encoder, userMessage);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            });
+            controller.setOnEnd(() -> {
+                timer.cancel();
+                if (!socket.isClosed()) {
                     try {
-                        writeObjectToStream(socketOut, userMessage);
+                        socket.getInputStream().close();
                     } catch (IOException e) {
                         e.printStackTrace();
                     }
-                });
-                controller.setOnEnd(() -> {
-                    timer.cancel();
-                    if (!socket.isClosed()) {
-                        try {
-                            socket.getInputStream().close();
-                        } catch (IOException e) {
-                            e.printStackTrace();
-                        }
-                    }
-                });
-                controller.toMainMenu();
-                readWhileOpen(controller, socketIn, socketOut);
-            }
+                }
+            });
+            BlockingQueue<JsonObject> events = new LinkedBlockingQueue<>();
+            Thread reader = new Thread(() -> readWhileOpen(events, decoder, socketIn, socketOut, encoder),
+                    "server-reader");
+            reader.setDaemon(true);
+            reader.start();
+            controller.toMainMenu();
+            handleEvents(controller, events);
         } catch (IOException ignored) {
         }
         if (controller.toRun()) {
@@ -68,29 +102,106 @@ public class Client {
     }
 
     /**
-     * Reads the messages sent by the server through the socket while
-     * the connection is open and the application is set to run.
+     * Connects to the server, through the Unix domain socket at {@link ProgramOptions#getUnixSocket()} if it is set,
+     * or through TCP otherwise.
      *
-     * @param controller the application's controller
-     * @param socketIn   the socket reader
-     * @param socketOut  the socket writer
+     * @return the connected socket
+     * @throws IOException if the connection can't be established
+     */
+    private static Socket connect() throws IOException {
+        if (ProgramOptions.getUnixSocket() != null)
+            return ChannelSocket.connect(ProgramOptions.getUnixSocket());
+        return new Socket(ProgramOptions.getAddress(), ProgramOptions.getPort());
+    }
+
+    /**
+     * If {@link ProgramOptions#usesLengthPrefix()}, {@link ProgramOptions#usesBinaryEncoding()} or
+     * {@link ProgramOptions#usesCompression()} are set, asks the server to switch to length-prefixed framing (and,
+     * respectively, to the binary encoding of updates and to compressed payloads) and waits for its answer. Servers
+     * that do not understand the request answer with an error, in which case the connection keeps the default options.
+     * Binary and compressed messages are decoded transparently by the {@link FrameDecoder}.
+     *
+     * @param decoder   the decoder used for reading from the socket
+     * @param socketIn  the socket's input stream
+     * @param socketOut the socket's output stream
+     * @return the {@link FrameEncoder} to use from now on
      * @throws IOException if an error occurs
      */
-    private static void readWhileOpen(Controller controller, BufferedReader socketIn, OutputStreamWriter socketOut) throws IOException {
-        final Gson gson = new Gson();
-        String read;
-        StringBuilder msg = new StringBuilder();
-        while ((read = socketIn.readLine()) != null) {
-            if (read.equals("")) {
-                JsonObject message = gson.fromJson(msg.toString(), JsonObject.class);
+    private static FrameEncoder handshake(FrameDecoder decoder, InputStream socketIn, OutputStream socketOut) throws IOException {
+        FrameEncoder encoder = new FrameEncoder(Framing.DELIMITED, Compression.NONE);
+        if (!ProgramOptions.usesLengthPrefix() && !ProgramOptions.usesBinaryEncoding() && !ProgramOptions.usesCompression())
+            return encoder;
+        Encoding encoding = ProgramOptions.usesBinaryEncoding() ? Encoding.BINARY : Encoding.JSON;
+        Compression compression = ProgramOptions.usesCompression() ? Compression.DEFLATE : Compression.NONE;
+        writeObjectToStream(socketOut, encoder, Handshake.buildHello(Framing.LENGTH_PREFIXED, encoding, compression));
+        while (!decoder.hasFrame())
+            if (decoder.readFrom(socketIn) < 0)
+                throw new EOFException();
+        Optional<JsonObject> hello = decoder.nextFrame().filter(Handshake::isHello);
+        Framing accepted = hello.map(Handshake::getFraming).orElse(Framing.DELIMITED);
+        Compression acceptedCompression = hello.map(Handshake::getCompression).orElse(Compression.NONE);
+        decoder.setFraming(accepted);
+        decoder.setCompression(acceptedCompression);
+        return new FrameEncoder(accepted, acceptedCompression);
+    }
+
+    /**
+     * Reads the messages sent by the server through the socket while the connection is open. PINGs are answered right
+     * away and HEARTBEATs are dropped, both recognized without being parsed when possible; every other message is put
+     * in the given queue, followed by {@link #END_OF_STREAM} once the connection is closed.
+     *
+     * @param events    the queue the events are handed over through
+     * @param decoder   the decoder used for reading from the socket
+     * @param socketIn  the socket's input stream
+     * @param socketOut the socket's output stream
+     * @param encoder   the {@link FrameEncoder} used for writing to the socket
+     */
+    private static void readWhileOpen(BlockingQueue<JsonObject> events, FrameDecoder decoder, InputStream socketIn,
+                                      OutputStream socketOut, FrameEncoder encoder) {
+        try {
+            while (true) {
+                Optional<JsonObject> read;
+                try {
+                    while (!decoder.hasFrame())
+                        if (decoder.readFrom(socketIn) < 0)
+                            return;
+                    lastReceived = System.nanoTime();
+                    ControlFrame control = decoder.nextFrame(ControlFrame::matchFromServer);
+                    if (control != null) {
+                        if (control.getType() == ControlFrame.Type.PING)
+                            writeObjectToStream(socketOut, encoder, buildPing(new JsonPrimitive(control.getGameId())));
+                        continue;
+                    }
+                    read = decoder.nextFrame();
+                } catch (FrameTooLongException e) {
+                    continue;
+                }
+                if (read.isEmpty()) continue;
+                JsonObject message = read.get();
                 if (isPing(message))
-                    writeObjectToStream(socketOut, buildPing(message.get("id")));
+                    writeObjectToStream(socketOut, encoder, buildPing(message.get("id")));
                 else if (isNotHeartbeat(message))
-                    controller.manageServerEvent(message);
-                msg = new StringBuilder();
-            } else {
-                msg.append(read).append('\n');
+                    events.add(message);
             }
+        } catch (IOException ignored) {
+        } finally {
+            events.add(END_OF_STREAM);
+        }
+    }
+
+    /**
+     * Hands the events read from the server to the controller, in order, until {@link #END_OF_STREAM} is taken.
+     *
+     * @param controller the application's controller
+     * @param events     the queue the events are handed over through
+     */
+    private static void handleEvents(Controller controller, BlockingQueue<JsonObject> events) {
+        try {
+            JsonObject event;
+            while ((event = events.take()) != END_OF_STREAM)
+                controller.manageServerEvent(event);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -110,21 +221,36 @@ public class Client {
     }
 
     /**
-     * Creates a new {@link TimerTask} that periodically writes a HEARTBEAT message to the server
+     * Schedules on the given {@link Timer} the next check of the connection with the server: if nothing has been
+     * received for {@link ProgramOptions#getConnectivityCheckInterval()} milliseconds, it writes a HEARTBEAT message,
+     * whose answer keeps the reads from timing out. The check after that is scheduled an interval after the last message
+     * received, so no HEARTBEAT is sent as long as the server keeps sending something (updates, PINGs...).
      *
-     * @param out the {@link OutputStreamWriter}
-     * @return a {@link TimerTask}
+     * @param timer   the {@link Timer} to use; once cancelled, checks stop being scheduled
+     * @param out     the socket's output stream
+     * @param encoder the {@link FrameEncoder} used for writing to the socket
+     * @param delay   the delay of the check, in milliseconds
      */
-    private static TimerTask buildPeriodicConnectivityChecker(OutputStreamWriter out) {
-        return new TimerTask() {
+    private static void scheduleConnectivityCheck(Timer timer, OutputStream out, FrameEncoder encoder, long delay) {
+        TimerTask check = new TimerTask() {
             @Override
             public void run() {
-                try {
-                    writeObjectToStream(out, buildHeartbeat());
-                } catch (IOException ignored) {
+                long interval = TimeUnit.MILLISECONDS.toNanos(ProgramOptions.getConnectivityCheckInterval());
+                long quiet = System.nanoTime() - lastReceived;
+                if (quiet >= interval) {
+                    try {
+                        writeObjectToStream(out, encoder, buildHeartbeat());
+                    } catch (IOException ignored) {
+                    }
+                    quiet = 0;
                 }
+                scheduleConnectivityCheck(timer, out, encoder, TimeUnit.NANOSECONDS.toMillis(interval - quiet));
             }
         };
+        try {
+            timer.schedule(check, delay);
+        } catch (IllegalStateException ignored) {
+        }
     }
 
     /**
@@ -163,17 +289,25 @@ public class Client {
     }
 
     /**
-     * Writes the given object to the specified writer
+     * Writes the given object to the specified stream, framed (and possibly compressed) by the given
+     * {@link FrameEncoder}. The whole frame is built and written at once, so that concurrent writers neither interleave
+     * nor write compressed frames out of order.
      *
-     * @param writer the writer to use
-     * @param obj    the object to write
+     * @param out     the stream to use
+     * @param encoder the {@link FrameEncoder} to use
+     * @param obj     the object to write
      * @throws IOException              if any IO errors happened
      * @throws IllegalArgumentException if any parameter is null
      */
-    private static void writeObjectToStream(OutputStreamWriter writer, JsonObject obj) throws IOException {
-        if (writer == null) throw new IllegalArgumentException("writer should not be null");
+    private static void writeObjectToStream(OutputStream out, FrameEncoder encoder, JsonObject obj) throws IOException {
+        if (out == null) throw new IllegalArgumentException("out should not be null");
+        if (encoder == null) throw new IllegalArgumentException("encoder should not be null");
         if (obj == null) throw new IllegalArgumentException("obj should not be null");
-        writer.write(obj + "\n\n");
-        writer.flush();
+        byte[] payload = obj.toString().getBytes(StandardCharsets.UTF_8);
+        synchronized (out) {
+            ByteBuffer frame = encoder.frame(payload);
+            out.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+            out.flush();
+        }
     }
 }
\ No newline at end of file
@@ -84,13 +84,14 @@ public class CLIMessageBuilder {
     }
 
     /**
-     * Builds the FETCH message.
+     * Builds the message fetching the lobbies: a SUBSCRIBE_LOBBIES message, so that the lobbies are kept up-to-date by
+     * the server while the user chooses one.
      *
-     * @return the FETCH message
+     * @return the SUBSCRIBE_LOBBIES message
      */
     private static Optional<JsonObject> buildFetchMsg() {
         JsonObject o = new JsonObject();
-        o.addProperty("type", "FETCH");
+        o.addProperty("type", "SUBSCRIBE_LOBBIES");
         return Optional.of(o);
     }
 
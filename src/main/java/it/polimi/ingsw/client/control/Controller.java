@@ -143,6 +143,12 @@ public class Controller {
                 view.showLobbies();
                 status = Status.FETCHED_LOBBIES;
             }
+            case "LOBBIES_DELTA" -> {
+                state.updateLobbies(o);
+                if (status == Status.FETCHED_LOBBIES)
+                    view.refreshLobbies();
+                return;
+            }
             case "LEFT" -> {
                 state.resetState();
                 view.showMainMenu();
@@ -39,6 +39,13 @@ public class GUIControllerBridge {
         controller.manageUserMessage(buildFetchMessage());
     }
 
+    /**
+     * Tells the controller to fetch the lobby list and to keep it up-to-date with the changes pushed by the server
+     */
+    public void sendSubscribe() {
+        controller.manageUserMessage(buildSubscribeMessage());
+    }
+
     /**
      * Tells the controller to create a new lobby with the given parameters and join it with the specified username
      *
@@ -265,6 +272,15 @@ public class GUIControllerBridge {
         return new GUIMessageBuilder("FETCH").build();
     }
 
+    /**
+     * Creates a SUBSCRIBE_LOBBIES message
+     *
+     * @return a {@link JsonObject} representing the SUBSCRIBE_LOBBIES message
+     */
+    private static JsonObject buildSubscribeMessage() {
+        return new GUIMessageBuilder("SUBSCRIBE_LOBBIES").build();
+    }
+
     /**
      * Creates a JOIN message for the given username and lobby
      *
@@ -3,6 +3,8 @@ package it.polimi.ingsw.client.control.state;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -33,9 +35,9 @@ public class State {
     private ErrorState errorState;
 
     /**
-     * The game's fetched lobbies
+     * The game's fetched lobbies, by id, null if none have been fetched
      */
-    private Lobby[] lobbies;
+    private Map<Long, Lobby> lobbies;
 
     // updates
 
@@ -104,14 +106,26 @@ public class State {
     }
 
     /**
-     * Updates the game's fetched lobbies.
+     * Updates the game's fetched lobbies, either replacing all of them or applying in place the change described by
+     * a {@code lobbies_delta} message. A delta received before any {@code lobbies} message is ignored.
      *
-     * @param o the {@code JsonObject} corresponding to a {@code lobbies} message from the server
-     *          (it is assumed to be correct)
+     * @param o the {@code JsonObject} corresponding to a {@code lobbies} or {@code lobbies_delta} message from the
+     *          server (it is assumed to be correct)
      */
     public void updateLobbies(JsonObject o) {
         Gson gson = new Gson();
-        lobbies = gson.fromJson(o.get("lobbies"), Lobby[].class);
+        if (!o.get("type").getAsString().equals("LOBBIES_DELTA")) {
+            lobbies = new LinkedHashMap<>();
+            for (Lobby l : gson.fromJson(o.get("lobbies"), Lobby[].class))
+                lobbies.put(l.getId(), l);
+        } else if (lobbies != null) {
+            if (o.get("op").getAsString().equals("REMOVE")) {
+                lobbies.remove(o.get("id").getAsLong());
+            } else {
+                Lobby l = gson.fromJson(o.get("lobby"), Lobby.class);
+                lobbies.put(l.getId(), l);
+            }
+        }
     }
 
     /**
@@ -182,7 +196,7 @@ public class State {
      * @return the game's lobbies
      */
     public Lobby[] getLobbies() {
-        return lobbies;
+        return lobbies == null ? null : lobbies.values().toArray(new Lobby[0]);
     }
 
     // reset
@@ -207,14 +221,8 @@ public class State {
      * @return {@code true} if a lobby with the given id exists, {@code false} otherwise
      */
     public boolean isValidLobby(long id) {
-        boolean isValid = false;
-        for(Lobby l : lobbies) {
-            if (l.getId() == id && l.getConnectedPlayers() < l.getNumPlayers()) {
-                isValid = true;
-                break;
-            }
-        }
-        return isValid;
+        Lobby l = lobbies == null ? null : lobbies.get(id);
+        return l != null && l.getConnectedPlayers() < l.getNumPlayers();
     }
 
     /**
@@ -225,13 +233,7 @@ public class State {
      * @throws IllegalArgumentException if the given id is not valid
      */
     public Lobby getLobby(long id) throws IllegalArgumentException {
-        Lobby lobby = null;
-        for(Lobby l : lobbies) {
-            if (l.getId() == id) {
-                lobby = l;
-                break;
-            }
-        }
+        Lobby lobby = lobbies == null ? null : lobbies.get(id);
         if(lobby == null) throw new IllegalArgumentException("invalid lobby id");
         return lobby;
     }
@@ -241,8 +243,8 @@ public class State {
      * @return {@code true} if at least one available lobby is present, {@code false} otherwise
      */
     public boolean areAvailableLobbiesPresent() {
-        if(lobbies == null || lobbies.length == 0) return false;
-        for(Lobby l : lobbies) {
+        if(lobbies == null || lobbies.isEmpty()) return false;
+        for(Lobby l : lobbies.values()) {
             if(l.getConnectedPlayers() < l.getNumPlayers()) return true;
         }
         return false;
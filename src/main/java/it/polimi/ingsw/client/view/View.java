@@ -19,6 +19,11 @@ public interface View {
      */
     void showLobbies();
 
+    /**
+     * Displays the changes pushed by the server to the lobbies already displayed.
+     */
+    void refreshLobbies();
+
     /**
      * Displays the game's state.
      */
@@ -92,6 +92,14 @@ public class CLI implements View, Runnable {
         System.out.println();
     }
 
+    /**
+     * Does not print anything: the lobbies are printed again only when requested, so that the changes pushed by the
+     * server do not interrupt the user while typing. The state used for checking the user's choices is up-to-date
+     * anyway.
+     */
+    public void refreshLobbies() {
+    }
+
     /**
      * Displays the current state of the game.
      */
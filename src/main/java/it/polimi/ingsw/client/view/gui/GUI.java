@@ -69,7 +69,7 @@ public class GUI implements View {
     @Override
     public void showMainMenu() {
         GuiApplication.afterInit(i -> i.switchScene(mainMenu));
-        bridge.sendFetch();
+        bridge.sendSubscribe();
     }
 
     /**
@@ -83,6 +83,14 @@ public class GUI implements View {
         GuiApplication.afterInit(i -> Event.fireEvent(i.getRoot(), new RefreshLobbiesEvent(RefreshLobbiesEvent.REFESH, lobbies)));
     }
 
+    /**
+     * Displays the lobbies again, with the changes pushed by the server.
+     */
+    @Override
+    public void refreshLobbies() {
+        showLobbies();
+    }
+
     /**
      * Displays the game's state.
      */
@@ -0,0 +1,852 @@
+package it.polimi.ingsw.net;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import it.polimi.ingsw.enums.AssistantType;
+import it.polimi.ingsw.enums.CharacterType;
+import it.polimi.ingsw.enums.DiffKeys;
+import it.polimi.ingsw.enums.Mage;
+import it.polimi.ingsw.enums.PieceColor;
+import it.polimi.ingsw.enums.TowerColor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Static class converting {@code UPDATE}, {@code END} and {@code ERROR} messages to and from a compact binary format,
+ * used by connections that negotiated the {@link Encoding#BINARY} encoding.
+ * <p>
+ * A binary message starts with a tag byte ({@link #UPDATE}, {@link #END} or {@link #ERROR}), which can never start a
+ * JSON message. Integers are written as unsigned LEB128 varints, strings as their UTF-8 length followed by their bytes
+ * and enum values ({@link PieceColor}, {@link TowerColor}, {@link CharacterType}, {@link Mage},
+ * {@link AssistantType}) as their ordinal. Student containers become an array holding the number of students of each
+ * {@link PieceColor}, tower lists their length and color and assistant decks a bitmask. Usernames are written in full
+ * only the first time they appear in a message, then as a reference to it. The keys of an update are replaced by a
+ * bitmask of the ones present.
+ * <p>
+ * Decoding gives back a message equivalent to the original one: the only difference is that students are listed
+ * grouped by color. Messages whose shape the format cannot represent are not encoded at all, and are sent as JSON.
+ */
+public class BinaryCodec {
+    /**
+     * Tag of {@code UPDATE} messages.
+     */
+    public static final byte UPDATE = 0x01;
+    /**
+     * Tag of {@code END} messages.
+     */
+    public static final byte END = 0x02;
+    /**
+     * Tag of {@code ERROR} messages.
+     */
+    public static final byte ERROR = 0x03;
+    /**
+     * The keys an update can contain: their position is the bit representing them in the key bitmask.
+     */
+    private static final List<String> UPDATE_KEYS;
+    /**
+     * The keys of an {@code UPDATE} message.
+     */
+    private static final Set<String> UPDATE_FIELDS = Set.of("type", "id", "update", "rejoining", "missingPlayers");
+    /**
+     * The keys of an {@code END} message.
+     */
+    private static final Set<String> END_FIELDS = Set.of("type", "id", "reason", "winners");
+    /**
+     * The keys of a professor.
+     */
+    private static final Set<String> PROFESSOR_FIELDS = Set.of("color", "owner");
+    /**
+     * The keys of a board.
+     */
+    private static final Set<String> BOARD_FIELDS = Set.of("username", "mage", "lastPlayedAssistant", "coins",
+            "entrance", "hall", "towers", "assistants");
+    /**
+     * The keys of an island.
+     */
+    private static final Set<String> ISLAND_FIELDS = Set.of("ids", "students", "towers", "blocks");
+    /**
+     * The keys of a character.
+     */
+    private static final Set<String> CHARACTER_FIELDS = Set.of("type", "cost", "students", "blocks");
+    /**
+     * The keys of a cloud.
+     */
+    private static final Set<String> CLOUD_FIELDS = Set.of("id", "students");
+    /**
+     * Upper bound for the number of students of a color or of towers in a container, used for rejecting corrupted
+     * messages before allocating anything.
+     */
+    private static final int MAX_PIECES = 1024;
+
+    static {
+        List<String> keys = new ArrayList<>();
+        Arrays.stream(DiffKeys.values()).forEach(k -> keys.add(k.getKey()));
+        keys.add("cause");
+        UPDATE_KEYS = List.copyOf(keys);
+    }
+
+    /**
+     * Class shouldn't be instantiated.
+     */
+    private BinaryCodec() {
+    }
+
+    /**
+     * Returns true if a frame starting with the given byte is a binary message.
+     *
+     * @param first the first byte of the frame
+     * @return true if the frame is a binary message
+     */
+    public static boolean isBinary(byte first) {
+        return first >= UPDATE && first <= ERROR;
+    }
+
+    /**
+     * Encodes the given message. Only {@code UPDATE}, {@code END} and {@code ERROR} messages can be encoded, and only
+     * if they have the shape described in the protocol documentation.
+     *
+     * @param message the message to encode
+     * @return an {@link Optional} wrapping the encoded message, empty if it cannot be encoded
+     * @throws IllegalArgumentException if {@code message} is null
+     */
+    public static Optional<byte[]> encode(JsonObject message) {
+        if (message == null) throw new IllegalArgumentException("message shouldn't be null");
+        try {
+            Output out = new Output();
+            switch (string(message.get("type"))) {
+                case "UPDATE" -> encodeUpdate(message, out);
+                case "END" -> encodeEnd(message, out);
+                case "ERROR" -> encodeError(message, out);
+                default -> {
+                    return Optional.empty();
+                }
+            }
+            return Optional.of(out.toByteArray());
+        } catch (UnencodableException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Decodes the binary message contained in the given region of the array.
+     *
+     * @param bytes  the array containing the message
+     * @param offset the index of the first byte of the message
+     * @param length the length of the message
+     * @return the decoded message
+     * @throws IllegalArgumentException if {@code bytes} is null, the region is out of bounds or the message is malformed
+     */
+    public static JsonObject decode(byte[] bytes, int offset, int length) {
+        if (bytes == null) throw new IllegalArgumentException("bytes shouldn't be null");
+        if (offset < 0 || length < 0 || offset + length > bytes.length)
+            throw new IllegalArgumentException("region out of bounds");
+        Input in = new Input(bytes, offset, offset + length);
+        JsonObject message = switch (in.readByte()) {
+            case UPDATE -> decodeUpdate(in);
+            case END -> decodeEnd(in);
+            case ERROR -> decodeError(in);
+            default -> throw new IllegalArgumentException("unknown message tag");
+        };
+        if (!in.isConsumed()) throw new IllegalArgumentException("trailing bytes after message");
+        return message;
+    }
+
+    /**
+     * Encodes an {@code UPDATE} message.
+     *
+     * @param message the message
+     * @param out     the {@link Output} to write to
+     */
+    private static void encodeUpdate(JsonObject message, Output out) {
+        expectFields(message, UPDATE_FIELDS, UPDATE_FIELDS);
+        out.writeByte(UPDATE);
+        out.writeVarint(number(message.get("id")));
+        out.writeBoolean(bool(message.get("rejoining")));
+        JsonArray missing = array(message.get("missingPlayers"));
+        out.writeVarint(missing.size());
+        missing.forEach(e -> out.writeName(string(e)));
+
+        JsonObject update = object(message.get("update"));
+        long mask = 0;
+        for (String key : update.keySet()) {
+            int bit = UPDATE_KEYS.indexOf(key);
+            if (bit < 0) throw new UnencodableException();
+            mask |= 1L << bit;
+        }
+        out.writeVarint(mask);
+        for (String key : UPDATE_KEYS)
+            if (update.has(key))
+                encodeUpdateEntry(key, update.get(key), out);
+    }
+
+    /**
+     * Encodes the value of one of the keys of an update.
+     *
+     * @param key   the key
+     * @param value the value
+     * @param out   the {@link Output} to write to
+     */
+    private static void encodeUpdateEntry(String key, JsonElement value, Output out) {
+        switch (key) {
+            case "phase", "cause" -> out.writeString(string(value));
+            case "currentPlayer" -> out.writeName(string(value));
+            case "playerList" -> out.writeArray(value, e -> out.writeName(string(e)));
+            case "professors" -> out.writeArray(value, e -> {
+                JsonObject p = object(e);
+                expectFields(p, PROFESSOR_FIELDS, Set.of("color"));
+                out.writeEnum(PieceColor.class, p.get("color"));
+                out.writeBoolean(p.has("owner"));
+                if (p.has("owner")) out.writeName(string(p.get("owner")));
+            });
+            case "boards" -> out.writeArray(value, e -> encodeBoard(object(e), out));
+            case "islandList" -> out.writeArray(value, e -> out.writeArray(e, id -> out.writeVarint(number(id))));
+            case "islands" -> out.writeArray(value, e -> {
+                JsonObject i = object(e);
+                expectFields(i, ISLAND_FIELDS, ISLAND_FIELDS);
+                out.writeArray(i.get("ids"), id -> out.writeVarint(number(id)));
+                out.writeStudents(i.get("students"));
+                out.writeTowers(i.get("towers"));
+                out.writeVarint(number(i.get("blocks")));
+            });
+            case "motherNature" -> out.writeVarint(number(value));
+            case "usedCharacter", "isSackEmpty" -> out.writeBoolean(bool(value));
+            case "characters" -> out.writeArray(value, e -> {
+                JsonObject c = object(e);
+                expectFields(c, CHARACTER_FIELDS, Set.of("type", "cost"));
+                out.writeEnum(CharacterType.class, c.get("type"));
+                out.writeVarint(number(c.get("cost")));
+                out.writeByte((byte) ((c.has("students") ? 1 : 0) | (c.has("blocks") ? 2 : 0)));
+                if (c.has("students")) out.writeStudents(c.get("students"));
+                if (c.has("blocks")) out.writeVarint(number(c.get("blocks")));
+            });
+            case "clouds" -> out.writeArray(value, e -> {
+                JsonObject c = object(e);
+                expectFields(c, CLOUD_FIELDS, CLOUD_FIELDS);
+                out.writeVarint(number(c.get("id")));
+                out.writeStudents(c.get("students"));
+            });
+            default -> throw new UnencodableException();
+        }
+    }
+
+    /**
+     * Encodes a board. The assistants are written as a bitmask, so they need to be listed in ascending order.
+     *
+     * @param board the board
+     * @param out   the {@link Output} to write to
+     */
+    private static void encodeBoard(JsonObject board, Output out) {
+        expectFields(board, BOARD_FIELDS, Set.of("username", "coins", "entrance", "hall", "towers", "assistants"));
+        out.writeName(string(board.get("username")));
+        out.writeByte((byte) ((board.has("mage") ? 1 : 0) | (board.has("lastPlayedAssistant") ? 2 : 0)));
+        if (board.has("mage")) out.writeEnum(Mage.class, board.get("mage"));
+        if (board.has("lastPlayedAssistant")) out.writeEnum(AssistantType.class, board.get("lastPlayedAssistant"));
+        out.writeVarint(number(board.get("coins")));
+        out.writeStudents(board.get("entrance"));
+        out.writeStudents(board.get("hall"));
+        out.writeTowers(board.get("towers"));
+        long assistants = 0;
+        int last = -1;
+        for (JsonElement e : array(board.get("assistants"))) {
+            int ordinal = ordinal(AssistantType.class, e);
+            if (ordinal <= last) throw new UnencodableException();
+            assistants |= 1L << ordinal;
+            last = ordinal;
+        }
+        out.writeVarint(assistants);
+    }
+
+    /**
+     * Encodes an {@code END} message.
+     *
+     * @param message the message
+     * @param out     the {@link Output} to write to
+     */
+    private static void encodeEnd(JsonObject message, Output out) {
+        expectFields(message, END_FIELDS, END_FIELDS);
+        out.writeByte(END);
+        out.writeVarint(number(message.get("id")));
+        out.writeString(string(message.get("reason")));
+        out.writeArray(message.get("winners"), e -> out.writeName(string(e)));
+    }
+
+    /**
+     * Encodes an {@code ERROR} message.
+     *
+     * @param message the message
+     * @param out     the {@link Output} to write to
+     */
+    private static void encodeError(JsonObject message, Output out) {
+        expectFields(message, Set.of("type", "reason", "id"), Set.of("type", "reason"));
+        out.writeByte(ERROR);
+        out.writeBoolean(message.has("id"));
+        if (message.has("id")) out.writeVarint(number(message.get("id")));
+        out.writeString(string(message.get("reason")));
+    }
+
+    /**
+     * Decodes the body of an {@code UPDATE} message.
+     *
+     * @param in the {@link Input} to read from
+     * @return the decoded message
+     */
+    private static JsonObject decodeUpdate(Input in) {
+        JsonObject message = new JsonObject();
+        message.addProperty("type", "UPDATE");
+        message.addProperty("id", in.readVarint());
+        message.addProperty("rejoining", in.readBoolean());
+        message.add("missingPlayers", in.readArray(() -> new JsonPrimitive(in.readName())));
+
+        long mask = in.readVarint();
+        if (mask >>> UPDATE_KEYS.size() != 0) throw new IllegalArgumentException("unknown update key");
+        JsonObject update = new JsonObject();
+        for (int bit = 0; bit < UPDATE_KEYS.size(); bit++) {
+            if ((mask & (1L << bit)) == 0) continue;
+            String key = UPDATE_KEYS.get(bit);
+            update.add(key, decodeUpdateEntry(key, in));
+        }
+        message.add("update", update);
+        return message;
+    }
+
+    /**
+     * Decodes the value of one of the keys of an update.
+     *
+     * @param key the key
+     * @param in  the {@link Input} to read from
+     * @return the decoded value
+     */
+    private static JsonElement decodeUpdateEntry(String key, Input in) {
+        return switch (key) {
+            case "phase", "cause" -> new JsonPrimitive(in.readString());
+            case "currentPlayer" -> new JsonPrimitive(in.readName());
+            case "playerList" -> in.readArray(() -> new JsonPrimitive(in.readName()));
+            case "professors" -> in.readArray(() -> {
+                JsonObject p = new JsonObject();
+                p.addProperty("color", in.readEnum(PieceColor.class).toString());
+                if (in.readBoolean()) p.addProperty("owner", in.readName());
+                return p;
+            });
+            case "boards" -> in.readArray(() -> decodeBoard(in));
+            case "islandList" -> in.readArray(() -> in.readArray(() -> new JsonPrimitive(in.readVarint())));
+            case "islands" -> in.readArray(() -> {
+                JsonObject i = new JsonObject();
+                i.add("ids", in.readArray(() -> new JsonPrimitive(in.readVarint())));
+                i.add("students", in.readStudents());
+                i.add("towers", in.readTowers());
+                i.addProperty("blocks", in.readVarint());
+                return i;
+            });
+            case "motherNature" -> new JsonPrimitive(in.readVarint());
+            case "usedCharacter", "isSackEmpty" -> new JsonPrimitive(in.readBoolean());
+            case "characters" -> in.readArray(() -> {
+                JsonObject c = new JsonObject();
+                c.addProperty("type", in.readEnum(CharacterType.class).toString());
+                c.addProperty("cost", in.readVarint());
+                byte flags = in.readByte();
+                if ((flags & 1) != 0) c.add("students", in.readStudents());
+                if ((flags & 2) != 0) c.addProperty("blocks", in.readVarint());
+                return c;
+            });
+            case "clouds" -> in.readArray(() -> {
+                JsonObject c = new JsonObject();
+                c.addProperty("id", in.readVarint());
+                c.add("students", in.readStudents());
+                return c;
+            });
+            default -> throw new IllegalArgumentException("unknown update key " + key);
+        };
+    }
+
+    /**
+     * Decodes a board.
+     *
+     * @param in the {@link Input} to read from
+     * @return the decoded board
+     */
+    private static JsonObject decodeBoard(Input in) {
+        JsonObject board = new JsonObject();
+        board.addProperty("username", in.readName());
+        byte flags = in.readByte();
+        if ((flags & 1) != 0) board.addProperty("mage", in.readEnum(Mage.class).toString());
+        if ((flags & 2) != 0)
+            board.addProperty("lastPlayedAssistant", in.readEnum(AssistantType.class).toString());
+        board.addProperty("coins", in.readVarint());
+        board.add("entrance", in.readStudents());
+        board.add("hall", in.readStudents());
+        board.add("towers", in.readTowers());
+        long mask = in.readVarint();
+        JsonArray assistants = new JsonArray();
+        for (AssistantType a : AssistantType.values())
+            if ((mask & (1L << a.ordinal())) != 0)
+                assistants.add(a.toString());
+        board.add("assistants", assistants);
+        return board;
+    }
+
+    /**
+     * Decodes the body of an {@code END} message.
+     *
+     * @param in the {@link Input} to read from
+     * @return the decoded message
+     */
+    private static JsonObject decodeEnd(Input in) {
+        JsonObject message = new JsonObject();
+        message.addProperty("id", in.readVarint());
+        message.addProperty("type", "END");
+        message.addProperty("reason", in.readString());
+        message.add("winners", in.readArray(() -> new JsonPrimitive(in.readName())));
+        return message;
+    }
+
+    /**
+     * Decodes the body of an {@code ERROR} message.
+     *
+     * @param in the {@link Input} to read from
+     * @return the decoded message
+     */
+    private static JsonObject decodeError(Input in) {
+        JsonObject message = new JsonObject();
+        message.addProperty("type", "ERROR");
+        if (in.readBoolean()) message.addProperty("id", in.readVarint());
+        message.addProperty("reason", in.readString());
+        return message;
+    }
+
+    /**
+     * Checks that the given object only has allowed keys and has all the required ones.
+     *
+     * @param o        the object to check
+     * @param allowed  the allowed keys
+     * @param required the required keys
+     * @throws UnencodableException if the check fails
+     */
+    private static void expectFields(JsonObject o, Set<String> allowed, Set<String> required) {
+        if (!allowed.containsAll(o.keySet()) || !o.keySet().containsAll(required)) throw new UnencodableException();
+    }
+
+    /**
+     * Returns the given element as a {@link JsonObject}.
+     *
+     * @param e the element
+     * @return the element as a {@link JsonObject}
+     * @throws UnencodableException if the element is not an object
+     */
+    private static JsonObject object(JsonElement e) {
+        if (e == null || !e.isJsonObject()) throw new UnencodableException();
+        return e.getAsJsonObject();
+    }
+
+    /**
+     * Returns the given element as a {@link JsonArray}.
+     *
+     * @param e the element
+     * @return the element as a {@link JsonArray}
+     * @throws UnencodableException if the element is not an array
+     */
+    private static JsonArray array(JsonElement e) {
+        if (e == null || !e.isJsonArray()) throw new UnencodableException();
+        return e.getAsJsonArray();
+    }
+
+    /**
+     * Returns the given element as a string.
+     *
+     * @param e the element
+     * @return the element as a string
+     * @throws UnencodableException if the element is not a string
+     */
+    private static String string(JsonElement e) {
+        if (e == null || !e.isJsonPrimitive() || !e.getAsJsonPrimitive().isString()) throw new UnencodableException();
+        return e.getAsString();
+    }
+
+    /**
+     * Returns the given element as a boolean.
+     *
+     * @param e the element
+     * @return the element as a boolean
+     * @throws UnencodableException if the element is not a boolean
+     */
+    private static boolean bool(JsonElement e) {
+        if (e == null || !e.isJsonPrimitive() || !e.getAsJsonPrimitive().isBoolean()) throw new UnencodableException();
+        return e.getAsBoolean();
+    }
+
+    /**
+     * Returns the given element as a non-negative integer.
+     *
+     * @param e the element
+     * @return the element as a non-negative integer
+     * @throws UnencodableException if the element is not a non-negative integer
+     */
+    private static long number(JsonElement e) {
+        if (e == null || !e.isJsonPrimitive() || !e.getAsJsonPrimitive().isNumber()) throw new UnencodableException();
+        long value = e.getAsLong();
+        if (value < 0 || value != e.getAsDouble()) throw new UnencodableException();
+        return value;
+    }
+
+    /**
+     * Returns the ordinal of the constant of the given enum named by the given element.
+     *
+     * @param type the class of the enum
+     * @param e    the element
+     * @param <E>  the type of the enum
+     * @return the ordinal of the named constant
+     * @throws UnencodableException if the element does not name a constant of the enum
+     */
+    private static <E extends Enum<E>> int ordinal(Class<E> type, JsonElement e) {
+        try {
+            return Enum.valueOf(type, string(e)).ordinal();
+        } catch (IllegalArgumentException ex) {
+            throw new UnencodableException();
+        }
+    }
+
+    /**
+     * Thrown when a message cannot be represented in the binary format.
+     */
+    private static class UnencodableException extends RuntimeException {
+    }
+
+    /**
+     * Growable byte buffer the encoded message is written into. It also keeps track of the usernames already written.
+     */
+    private static class Output {
+        /**
+         * The written bytes.
+         */
+        private byte[] bytes = new byte[256];
+        /**
+         * The number of written bytes.
+         */
+        private int size = 0;
+        /**
+         * The usernames already written, mapped to their index.
+         */
+        private final Map<String, Integer> names = new HashMap<>();
+
+        /**
+         * Writes a byte.
+         *
+         * @param b the byte
+         */
+        void writeByte(byte b) {
+            if (size == bytes.length) bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            bytes[size++] = b;
+        }
+
+        /**
+         * Writes a non-negative integer as a varint: 7 bits per byte, least significant first, with the highest bit
+         * set on all bytes but the last.
+         *
+         * @param value the integer
+         */
+        void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                writeByte((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            writeByte((byte) value);
+        }
+
+        /**
+         * Writes a boolean as a byte.
+         *
+         * @param value the boolean
+         */
+        void writeBoolean(boolean value) {
+            writeByte((byte) (value ? 1 : 0));
+        }
+
+        /**
+         * Writes a string as its UTF-8 length followed by its bytes.
+         *
+         * @param s the string
+         */
+        void writeString(String s) {
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            writeVarint(utf8.length);
+            for (byte b : utf8) writeByte(b);
+        }
+
+        /**
+         * Writes a username: the first time as 0 followed by the string, then as its index plus one.
+         *
+         * @param name the username
+         */
+        void writeName(String name) {
+            Integer index = names.get(name);
+            if (index != null) {
+                writeVarint(index + 1);
+                return;
+            }
+            writeVarint(0);
+            writeString(name);
+            names.put(name, names.size());
+        }
+
+        /**
+         * Writes the ordinal of the enum constant named by the given element.
+         *
+         * @param type the class of the enum
+         * @param e    the element
+         * @param <E>  the type of the enum
+         */
+        <E extends Enum<E>> void writeEnum(Class<E> type, JsonElement e) {
+            writeByte((byte) ordinal(type, e));
+        }
+
+        /**
+         * Writes the length of the given array and then each of its elements with the given writer.
+         *
+         * @param e      the array
+         * @param writer the function writing an element
+         */
+        void writeArray(JsonElement e, Consumer<JsonElement> writer) {
+            JsonArray array = array(e);
+            writeVarint(array.size());
+            array.forEach(writer);
+        }
+
+        /**
+         * Writes a list of students as the number of students of each {@link PieceColor}.
+         *
+         * @param e the list of students
+         */
+        void writeStudents(JsonElement e) {
+            int[] counts = new int[PieceColor.values().length];
+            for (JsonElement s : array(e))
+                counts[ordinal(PieceColor.class, s)]++;
+            for (int c : counts) writeVarint(c);
+        }
+
+        /**
+         * Writes a list of towers as its length followed, if it is not empty, by their {@link TowerColor}.
+         *
+         * @param e the list of towers
+         */
+        void writeTowers(JsonElement e) {
+            JsonArray towers = array(e);
+            writeVarint(towers.size());
+            if (towers.isEmpty()) return;
+            int color = ordinal(TowerColor.class, towers.get(0));
+            for (JsonElement t : towers)
+                if (ordinal(TowerColor.class, t) != color) throw new UnencodableException();
+            writeByte((byte) color);
+        }
+
+        /**
+         * Returns a copy of the written bytes.
+         *
+         * @return the written bytes
+         */
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+
+    /**
+     * Cursor over the bytes of an encoded message. It also keeps track of the usernames already read.
+     */
+    private static class Input {
+        /**
+         * The bytes of the message.
+         */
+        private final byte[] bytes;
+        /**
+         * Index past the last byte of the message.
+         */
+        private final int end;
+        /**
+         * Index of the next byte to read.
+         */
+        private int position;
+        /**
+         * The usernames already read, in order of appearance.
+         */
+        private final List<String> names = new ArrayList<>();
+
+        /**
+         * Creates a new Input over the given region.
+         *
+         * @param bytes the array containing the message
+         * @param start the index of the first byte of the message
+         * @param end   the index past the last byte of the message
+         */
+        Input(byte[] bytes, int start, int end) {
+            this.bytes = bytes;
+            this.position = start;
+            this.end = end;
+        }
+
+        /**
+         * Returns true if the whole message has been read.
+         *
+         * @return true if the whole message has been read
+         */
+        boolean isConsumed() {
+            return position == end;
+        }
+
+        /**
+         * Reads a byte.
+         *
+         * @return the byte
+         * @throws IllegalArgumentException if the message is over
+         */
+        byte readByte() {
+            if (position >= end) throw new IllegalArgumentException("unexpected end of message");
+            return bytes[position++];
+        }
+
+        /**
+         * Reads a varint.
+         *
+         * @return the integer
+         * @throws IllegalArgumentException if the varint is malformed
+         */
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < Long.SIZE; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IllegalArgumentException("varint too long");
+        }
+
+        /**
+         * Reads a varint that must not exceed the given bound, like a length or a count.
+         *
+         * @param max the maximum accepted value
+         * @return the integer
+         * @throws IllegalArgumentException if the varint is malformed or too large
+         */
+        int readBounded(long max) {
+            long value = readVarint();
+            if (value < 0 || value > max) throw new IllegalArgumentException("value out of range");
+            return (int) value;
+        }
+
+        /**
+         * Reads the length of an array or of a string. Since each element takes at least a byte, it can't exceed the
+         * number of bytes left.
+         *
+         * @return the length
+         * @throws IllegalArgumentException if the varint is malformed or the length exceeds the rest of the message
+         */
+        int readLength() {
+            return readBounded(end - position);
+        }
+
+        /**
+         * Reads a boolean.
+         *
+         * @return the boolean
+         */
+        boolean readBoolean() {
+            return readByte() != 0;
+        }
+
+        /**
+         * Reads a string.
+         *
+         * @return the string
+         * @throws IllegalArgumentException if the string is longer than the rest of the message
+         */
+        String readString() {
+            int length = readLength();
+            String s = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return s;
+        }
+
+        /**
+         * Reads a username.
+         *
+         * @return the username
+         * @throws IllegalArgumentException if the reference doesn't point to a username already read
+         */
+        String readName() {
+            int index = readBounded(names.size());
+            if (index == 0) {
+                String name = readString();
+                names.add(name);
+                return name;
+            }
+            return names.get(index - 1);
+        }
+
+        /**
+         * Reads an enum constant from its ordinal.
+         *
+         * @param type the class of the enum
+         * @param <E>  the type of the enum
+         * @return the enum constant
+         * @throws IllegalArgumentException if the ordinal is out of range
+         */
+        <E extends Enum<E>> E readEnum(Class<E> type) {
+            int ordinal = readByte();
+            E[] values = type.getEnumConstants();
+            if (ordinal < 0 || ordinal >= values.length) throw new IllegalArgumentException("invalid ordinal");
+            return values[ordinal];
+        }
+
+        /**
+         * Reads an array length and then each of its elements with the given reader.
+         *
+         * @param reader the function reading an element
+         * @return the array
+         */
+        JsonArray readArray(Supplier<JsonElement> reader) {
+            int length = readLength();
+            JsonArray array = new JsonArray(length);
+            for (int i = 0; i < length; i++)
+                array.add(reader.get());
+            return array;
+        }
+
+        /**
+         * Reads a list of students written as counts per {@link PieceColor}.
+         *
+         * @return the list of students, grouped by color
+         */
+        JsonArray readStudents() {
+            JsonArray students = new JsonArray();
+            for (PieceColor c : PieceColor.values()) {
+                int count = readBounded(MAX_PIECES);
+                for (int i = 0; i < count; i++)
+                    students.add(c.toString());
+            }
+            return students;
+        }
+
+        /**
+         * Reads a list of towers.
+         *
+         * @return the list of towers
+         */
+        JsonArray readTowers() {
+            int count = readBounded(MAX_PIECES);
+            JsonArray towers = new JsonArray(count);
+            if (count == 0) return towers;
+            String color = readEnum(TowerColor.class).toString();
+            for (int i = 0; i < count; i++)
+                towers.add(color);
+            return towers;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package it.polimi.ingsw.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.Socket;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+
+/**
+ * A {@link Socket} backed by a blocking {@link SocketChannel}, used for connections through Unix domain sockets, which
+ * have no {@link Socket} of their own. It lets the code written for TCP sockets (the server's dispatchers and the
+ * client) use local connections without changes: only the streams, closing and the remote address are supported.
+ * <p>
+ * Read timeouts are not supported either, and {@link #setSoTimeout(int)} is ignored: a local peer that dies closes the
+ * connection, which is noticed as the end of the stream.
+ */
+public class ChannelSocket extends Socket {
+    /**
+     * The wrapped channel.
+     */
+    private final SocketChannel channel;
+    /**
+     * The stream reading from {@link #channel}.
+     */
+    private final InputStream in;
+    /**
+     * The stream writing to {@link #channel}.
+     */
+    private final OutputStream out;
+
+    /**
+     * Creates a new ChannelSocket wrapping the given connected channel, which is put in blocking mode.
+     *
+     * @param channel the channel to wrap
+     * @throws IllegalArgumentException if {@code channel} is null
+     * @throws IOException              if the channel can't be put in blocking mode
+     */
+    public ChannelSocket(SocketChannel channel) throws IOException {
+        if (channel == null) throw new IllegalArgumentException("channel shouldn't be null");
+        channel.configureBlocking(true);
+        this.channel = channel;
+        this.in = Channels.newInputStream(channel);
+        this.out = Channels.newOutputStream(channel);
+    }
+
+    /**
+     * Connects to the Unix domain socket at the given path.
+     *
+     * @param path the path of the socket
+     * @return the connected ChannelSocket
+     * @throws IllegalArgumentException if {@code path} is null
+     * @throws IOException              if the connection can't be established
+     */
+    public static ChannelSocket connect(Path path) throws IOException {
+        if (path == null) throw new IllegalArgumentException("path shouldn't be null");
+        SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.connect(UnixDomainSocketAddress.of(path));
+            return new ChannelSocket(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InputStream getInputStream() {
+        return in;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OutputStream getOutputStream() {
+        return out;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SocketAddress getRemoteSocketAddress() {
+        try {
+            return channel.getRemoteAddress();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Ignored, see the class documentation.
+     *
+     * @param timeout ignored
+     */
+    @Override
+    public void setSoTimeout(int timeout) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isConnected() {
+        return channel.isConnected();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isClosed() {
+        return !channel.isOpen();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,65 @@
+package it.polimi.ingsw.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * The ways the payloads of the frames of a connection can be compressed. Every connection starts in {@link #NONE} mode
+ * and can switch to {@link #DEFLATE} through the handshake (see {@link Handshake}), as long as it also switches to
+ * {@link Framing#LENGTH_PREFIXED} framing. Unlike {@link Encoding}, compression applies to both directions.
+ */
+public enum Compression {
+    /**
+     * Payloads are sent as they are.
+     */
+    NONE,
+    /**
+     * Payloads are compressed with raw DEFLATE. Each direction of the connection is a single DEFLATE stream, primed with
+     * the preset dictionary returned by {@link #dictionary()} and flushed at the end of every frame, so that each frame
+     * can be inflated as soon as it arrives while still referencing the content of the previous ones.
+     */
+    DEFLATE;
+
+    /**
+     * The classpath location of the preset dictionary.
+     */
+    private static final String DICTIONARY_RESOURCE = "/net/deflate-dictionary.txt";
+    /**
+     * The preset dictionary, loaded on first use.
+     */
+    private static byte[] dictionary;
+
+    /**
+     * Returns the preset dictionary shared by both ends of a {@link #DEFLATE} stream. It is a sample of real protocol
+     * traffic (commands, lobby lists, updates and full-state dumps), so that even the first messages of a connection
+     * find something to refer to. Both ends must use the same dictionary.
+     *
+     * @return the preset dictionary. The array must not be modified.
+     * @throws UncheckedIOException if the dictionary cannot be loaded
+     */
+    static synchronized byte[] dictionary() {
+        if (dictionary == null) {
+            try (InputStream in = Compression.class.getResourceAsStream(DICTIONARY_RESOURCE)) {
+                if (in == null) throw new IOException(DICTIONARY_RESOURCE + " not found");
+                dictionary = in.readAllBytes();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return dictionary;
+    }
+
+    /**
+     * Returns the Compression with the given name, or {@link #NONE} if no Compression has such name.
+     *
+     * @param name the name of the Compression
+     * @return the Compression with the given name, or {@link #NONE}
+     */
+    public static Compression fromName(String name) {
+        for (Compression c : values())
+            if (c.name().equals(name))
+                return c;
+        return NONE;
+    }
+}
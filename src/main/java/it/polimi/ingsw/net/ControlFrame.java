@@ -0,0 +1,170 @@
+package it.polimi.ingsw.net;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A keepalive message recognized straight from its bytes, without being parsed: a {@code HEARTBEAT} or a {@code PONG}
+ * sent by a client, or a {@code HEARTBEAT} or a {@code PING} sent by the server. These messages make up most of the
+ * traffic of idle connections, so they are matched against the exact bytes their sender writes
+ * ({@code {"type":"HEARTBEAT"}}, {@code {"type":"PONG","gameId":ID}} and {@code {"type":"PING","id":ID}}), ignoring
+ * the frame's trailing line breaks. Anything else, including the same messages written differently, is not a
+ * ControlFrame and goes through the full JSON parser, so the fast path never changes how a message is handled.
+ *
+ * @see FrameDecoder#nextControlFrame()
+ * @see #matchFromServer(byte[], int, int)
+ */
+public class ControlFrame {
+    /**
+     * The kinds of control frames.
+     */
+    public enum Type {
+        HEARTBEAT, PONG, PING
+    }
+
+    /**
+     * The {@code HEARTBEAT} control frame.
+     */
+    public static final ControlFrame HEARTBEAT = new ControlFrame(Type.HEARTBEAT, -1);
+    /**
+     * The bytes of a {@code HEARTBEAT} message.
+     */
+    private static final byte[] HEARTBEAT_BYTES = "{\"type\":\"HEARTBEAT\"}".getBytes(StandardCharsets.US_ASCII);
+    /**
+     * The bytes preceding the id of a {@code PONG} message.
+     */
+    private static final byte[] PONG_PREFIX = "{\"type\":\"PONG\",\"gameId\":".getBytes(StandardCharsets.US_ASCII);
+    /**
+     * The bytes preceding the id of a {@code PING} message.
+     */
+    private static final byte[] PING_PREFIX = "{\"type\":\"PING\",\"id\":".getBytes(StandardCharsets.US_ASCII);
+    /**
+     * The maximum number of digits of the id of a {@code PONG} or a {@code PING} message that is sure to fit in a long.
+     */
+    private static final int MAX_DIGITS = 18;
+    /**
+     * The kind of this frame.
+     */
+    private final Type type;
+    /**
+     * The id of the game a {@code PONG} or a {@code PING} refers to, -1 for {@code HEARTBEAT}s.
+     */
+    private final long gameId;
+
+    /**
+     * Creates a new ControlFrame.
+     *
+     * @param type   the kind of the frame
+     * @param gameId the id of the game a {@code PONG} or a {@code PING} refers to
+     */
+    private ControlFrame(Type type, long gameId) {
+        this.type = type;
+        this.gameId = gameId;
+    }
+
+    /**
+     * Returns the kind of this frame.
+     *
+     * @return the kind of this frame
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the id of the game a {@code PONG} or a {@code PING} refers to.
+     *
+     * @return the id of the game, -1 for {@code HEARTBEAT}s
+     */
+    public long getGameId() {
+        return gameId;
+    }
+
+    /**
+     * Checks whether the given payload, sent by a client, is a control frame: a {@code HEARTBEAT} or a {@code PONG}.
+     *
+     * @param src    the array holding the payload
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     * @return the matched ControlFrame, or null if the payload is not one
+     */
+    static ControlFrame match(byte[] src, int offset, int length) {
+        length = trim(src, offset, length);
+        if (length == HEARTBEAT_BYTES.length && startsWith(src, offset, HEARTBEAT_BYTES))
+            return HEARTBEAT;
+        return matchWithId(src, offset, length, PONG_PREFIX, Type.PONG);
+    }
+
+    /**
+     * Checks whether the given payload, sent by the server, is a control frame: a {@code HEARTBEAT} or a
+     * {@code PING}. It can be used as a {@link PayloadReader} (see {@link FrameDecoder#nextFrame(PayloadReader)}).
+     *
+     * @param src    the array holding the payload
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     * @return the matched ControlFrame, or null if the payload is not one
+     */
+    public static ControlFrame matchFromServer(byte[] src, int offset, int length) {
+        length = trim(src, offset, length);
+        if (length == HEARTBEAT_BYTES.length && startsWith(src, offset, HEARTBEAT_BYTES))
+            return HEARTBEAT;
+        return matchWithId(src, offset, length, PING_PREFIX, Type.PING);
+    }
+
+    /**
+     * Returns the length of the given payload without its trailing line breaks.
+     *
+     * @param src    the array holding the payload
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     * @return the length of the payload without its trailing line breaks
+     */
+    private static int trim(byte[] src, int offset, int length) {
+        while (length > 0 && (src[offset + length - 1] == '\n' || src[offset + length - 1] == '\r'))
+            length--;
+        return length;
+    }
+
+    /**
+     * Checks whether the given payload is made of the given prefix, an id and a closing brace.
+     *
+     * @param src    the array holding the payload
+     * @param offset the index of the first byte
+     * @param length the number of bytes, without the trailing line breaks
+     * @param prefix the bytes preceding the id
+     * @param type   the kind of frame to return
+     * @return the matched ControlFrame, or null if the payload is not one
+     */
+    private static ControlFrame matchWithId(byte[] src, int offset, int length, byte[] prefix, Type type) {
+        int digits = length - prefix.length - 1;
+        if (digits <= 0 || digits > MAX_DIGITS || src[offset + length - 1] != '}' || !startsWith(src, offset, prefix))
+            return null;
+        long id = 0;
+        for (int i = offset + prefix.length; i < offset + length - 1; i++) {
+            if (src[i] < '0' || src[i] > '9') return null;
+            id = id * 10 + (src[i] - '0');
+        }
+        return new ControlFrame(type, id);
+    }
+
+    /**
+     * Checks whether the given region starts with the given bytes. The region must be at least as long as them.
+     *
+     * @param src    the array holding the region
+     * @param offset the index of the first byte of the region
+     * @param prefix the bytes to look for
+     * @return true if the region starts with {@code prefix}
+     */
+    private static boolean startsWith(byte[] src, int offset, byte[] prefix) {
+        for (int i = 0; i < prefix.length; i++)
+            if (src[offset + i] != prefix[i]) return false;
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return type == Type.HEARTBEAT ? type.toString() : type + " " + gameId;
+    }
+}
@@ -0,0 +1,57 @@
+package it.polimi.ingsw.net;
+
+import com.google.gson.JsonObject;
+
+/**
+ * The ways the messages sent by the server can be encoded. Every connection starts in {@link #JSON} mode and can
+ * switch to {@link #BINARY} through the handshake (see {@link Handshake}), as long as it also switches to
+ * {@link Framing#LENGTH_PREFIXED} framing. Messages sent by clients are always JSON.
+ */
+public enum Encoding {
+    /**
+     * Every message is sent as UTF-8 encoded JSON, written straight into bytes (see {@link JsonEncoder}).
+     */
+    JSON {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public byte[] encode(JsonObject message) {
+            return JsonEncoder.encode(message);
+        }
+    },
+    /**
+     * {@code UPDATE}, {@code END} and {@code ERROR} messages are sent in the compact format of {@link BinaryCodec},
+     * every other message (or one that the codec cannot represent) as JSON.
+     */
+    BINARY {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public byte[] encode(JsonObject message) {
+            return BinaryCodec.encode(message).orElseGet(() -> JSON.encode(message));
+        }
+    };
+
+    /**
+     * Encodes the given message into the payload of a frame.
+     *
+     * @param message the message to encode
+     * @return the bytes of the message
+     */
+    public abstract byte[] encode(JsonObject message);
+
+    /**
+     * Returns the Encoding with the given name, or {@link #JSON} if no Encoding has such name.
+     *
+     * @param name the name of the Encoding
+     * @return the Encoding with the given name, or {@link #JSON}
+     */
+    public static Encoding fromName(String name) {
+        for (Encoding e : values())
+            if (e.name().equals(name))
+                return e;
+        return JSON;
+    }
+}
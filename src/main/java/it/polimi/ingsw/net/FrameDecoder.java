@@ -0,0 +1,530 @@
+package it.polimi.ingsw.net;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Long-lived, per-connection decoder that splits the incoming byte stream into frames and parses them into
+ * {@link JsonObject}s. Frames can either be separated by an empty line or be preceded by their length (see
+ * {@link Framing}); the mode can be switched between two frames. Length-prefixed frames can also hold binary messages
+ * (see {@link BinaryCodec}), which are told apart from JSON ones by their first byte, and be compressed (see
+ * {@link Compression}), in which case they are inflated before being parsed.
+ * <p>
+ * Bytes are read straight into a single buffer that is reused for the whole life of the connection: frame boundaries
+ * are searched incrementally, so that no byte is scanned twice, and complete frames are decoded directly from the
+ * buffer. The buffer grows on demand, but never beyond the maximum frame size: frames exceeding it are discarded and
+ * reported with a {@link FrameTooLongException}. The memory used by a connection has, therefore, a fixed upper bound.
+ * When the length of a frame is known up front, the buffer is grown to fit it exactly and oversize frames are skipped
+ * without even looking at their content. The same bound applies to the inflated size of compressed frames.
+ * <p>
+ * Usage: fill the decoder with {@link #readFrom(InputStream)} or {@link #readFrom(ReadableByteChannel)} and then
+ * call {@link #nextFrame()} as long as {@link #hasFrame()} returns true. Keepalive messages can be consumed without
+ * being parsed by calling {@link #nextControlFrame()} first, and other messages can be read straight from their bytes
+ * with {@link #nextFrame(PayloadReader)}. Once the connection is over, call {@link #close()} to release the native
+ * memory of the decompressor. This class is not thread safe.
+ */
+public class FrameDecoder {
+    /**
+     * The initial size of the buffer.
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+    /**
+     * The maximum size of a frame, delimiter included. For length-prefixed frames, the header is not counted.
+     */
+    private final int maxFrameSize;
+    /**
+     * Decoder used for turning frames into characters.
+     */
+    private final CharsetDecoder utf8;
+    /**
+     * The {@link Framing} of the incoming frames.
+     */
+    private Framing framing;
+    /**
+     * The buffer holding the bytes read and not yet consumed.
+     */
+    private byte[] buffer;
+    /**
+     * {@link ByteBuffer} view of {@link #buffer}, used for reading from channels.
+     */
+    private ByteBuffer view;
+    /**
+     * The buffer holding the characters of the frame being parsed.
+     */
+    private CharBuffer chars;
+    /**
+     * Index of the first byte of the current frame.
+     */
+    private int start;
+    /**
+     * Index of the first byte not yet scanned for a delimiter.
+     */
+    private int scan;
+    /**
+     * Index past the last byte read.
+     */
+    private int end;
+    /**
+     * Index past the end of the complete frame that has been found, -1 if none has been found.
+     */
+    private int frameEnd;
+    /**
+     * Whether the line currently being scanned is empty so far (carriage returns are ignored).
+     */
+    private boolean emptyLine;
+    /**
+     * Whether the decoder is skipping the rest of a delimited frame that was too long.
+     */
+    private boolean discarding;
+    /**
+     * The length of the current length-prefixed frame, -1 if its header hasn't been read yet.
+     */
+    private int expected;
+    /**
+     * The number of bytes of a length-prefixed frame that was too long still to be skipped.
+     */
+    private long skipping;
+    /**
+     * The decompressor, null if the incoming payloads are not compressed.
+     */
+    private Inflater inflater;
+    /**
+     * The buffer holding the inflated payload of the frame being parsed, null if the payloads are not compressed.
+     */
+    private byte[] inflated;
+    /**
+     * Value of {@link #inflatedLength} for frames that turned out not to be valid DEFLATE data.
+     */
+    private static final int CORRUPTED = -2;
+    /**
+     * The length of the inflated payload of the current frame, if it has already been inflated, -1 if it hasn't been
+     * yet, {@link #CORRUPTED} if it couldn't be.
+     */
+    private int inflatedLength;
+
+    /**
+     * Creates a new FrameDecoder, initially in {@link Framing#DELIMITED} mode.
+     *
+     * @param maxFrameSize the maximum size in bytes of a frame
+     * @throws IllegalArgumentException if {@code maxFrameSize} is not positive
+     */
+    public FrameDecoder(int maxFrameSize) {
+        if (maxFrameSize <= 0) throw new IllegalArgumentException("maxFrameSize should be > 0");
+        this.maxFrameSize = maxFrameSize;
+        this.utf8 = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.framing = Framing.DELIMITED;
+        this.buffer = new byte[Math.min(INITIAL_CAPACITY, maxFrameSize)];
+        this.view = ByteBuffer.wrap(buffer);
+        this.chars = CharBuffer.allocate(buffer.length);
+        this.frameEnd = -1;
+        this.emptyLine = true;
+        this.discarding = false;
+        this.expected = -1;
+        this.skipping = 0;
+        this.inflater = null;
+        this.inflated = null;
+        this.inflatedLength = -1;
+    }
+
+    /**
+     * Returns the {@link Framing} of the incoming frames.
+     *
+     * @return the {@link Framing} of the incoming frames
+     */
+    public Framing getFraming() {
+        return framing;
+    }
+
+    /**
+     * Sets the {@link Framing} of the incoming frames. It applies to all the bytes following the last consumed frame,
+     * including the ones that have already been read.
+     *
+     * @param framing the new {@link Framing}
+     * @throws IllegalArgumentException if {@code framing} is null
+     * @throws IllegalStateException    if a frame has been found but not consumed yet
+     */
+    public void setFraming(Framing framing) {
+        if (framing == null) throw new IllegalArgumentException("framing shouldn't be null");
+        if (frameEnd >= 0) throw new IllegalStateException("the current frame hasn't been consumed yet");
+        this.framing = framing;
+        scan = start;
+        emptyLine = true;
+        discarding = false;
+        expected = -1;
+        skipping = 0;
+    }
+
+    /**
+     * Returns the {@link Compression} of the incoming payloads.
+     *
+     * @return the {@link Compression} of the incoming payloads
+     */
+    public Compression getCompression() {
+        return inflater == null ? Compression.NONE : Compression.DEFLATE;
+    }
+
+    /**
+     * Sets the {@link Compression} of the incoming payloads. Like {@link #setFraming(Framing)}, it applies to all the
+     * bytes following the last consumed frame. Switching to {@link Compression#DEFLATE} starts a new DEFLATE stream,
+     * primed with the preset dictionary.
+     *
+     * @param compression the new {@link Compression}
+     * @throws IllegalArgumentException if {@code compression} is null
+     * @throws IllegalStateException    if a frame has been found but not consumed yet
+     */
+    public void setCompression(Compression compression) {
+        if (compression == null) throw new IllegalArgumentException("compression shouldn't be null");
+        if (frameEnd >= 0) throw new IllegalStateException("the current frame hasn't been consumed yet");
+        if (inflater != null) inflater.end();
+        if (compression == Compression.DEFLATE) {
+            inflater = new Inflater(true);
+            inflater.setDictionary(Compression.dictionary());
+            inflated = new byte[Math.min(INITIAL_CAPACITY, maxFrameSize + 1)];
+        } else {
+            inflater = null;
+            inflated = null;
+        }
+    }
+
+    /**
+     * Releases the native memory of the decompressor, if any. The decoder must not be used to decode frames afterwards.
+     * Subsequent calls have no effect.
+     */
+    public void close() {
+        if (inflater != null) inflater.end();
+    }
+
+    /**
+     * Reads from the given {@link InputStream} into the buffer, blocking until at least one byte is available.
+     *
+     * @param in the stream to read from
+     * @return the number of bytes read, or -1 if the end of the stream has been reached
+     * @throws IOException if an I/O error occurs
+     */
+    public int readFrom(InputStream in) throws IOException {
+        makeRoom();
+        int read = in.read(buffer, end, buffer.length - end);
+        if (read > 0) end += read;
+        return read;
+    }
+
+    /**
+     * Reads from the given channel into the buffer.
+     *
+     * @param channel the channel to read from
+     * @return the number of bytes read, possibly 0, or -1 if the end of the stream has been reached
+     * @throws IOException if an I/O error occurs
+     */
+    public int readFrom(ReadableByteChannel channel) throws IOException {
+        makeRoom();
+        view.limit(buffer.length).position(end);
+        int read = channel.read(view);
+        if (read > 0) end += read;
+        return read;
+    }
+
+    /**
+     * Makes sure there is space at the end of the buffer for the rest of the current frame, first by moving the
+     * unconsumed bytes to its beginning and then by growing it. If the length of the frame is known the buffer is
+     * grown to fit it exactly, otherwise its size is doubled, up to {@link #maxFrameSize}.
+     */
+    private void makeRoom() {
+        int needed = Math.max(expected, 0);
+        if (end < buffer.length && start + needed <= buffer.length) return;
+        if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            scan -= start;
+            end -= start;
+            if (frameEnd >= 0) frameEnd -= start;
+            start = 0;
+        }
+        int size;
+        if (expected >= 0)
+            size = Math.max(needed, buffer.length);
+        else if (end == buffer.length)
+            size = (int) Math.min((long) buffer.length * 2, maxFrameSize);
+        else
+            return;
+        if (size == buffer.length) return;
+        byte[] grown = new byte[size];
+        System.arraycopy(buffer, 0, grown, 0, end);
+        buffer = grown;
+        view = ByteBuffer.wrap(buffer);
+    }
+
+    /**
+     * Looks for the end of the current frame in the bytes read so far.
+     *
+     * @return true if a complete frame is available
+     * @throws FrameTooLongException if the current frame exceeds the maximum frame size. The frame is discarded, and
+     *                               the decoder can keep being used.
+     */
+    public boolean hasFrame() {
+        if (frameEnd >= 0) return true;
+        return framing == Framing.DELIMITED ? hasDelimitedFrame() : hasLengthPrefixedFrame();
+    }
+
+    /**
+     * Scans the bytes read so far looking for an empty line.
+     *
+     * @return true if a complete frame is available
+     * @throws FrameTooLongException if the current frame exceeds the maximum frame size
+     */
+    private boolean hasDelimitedFrame() {
+        while (scan < end) {
+            byte b = buffer[scan++];
+            if (b == '\n') {
+                if (emptyLine) {
+                    if (discarding) {
+                        discarding = false;
+                        start = scan;
+                        continue;
+                    }
+                    frameEnd = scan;
+                    return true;
+                }
+                emptyLine = true;
+            } else if (b != '\r') {
+                emptyLine = false;
+            }
+        }
+        if (discarding) {
+            clear();
+        } else if (end - start >= maxFrameSize) {
+            discarding = true;
+            clear();
+            throw new FrameTooLongException(maxFrameSize);
+        }
+        return false;
+    }
+
+    /**
+     * Reads the header of the current frame, if needed, and checks whether all of its bytes have been read. Frames that
+     * are too long are skipped without being buffered.
+     *
+     * @return true if a complete frame is available
+     * @throws FrameTooLongException if the current frame exceeds the maximum frame size
+     */
+    private boolean hasLengthPrefixedFrame() {
+        if (skipping > 0 && !skip()) return false;
+        if (expected < 0) {
+            if (end - start < Framing.HEADER_SIZE) return false;
+            long length = Integer.toUnsignedLong(ByteBuffer.wrap(buffer, start, Framing.HEADER_SIZE).getInt());
+            start += Framing.HEADER_SIZE;
+            scan = start;
+            if (length > maxFrameSize) {
+                skipping = length;
+                skip();
+                throw new FrameTooLongException(maxFrameSize);
+            }
+            expected = (int) length;
+        }
+        if (end - start < expected) return false;
+        frameEnd = start + expected;
+        return true;
+    }
+
+    /**
+     * Drops the bytes of the frame being skipped that have been read so far.
+     *
+     * @return true if the whole frame has been skipped
+     */
+    private boolean skip() {
+        int n = (int) Math.min(skipping, end - start);
+        start += n;
+        scan = start;
+        skipping -= n;
+        if (start == end) clear();
+        return skipping == 0;
+    }
+
+    /**
+     * Consumes the complete frame found by {@link #hasFrame()} if it is a {@link ControlFrame}, without parsing it.
+     * Otherwise, the frame is left for {@link #nextFrame()}; if compressed, it is not inflated again.
+     *
+     * @return the {@link ControlFrame}, or null if the frame is not one
+     * @throws IllegalStateException if no complete frame is available
+     * @throws FrameTooLongException if the inflated payload of the frame exceeds the maximum frame size, in which case
+     *                               the frame is consumed
+     */
+    public ControlFrame nextControlFrame() {
+        return nextFrame(ControlFrame::match);
+    }
+
+    /**
+     * Reads the complete frame found by {@link #hasFrame()} with the given {@link PayloadReader}, straight from its
+     * bytes. The frame is consumed only if the reader recognizes it; otherwise, it is left for {@link #nextFrame()}
+     * and, if compressed, it is not inflated again. Binary payloads are never passed to the reader.
+     *
+     * @param reader the reader to use
+     * @param <T>    the type of the messages read
+     * @return the message read, or null if the reader did not recognize the frame
+     * @throws IllegalArgumentException if {@code reader} is null
+     * @throws IllegalStateException    if no complete frame is available
+     * @throws FrameTooLongException    if the inflated payload of the frame exceeds the maximum frame size, in which
+     *                                  case the frame is consumed
+     */
+    public <T> T nextFrame(PayloadReader<T> reader) {
+        if (reader == null) throw new IllegalArgumentException("reader shouldn't be null");
+        if (!hasFrame()) throw new IllegalStateException("no complete frame available");
+        T read = null;
+        boolean consume = true;
+        try {
+            if (inflater == null) {
+                read = read(reader, buffer, start, frameEnd - start);
+            } else if (inflatedLength != CORRUPTED) {
+                if (inflatedLength < 0) inflatedLength = inflate(start, frameEnd - start);
+                read = read(reader, inflated, 0, inflatedLength);
+            }
+            consume = read != null;
+            return read;
+        } catch (DataFormatException e) {
+            inflatedLength = CORRUPTED;
+            consume = false;
+            return null;
+        } finally {
+            if (consume) consume();
+        }
+    }
+
+    /**
+     * Passes the given region of the given array to the given {@link PayloadReader}, unless it holds a binary message.
+     *
+     * @param reader the reader to use
+     * @param src    the array holding the payload
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     * @param <T>    the type of the messages read
+     * @return the message read, or null if the reader did not recognize the payload
+     */
+    private <T> T read(PayloadReader<T> reader, byte[] src, int offset, int length) {
+        if (framing == Framing.LENGTH_PREFIXED && length > 0 && BinaryCodec.isBinary(src[offset])) return null;
+        return reader.read(src, offset, length);
+    }
+
+    /**
+     * Consumes the complete frame found by {@link #hasFrame()} and parses it. If the frame is not a valid JSON
+     * object (or, if compressed, cannot be inflated), an empty {@link Optional} is returned.
+     *
+     * @return an {@link Optional} wrapping the parsed {@link JsonObject}
+     * @throws IllegalStateException if no complete frame is available
+     * @throws FrameTooLongException if the frame, or its inflated payload, exceeds the maximum frame size
+     */
+    public Optional<JsonObject> nextFrame() {
+        if (!hasFrame()) throw new IllegalStateException("no complete frame available");
+        try {
+            if (inflater == null) return parse(buffer, start, frameEnd - start);
+            try {
+                if (inflatedLength == CORRUPTED) return Optional.empty();
+                int length = inflatedLength >= 0 ? inflatedLength : inflate(start, frameEnd - start);
+                return parse(inflated, 0, length);
+            } catch (DataFormatException e) {
+                return Optional.empty();
+            }
+        } finally {
+            consume();
+        }
+    }
+
+    /**
+     * Drops the complete frame found by {@link #hasFrame()}.
+     */
+    private void consume() {
+        start = frameEnd;
+        scan = start;
+        frameEnd = -1;
+        expected = -1;
+        inflatedLength = -1;
+        if (start == end) clear();
+    }
+
+    /**
+     * Inflates the given region of the buffer into {@link #inflated}, growing it up to the maximum frame size. The
+     * whole region is always consumed, even if its payload turns out to be too long, so that the DEFLATE stream stays
+     * usable for the following frames.
+     *
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     * @return the number of inflated bytes
+     * @throws DataFormatException   if the region is not part of a valid DEFLATE stream
+     * @throws FrameTooLongException if the inflated payload exceeds the maximum frame size
+     */
+    private int inflate(int offset, int length) throws DataFormatException {
+        inflater.setInput(buffer, offset, length);
+        int n = 0;
+        boolean tooLong = false;
+        while (true) {
+            int read = inflater.inflate(inflated, n, inflated.length - n);
+            n += read;
+            if (n < inflated.length) {
+                if (inflater.needsInput()) break;
+                if (read == 0) throw new DataFormatException("unexpected end of the stream");
+            } else if (inflated.length <= maxFrameSize) {
+                inflated = Arrays.copyOf(inflated, (int) Math.min((long) inflated.length * 2, maxFrameSize + 1L));
+            } else {
+                tooLong = true;
+                n = 0;
+            }
+        }
+        if (tooLong) throw new FrameTooLongException(maxFrameSize);
+        return n;
+    }
+
+    /**
+     * Decodes the given region of the given array and parses it into a {@link JsonObject}. Length-prefixed frames
+     * starting with a binary tag are decoded with {@link BinaryCodec}.
+     *
+     * @param src    the array holding the payload
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     * @return an {@link Optional} wrapping the parsed {@link JsonObject}, empty if the region is not a valid message
+     */
+    private Optional<JsonObject> parse(byte[] src, int offset, int length) {
+        if (framing == Framing.LENGTH_PREFIXED && length > 0 && BinaryCodec.isBinary(src[offset])) {
+            try {
+                return Optional.of(BinaryCodec.decode(src, offset, length));
+            } catch (IllegalArgumentException e) {
+                return Optional.empty();
+            }
+        }
+        if (chars.capacity() < length)
+            chars = CharBuffer.allocate(Math.min(Math.max(length, chars.capacity() * 2), maxFrameSize));
+        chars.clear();
+        utf8.reset();
+        utf8.decode(ByteBuffer.wrap(src, offset, length), chars, true);
+        utf8.flush(chars);
+        try {
+            return Optional.of(JsonParser.parseReader(new CharArrayReader(chars.array(), 0, chars.position()))
+                    .getAsJsonObject());
+        } catch (JsonParseException | IllegalStateException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Drops all the buffered bytes.
+     */
+    private void clear() {
+        start = 0;
+        scan = 0;
+        end = 0;
+        frameEnd = -1;
+    }
+}
@@ -0,0 +1,118 @@
+package it.polimi.ingsw.net;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Long-lived, per-connection encoder that turns payloads into frames ready to be written on the wire, the counterpart
+ * of {@link FrameDecoder}. Besides framing them (see {@link Framing}), it compresses the payloads if the connection
+ * uses {@link Compression#DEFLATE}: in that case every frame depends on the ones built before it, so frames must be
+ * written in the same order in which they are built.
+ * <p>
+ * This class is not thread safe: callers must make building a frame and writing it a single atomic step. The native
+ * memory of the compressor is only released by {@link #close()}, which must be called once the connection is over.
+ */
+public class FrameEncoder {
+    /**
+     * The initial size of the compression buffer.
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+    /**
+     * The {@link Framing} of the outgoing frames.
+     */
+    private final Framing framing;
+    /**
+     * The {@link Compression} of the outgoing payloads.
+     */
+    private final Compression compression;
+    /**
+     * The compressor, null if the payloads are not compressed.
+     */
+    private final Deflater deflater;
+    /**
+     * The buffer receiving the compressed bytes, reused across frames.
+     */
+    private byte[] buffer;
+
+    /**
+     * Creates a new FrameEncoder.
+     *
+     * @param framing     the {@link Framing} of the outgoing frames
+     * @param compression the {@link Compression} of the outgoing payloads
+     * @throws IllegalArgumentException if any parameter is null, or if compression is requested with
+     *                                  {@link Framing#DELIMITED} framing
+     */
+    public FrameEncoder(Framing framing, Compression compression) {
+        if (framing == null) throw new IllegalArgumentException("framing shouldn't be null");
+        if (compression == null) throw new IllegalArgumentException("compression shouldn't be null");
+        if (compression != Compression.NONE && framing != Framing.LENGTH_PREFIXED)
+            throw new IllegalArgumentException("compressed payloads need length-prefixed framing");
+        this.framing = framing;
+        this.compression = compression;
+        if (compression == Compression.DEFLATE) {
+            this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            this.deflater.setDictionary(Compression.dictionary());
+            this.buffer = new byte[INITIAL_CAPACITY];
+        } else {
+            this.deflater = null;
+        }
+    }
+
+    /**
+     * Returns the {@link Framing} of the outgoing frames.
+     *
+     * @return the {@link Framing} of the outgoing frames
+     */
+    public Framing getFraming() {
+        return framing;
+    }
+
+    /**
+     * Returns the {@link Compression} of the outgoing payloads.
+     *
+     * @return the {@link Compression} of the outgoing payloads
+     */
+    public Compression getCompression() {
+        return compression;
+    }
+
+    /**
+     * Compresses, if needed, the given payload and wraps it in a frame.
+     *
+     * @param payload the bytes of the message
+     * @return a {@link ByteBuffer} containing the whole frame
+     * @throws IllegalArgumentException if {@code payload} is null
+     */
+    public ByteBuffer frame(byte[] payload) {
+        if (payload == null) throw new IllegalArgumentException("payload shouldn't be null");
+        if (deflater == null) return framing.frame(payload);
+        return framing.frame(deflate(payload));
+    }
+
+    /**
+     * Feeds the given payload to the DEFLATE stream and flushes it, so that the returned bytes can be inflated on
+     * their own by a peer that has inflated all the previous ones.
+     *
+     * @param payload the bytes to compress
+     * @return the compressed bytes
+     */
+    private byte[] deflate(byte[] payload) {
+        deflater.setInput(payload);
+        int length = 0;
+        while (true) {
+            length += deflater.deflate(buffer, length, buffer.length - length, Deflater.SYNC_FLUSH);
+            if (length < buffer.length) break;
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * Releases the native memory of the compressor, if any. The encoder must not be used to build frames afterwards.
+     * Subsequent calls have no effect.
+     */
+    public void close() {
+        if (deflater != null) deflater.end();
+    }
+}
@@ -0,0 +1,16 @@
+package it.polimi.ingsw.net;
+
+/**
+ * Exception thrown by {@link FrameDecoder} when the peer sends a message longer than the maximum frame size. The
+ * offending message is discarded.
+ */
+public class FrameTooLongException extends RuntimeException {
+    /**
+     * Creates a new FrameTooLongException.
+     *
+     * @param maxFrameSize the maximum frame size that has been exceeded
+     */
+    public FrameTooLongException(int maxFrameSize) {
+        super("Message exceeds the maximum size of " + maxFrameSize + " bytes");
+    }
+}
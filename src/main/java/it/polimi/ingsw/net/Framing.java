@@ -0,0 +1,64 @@
+package it.polimi.ingsw.net;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The ways messages can be delimited on the wire. Every connection starts in {@link #DELIMITED} mode and can switch
+ * to {@link #LENGTH_PREFIXED} through the handshake (see {@link Handshake}).
+ */
+public enum Framing {
+    /**
+     * Each message is followed by an empty line.
+     */
+    DELIMITED {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public ByteBuffer frame(byte[] payload) {
+            ByteBuffer b = ByteBuffer.allocate(payload.length + 2);
+            b.put(payload).put((byte) '\n').put((byte) '\n');
+            return b.flip();
+        }
+    },
+    /**
+     * Each message is preceded by its length in bytes, as a 4-byte big-endian integer.
+     */
+    LENGTH_PREFIXED {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public ByteBuffer frame(byte[] payload) {
+            ByteBuffer b = ByteBuffer.allocate(payload.length + HEADER_SIZE);
+            b.putInt(payload.length).put(payload);
+            return b.flip();
+        }
+    };
+
+    /**
+     * The size in bytes of the header of a {@link #LENGTH_PREFIXED} frame.
+     */
+    public static final int HEADER_SIZE = Integer.BYTES;
+
+    /**
+     * Wraps the given payload in a frame, ready to be written on the wire.
+     *
+     * @param payload the bytes of the message
+     * @return a {@link ByteBuffer} containing the whole frame
+     */
+    public abstract ByteBuffer frame(byte[] payload);
+
+    /**
+     * Returns the Framing with the given name, or {@link #DELIMITED} if no Framing has such name.
+     *
+     * @param name the name of the Framing
+     * @return the Framing with the given name, or {@link #DELIMITED}
+     */
+    public static Framing fromName(String name) {
+        for (Framing f : values())
+            if (f.name().equals(name))
+                return f;
+        return DELIMITED;
+    }
+}
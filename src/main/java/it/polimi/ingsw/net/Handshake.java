@@ -0,0 +1,107 @@
+package it.polimi.ingsw.net;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Static class containing the helpers for the optional {@code HELLO} handshake, through which a client and the server
+ * agree on the wire format of the connection, that is its {@link Framing}, its {@link Encoding} and its
+ * {@link Compression}. The client sends a
+ * {@code HELLO} as its very first message, listing the options it would like to use; the server answers with a
+ * {@code HELLO} listing the options it accepted. Both messages
+ * are sent in {@link Framing#DELIMITED} mode and the accepted options apply to everything sent after them.
+ * <p>
+ * Clients that never send a {@code HELLO} keep using the default options.
+ */
+public class Handshake {
+    /**
+     * The type of handshake messages.
+     */
+    public static final String TYPE = "HELLO";
+
+    /**
+     * Class shouldn't be instantiated.
+     */
+    private Handshake() {
+    }
+
+    /**
+     * Builds a {@code HELLO} message asking for (or accepting) the given {@link Framing}, {@link Encoding} and
+     * {@link Compression}.
+     *
+     * @param framing     the {@link Framing} to use from now on
+     * @param encoding    the {@link Encoding} to use from now on
+     * @param compression the {@link Compression} to use from now on
+     * @return a new {@code HELLO} message
+     * @throws IllegalArgumentException if any parameter is null
+     */
+    public static JsonObject buildHello(Framing framing, Encoding encoding, Compression compression) {
+        if (framing == null) throw new IllegalArgumentException("framing shouldn't be null");
+        if (encoding == null) throw new IllegalArgumentException("encoding shouldn't be null");
+        if (compression == null) throw new IllegalArgumentException("compression shouldn't be null");
+        JsonObject o = new JsonObject();
+        o.addProperty("type", TYPE);
+        o.addProperty("framing", framing.name());
+        o.addProperty("encoding", encoding.name());
+        o.addProperty("compression", compression.name());
+        return o;
+    }
+
+    /**
+     * Returns true if the given message is a {@code HELLO} message.
+     *
+     * @param message the message
+     * @return true if the given message is a {@code HELLO} message
+     * @throws IllegalArgumentException if {@code message} is null
+     */
+    public static boolean isHello(JsonObject message) {
+        if (message == null) throw new IllegalArgumentException("message shouldn't be null");
+        JsonElement type = message.get("type");
+        return type != null && type.isJsonPrimitive() && TYPE.equals(type.getAsString());
+    }
+
+    /**
+     * Returns the {@link Framing} contained in the given {@code HELLO} message. Missing or unknown values resolve to
+     * {@link Framing#DELIMITED}.
+     *
+     * @param hello the {@code HELLO} message
+     * @return the {@link Framing} contained in the message
+     * @throws IllegalArgumentException if {@code hello} is null
+     */
+    public static Framing getFraming(JsonObject hello) {
+        if (hello == null) throw new IllegalArgumentException("hello shouldn't be null");
+        JsonElement framing = hello.get("framing");
+        if (framing == null || !framing.isJsonPrimitive()) return Framing.DELIMITED;
+        return Framing.fromName(framing.getAsString());
+    }
+
+    /**
+     * Returns the {@link Encoding} contained in the given {@code HELLO} message. Missing or unknown values resolve to
+     * {@link Encoding#JSON}.
+     *
+     * @param hello the {@code HELLO} message
+     * @return the {@link Encoding} contained in the message
+     * @throws IllegalArgumentException if {@code hello} is null
+     */
+    public static Encoding getEncoding(JsonObject hello) {
+        if (hello == null) throw new IllegalArgumentException("hello shouldn't be null");
+        JsonElement encoding = hello.get("encoding");
+        if (encoding == null || !encoding.isJsonPrimitive()) return Encoding.JSON;
+        return Encoding.fromName(encoding.getAsString());
+    }
+
+    /**
+     * Returns the {@link Compression} contained in the given {@code HELLO} message. Missing or unknown values resolve to
+     * {@link Compression#NONE}.
+     *
+     * @param hello the {@code HELLO} message
+     * @return the {@link Compression} contained in the message
+     * @throws IllegalArgumentException if {@code hello} is null
+     */
+    public static Compression getCompression(JsonObject hello) {
+        if (hello == null) throw new IllegalArgumentException("hello shouldn't be null");
+        JsonElement compression = hello.get("compression");
+        if (compression == null || !compression.isJsonPrimitive()) return Compression.NONE;
+        return Compression.fromName(compression.getAsString());
+    }
+}
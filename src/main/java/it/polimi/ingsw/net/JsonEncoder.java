@@ -0,0 +1,202 @@
+package it.polimi.ingsw.net;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Serializes {@link JsonElement}s straight into UTF-8 bytes. The result is exactly {@code element.toString()} encoded
+ * as UTF-8, but the tree is written directly into a single growing byte array, instead of going through a
+ * {@link java.io.StringWriter}, the string it builds and its encoding.
+ *
+ * @see Encoding#JSON
+ */
+class JsonEncoder {
+    /**
+     * The initial capacity of the output buffer.
+     */
+    private static final int INITIAL_CAPACITY = 256;
+    /**
+     * The digits used by {@code \}{@code u} escape sequences.
+     */
+    private static final byte[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+    /**
+     * The buffer holding the bytes written so far.
+     */
+    private byte[] buffer;
+    /**
+     * The number of bytes written so far.
+     */
+    private int count;
+
+    /**
+     * Creates a new, empty JsonEncoder.
+     */
+    private JsonEncoder() {
+        this.buffer = new byte[INITIAL_CAPACITY];
+        this.count = 0;
+    }
+
+    /**
+     * Serializes the given element.
+     *
+     * @param element the element to serialize
+     * @return the UTF-8 bytes of {@code element.toString()}
+     * @throws IllegalArgumentException if {@code element} is null
+     */
+    static byte[] encode(JsonElement element) {
+        if (element == null) throw new IllegalArgumentException("element shouldn't be null");
+        JsonEncoder encoder = new JsonEncoder();
+        encoder.write(element);
+        return Arrays.copyOf(encoder.buffer, encoder.count);
+    }
+
+    /**
+     * Writes the given element.
+     *
+     * @param element the element to write
+     */
+    private void write(JsonElement element) {
+        if (element.isJsonObject()) {
+            put((byte) '{');
+            boolean first = true;
+            for (Map.Entry<String, JsonElement> e : element.getAsJsonObject().entrySet()) {
+                if (!first) put((byte) ',');
+                first = false;
+                string(e.getKey());
+                put((byte) ':');
+                write(e.getValue());
+            }
+            put((byte) '}');
+        } else if (element.isJsonArray()) {
+            put((byte) '[');
+            JsonArray array = element.getAsJsonArray();
+            for (int i = 0; i < array.size(); i++) {
+                if (i > 0) put((byte) ',');
+                write(array.get(i));
+            }
+            put((byte) ']');
+        } else if (element.isJsonPrimitive()) {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+            if (primitive.isNumber())
+                ascii(primitive.getAsNumber().toString());
+            else if (primitive.isBoolean())
+                ascii(primitive.getAsBoolean() ? "true" : "false");
+            else
+                string(primitive.getAsString());
+        } else {
+            ascii("null");
+        }
+    }
+
+    /**
+     * Writes the given string as a quoted JSON string, escaping it like Gson does.
+     *
+     * @param s the string to write
+     */
+    private void string(String s) {
+        ensure(s.length() + 2);
+        buffer[count++] = '"';
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                switch (c) {
+                    case '"' -> escape('"');
+                    case '\\' -> escape('\\');
+                    case '\t' -> escape('t');
+                    case '\b' -> escape('b');
+                    case '\n' -> escape('n');
+                    case '\r' -> escape('r');
+                    case '\f' -> escape('f');
+                    default -> {
+                        if (c < ' ') unicode(c);
+                        else put((byte) c);
+                    }
+                }
+            } else if (c < 0x800) {
+                ensure(2);
+                buffer[count++] = (byte) (0xc0 | (c >> 6));
+                buffer[count++] = (byte) (0x80 | (c & 0x3f));
+            } else if (c == 0x2028 || c == 0x2029) {
+                unicode(c);
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    ensure(4);
+                    buffer[count++] = (byte) (0xf0 | (cp >> 18));
+                    buffer[count++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                    buffer[count++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                    buffer[count++] = (byte) (0x80 | (cp & 0x3f));
+                } else {
+                    put((byte) '?');
+                }
+            } else {
+                ensure(3);
+                buffer[count++] = (byte) (0xe0 | (c >> 12));
+                buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buffer[count++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        put((byte) '"');
+    }
+
+    /**
+     * Writes a two characters escape sequence.
+     *
+     * @param c the escaped character
+     */
+    private void escape(char c) {
+        ensure(2);
+        buffer[count++] = '\\';
+        buffer[count++] = (byte) c;
+    }
+
+    /**
+     * Writes a {@code \}{@code u} escape sequence.
+     *
+     * @param c the escaped character
+     */
+    private void unicode(char c) {
+        ensure(6);
+        buffer[count++] = '\\';
+        buffer[count++] = 'u';
+        buffer[count++] = HEX[(c >> 12) & 0xf];
+        buffer[count++] = HEX[(c >> 8) & 0xf];
+        buffer[count++] = HEX[(c >> 4) & 0xf];
+        buffer[count++] = HEX[c & 0xf];
+    }
+
+    /**
+     * Writes the given ASCII string as it is.
+     *
+     * @param s the string to write
+     */
+    private void ascii(String s) {
+        ensure(s.length());
+        for (int i = 0; i < s.length(); i++)
+            buffer[count++] = (byte) s.charAt(i);
+    }
+
+    /**
+     * Writes a single byte.
+     *
+     * @param b the byte to write
+     */
+    private void put(byte b) {
+        ensure(1);
+        buffer[count++] = b;
+    }
+
+    /**
+     * Makes room in the buffer for at least the given number of bytes.
+     *
+     * @param n the number of bytes to make room for
+     */
+    private void ensure(int n) {
+        if (count + n > buffer.length)
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + n));
+    }
+}
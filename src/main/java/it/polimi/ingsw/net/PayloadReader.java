@@ -0,0 +1,21 @@
+package it.polimi.ingsw.net;
+
+/**
+ * Reads a message straight from the bytes of its payload, without building a {@link com.google.gson.JsonObject}.
+ * Readers only recognize the messages they are built for and give up on everything else, which is then parsed as usual
+ * (see {@link FrameDecoder#nextFrame(PayloadReader)}).
+ *
+ * @param <T> the type of the messages read
+ */
+@FunctionalInterface
+public interface PayloadReader<T> {
+    /**
+     * Reads the message held by the given region of the given array.
+     *
+     * @param src    the array holding the payload. It must not be modified.
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     * @return the message read, or null if the payload is not one this reader recognizes
+     */
+    T read(byte[] src, int offset, int length);
+}
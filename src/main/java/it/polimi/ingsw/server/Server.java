@@ -2,14 +2,28 @@ package it.polimi.ingsw.server;
 
 import it.polimi.ingsw.Main;
 import it.polimi.ingsw.ProgramOptions;
+import it.polimi.ingsw.net.ChannelSocket;
+import it.polimi.ingsw.net.Encoding;
+import it.polimi.ingsw.net.Framing;
+import it.polimi.ingsw.server.controller.Messages;
+import it.polimi.ingsw.server.net.ConnectionLimiter;
 import it.polimi.ingsw.server.net.Dispatcher;
+import it.polimi.ingsw.server.net.EventLoopGroup;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
 
 /**
  * Static class that executes the main server code
@@ -19,23 +33,154 @@ public class Server {
      * The servers chosen persistence store.
      */
     public static File persistenceStore = null;
+    /**
+     * The message sent to the clients whose connection is refused.
+     */
+    private static final byte[] REFUSED = Framing.DELIMITED.frame(
+            Encoding.JSON.encode(Messages.buildErrorMessage("Too many connections"))).array();
 
     /**
-     * Like {@link Main#main}, however it executes only if the program is run in server mode
+     * Like {@link Main#main}, however it executes only if the program is run in server mode. Connections are accepted
+     * on the calling thread and then served by a fixed number of non-blocking I/O loops (see
+     * {@link ProgramOptions#getIoThreads()}), or by a virtual thread each if
+     * {@link ProgramOptions#usesVirtualThreads()} is set. Connections over the limits set by
+     * {@link ProgramOptions#getMaxConnections()} and {@link ProgramOptions#getMaxConnectionsPerIp()} are refused.
+     * <p>
+     * If {@link ProgramOptions#getUnixSocket()} is set, connections are also accepted on that Unix domain socket, by
+     * another thread, and served in the same way.
      */
     public static void exec() {
         persistenceStore = ProgramOptions.getPersistenceStore();
         if (!persistenceStore.exists() && !persistenceStore.mkdir())
             throw new IllegalStateException("Server was unable to create the persistence directory");
-        ExecutorService threadPool = Executors.newCachedThreadPool();
+        ConnectionLimiter limiter = new ConnectionLimiter(ProgramOptions.getMaxConnections(),
+                ProgramOptions.getMaxConnectionsPerIp());
+        if (ProgramOptions.usesVirtualThreads())
+            serveWithVirtualThreads(limiter);
+        else
+            serveWithEventLoops(limiter);
+    }
+
+    /**
+     * Accepts connections and serves each one with a blocking {@link Dispatcher} running on its own virtual thread.
+     *
+     * @param limiter the {@link ConnectionLimiter} admitting the connections
+     */
+    private static void serveWithVirtualThreads(ConnectionLimiter limiter) {
         try (ServerSocket server = new ServerSocket(ProgramOptions.getPort())) {
+            listenLocally(limiter, client -> {
+                try {
+                    ChannelSocket socket = new ChannelSocket(client);
+                    Dispatcher dispatcher = new Dispatcher(socket);
+                    dispatcher.setOnClose(limiter::release);
+                    Threads.start("dispatcher-local", dispatcher);
+                } catch (IOException e) {
+                    System.out.println("Error while opening the socket: " + e);
+                    limiter.release();
+                }
+            });
             while (!server.isClosed()) {
                 Socket client = server.accept();
+                InetAddress address = client.getInetAddress();
+                if (!limiter.tryAcquire(address)) {
+                    refuse(client);
+                    continue;
+                }
+                Logger.log("Accepted connection, dispatching...");
+                Dispatcher dispatcher = new Dispatcher(client);
+                dispatcher.setOnClose(() -> limiter.release(address));
+                Threads.start("dispatcher-" + client.getRemoteSocketAddress(), dispatcher);
+            }
+        } catch (IOException e) {
+            System.out.println("Error while opening the socket: " + e);
+        }
+    }
+
+    /**
+     * Accepts connections and hands them to a fixed group of non-blocking I/O loops.
+     *
+     * @param limiter the {@link ConnectionLimiter} admitting the connections
+     */
+    private static void serveWithEventLoops(ConnectionLimiter limiter) {
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(ProgramOptions.getPort()));
+            EventLoopGroup loops = new EventLoopGroup(ProgramOptions.getIoThreads());
+            listenLocally(limiter, client -> loops.register(client, limiter::release));
+            while (server.isOpen()) {
+                SocketChannel client = server.accept();
+                InetAddress address = client.socket().getInetAddress();
+                if (!limiter.tryAcquire(address)) {
+                    refuse(client);
+                    continue;
+                }
                 Logger.log("Accepted connection, dispatching...");
-                threadPool.submit(new Dispatcher(client));
+                loops.register(client, () -> limiter.release(address));
             }
         } catch (IOException e) {
             System.out.println("Error while opening the socket: " + e);
         }
     }
+
+    /**
+     * If {@link ProgramOptions#getUnixSocket()} is set, starts accepting connections on that Unix domain socket. A
+     * stale socket file left by a previous run is removed, and the new one is removed when the program exits. Local
+     * connections have no address, so they only count toward the global connection limit.
+     *
+     * @param limiter the {@link ConnectionLimiter} admitting the connections
+     * @param serve   called with every admitted connection, which must release its slot in {@code limiter} with
+     *                {@link ConnectionLimiter#release()} once closed
+     * @throws IOException if the socket could not be opened
+     */
+    private static void listenLocally(ConnectionLimiter limiter, Consumer<SocketChannel> serve) throws IOException {
+        Path path = ProgramOptions.getUnixSocket();
+        if (path == null) return;
+        Files.deleteIfExists(path);
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(path));
+        path.toFile().deleteOnExit();
+        Thread.ofPlatform().name("unix-acceptor").daemon().start(() -> {
+            try (server) {
+                while (server.isOpen()) {
+                    SocketChannel client = server.accept();
+                    if (!limiter.tryAcquire()) {
+                        refuse(client);
+                        continue;
+                    }
+                    Logger.log("Accepted local connection, dispatching...");
+                    serve.accept(client);
+                }
+            } catch (IOException e) {
+                System.out.println("Error while accepting on " + path + ": " + e);
+            }
+        });
+    }
+
+    /**
+     * Tells the client that the server is full and closes the connection. The message is tiny and the connection
+     * fresh, so the write doesn't block.
+     *
+     * @param client the refused client
+     */
+    private static void refuse(Socket client) {
+        System.out.println("Too many connections, refusing " + client.getRemoteSocketAddress() + "...");
+        try (client) {
+            client.getOutputStream().write(REFUSED);
+        } catch (IOException e) {
+            System.out.println("Error while refusing connection: " + e);
+        }
+    }
+
+    /**
+     * Tells the client that the server is full and closes the connection, like {@link #refuse(Socket)}.
+     *
+     * @param client the refused client
+     */
+    private static void refuse(SocketChannel client) {
+        try (client) {
+            System.out.println("Too many connections, refusing " + client.getRemoteAddress() + "...");
+            client.write(ByteBuffer.wrap(REFUSED));
+        } catch (IOException e) {
+            System.out.println("Error while refusing connection: " + e);
+        }
+    }
 }
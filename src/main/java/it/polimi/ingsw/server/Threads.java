@@ -0,0 +1,31 @@
+package it.polimi.ingsw.server;
+
+import it.polimi.ingsw.ProgramOptions;
+
+/**
+ * Static class that starts the server's long-running tasks (connection handlers, match workers, pingers) on
+ * either platform or virtual threads, depending on {@link ProgramOptions#usesVirtualThreads()}.
+ */
+public class Threads {
+    /**
+     * Class shouldn't be instantiated.
+     */
+    private Threads() {
+    }
+
+    /**
+     * Starts a new thread with the given name running the given task.
+     *
+     * @param name the name of the thread
+     * @param task the task to run
+     * @return the started thread
+     * @throws IllegalArgumentException if any parameter is null
+     */
+    public static Thread start(String name, Runnable task) {
+        if (name == null) throw new IllegalArgumentException("name shouldn't be null");
+        if (task == null) throw new IllegalArgumentException("task shouldn't be null");
+        if (ProgramOptions.usesVirtualThreads())
+            return Thread.ofVirtual().name(name).start(task);
+        return Thread.ofPlatform().name(name).start(task);
+    }
+}
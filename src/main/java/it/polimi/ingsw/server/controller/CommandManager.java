@@ -4,27 +4,34 @@ import com.google.gson.JsonObject;
 import it.polimi.ingsw.functional.Tuple;
 import it.polimi.ingsw.server.Logger;
 import it.polimi.ingsw.server.controller.commands.UserCommand;
+import it.polimi.ingsw.server.controller.commands.UserCommandType;
 import it.polimi.ingsw.server.model.Game;
 import it.polimi.ingsw.server.model.Player;
 import it.polimi.ingsw.server.net.Dispatcher;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
 import static it.polimi.ingsw.server.controller.Messages.*;
 
 /**
- * This class implements a task that, until termination, takes match-related commands from the {@link #match} command
- * queue and executes them on the related {@link Game} instance. It then returns the response (in broadcast or to the
- * sender {@link Dispatcher}).
- * This task is meant to be executed on a separate thread from the main thread (that handles the {@link MatchRegistry}),
- * and every {@code Match} instance should have one (and only one) {@code CommandManager} related to it.
+ * This class takes match-related commands from the {@link #match} command queue and executes them on the related
+ * {@link Game} instance. It then returns the response (in broadcast or to the sender {@link Dispatcher}).
+ * It is meant to be run by a worker of the {@link MatchExecutor}, separate from the main thread (that handles the
+ * {@link MatchRegistry}), and every {@code Match} instance should have one (and only one) {@code CommandManager}
+ * related to it.
+ * <p>
+ * The commands waiting in the queue are managed in batches: consecutive game commands are applied together and
+ * produce a single {@code UPDATE} and a single save on disk (see {@link CommandStrategy#manageCommands(List, Match)}),
+ * while {@code JOIN}s and {@code LEAVE}s, which change the players receiving the updates, and the commands received
+ * while the match is in {@code rejoining} state are managed one at a time.
  *
  * @author Leonardo Bianconi
  * @see Match
  * @see Game
  */
-public class CommandManager implements Runnable {
+public class CommandManager {
     /**
      * A {@link CommandStrategy} to use during the standard phases of a {@link Match}.
      */
@@ -62,21 +69,75 @@ public class CommandManager implements Runnable {
     }
 
     /**
-     * Main operation, repeated until thread termination. Manages the commands in the commands queue. If the queue has
-     * at least one element, it takes (blocking method synchronizing on the queue) the first element and executes the
-     * {@link #manageCommand(Tuple)} method.
+     * Main operation, run by the worker of the {@link MatchExecutor} the match is bound to. Takes the commands in the
+     * commands queue, in order, until the queue is empty or {@code max} commands have been taken, and manages them:
+     * consecutive game commands together, through {@link #manageBatch(List)}, and the others one at a time, through
+     * {@link #manageCommand(Tuple)}. If managing some commands fails unexpectedly, their senders are notified with an
+     * {@code ERROR} message and the following commands are still managed. Finally, it publishes a new snapshot of the
+     * match (see {@link Match#publishSnapshot()}). Once the match has ended, its pending commands are discarded.
+     *
+     * @param max the maximum number of commands to manage
      */
-    @Override
-    public void run() {
+    void runPending(int max) {
+        List<Tuple<UserCommand, Dispatcher>> batch = new ArrayList<>();
+        Tuple<UserCommand, Dispatcher> command;
         try {
-            while (!match.hasEnded()) {
-                manageCommand(match.getCommands().take());
+            for (int i = 0; i < max && !match.hasEnded() && (command = match.pollCommand()) != null; i++) {
+                UserCommandType type = command.getFirst().getType();
+                if (type == UserCommandType.JOIN || type == UserCommandType.LEAVE || match.isRejoiningState()) {
+                    safely(batch, () -> manageBatch(batch));
+                    batch.clear();
+                    Tuple<UserCommand, Dispatcher> single = command;
+                    if (!match.hasEnded())
+                        safely(List.of(single), () -> manageCommand(single));
+                } else {
+                    batch.add(command);
+                }
             }
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+            safely(batch, () -> manageBatch(batch));
+        } finally {
+            if (match.hasEnded())
+                match.getCommands().clear();
+            else
+                match.publishSnapshot();
+        }
+    }
+
+    /**
+     * Runs the given management of some commands. If it fails unexpectedly, logs the failure and sends an
+     * {@code ERROR} message to the senders of the commands, which may or may not have been applied.
+     *
+     * @param commands the commands being managed
+     * @param manage   the management of the commands
+     */
+    private void safely(List<Tuple<UserCommand, Dispatcher>> commands, Runnable manage) {
+        try {
+            manage.run();
+        } catch (RuntimeException e) {
+            System.out.println("Error while executing a command of match " + match.getId() + ": " + e);
+            JsonObject error = buildErrorMessage(match.getId(), "Internal error while executing the command.");
+            for (Tuple<UserCommand, Dispatcher> c : commands)
+                c.getSecond().send(error);
         }
     }
 
+    /**
+     * Manages a batch of consecutive game commands with the {@link StandardCommandStrategy}, which applies them in
+     * order and sends a single {@code UPDATE} for all of them. Then, like {@link #manageCommand(Tuple)}, if the game is
+     * now ended, sends a {@code END} message in broadcast.
+     *
+     * @param batch the commands, none of which is a {@code JOIN} or a {@code LEAVE}
+     */
+    void manageBatch(List<Tuple<UserCommand, Dispatcher>> batch) {
+        if (batch.isEmpty() || match.hasEnded())
+            return;
+        Logger.log("EXECUTING " + batch.size() + " GAME COMMANDS [ID: " + match.getId() + "]");
+
+        setStrategy(DEFAULT_STRATEGY);
+        strategy.manageCommands(batch, match);
+        checkEnd();
+    }
+
     /**
      * Method for the management of a single command of the queue. It does the following:
      * <ul>
@@ -99,11 +160,19 @@ public class CommandManager implements Runnable {
             setStrategy(DEFAULT_STRATEGY);
 
         strategy.manageCommand(command, match);
+        checkEnd();
+    }
 
+    /**
+     * Helper method that terminates the match if the game is now ended, sending the {@code END} message first, or if
+     * every player has left it.
+     */
+    private void checkEnd() {
         Game g = match.getGame();
         if (g.isEnded()) {
             sendWinMessage(g.getWinners());
             MatchRegistry.getInstance().terminate(match.getId());
+            return;
         }
 
         terminateIfEmpty();
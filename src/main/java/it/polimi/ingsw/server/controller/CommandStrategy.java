@@ -4,6 +4,8 @@ import it.polimi.ingsw.functional.Tuple;
 import it.polimi.ingsw.server.controller.commands.UserCommand;
 import it.polimi.ingsw.server.net.Dispatcher;
 
+import java.util.List;
+
 /**
  * This interface represents a strategy to be used for managing a game {@link UserCommand} on a {@link Match}.
  *
@@ -18,4 +20,17 @@ public interface CommandStrategy {
      * @param match   the {@link Match} on which to apply the command
      */
     void manageCommand(Tuple<UserCommand, Dispatcher> command, Match match);
+
+    /**
+     * Manages a batch of commands, in order. By default, each one is managed on its own, but strategies may merge
+     * their effects (e.g. send a single update for all of them). The batch never contains {@code JOIN} or
+     * {@code LEAVE} commands, so the players connected to the match don't change while it is managed.
+     *
+     * @param commands the {@link UserCommand}s to manage, in order
+     * @param match    the {@link Match} on which to apply the commands
+     */
+    default void manageCommands(List<Tuple<UserCommand, Dispatcher>> commands, Match match) {
+        for (Tuple<UserCommand, Dispatcher> c : commands)
+            manageCommand(c, match);
+    }
 }
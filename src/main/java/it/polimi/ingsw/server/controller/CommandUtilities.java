@@ -27,8 +27,12 @@ public class CommandUtilities {
         if (match.isRejoiningState() && !match.getMissingPlayers().contains(username))
             throw new IllegalArgumentException("A player with such username wasn't connected to this match.");
 
+        MatchRegistry.getInstance().unsubscribeFromLobbies(dispatcher);
         match.addDispatcher(dispatcher, username);
         dispatcher.setPlayingState(match);
+        // the match may have been stopped, releasing its players, before the dispatcher was bound to it
+        if (match.hasEnded())
+            dispatcher.setIdleState();
     }
 
     /**
@@ -0,0 +1,89 @@
+package it.polimi.ingsw.server.controller;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+
+/**
+ * Hands out the IDs of the {@link Match}es of the {@link MatchRegistry}. IDs released by terminated matches are kept on
+ * a stack and handed out again before any new one, so that the IDs in use stay close to zero; both allocating and
+ * releasing an ID take constant time, whatever the number of live matches.
+ *
+ * @see MatchRegistry
+ */
+class GameIdAllocator {
+    /**
+     * The IDs that have been released and can be handed out again, the last released on top.
+     */
+    private final Deque<Integer> released;
+    /**
+     * The IDs currently in use.
+     */
+    private final BitSet taken;
+    /**
+     * The smallest ID that has never been handed out.
+     */
+    private int next;
+
+    /**
+     * Creates a new GameIdAllocator with no ID in use.
+     */
+    GameIdAllocator() {
+        this.released = new ArrayDeque<>();
+        this.taken = new BitSet();
+        this.next = 0;
+    }
+
+    /**
+     * Takes an unused ID: the last one released, if any, or a new one otherwise.
+     *
+     * @return the ID
+     */
+    synchronized int allocate() {
+        int id = released.isEmpty() ? next++ : released.pop();
+        taken.set(id);
+        return id;
+    }
+
+    /**
+     * Marks the given ID as in use, if it isn't already, e.g. because a match with that ID has been restored from
+     * disk. The IDs skipped to reach it become available.
+     *
+     * @param id the ID
+     * @throws IllegalArgumentException if {@code id} is negative
+     */
+    synchronized void reserve(int id) {
+        if (id < 0) throw new IllegalArgumentException("id shouldn't be negative");
+        if (taken.get(id)) return;
+        if (id >= next) {
+            while (next < id)
+                released.push(next++);
+            next++;
+        } else {
+            released.remove(id);
+        }
+        taken.set(id);
+    }
+
+    /**
+     * Makes the given ID available again.
+     *
+     * @param id the ID
+     * @throws IllegalArgumentException if {@code id} is not in use
+     */
+    synchronized void release(int id) {
+        if (id < 0 || !taken.get(id)) throw new IllegalArgumentException("id " + id + " is not in use");
+        taken.clear(id);
+        released.push(id);
+    }
+
+    /**
+     * Returns true if the given ID is in use.
+     *
+     * @param id the ID
+     * @return true if the ID is in use
+     */
+    synchronized boolean isTaken(int id) {
+        return id >= 0 && taken.get(id);
+    }
+}
@@ -1,6 +1,8 @@
 package it.polimi.ingsw.server.controller;
 
 import com.google.gson.JsonObject;
+import it.polimi.ingsw.server.controller.commands.UserCommand;
+import it.polimi.ingsw.server.controller.commands.UserCommandType;
 import it.polimi.ingsw.server.net.Dispatcher;
 
 import java.util.function.Consumer;
@@ -8,8 +10,9 @@ import java.util.function.Consumer;
 /**
  * This class represents a {@code BiConsumer}<{@link JsonObject}, {@link Dispatcher}> to be set to a {@link Dispatcher}
  * (through {@link Dispatcher#setOnReceive(Consumer)}) when the {@link Dispatcher} is connected to a {@link Match}.
- * It makes the Dispatcher return an error message if the player tries to send another {@code CREATE} or {@code JOIN}
- * message.
+ * It makes the Dispatcher return an error message if the player tries to send another {@code CREATE}, {@code JOIN} or
+ * {@code QUICK_MATCH} message, or to subscribe to the lobbies with {@code SUBSCRIBE_LOBBIES}: players are unsubscribed
+ * when they join a match (see {@link MatchRegistry#unsubscribeFromLobbies(Dispatcher)}).
  *
  * @author Leonardo Bianconi
  * @see Dispatcher
@@ -42,11 +45,27 @@ public class InMatchCallback implements Consumer<JsonObject> {
             return;
         }
 
-        if (type.equals("CREATE") || type.equals("JOIN")) {
+        if (type.equals("CREATE") || type.equals("JOIN") || type.equals("QUICK_MATCH") ||
+                type.equals("SUBSCRIBE_LOBBIES")) {
             dispatcher.send(Messages.buildErrorMessage("Already inside a game on this client."));
             return;
         }
 
         MatchRegistry.getInstance().executeCommand(dispatcher, jsonObject);
     }
+
+    /**
+     * Handles a command that has already been read into a {@link UserCommand} (see
+     * {@link it.polimi.ingsw.server.controller.commands.CommandReader}) like {@link #accept(JsonObject)} would.
+     *
+     * @param command the command
+     */
+    public void accept(UserCommand command) {
+        if (command.getType() == UserCommandType.JOIN) {
+            dispatcher.send(Messages.buildErrorMessage("Already inside a game on this client."));
+            return;
+        }
+
+        MatchRegistry.getInstance().executeCommand(dispatcher, command);
+    }
 }
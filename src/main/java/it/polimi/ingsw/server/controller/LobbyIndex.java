@@ -0,0 +1,162 @@
+package it.polimi.ingsw.server.controller;
+
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Index of the lobbies listed by {@code FETCH}, kept by the {@link MatchRegistry}. Each lobby is stored already in the
+ * format sent to the clients (see {@link Match#toJson()}), in a bucket shared by the lobbies with the same number of
+ * players, expert mode, free seats and rejoining state, sorted by ID. A {@link LobbyQuery} therefore only visits the
+ * buckets matching its filters, starting right after its cursor, and stops as soon as its page is full: its cost
+ * depends on the size of the page and not on the number of lobbies.
+ * <p>
+ * Updates must not run concurrently, while queries can run at any time; a query running concurrently with an update
+ * sees the lobby either before or after the update.
+ *
+ * @see LobbyQuery
+ */
+class LobbyIndex {
+    /**
+     * The lobbies, by bucket and then by ID.
+     */
+    private final ConcurrentMap<Integer, ConcurrentSkipListMap<Long, JsonObject>> buckets;
+    /**
+     * The bucket of each lobby, by ID.
+     */
+    private final ConcurrentMap<Long, Integer> bucketOf;
+
+    /**
+     * Creates a new, empty LobbyIndex.
+     */
+    LobbyIndex() {
+        this.buckets = new ConcurrentHashMap<>();
+        this.bucketOf = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Adds the given lobby to the index, or replaces the one with the same ID.
+     *
+     * @param id    the ID of the lobby
+     * @param lobby the lobby, as returned by {@link Match#toJson()}. It must not be modified afterwards.
+     * @throws IllegalArgumentException if {@code lobby} is null
+     */
+    void put(long id, JsonObject lobby) {
+        if (lobby == null) throw new IllegalArgumentException("lobby shouldn't be null");
+        int nPlayers = lobby.get("nPlayers").getAsInt();
+        int bucket = bucket(nPlayers, lobby.get("expert").getAsBoolean(),
+                lobby.get("playersConnected").getAsInt() < nPlayers, lobby.get("rejoining").getAsBoolean());
+        buckets.computeIfAbsent(bucket, b -> new ConcurrentSkipListMap<>()).put(id, lobby);
+        Integer previous = bucketOf.put(id, bucket);
+        if (previous != null && previous != bucket)
+            buckets.get(previous).remove(id);
+    }
+
+    /**
+     * Removes the lobby with the given ID from the index, if present.
+     *
+     * @param id the ID of the lobby
+     */
+    void remove(long id) {
+        Integer bucket = bucketOf.remove(id);
+        if (bucket != null)
+            buckets.get(bucket).remove(id);
+    }
+
+    /**
+     * Lists, by increasing ID, the lobbies matching the given query, up to one more than its limit, so that the caller
+     * can tell whether there is another page.
+     *
+     * @param query the query
+     * @return the matching lobbies
+     * @throws IllegalArgumentException if {@code query} is null
+     */
+    List<JsonObject> query(LobbyQuery query) {
+        if (query == null) throw new IllegalArgumentException("query shouldn't be null");
+        PriorityQueue<Cursor> cursors = new PriorityQueue<>();
+        for (Map.Entry<Integer, ConcurrentSkipListMap<Long, JsonObject>> e : buckets.entrySet()) {
+            int b = e.getKey();
+            if (query.matches(b >> 3, (b & 4) != 0, (b & 2) != 0, (b & 1) != 0)) {
+                Cursor c = new Cursor(e.getValue().tailMap(query.getAfter(), false).entrySet().iterator());
+                if (c.advance())
+                    cursors.add(c);
+            }
+        }
+
+        List<JsonObject> page = new ArrayList<>();
+        long last = -1;
+        while (!cursors.isEmpty() && page.size() <= query.getLimit()) {
+            Cursor c = cursors.poll();
+            // a lobby moving to another bucket while the query runs may be seen in both
+            if (c.current.getKey() != last)
+                page.add(c.current.getValue());
+            last = c.current.getKey();
+            if (c.advance())
+                cursors.add(c);
+        }
+        return page;
+    }
+
+    /**
+     * Returns the bucket of the lobbies with the given characteristics.
+     *
+     * @param nPlayers  the number of players of the lobbies
+     * @param expert    whether the lobbies are in expert mode
+     * @param open      whether the lobbies have at least a free seat
+     * @param rejoining whether the lobbies are waiting for their players to rejoin
+     * @return the bucket
+     */
+    private static int bucket(int nPlayers, boolean expert, boolean open, boolean rejoining) {
+        return nPlayers << 3 | (expert ? 4 : 0) | (open ? 2 : 0) | (rejoining ? 1 : 0);
+    }
+
+    /**
+     * The position of a query in a bucket.
+     */
+    private static class Cursor implements Comparable<Cursor> {
+        /**
+         * The lobbies of the bucket following the current one.
+         */
+        private final Iterator<Map.Entry<Long, JsonObject>> rest;
+        /**
+         * The current lobby.
+         */
+        private Map.Entry<Long, JsonObject> current;
+
+        /**
+         * Creates a new Cursor, before the first of the given lobbies.
+         *
+         * @param lobbies the lobbies of the bucket
+         */
+        private Cursor(Iterator<Map.Entry<Long, JsonObject>> lobbies) {
+            this.rest = lobbies;
+        }
+
+        /**
+         * Moves to the next lobby.
+         *
+         * @return false if there are no more lobbies
+         */
+        private boolean advance() {
+            if (!rest.hasNext())
+                return false;
+            current = rest.next();
+            return true;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int compareTo(Cursor o) {
+            return Long.compare(current.getKey(), o.current.getKey());
+        }
+    }
+}
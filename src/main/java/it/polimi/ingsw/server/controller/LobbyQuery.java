@@ -0,0 +1,147 @@
+package it.polimi.ingsw.server.controller;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import static it.polimi.ingsw.server.controller.Messages.*;
+
+/**
+ * The filters and the page requested by a {@code FETCH} command (see protocol docs). Every filter is optional: a
+ * missing one matches every lobby. Lobbies are listed by increasing ID, starting after the ID given as cursor, if any,
+ * and at most as many as the given limit, if any.
+ *
+ * @see LobbyIndex
+ */
+class LobbyQuery {
+    /**
+     * A query matching every lobby, with no limit.
+     */
+    static final LobbyQuery ALL = new LobbyQuery(null, null, null, null, -1, Integer.MAX_VALUE);
+
+    /**
+     * The number of players of the matching lobbies, null for any.
+     */
+    private final Integer nPlayers;
+    /**
+     * Whether the matching lobbies are in expert mode, null for any.
+     */
+    private final Boolean expert;
+    /**
+     * Whether the matching lobbies have at least a free seat, null for any.
+     */
+    private final Boolean open;
+    /**
+     * Whether the matching lobbies are waiting for their players to rejoin, null for any.
+     */
+    private final Boolean rejoining;
+    /**
+     * The ID after which lobbies are listed, -1 for listing them from the first.
+     */
+    private final long after;
+    /**
+     * The maximum number of lobbies to list.
+     */
+    private final int limit;
+
+    /**
+     * Creates a new LobbyQuery.
+     *
+     * @param nPlayers  the number of players of the matching lobbies, null for any
+     * @param expert    whether the matching lobbies are in expert mode, null for any
+     * @param open      whether the matching lobbies have at least a free seat, null for any
+     * @param rejoining whether the matching lobbies are waiting for their players to rejoin, null for any
+     * @param after     the ID after which lobbies are listed, -1 for listing them from the first
+     * @param limit     the maximum number of lobbies to list
+     */
+    private LobbyQuery(Integer nPlayers, Boolean expert, Boolean open, Boolean rejoining, long after, int limit) {
+        this.nPlayers = nPlayers;
+        this.expert = expert;
+        this.open = open;
+        this.rejoining = rejoining;
+        this.after = after;
+        this.limit = limit;
+    }
+
+    /**
+     * Reads the query of the given {@code FETCH} command. A command without arguments matches every lobby.
+     *
+     * @param fetchCommand a {@link JsonObject} representing the command
+     * @return the query
+     * @throws IllegalArgumentException if {@code fetchCommand} is null or its arguments are badly formatted
+     */
+    static LobbyQuery fromFetch(JsonObject fetchCommand) throws IllegalArgumentException {
+        if (fetchCommand == null) throw new IllegalArgumentException("fetchCommand must not be null");
+        if (!fetchCommand.has("arguments"))
+            return ALL;
+
+        JsonElement arg = extractArray(fetchCommand, "arguments", 1).get(0);
+        if (!arg.isJsonObject())
+            throw new IllegalArgumentException("fetchCommand.arguments[0] should be an object");
+        JsonObject args = arg.getAsJsonObject();
+        Integer nPlayers = args.has("nPlayers") ? (int) extractNumber(args, "nPlayers") : null;
+        Boolean expert = args.has("expert") ? extractBoolean(args, "expert") : null;
+        Boolean open = args.has("open") ? extractBoolean(args, "open") : null;
+        Boolean rejoining = args.has("rejoining") ? extractBoolean(args, "rejoining") : null;
+        long after = args.has("after") ? extractNumber(args, "after") : -1;
+        long limit = args.has("limit") ? extractNumber(args, "limit") : Integer.MAX_VALUE;
+        if (after < -1 || limit <= 0)
+            throw new IllegalArgumentException("after shouldn't be negative and limit should be positive");
+        return new LobbyQuery(nPlayers, expert, open, rejoining, after, (int) Math.min(limit, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Returns a query matching the lobbies with the given number of players and mode that have at least a free seat
+     * and are not waiting for their players to rejoin, i.e. the lobbies new players can join.
+     *
+     * @param nPlayers the number of players of the lobbies
+     * @param expert   whether the lobbies are in expert mode
+     * @return the query
+     */
+    static LobbyQuery openLobbies(int nPlayers, boolean expert) {
+        return new LobbyQuery(nPlayers, expert, true, false, -1, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns true if this query lists every lobby.
+     *
+     * @return true if this query lists every lobby
+     */
+    boolean isAll() {
+        return nPlayers == null && expert == null && open == null && rejoining == null && after < 0 &&
+                limit == Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns true if the lobbies with the given characteristics match the filters of this query.
+     *
+     * @param nPlayers  the number of players of the lobbies
+     * @param expert    whether the lobbies are in expert mode
+     * @param open      whether the lobbies have at least a free seat
+     * @param rejoining whether the lobbies are waiting for their players to rejoin
+     * @return true if the lobbies match
+     */
+    boolean matches(int nPlayers, boolean expert, boolean open, boolean rejoining) {
+        return (this.nPlayers == null || this.nPlayers == nPlayers) &&
+                (this.expert == null || this.expert == expert) &&
+                (this.open == null || this.open == open) &&
+                (this.rejoining == null || this.rejoining == rejoining);
+    }
+
+    /**
+     * Getter for the ID after which lobbies are listed.
+     *
+     * @return the ID after which lobbies are listed, -1 for listing them from the first
+     */
+    long getAfter() {
+        return after;
+    }
+
+    /**
+     * Getter for the maximum number of lobbies to list.
+     *
+     * @return the maximum number of lobbies to list
+     */
+    int getLimit() {
+        return limit;
+    }
+}
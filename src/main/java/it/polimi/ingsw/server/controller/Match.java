@@ -8,19 +8,31 @@ import it.polimi.ingsw.server.controller.commands.UserCommandType;
 import it.polimi.ingsw.server.model.Game;
 import it.polimi.ingsw.server.model.Phase;
 import it.polimi.ingsw.server.net.Dispatcher;
+import it.polimi.ingsw.server.net.OutgoingMessage;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
+import static it.polimi.ingsw.server.controller.Messages.buildErrorMessage;
+
 /**
  * This class represents a single match operated by the server. It has a unique identifier, the corresponding model's
- * {@link Game} instance, a list of connected {@link Dispatcher}s and a queue of stored commands to be managed by a
- * separate {@code Thread}. Its operations mainly permit to modify these attributes.
+ * {@link Game} instance, a list of connected {@link Dispatcher}s and a queue of stored commands to be managed by one
+ * of the workers of the {@link MatchExecutor}. Its operations mainly permit to modify these attributes.
+ * <p>
+ * A Match goes through the states of {@link State}: it does nothing until it is started by {@link #start()}, which
+ * schedules its PING checks; {@link #drain()} makes it refuse new commands while the queued ones are still run; and
+ * {@link #stop()} cancels its PING checks, discards its queued commands and releases its players, so that nothing
+ * scheduled on the shared {@link TimingWheel} or {@link MatchExecutor} keeps referring to it.
  *
  * @author Leonardo Bianconi
  * @see MatchRegistry
@@ -33,7 +45,8 @@ public class Match {
      */
     private final static long WAIT_PONG_TIME = ProgramOptions.getMaximumPing();
     /**
-     * The time interval, expressed in milliseconds, for new {@link Pinger} instances to be created.
+     * The time interval, expressed in milliseconds, without messages from a player after which it is pinged by a new
+     * {@link Pinger} instance.
      */
     private final static long PING_RATE = ProgramOptions.getMaximumPing() * 2;
     /**
@@ -46,30 +59,54 @@ public class Match {
     private final Game game;
     /**
      * A list containing all the {@link Dispatcher}s that are currently connected to the game, bounded to their in-game
-     * username.
+     * username. It is copied on write, since it is iterated on every broadcast and modified only on joins and leaves.
      */
     private final List<Tuple<Dispatcher, String>> dispatcherList;
     /**
-     * A {@link BlockingQueue} containing all the {@link UserCommand}s to be executed (via a {@link CommandManager} on a
-     * separate thread), paired with the {@link Dispatcher} that "requested" the execution of such command.
+     * The mailbox of the Match: a {@link Queue} containing all the {@link UserCommand}s to be executed (via a
+     * {@link CommandManager} on a worker of the {@link MatchExecutor}), paired with the {@link Dispatcher} that
+     * "requested" the execution of such command.
+     */
+    private final Queue<Tuple<UserCommand, Dispatcher>> commands;
+    /**
+     * The {@link CommandManager} executing the commands of this Match.
+     */
+    private final CommandManager commandManager;
+    /**
+     * Whether this Match is queued on, or being run by, its worker of the {@link MatchExecutor}.
+     */
+    private final AtomicBoolean scheduled;
+    /**
+     * The corresponding {@link Pinger} instance, relative to the current wave of PING messages.
+     */
+    private volatile Pinger pinger;
+    /**
+     * The next check for quiet players (see {@link #checkIdle()}), scheduled on the {@link TimingWheel} shared by all
+     * the matches.
+     */
+    private volatile TimingWheel.Timeout nextCheck;
+    /**
+     * The state of this Match in its lifecycle.
      */
-    private final BlockingQueue<Tuple<UserCommand, Dispatcher>> commands;
+    private final AtomicReference<State> state;
     /**
-     * The corresponding {@link Pinger} instance.
+     * The number of commands added to the mailbox so far.
      */
-    private Pinger pinger;
+    private final AtomicLong received;
     /**
-     * A thread that runs the {@link #runPinger()} method.
+     * The number of commands taken from the mailbox so far (see {@link #pollCommand()}).
      */
-    private Thread pingThread = null;
+    private final AtomicLong executed;
     /**
-     * A thread that runs the {@link CommandManager#run()} method.
+     * The last {@link MatchSnapshot} published by the worker running the commands of this Match.
      */
-    private final Thread commandThread;
+    private volatile MatchSnapshot snapshot;
     /**
-     * Whether this match has ended or not.
+     * Called every time a player joins or leaves, i.e. every time the representation returned by {@link #toJson()}
+     * may change.
      */
-    private volatile boolean ended;
+    private volatile Runnable onLobbyChange = () -> {
+    };
 
     /**
      * The default constructor.
@@ -88,17 +125,17 @@ public class Match {
 
         this.id = id;
         this.game = game;
-        this.commands = new LinkedBlockingQueue<>();
-        this.dispatcherList = new ArrayList<>();
-        this.ended = false;
-
-        if (ProgramOptions.usesPing()) {
-            this.pingThread = new Thread(this::runPinger);
-            pingThread.start();
-        }
-
-        this.commandThread = new Thread(new CommandManager(this));
-        commandThread.start();
+        this.commands = new ConcurrentLinkedQueue<>();
+        this.commandManager = new CommandManager(this);
+        this.scheduled = new AtomicBoolean();
+        this.dispatcherList = new CopyOnWriteArrayList<>();
+        this.state = new AtomicReference<>(State.CREATED);
+        this.received = new AtomicLong();
+        this.executed = new AtomicLong();
+        this.snapshot = new MatchSnapshot(this, 0);
+
+        if (ProgramOptions.usesPing())
+            this.pinger = new Pinger(this, WAIT_PONG_TIME);
 
         System.out.println("NEW MATCH CREATED [ID: " + id + "]");
     }
@@ -118,17 +155,17 @@ public class Match {
 
         this.id = id;
         this.game = new Game(restoredPhase);
-        this.commands = new LinkedBlockingQueue<>();
-        this.dispatcherList = new ArrayList<>();
-        this.ended = false;
-
-        if (ProgramOptions.usesPing()) {
-            this.pingThread = new Thread(this::runPinger);
-            pingThread.start();
-        }
-
-        this.commandThread = new Thread(new CommandManager(this));
-        commandThread.start();
+        this.commands = new ConcurrentLinkedQueue<>();
+        this.commandManager = new CommandManager(this);
+        this.scheduled = new AtomicBoolean();
+        this.dispatcherList = new CopyOnWriteArrayList<>();
+        this.state = new AtomicReference<>(State.CREATED);
+        this.received = new AtomicLong();
+        this.executed = new AtomicLong();
+        this.snapshot = new MatchSnapshot(this, 0);
+
+        if (ProgramOptions.usesPing())
+            this.pinger = new Pinger(this, WAIT_PONG_TIME);
 
         System.out.println("RESTORED MATCH [ID: " + id + "]");
     }
@@ -175,24 +212,137 @@ public class Match {
      *
      * @return the queue of commands
      */
-    BlockingQueue<Tuple<UserCommand, Dispatcher>> getCommands() {
+    Queue<Tuple<UserCommand, Dispatcher>> getCommands() {
         return commands;
     }
 
     /**
-     * Getter for the ended attribute.
+     * Takes the next command from the queue of commands, counting it as executed. The {@link CommandManager} of this
+     * Match must take the commands only through this method, so that the published {@link MatchSnapshot}s always know
+     * how many commands have been taken.
+     *
+     * @return the next command, or null if the queue is empty
+     */
+    Tuple<UserCommand, Dispatcher> pollCommand() {
+        Tuple<UserCommand, Dispatcher> command = commands.poll();
+        if (command != null)
+            executed.incrementAndGet();
+        return command;
+    }
+
+    /**
+     * Getter for the {@link CommandManager} executing the commands of this Match.
+     *
+     * @return the {@link CommandManager} of this Match
+     */
+    CommandManager getCommandManager() {
+        return commandManager;
+    }
+
+    /**
+     * Marks this Match as queued on its worker of the {@link MatchExecutor}.
+     *
+     * @return false if it was already queued or being run
+     */
+    boolean claim() {
+        return scheduled.compareAndSet(false, true);
+    }
+
+    /**
+     * Marks this Match as no longer queued on nor run by its worker of the {@link MatchExecutor}.
+     */
+    void release() {
+        scheduled.set(false);
+    }
+
+    /**
+     * Publishes a new {@link MatchSnapshot} of this Match, used to refuse the obviously invalid commands as soon as
+     * they are received. It must be called by the worker running the commands of this Match, after running them.
+     */
+    void publishSnapshot() {
+        snapshot = new MatchSnapshot(this, executed.get());
+    }
+
+    /**
+     * Getter for the state of this Match in its lifecycle.
+     *
+     * @return the state of this Match
+     */
+    State getState() {
+        return state.get();
+    }
+
+    /**
+     * Whether the match has ended, i.e. it has been stopped, or not.
      *
      * @return if the match has ended or not
      */
     boolean hasEnded() {
-        return ended;
+        return state.get() == State.STOPPED;
+    }
+
+    /**
+     * Starts the match, scheduling its first check for quiet players (see {@link #checkIdle()}) if pinging is enabled.
+     * It must be called once the match has been added to the {@link MatchRegistry}. Does nothing if the match has
+     * already been started, drained or stopped.
+     */
+    void start() {
+        if (state.compareAndSet(State.CREATED, State.RUNNING) && ProgramOptions.usesPing()) {
+            nextCheck = TimingWheel.getInstance().schedule(PING_RATE, this::checkIdle);
+            if (hasEnded())
+                cancelPings();
+        }
+    }
+
+    /**
+     * Drains the match: from now on, new commands are refused (see
+     * {@link #executeUserCommand(UserCommand, Dispatcher)}), while the ones already queued are still run. Does nothing
+     * if the match has already been stopped.
+     */
+    void drain() {
+        state.getAndUpdate(s -> s == State.STOPPED ? s : State.DRAINING);
+    }
+
+    /**
+     * Stops the match: cancels its PING checks, discards its queued commands and releases its players, putting their
+     * {@link Dispatcher}s back in idle state. Only the first call has any effect.
+     *
+     * @return the {@link Dispatcher}s of the released players, in order of arrival
+     */
+    List<Dispatcher> stop() {
+        if (state.getAndSet(State.STOPPED) == State.STOPPED)
+            return List.of();
+        cancelPings();
+        commands.clear();
+
+        List<Dispatcher> released;
+        synchronized (this) {
+            released = getDispatchers();
+            dispatcherList.clear();
+        }
+        released.forEach(Dispatcher::setIdleState);
+        return released;
+    }
+
+    /**
+     * Cancels the next check for quiet players and the deadline of the current {@link Pinger}, if any.
+     */
+    private void cancelPings() {
+        TimingWheel.Timeout t = nextCheck;
+        if (t != null) t.cancel();
+        Pinger p = pinger;
+        if (p != null) p.cancel();
     }
 
     /**
-     * Sets the match to ended.
+     * Sets the callback to run every time a player joins or leaves this Match.
+     *
+     * @param onLobbyChange the callback
+     * @throws IllegalArgumentException if {@code onLobbyChange} is null
      */
-    void setEnded() {
-        ended = true;
+    void setOnLobbyChange(Runnable onLobbyChange) {
+        if (onLobbyChange == null) throw new IllegalArgumentException("onLobbyChange shouldn't be null");
+        this.onLobbyChange = onLobbyChange;
     }
 
     /**
@@ -225,17 +375,20 @@ public class Match {
      * "connected" to this Match.
      *
      * @param dispatcher the {@link Dispatcher} instance to be added
-     * @throws IllegalArgumentException if {@code dispatcher == null} or if dispatcher is already connected to this
-     *                                  Match
+     * @throws IllegalArgumentException if {@code dispatcher == null}, if dispatcher is already connected to this
+     *                                  Match or if this Match has been stopped
      */
     synchronized void addDispatcher(Dispatcher dispatcher, String username) throws IllegalArgumentException {
         if (dispatcher == null) throw new IllegalArgumentException("dispatcher must not be null.");
         if (username == null) throw new IllegalArgumentException("username must not be null.");
+        if (hasEnded())
+            throw new IllegalArgumentException("This match has ended.");
 
         if (getDispatchers().contains(dispatcher))
             throw new IllegalArgumentException("This socket is already connected to this Match.");
 
         dispatcherList.add(new Tuple<>(dispatcher, username));
+        onLobbyChange.run();
     }
 
     /**
@@ -255,6 +408,7 @@ public class Match {
 
         dispatcherList.removeIf(tuple -> tuple.getFirst().equals(dispatcher));
         dispatcher.setOnReceive(dispatcher.onReceiveDefault);
+        onLobbyChange.run();
     }
 
     /**
@@ -272,50 +426,90 @@ public class Match {
 
     /**
      * This method executes a match-related command. It takes a {@link UserCommand} and the {@link Dispatcher} that sent
-     * this command, creates a {@link Tuple} containing the two and adds it to {@link #commands}. The two parameters
-     * are assumed to be correct and non-null.
+     * this command, creates a {@link Tuple} containing the two, adds it to {@link #commands} and schedules this Match
+     * on the {@link MatchExecutor}. The two parameters are assumed to be correct and non-null.
+     * <p>
+     * If every command received so far has already been run, the last {@link MatchSnapshot} describes the state the
+     * command would be run on: if the snapshot tells that the command is invalid (e.g. it is not its sender's turn),
+     * the sender is sent the {@code ERROR} right away, and the command is not queued. Refused commands don't change the
+     * state of the game, so this is the same as running the command before any other one received meanwhile.
      *
      * @param command    the {@link UserCommand} to be executed
      * @param dispatcher the requesting {@link Dispatcher}
+     * @throws IllegalArgumentException if the username of the command is not the one of the sender, or if this Match
+     *                                  has been drained or stopped
      */
     void executeUserCommand(UserCommand command, Dispatcher dispatcher) {
+        if (enqueue(command, dispatcher))
+            MatchExecutor.getInstance().schedule(this);
+    }
+
+    /**
+     * Adds the given command to {@link #commands}, like {@link #executeUserCommand(UserCommand, Dispatcher)}, without
+     * scheduling this Match on the {@link MatchExecutor}.
+     *
+     * @param command    the {@link UserCommand} to be executed
+     * @param dispatcher the requesting {@link Dispatcher}
+     * @return false if the command has been refused right away, true if it has been queued
+     * @throws IllegalArgumentException if the username of the command is not the one of the sender, or if this Match
+     *                                  has been drained or stopped
+     */
+    boolean enqueue(UserCommand command, Dispatcher dispatcher) {
+        State s = state.get();
+        if (s == State.DRAINING || s == State.STOPPED)
+            throw new IllegalArgumentException("This match has ended.");
         if (!isCorrectUsername(dispatcher, command.getUsername()) && !command.getType().equals(UserCommandType.JOIN))
             throw new IllegalArgumentException("Wrong username.");
 
-        try {
-            commands.put(new Tuple<>(command, dispatcher));
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+        MatchSnapshot last = snapshot;
+        if (received.get() == last.getExecuted()) {
+            Optional<String> error = last.check(command);
+            if (error.isPresent()) {
+                dispatcher.send(buildErrorMessage(id, error.get()));
+                return false;
+            }
         }
+        received.incrementAndGet();
+        commands.add(new Tuple<>(command, dispatcher));
+        return true;
     }
 
     /**
-     * It sends the specified {@link JsonObject} message to all the dispatchers connected to the Match.
+     * It sends the specified {@link JsonObject} message to all the dispatchers connected to the Match. The message is
+     * serialized once and its bytes are shared by all the recipients (see {@link OutgoingMessage}).
      *
      * @param message the message to send
      */
     void sendBroadcast(JsonObject message) {
-        for (Dispatcher dispatcher : getDispatchers())
-            dispatcher.send(message);
+        OutgoingMessage encoded = new OutgoingMessage(message);
+        for (Tuple<Dispatcher, String> t : dispatcherList)
+            t.getFirst().send(encoded);
     }
 
     /**
-     * Method that executes the {@link Pinger} task at a fixed rate.
+     * Pings the players until the match ends. Any message received from a player proves that it is still connected, so
+     * a {@link Pinger} wave only pings the players that have been quiet for {@link #PING_RATE} milliseconds, and no
+     * PING at all is sent while everybody is active. When nobody is quiet, the next check is scheduled for when the
+     * first player would become quiet, and when a wave has been answered the check runs again, so that a player that
+     * disconnects is still noticed at most {@code PING_RATE + WAIT_PONG_TIME} milliseconds after its last message.
+     * Checks and deadlines are scheduled on the {@link TimingWheel} shared by all the matches, so that no thread waits
+     * for them.
      */
-    synchronized private void runPinger() {
-        pinger = new Pinger(this, WAIT_PONG_TIME);
-        Timer t = new Timer();
-        t.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                if (ended) {
-                    t.cancel();
-                    return;
-                }
-                pinger = new Pinger(Match.this, WAIT_PONG_TIME);
-                pinger.run();
-            }
-        }, 0, PING_RATE);
+    private void checkIdle() {
+        if (hasEnded()) return;
+        List<Dispatcher> idle = new ArrayList<>();
+        long now = System.nanoTime();
+        long next = Pinger.selectIdle(getDispatchers(), now, TimeUnit.MILLISECONDS.toNanos(PING_RATE), idle);
+        if (!idle.isEmpty()) {
+            Pinger p = new Pinger(this, WAIT_PONG_TIME, idle, TimingWheel.getInstance(), this::checkIdle);
+            pinger = p;
+            p.run();
+        } else {
+            long delay = TimeUnit.NANOSECONDS.toMillis(next - now + TimeUnit.MILLISECONDS.toNanos(1) - 1);
+            nextCheck = TimingWheel.getInstance().schedule(delay, this::checkIdle);
+        }
+        if (hasEnded())
+            cancelPings();
     }
 
     /**
@@ -323,10 +517,26 @@ public class Match {
      *
      * @return the {@link Pinger} instance.
      */
-    synchronized public Pinger getPinger() {
+    public Pinger getPinger() {
         return pinger;
     }
 
+    /**
+     * Notifies the current {@link Pinger} that the given {@link Dispatcher} answered its {@code PING}, if the answer
+     * refers to this Match. It lets the Dispatchers of the players handle their {@code PONG}s directly, without going
+     * through the {@link MatchRegistry}.
+     *
+     * @param dispatcher the {@link Dispatcher} that sent the {@code PONG}
+     * @param gameId     the id of the match the {@code PONG} refers to
+     * @return true if the {@code PONG} refers to this Match, false if it should be routed by the {@link MatchRegistry}
+     */
+    public boolean notifyPong(Dispatcher dispatcher, long gameId) {
+        if (gameId != id) return false;
+        Pinger p = pinger;
+        if (p != null) p.notifyResponse(dispatcher);
+        return true;
+    }
+
     /**
      * Returns a {@code JsonObject} representation of this Match.
      *
@@ -342,6 +552,28 @@ public class Match {
         return j;
     }
 
+    /**
+     * The states of a {@link Match} in its lifecycle.
+     */
+    enum State {
+        /**
+         * The match has been created, but it has not been started yet: it accepts commands, but it pings nobody.
+         */
+        CREATED,
+        /**
+         * The match has been started: it accepts commands and pings its players.
+         */
+        RUNNING,
+        /**
+         * The match refuses new commands, while the ones already queued are still run.
+         */
+        DRAINING,
+        /**
+         * The match has ended: it has no players, no queued commands and no scheduled PING checks.
+         */
+        STOPPED
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -349,6 +581,7 @@ public class Match {
     public String toString() {
         return "match " + id +
                 ": game=" + game +
+                ", state=" + state.get() +
                 ", dispatcherList=" + dispatcherList +
                 ", commands=" + commands +
                 '}';
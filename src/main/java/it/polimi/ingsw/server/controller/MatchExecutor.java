@@ -0,0 +1,102 @@
+package it.polimi.ingsw.server.controller;
+
+import it.polimi.ingsw.ProgramOptions;
+import it.polimi.ingsw.server.Threads;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A fixed pool of workers running the commands of all the {@link Match}es. It is a singleton, sized by
+ * {@link ProgramOptions#getMatchThreads()} when first used. Each match is bound to a worker by its ID, so its commands
+ * always run on the same thread, one at a time and in the order they were received, while the number of threads does
+ * not depend on the number of matches. Since IDs are handed out from zero (see {@link GameIdAllocator}), matches are
+ * spread evenly among the workers.
+ * <p>
+ * The commands of a match wait in its mailbox (see {@link Match#getCommands()}). A match with pending commands is
+ * queued once on its worker, which runs at most {@link #BATCH} of them before moving on to the next match, so that a
+ * busy match cannot starve the others sharing the worker.
+ *
+ * @see Match
+ * @see CommandManager
+ */
+class MatchExecutor {
+    /**
+     * The maximum number of commands of a match run by a worker before moving on to the next match.
+     */
+    private static final int BATCH = 32;
+    /**
+     * The concrete {@code MatchExecutor} instance.
+     */
+    private static MatchExecutor instance = null;
+
+    /**
+     * The matches with pending commands, queued on each worker.
+     */
+    private final List<BlockingQueue<Match>> runQueues;
+
+    /**
+     * Creates and starts a new MatchExecutor with the given number of workers.
+     *
+     * @param nWorkers the number of workers
+     * @throws IllegalArgumentException if {@code nWorkers} is not positive
+     */
+    MatchExecutor(int nWorkers) {
+        if (nWorkers <= 0) throw new IllegalArgumentException("nWorkers should be positive");
+        this.runQueues = new ArrayList<>(nWorkers);
+        for (int i = 0; i < nWorkers; i++) {
+            BlockingQueue<Match> queue = new LinkedBlockingQueue<>();
+            runQueues.add(queue);
+            Threads.start("match-worker-" + i, () -> work(queue));
+        }
+    }
+
+    /**
+     * Getter for the {@code MatchExecutor} instance. If the singleton is not yet instantiated, this method instantiates
+     * it with {@link ProgramOptions#getMatchThreads()} workers.
+     *
+     * @return the {@code MatchExecutor} instance
+     */
+    static synchronized MatchExecutor getInstance() {
+        if (instance == null) instance = new MatchExecutor(ProgramOptions.getMatchThreads());
+        return instance;
+    }
+
+    /**
+     * Queues the given {@link Match} on its worker, unless it is already queued or running. It must be called after
+     * adding a command to the match's mailbox.
+     *
+     * @param match the {@link Match} with pending commands
+     * @throws IllegalArgumentException if {@code match} is null
+     */
+    void schedule(Match match) {
+        if (match == null) throw new IllegalArgumentException("match shouldn't be null");
+        if (match.claim())
+            runQueues.get((int) Math.floorMod(match.getId(), (long) runQueues.size())).add(match);
+    }
+
+    /**
+     * Main loop of a worker: runs the commands of the matches queued on it until the thread is interrupted.
+     *
+     * @param queue the matches queued on the worker
+     */
+    private void work(BlockingQueue<Match> queue) {
+        try {
+            while (true) {
+                Match m = queue.take();
+                try {
+                    m.getCommandManager().runPending(BATCH);
+                } catch (RuntimeException e) {
+                    System.out.println("Error while executing a command of match " + m.getId() + ": " + e);
+                }
+                m.release();
+                if (!m.getCommands().isEmpty())
+                    schedule(m);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -3,18 +3,24 @@ package it.polimi.ingsw.server.controller;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import it.polimi.ingsw.ProgramOptions;
+import it.polimi.ingsw.functional.Tuple;
 import it.polimi.ingsw.server.Logger;
 import it.polimi.ingsw.server.controller.commands.Parser;
 import it.polimi.ingsw.server.controller.commands.UserCommand;
 import it.polimi.ingsw.server.controller.persistence.PersistenceManager;
 import it.polimi.ingsw.server.model.Game;
 import it.polimi.ingsw.server.net.Dispatcher;
+import it.polimi.ingsw.server.net.OutgoingMessage;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiFunction;
-import java.util.stream.Collectors;
 
 import static it.polimi.ingsw.server.controller.Messages.*;
 
@@ -24,11 +30,20 @@ import static it.polimi.ingsw.server.controller.Messages.*;
  * <ul>
  *     <li>if {@code type == "PONG"} then let the {@link Match} instance manage the command (the ping responses have
  *      priority over all other messages)</li>
- *     <li>if {@code type == "FETCH"} return all the currently active matches</li>
+ *     <li>if {@code type == "FETCH"} return the currently active matches, optionally filtered and paginated (see
+ *      {@link LobbyQuery})</li>
+ *     <li>if {@code type == "SUBSCRIBE_LOBBIES"} return all the currently active matches, and then push to the client
+ *      every change to them until it joins a match, disconnects or sends {@code UNSUBSCRIBE_LOBBIES}</li>
  *     <li>if {@code type == "CREATE"}, create a new {@link Match} and then send a new {@code JOIN} command to the
  *      {@link Match}</li>
+ *     <li>if {@code type == "QUICK_MATCH"}, pick an open {@link Match} with the requested rules, or create a new one
+ *      if there is none (see {@link QuickMatchmaker}), and then send a new {@code JOIN} command to it</li>
  *     <li>else, let the {@link Match} instance manage the command</li>
  * </ul>
+ * The matches are indexed by ID in a concurrent map, so commands are routed to their match without any global lock,
+ * and the IDs of new matches are handed out by a {@link GameIdAllocator}. The answer to {@code FETCH} is cached, and
+ * shared by all the clients asking for it, until a match is created or terminated or a player joins or leaves one.
+ * Filtered and paginated {@code FETCH}es are answered through a {@link LobbyIndex}, without going through every match.
  *
  * @author Leonardo Bianconi
  * @see Match
@@ -41,9 +56,36 @@ public class MatchRegistry {
      */
     private static MatchRegistry registryInstance = null;
     /**
-     * The list of currently active {@link Match}es on this server.
+     * The currently active {@link Match}es on this server, by ID.
      */
-    private final List<Match> matches;
+    private final ConcurrentMap<Long, Match> matches;
+    /**
+     * The allocator of the IDs of the {@link Match}es.
+     */
+    private final GameIdAllocator ids;
+    /**
+     * The version of the list of lobbies, incremented every time a match is created or terminated or a player joins or
+     * leaves one, after the {@link #lobbyIndex} has been updated.
+     */
+    private final AtomicLong lobbiesVersion;
+    /**
+     * The last {@code LOBBIES} message built, paired with the {@link #lobbiesVersion} it was built from.
+     */
+    private volatile Tuple<Long, OutgoingMessage> lobbies;
+    /**
+     * The {@link Dispatcher}s to which the changes to the lobbies are pushed. Guarded by itself: every change is pushed
+     * while holding its lock, so that subscribers receive the changes in the order they are made, and each of them
+     * after the list of lobbies it got when subscribing.
+     */
+    private final Set<Dispatcher> lobbySubscribers;
+    /**
+     * The index of the lobbies, updated while holding the lock of {@link #lobbySubscribers}.
+     */
+    private final LobbyIndex lobbyIndex;
+    /**
+     * The {@link QuickMatchmaker} handling the {@code QUICK_MATCH} commands.
+     */
+    private final QuickMatchmaker matchmaker;
     /**
      * A supplier of {@link Match}es that is called every time a new Match has to be created. In production environment,
      * a normal {@link Match} instance should be returned, while other implementation of the Match class have been used
@@ -60,12 +102,26 @@ public class MatchRegistry {
      * Default constructor.
      */
     protected MatchRegistry(BiFunction<Integer, Game, Match> matchSupplier) {
-        this.matches = new ArrayList<>();
+        this.matches = new ConcurrentHashMap<>();
+        this.ids = new GameIdAllocator();
+        this.lobbiesVersion = new AtomicLong();
+        this.lobbies = null;
+        this.lobbySubscribers = new HashSet<>();
+        this.lobbyIndex = new LobbyIndex();
+        this.matchmaker = new QuickMatchmaker();
         this.matchSupplier = matchSupplier;
 
         if (ProgramOptions.usesPersistence()) {
             this.persistenceManager = new PersistenceManager(ProgramOptions.getPersistenceStore());
-            persistenceManager.forEach((id, phase) -> matches.add(new Match(id, phase)));
+            persistenceManager.forEach((id, phase) -> {
+                Match m = new Match(id, phase);
+                m.setOnLobbyChange(() -> lobbyUpdated(m));
+                matches.put(id, m);
+                lobbyIndex.put(id, m.toJson());
+                m.start();
+                if (id >= 0 && id <= Integer.MAX_VALUE)
+                    ids.reserve((int) (long) id);
+            });
         }
     }
 
@@ -109,8 +165,9 @@ public class MatchRegistry {
      *
      * @param dispatcher  the {@link Dispatcher} instance that sent the command
      * @param jsonCommand the command, expressed as a JSON object
-     * @see #fetchMatches(Dispatcher)
+     * @see #fetchMatches(Dispatcher, JsonObject)
      * @see #createMatch(Dispatcher, JsonObject)
+     * @see #quickMatch(Dispatcher, JsonObject)
      * @see #sendCommandToMatch(Dispatcher, JsonObject)
      */
     public void executeCommand(Dispatcher dispatcher, JsonObject jsonCommand) {
@@ -126,13 +183,31 @@ public class MatchRegistry {
 
         switch (type) {
             case "PONG" -> dispatchPong(dispatcher, jsonCommand);
-            case "FETCH" -> fetchMatches(dispatcher);
+            case "FETCH" -> fetchMatches(dispatcher, jsonCommand);
+            case "SUBSCRIBE_LOBBIES" -> subscribeToLobbies(dispatcher);
+            case "UNSUBSCRIBE_LOBBIES" -> unsubscribeFromLobbies(dispatcher);
             case "CREATE" -> createMatch(dispatcher, jsonCommand);
+            case "QUICK_MATCH" -> quickMatch(dispatcher, jsonCommand);
             case "HEARTBEAT" -> dispatcher.send(jsonCommand);
             default -> sendCommandToMatch(dispatcher, jsonCommand);
         }
     }
 
+    /**
+     * This method manages a match-specific command that has already been read into a {@link UserCommand} (see
+     * {@link it.polimi.ingsw.server.controller.commands.CommandReader}), routing it to its {@link Match} like
+     * {@link #executeCommand(Dispatcher, JsonObject)} would.
+     *
+     * @param dispatcher the {@link Dispatcher} instance that sent the command
+     * @param command    the command
+     */
+    public void executeCommand(Dispatcher dispatcher, UserCommand command) {
+        if (ProgramOptions.isVerbose())
+            Logger.log("NEW COMMAND: " + command.getType() + " from " + command.getUsername() + " [ID: " +
+                    command.getGameId() + "]");
+        sendCommandToMatch(dispatcher, command);
+    }
+
     //executeCommand() helpers
 
     /**
@@ -158,23 +233,65 @@ public class MatchRegistry {
     }
 
     /**
-     * Helper method for fetching all active {@link Match}es and sending back to the {@link Dispatcher} the formatted
-     * response.
+     * Helper method for fetching the active {@link Match}es matching the query of the command (all of them if it has
+     * no arguments) and sending back to the {@link Dispatcher} the formatted response. If there are more matches than
+     * the requested limit, the response also contains the cursor for the next page.
      *
      * @param dispatcher the player's {@link Dispatcher}
+     * @param command    the {@code JsonObject} representing the {@code FETCH} command
      */
-    private void fetchMatches(Dispatcher dispatcher) {
+    private void fetchMatches(Dispatcher dispatcher, JsonObject command) {
+        LobbyQuery query;
+        try {
+            query = LobbyQuery.fromFetch(command);
+        } catch (IllegalArgumentException e) {
+            dispatcher.send(buildErrorMessage("Syntax error in the FETCH message."));
+            return;
+        }
+        if (query.isAll()) {
+            dispatcher.send(getLobbies());
+            return;
+        }
+
+        List<JsonObject> page = lobbyIndex.query(query);
         JsonObject res = new JsonObject();
         res.addProperty("type", "LOBBIES");
-
         JsonArray arr = new JsonArray();
-        for (Match m : getAll())
-            arr.add(m.toJson());
-
+        for (int i = 0; i < page.size() && i < query.getLimit(); i++)
+            arr.add(page.get(i));
         res.add("lobbies", arr);
+        if (page.size() > query.getLimit())
+            res.addProperty("next", page.get(query.getLimit() - 1).get("id").getAsLong());
         dispatcher.send(res);
     }
 
+    /**
+     * Helper method that sends back to the {@link Dispatcher} all active {@link Match}es, like
+     * {@link #fetchMatches(Dispatcher, JsonObject)}, and then pushes to it every change to them as a {@code LOBBIES_DELTA} message.
+     * Subscribing again just sends the whole list again. Players inside a match cannot subscribe (see
+     * {@link InMatchCallback}).
+     *
+     * @param dispatcher the player's {@link Dispatcher}
+     */
+    private void subscribeToLobbies(Dispatcher dispatcher) {
+        synchronized (lobbySubscribers) {
+            lobbySubscribers.add(dispatcher);
+            dispatcher.send(getLobbies());
+        }
+    }
+
+    /**
+     * Stops pushing the changes to the lobbies to the given {@link Dispatcher}. It is called when the player joins a
+     * match, so that its client does not receive them while playing.
+     *
+     * @param dispatcher the player's {@link Dispatcher}
+     */
+    void unsubscribeFromLobbies(Dispatcher dispatcher) {
+        synchronized (lobbySubscribers) {
+            lobbySubscribers.remove(dispatcher);
+        }
+    }
+
     /**
      * Helper method that creates a new {@link Match} with the specific arguments passed inside the command. It then
      * creates a new {@code JOIN} command for the requesting player and executes it.
@@ -205,6 +322,36 @@ public class MatchRegistry {
         sendCommandToMatch(dispatcher, joinCommandObj);
     }
 
+    /**
+     * Helper method that lets the {@link QuickMatchmaker} pick a {@link Match} with the rules passed inside the command
+     * (number of players and expert mode) for the requesting player, and then creates a new {@code JOIN} command for
+     * the player and executes it.
+     *
+     * @param dispatcher the player's {@link Dispatcher}
+     * @param command    the {@code JsonObject} representing the {@code QUICK_MATCH} command
+     */
+    private void quickMatch(Dispatcher dispatcher, JsonObject command) {
+        boolean isExpertMode;
+        int nPlayers;
+        String username;
+
+        try {
+            isExpertMode = isExpertMode(command);
+            nPlayers = getNPlayers(command);
+            username = extractString(command, "username");
+        } catch (IllegalArgumentException e) {
+            dispatcher.send(buildErrorMessage("Syntax error in the QUICK_MATCH message."));
+            return;
+        }
+
+        if (!(nPlayers == 2 || nPlayers == 3)) {
+            dispatcher.send(buildErrorMessage("Unsupported number of players."));
+            return;
+        }
+        Match m = matchmaker.assign(this, nPlayers, isExpertMode, username);
+        sendCommandToMatch(dispatcher, convertToJoin(command, (int) m.getId()));
+    }
+
     /**
      * Helper method for routing a command to the corresponding {@link Match} instance.
      *
@@ -212,10 +359,26 @@ public class MatchRegistry {
      * @param command    the {@code JsonObject} representing the match-specific command
      */
     private void sendCommandToMatch(Dispatcher dispatcher, JsonObject command) {
+        UserCommand parsedCommand;
+        try {
+            parsedCommand = Parser.parse(command);
+        } catch (IllegalArgumentException e) {
+            dispatcher.send(buildErrorMessage(e.getMessage()));
+            return;
+        }
+        sendCommandToMatch(dispatcher, parsedCommand);
+    }
+
+    /**
+     * Helper method for routing a parsed command to the corresponding {@link Match} instance.
+     *
+     * @param dispatcher the player's {@link Dispatcher}
+     * @param command    the match-specific command
+     */
+    private void sendCommandToMatch(Dispatcher dispatcher, UserCommand command) {
         try {
-            UserCommand parsedCommand = Parser.parse(command);
-            Match m = get(parsedCommand.getGameId());
-            m.executeUserCommand(parsedCommand, dispatcher);
+            Match m = get(command.getGameId());
+            m.executeUserCommand(command, dispatcher);
         } catch (IllegalArgumentException e) {
             dispatcher.send(buildErrorMessage(e.getMessage()));
         } catch (NoSuchElementException e) {
@@ -224,23 +387,13 @@ public class MatchRegistry {
     }
 
     /**
-     * Helper method that picks a game ID (unique identifier) for a new game. This implementation picks the smallest
-     * positive (or zero) integer that hasn't already been chosen as a game ID.
+     * Helper method that picks a game ID (unique identifier) for a new game: the last ID released by a terminated game,
+     * if any, or the smallest one never used otherwise (see {@link GameIdAllocator}).
      *
      * @return the game ID
      */
-    private int chooseGameId() {
-        List<Long> alreadyTaken = matches.stream()
-                .mapToLong(Match::getId)
-                .sorted()
-                .boxed()
-                .collect(Collectors.toList());
-
-        int i = 0;
-        while (i < alreadyTaken.size() && i == alreadyTaken.get(i))
-            i++;
-
-        return i;
+    int chooseGameId() {
+        return ids.allocate();
     }
 
     // getters
@@ -252,21 +405,133 @@ public class MatchRegistry {
      * @return the corresponding {@link Match} instance
      * @throws NoSuchElementException if there is no Match in the registry with the specified ID
      */
-    synchronized Match get(long id) throws NoSuchElementException {
-        for (Match m : getInstance().matches)
-            if (m.getId() == id)
-                return m;
-
-        throw new NoSuchElementException("A match with the specified id does not exist.");
+    Match get(long id) throws NoSuchElementException {
+        Match m = matches.get(id);
+        if (m == null)
+            throw new NoSuchElementException("A match with the specified id does not exist.");
+        return m;
     }
 
     /**
-     * Getter for all the {@link Match}es of the registry (shallow copy).
+     * Getter for all the {@link Match}es of the registry (shallow copy, in no particular order).
      *
      * @return the List<{@link Match}> of all matches
      */
     List<Match> getAll() {
-        return new ArrayList<>(matches);
+        return new ArrayList<>(matches.values());
+    }
+
+    /**
+     * Getter for the {@link Match}es with the given rules that new players can join, i.e. that have at least a free
+     * seat and are not waiting for their players to rejoin, by increasing ID.
+     *
+     * @param nPlayers the number of players of the matches
+     * @param expert   whether the matches are in expert mode
+     * @return the List<{@link Match}> of the open matches
+     */
+    List<Match> getOpenLobbies(int nPlayers, boolean expert) {
+        List<Match> open = new ArrayList<>();
+        for (JsonObject lobby : lobbyIndex.query(LobbyQuery.openLobbies(nPlayers, expert))) {
+            Match m = matches.get(lobby.get("id").getAsLong());
+            if (m != null)
+                open.add(m);
+        }
+        return open;
+    }
+
+    /**
+     * Returns the {@code LOBBIES} message listing all the {@link Match}es of the registry. The message is built only
+     * if something changed since the last call, and it is shared by all the callers, so that it is also serialized
+     * only once per encoding and framing (see {@link OutgoingMessage}).
+     *
+     * @return the {@code LOBBIES} message
+     */
+    OutgoingMessage getLobbies() {
+        long version = lobbiesVersion.get();
+        Tuple<Long, OutgoingMessage> cached = lobbies;
+        if (cached != null && cached.getFirst() == version)
+            return cached.getSecond();
+
+        JsonObject res = new JsonObject();
+        res.addProperty("type", "LOBBIES");
+
+        JsonArray arr = new JsonArray();
+        for (JsonObject lobby : lobbyIndex.query(LobbyQuery.ALL))
+            arr.add(lobby);
+
+        res.add("lobbies", arr);
+        OutgoingMessage built = new OutgoingMessage(res);
+        lobbies = new Tuple<>(version, built);
+        return built;
+    }
+
+    /**
+     * Updates the index of the lobbies with the new state of the given {@link Match}, invalidates the cached
+     * {@code LOBBIES} message and pushes the change to the subscribers, unless the match has already been removed from
+     * the registry. It must be called after every change to the players of a match, and once it has been added to the
+     * registry.
+     *
+     * @param m  the {@link Match} that changed
+     * @param op the kind of change, {@code "ADD"} or {@code "UPDATE"}
+     */
+    private void lobbyChanged(Match m, String op) {
+        synchronized (lobbySubscribers) {
+            if (matches.get(m.getId()) != m)
+                return;
+            JsonObject lobby = m.toJson();
+            lobbyIndex.put(m.getId(), lobby);
+            lobbiesVersion.incrementAndGet();
+            if (lobbySubscribers.isEmpty())
+                return;
+            JsonObject delta = new JsonObject();
+            delta.addProperty("type", "LOBBIES_DELTA");
+            delta.addProperty("op", op);
+            delta.add("lobby", lobby);
+            pushToSubscribers(delta);
+        }
+    }
+
+    /**
+     * Like {@link #lobbyChanged(Match, String)}, for a change to the players of an existing {@link Match}.
+     *
+     * @param m the {@link Match} that changed
+     */
+    private void lobbyUpdated(Match m) {
+        lobbyChanged(m, "UPDATE");
+    }
+
+    /**
+     * Removes the {@link Match} with the given ID from the index of the lobbies, invalidates the cached
+     * {@code LOBBIES} message and tells the subscribers that the match no longer exists. It must be called after the
+     * match has been removed from the registry.
+     *
+     * @param id the id of the removed {@link Match}
+     */
+    private void lobbyRemoved(long id) {
+        synchronized (lobbySubscribers) {
+            lobbyIndex.remove(id);
+            lobbiesVersion.incrementAndGet();
+            if (lobbySubscribers.isEmpty())
+                return;
+            JsonObject delta = new JsonObject();
+            delta.addProperty("type", "LOBBIES_DELTA");
+            delta.addProperty("op", "REMOVE");
+            delta.addProperty("id", id);
+            pushToSubscribers(delta);
+        }
+    }
+
+    /**
+     * Sends the given message to all the subscribers to the lobbies, serializing it only once, and forgets the ones
+     * that have disconnected. It must be called while holding the lock of {@link #lobbySubscribers}.
+     *
+     * @param message the message to send
+     */
+    private void pushToSubscribers(JsonObject message) {
+        OutgoingMessage encoded = new OutgoingMessage(message);
+        lobbySubscribers.removeIf(Dispatcher::isClosed);
+        for (Dispatcher d : lobbySubscribers)
+            d.send(encoded);
     }
 
     // Matches operations
@@ -278,34 +543,39 @@ public class MatchRegistry {
      * @param nPlayers     the number of players of the game
      * @param isExpertMode if the game is an expert mode game
      * @return the newly created Match
+     * @throws IllegalArgumentException if a {@link Match} with the specified ID already exists in the registry
      */
-    synchronized Match create(int id, int nPlayers, boolean isExpertMode) {
+    Match create(int id, int nPlayers, boolean isExpertMode) {
+        ids.reserve(id);
         Match m = matchSupplier.apply(id, new Game(nPlayers, isExpertMode));
-        matches.add(m);
+        m.setOnLobbyChange(() -> lobbyUpdated(m));
+        if (matches.putIfAbsent((long) id, m) != null)
+            throw new IllegalArgumentException("A match with the specified id already exists.");
+        m.start();
+        lobbyChanged(m, "ADD");
         return m;
     }
 
     /**
      * Method for killing the {@link Match} with the specified ID. Before that, all the match-termination operations
-     * are performed.
+     * are performed: the match is drained, so that it refuses new commands, and then stopped, which releases its
+     * players and cancels everything it had scheduled (see {@link Match#stop()}).
      *
      * @param id the id of the {@link Match}
      * @throws NoSuchElementException if a {@link Match} with the corresponding ID does not exist in the registry
      */
-    synchronized void terminate(long id) throws NoSuchElementException {
-        Match m = get(id);
+    void terminate(long id) throws NoSuchElementException {
+        Match m = remove(id);
 
-        m.getDispatchersAndNames().forEach(
-                t -> t.consume((dispatcher, username) -> {
-                    dispatcher.setIdleState();
-                    m.removeDispatcher(dispatcher, username);
-                })
-        );
-        matches.remove(m);
-        m.setEnded();
+        m.drain();
+        m.stop();
 
-        if (ProgramOptions.usesPersistence())
-            persistenceManager.drop(m.getId());
+        try {
+            if (ProgramOptions.usesPersistence())
+                persistenceManager.drop(m.getId());
+        } finally {
+            releaseId(m.getId());
+        }
 
         System.out.println("MATCH TERMINATED [ID: " + m.getId() + "]");
     }
@@ -318,32 +588,58 @@ public class MatchRegistry {
      * @param reason a {@code String} that specifies why the {@link Match} has been terminated
      * @throws NoSuchElementException if a {@link Match} with the corresponding ID does not exist in the registry
      */
-    synchronized void terminate(long id, String reason) throws NoSuchElementException {
-        Match m = get(id);
+    void terminate(long id, String reason) throws NoSuchElementException {
+        Match m = remove(id);
 
-        m.getDispatchersAndNames().forEach(
-                t -> t.consume((dispatcher, username) -> {
-                    dispatcher.setIdleState();
-                    dispatcher.send(buildEndMessage(m.getId(), reason, new ArrayList<>()));
-                    m.removeDispatcher(dispatcher, username);
-                })
-        );
-        matches.remove(m);
-        m.setEnded();
+        m.drain();
+        OutgoingMessage end = new OutgoingMessage(buildEndMessage(m.getId(), reason, new ArrayList<>()));
+        m.stop().forEach(dispatcher -> dispatcher.send(end));
 
-        if (ProgramOptions.usesPersistence())
-            persistenceManager.drop(m.getId());
+        try {
+            if (ProgramOptions.usesPersistence())
+                persistenceManager.drop(m.getId());
+        } finally {
+            releaseId(m.getId());
+        }
 
         System.out.println("MATCH TERMINATED [ID: " + m.getId() + "]");
     }
 
+    /**
+     * Removes the {@link Match} with the specified ID from the registry. Only one of any concurrent calls for the same
+     * ID succeeds, so a match is terminated only once.
+     *
+     * @param id the id of the {@link Match}
+     * @return the removed {@link Match}
+     * @throws NoSuchElementException if a {@link Match} with the corresponding ID does not exist in the registry
+     */
+    private Match remove(long id) throws NoSuchElementException {
+        Match m = matches.remove(id);
+        if (m == null)
+            throw new NoSuchElementException("A match with the specified id does not exist.");
+        lobbyRemoved(id);
+        matchmaker.forget(id);
+        return m;
+    }
+
+    /**
+     * Makes the ID of a terminated {@link Match} available to new ones. It must be called only once the match's saved
+     * state has been dropped, so that it can't be confused with the one of the next match with the same ID.
+     *
+     * @param id the id of the terminated {@link Match}
+     */
+    private void releaseId(long id) {
+        if (id >= 0 && id <= Integer.MAX_VALUE && ids.isTaken((int) id))
+            ids.release((int) id);
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public String toString() {
         return "GameRegistry{" +
-                "matches=" + matches +
+                "matches=" + matches.values() +
                 '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,103 @@
+package it.polimi.ingsw.server.controller;
+
+import it.polimi.ingsw.server.controller.commands.UserCommand;
+import it.polimi.ingsw.server.controller.commands.UserCommandType;
+import it.polimi.ingsw.server.model.Game;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * An immutable snapshot of the state of a {@link Match} that is enough to tell whether a game command is obviously
+ * invalid: the name of the current phase, the player whose turn it is and whether the match is waiting for its players
+ * to rejoin. It is published by the worker running the match's commands after each run (see
+ * {@link Match#publishSnapshot()}), together with the number of commands taken from the mailbox so far, and read by
+ * the threads receiving the commands, which can then refuse them without queueing them (see
+ * {@link Match#executeUserCommand}).
+ * <p>
+ * A command is refused with the same error the {@link Game} would give: every game command first checks that it is
+ * its sender's turn, and then fails if the current phase does not support it. Any other check is left to the game.
+ *
+ * @see Match
+ */
+class MatchSnapshot {
+    /**
+     * The error given by the {@link Game} for an action not supported by the current phase.
+     */
+    private static final String NOT_SUPPORTED = "Action not supported in this game phase.";
+    /**
+     * The names of the phases that support each game command.
+     */
+    private static final Map<UserCommandType, Set<String>> PHASES = new EnumMap<>(Map.of(
+            UserCommandType.CHOOSE_MAGE, Set.of("PreparePhase"),
+            UserCommandType.PLAY_ASSISTANTS, Set.of("PlanningPhase"),
+            UserCommandType.MOVE_STUDENT, Set.of("StudentMovePhase", "MnMovePhase", "CloudPickPhase"),
+            UserCommandType.PLAY_CHARACTER, Set.of("StudentMovePhase", "MnMovePhase", "CloudPickPhase"),
+            UserCommandType.MOVE_MN, Set.of("MnMovePhase"),
+            UserCommandType.PICK_CLOUD, Set.of("CloudPickPhase")));
+
+    /**
+     * The name of the current phase of the game.
+     */
+    private final String phase;
+    /**
+     * The username of the player whose turn it is, null if the current phase has none.
+     */
+    private final String currentPlayer;
+    /**
+     * Whether the match is waiting for its players to rejoin.
+     */
+    private final boolean rejoining;
+    /**
+     * The number of commands taken from the mailbox of the match, and executed, before this snapshot was taken.
+     */
+    private final long executed;
+
+    /**
+     * Takes a snapshot of the given {@link Match}. It must be called by the worker running the match's commands.
+     *
+     * @param match    the {@link Match}
+     * @param executed the number of commands taken from the mailbox of the match so far
+     * @throws IllegalArgumentException if {@code match} is null
+     */
+    MatchSnapshot(Match match, long executed) {
+        if (match == null) throw new IllegalArgumentException("match shouldn't be null");
+        Game g = match.getGame();
+        this.phase = g.getPhaseName();
+        this.currentPlayer = g.getCurrentPlayerUsername().orElse(null);
+        this.rejoining = match.isRejoiningState();
+        this.executed = executed;
+    }
+
+    /**
+     * Getter for the number of commands taken from the mailbox of the match before this snapshot was taken.
+     *
+     * @return the number of commands executed
+     */
+    long getExecuted() {
+        return executed;
+    }
+
+    /**
+     * Checks the given command against this snapshot. {@code JOIN}s and {@code LEAVE}s, and every command received
+     * while the match is waiting for its players to rejoin, are never refused.
+     *
+     * @param command the command
+     * @return an {@link Optional} containing the error the {@link Game} would give for the command, empty if it has to
+     * be executed to know whether it is valid
+     */
+    Optional<String> check(UserCommand command) {
+        Set<String> phases = PHASES.get(command.getType());
+        if (phases == null || rejoining)
+            return Optional.empty();
+        if (currentPlayer == null)
+            return Optional.of(NOT_SUPPORTED);
+        if (!currentPlayer.equals(command.getUsername()))
+            return Optional.of("It is not " + command.getUsername() + "'s turn");
+        if (!phases.contains(phase))
+            return Optional.of(NOT_SUPPORTED);
+        return Optional.empty();
+    }
+}
@@ -2,19 +2,25 @@ package it.polimi.ingsw.server.controller;
 
 import it.polimi.ingsw.server.Logger;
 import it.polimi.ingsw.server.net.Dispatcher;
+import it.polimi.ingsw.server.net.OutgoingMessage;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Set;
 
 /**
- * This class represents a {@code TimerTask} that sends "PING" messages to all the {@link Dispatcher}s that are
- * connected to a certain {@link Match}. This class is immutable and relative to a single "wave" of PING/PONG message
- * exchanges (one PING to every connected client). This task is intended to be run periodically.
+ * This class represents a single "wave" of PING/PONG message exchanges with the {@link Dispatcher}s that are connected
+ * to a certain {@link Match} (one PING to every connected client, or to the ones that have been quiet for a while, see
+ * {@link #selectIdle(List, long, long, List)}). Instead of waiting for the PONGs on a thread, it schedules its deadline
+ * on a {@link TimingWheel}: every PONG is accounted for in constant time, and the deadline is cancelled as soon as
+ * the last one arrives. A new wave is started periodically by the {@link Match}.
  *
  * @author Leonardo Bianconi
  * @see Match
  * @see Dispatcher
+ * @see TimingWheel
  */
 public class Pinger implements Runnable {
     /**
@@ -22,64 +28,149 @@ public class Pinger implements Runnable {
      */
     private static final String TERM_REASON = "A player timed out.";
     /**
-     * A list of dispatcher that hasn't responded to the ping message yet.
+     * The dispatchers that haven't responded to the ping message yet. Guarded by {@code this}.
      */
-    private final List<Dispatcher> dispatchers;
+    private final Set<Dispatcher> dispatchers;
     /**
      * The {@link Match} instance this {@code Pinger} is related to.
      */
     private final Match match;
     /**
-     * The time (expressed in milliseconds) this thread waits for every PONG message to arrive.
+     * The time (expressed in milliseconds) this {@code Pinger} waits for every PONG message to arrive.
      */
     private final long timeoutInMillis;
+    /**
+     * The {@link TimingWheel} the deadline is scheduled on.
+     */
+    private final TimingWheel wheel;
+    /**
+     * Run once every {@link Dispatcher} has responded in time.
+     */
+    private final Runnable onAnswered;
+    /**
+     * The deadline of this wave, null until it is started. Guarded by {@code this}.
+     */
+    private TimingWheel.Timeout deadline;
 
     /**
-     * Default constructor.
+     * Default constructor, pinging all the {@link Dispatcher}s connected to the match.
      *
      * @param match the match this {@code Pinger} is relative to
      */
     public Pinger(Match match, long timeoutInMillis) {
+        this(match, timeoutInMillis, match.getDispatchers(), TimingWheel.getInstance(), () -> {
+        });
+    }
+
+    /**
+     * Creates a new {@code Pinger} pinging only the given {@link Dispatcher}s.
+     *
+     * @param match           the match this {@code Pinger} is relative to
+     * @param timeoutInMillis the time this {@code Pinger} waits for every PONG message to arrive
+     * @param toPing          the {@link Dispatcher}s to ping
+     * @param wheel           the {@link TimingWheel} to schedule the deadline on
+     * @param onAnswered      run once every {@link Dispatcher} has responded in time
+     */
+    Pinger(Match match, long timeoutInMillis, List<Dispatcher> toPing, TimingWheel wheel, Runnable onAnswered) {
         this.match = match;
         this.timeoutInMillis = timeoutInMillis;
-        dispatchers = new ArrayList<>(match.getDispatchers());
+        this.dispatchers = new HashSet<>(toPing);
+        this.wheel = wheel;
+        this.onAnswered = onAnswered;
+        this.deadline = null;
+    }
+
+    /**
+     * Puts in {@code idle} the given {@link Dispatcher}s that have not received anything for at least {@code quiet}
+     * nanoseconds (see {@link Dispatcher#getLastReceived()}): the others have just proven to be connected, so they need
+     * no PING.
+     *
+     * @param dispatchers the {@link Dispatcher}s to check
+     * @param now         the current instant, as returned by {@link System#nanoTime()}
+     * @param quiet       the number of nanoseconds without messages after which a {@link Dispatcher} is idle
+     * @param idle        the list receiving the idle {@link Dispatcher}s
+     * @return the instant at which the first of the other {@link Dispatcher}s becomes idle, if nothing is received in
+     * the meantime, or {@code now + quiet} if they are all idle
+     */
+    static long selectIdle(List<Dispatcher> dispatchers, long now, long quiet, List<Dispatcher> idle) {
+        long next = now + quiet;
+        for (Dispatcher d : dispatchers) {
+            long due = d.getLastReceived() + quiet;
+            if (due - now <= 0)
+                idle.add(d);
+            else if (due - next < 0)
+                next = due;
+        }
+        return next;
     }
 
     /**
-     * Main method of the class, it sends {@code PING} messages to all the connected {@link Dispatcher}s and waits for
-     * them to respond (through {@link #notifyResponse(Dispatcher)}). After {@link #timeoutInMillis} has passed, if some
-     * client hasn't responded, it closes the match.
+     * Main method of the class, it schedules the deadline of the wave {@link #timeoutInMillis} milliseconds from now
+     * and sends {@code PING} messages to all the {@link Dispatcher}s to ping, without waiting for them to respond
+     * (through {@link #notifyResponse(Dispatcher)}). If some client hasn't responded by the deadline, the match is
+     * closed; if every client responds before, {@link #onAnswered} is run.
      */
     @Override
-    synchronized public void run() {
+    public void run() {
         Logger.log(this.toString());
 
-        for (Dispatcher d : dispatchers)
-            d.send(Messages.buildPingMessage(match.getId()));
-
-        try {
-            wait(timeoutInMillis);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
-
-        if (!dispatchers.isEmpty()) {
-            System.out.println("A player timed out. (match " + match.getId() + ")");
-            try {
-                MatchRegistry.getInstance().terminate(match.getId(), TERM_REASON);
-            } catch (NoSuchElementException e) {
-                Logger.log("Match already terminated...");
+        List<Dispatcher> toPing;
+        synchronized (this) {
+            if (dispatchers.isEmpty()) {
+                toPing = null;
+            } else {
+                toPing = new ArrayList<>(dispatchers);
+                deadline = wheel.schedule(timeoutInMillis, this::expire);
             }
         }
+        if (toPing == null) {
+            onAnswered.run();
+            return;
+        }
+        OutgoingMessage ping = new OutgoingMessage(Messages.buildPingMessage(match.getId()));
+        for (Dispatcher d : toPing)
+            d.send(ping);
     }
 
     /**
      * This method notifies this {@code Pinger} that the specified {@code Dispatcher} has responded to the PING message.
+     * It takes constant time; the last response cancels the deadline and runs {@link #onAnswered}.
      *
      * @param dispatcher the {@code Dispatcher} that sent the "PONG" message
      */
-    synchronized public void notifyResponse(Dispatcher dispatcher) {
-        dispatchers.remove(dispatcher);
+    public void notifyResponse(Dispatcher dispatcher) {
+        synchronized (this) {
+            if (!dispatchers.remove(dispatcher) || !dispatchers.isEmpty() || deadline == null || !deadline.cancel())
+                return;
+        }
+        onAnswered.run();
+    }
+
+    /**
+     * Stops this wave: its deadline is cancelled and {@link #onAnswered} is never run. It is called when the match
+     * ends.
+     */
+    synchronized void cancel() {
+        dispatchers.clear();
+        if (deadline != null)
+            deadline.cancel();
+    }
+
+    /**
+     * Called by the {@link TimingWheel} when the deadline of the wave has passed: if some client hasn't responded, the
+     * match is closed.
+     */
+    private void expire() {
+        synchronized (this) {
+            if (dispatchers.isEmpty())
+                return;
+        }
+        System.out.println("A player timed out. (match " + match.getId() + ")");
+        try {
+            MatchRegistry.getInstance().terminate(match.getId(), TERM_REASON);
+        } catch (NoSuchElementException e) {
+            Logger.log("Match already terminated...");
+        }
     }
 
     /**
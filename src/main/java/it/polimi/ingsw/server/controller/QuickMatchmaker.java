@@ -0,0 +1,137 @@
+package it.polimi.ingsw.server.controller;
+
+import it.polimi.ingsw.functional.Tuple;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Assigns the players sending {@code QUICK_MATCH} to a lobby of the {@link MatchRegistry}. Players asking for the same
+ * number of players and mode are queued on the same lock and served in order: each one is given a seat in the open
+ * lobby with the lowest ID that has one left, or in a new lobby if there is none. A seat given to a player is
+ * promised to it until its {@code JOIN} has been executed by the {@link Match}, so that no other quick-matching player
+ * is sent to it in the meantime and the {@code JOIN}s never find the lobby already full.
+ * <p>
+ * Promises whose {@code JOIN} fails (e.g. because a player joined the same lobby by its ID) are forgotten after
+ * {@link #PROMISE_TIMEOUT} milliseconds.
+ *
+ * @see MatchRegistry
+ */
+class QuickMatchmaker {
+    /**
+     * The time, expressed in milliseconds, after which a seat promised to a player that has not joined is given back.
+     */
+    private static final long PROMISE_TIMEOUT = 10000;
+
+    /**
+     * The locks of the queues, by number of players and mode (see {@link #key(int, boolean)}).
+     */
+    private final ConcurrentMap<Integer, Object> queues;
+    /**
+     * The seats promised in each lobby, by ID: the username of each player that has not joined yet, paired with the
+     * instant (see {@link System#nanoTime()}) after which its seat is given back. The promises of a lobby are guarded
+     * by the lock of its queue.
+     */
+    private final ConcurrentMap<Long, Map<String, Long>> promises;
+
+    /**
+     * Creates a new QuickMatchmaker.
+     */
+    QuickMatchmaker() {
+        this.queues = new ConcurrentHashMap<>();
+        this.promises = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Gives the player with the given username a seat in a lobby of the given {@link MatchRegistry} with the given
+     * number of players and mode, creating a new one if needed. The caller must then send the {@code JOIN} command for
+     * the player to the returned {@link Match}.
+     *
+     * @param registry the {@link MatchRegistry} whose lobbies are filled
+     * @param nPlayers the number of players of the lobby
+     * @param expert   whether the lobby is in expert mode
+     * @param username the username of the player
+     * @return the {@link Match} the player has to join
+     * @throws IllegalArgumentException if {@code registry} or {@code username} is null
+     */
+    Match assign(MatchRegistry registry, int nPlayers, boolean expert, String username) {
+        if (registry == null) throw new IllegalArgumentException("registry shouldn't be null");
+        if (username == null) throw new IllegalArgumentException("username shouldn't be null");
+        synchronized (queues.computeIfAbsent(key(nPlayers, expert), k -> new Object())) {
+            long now = System.nanoTime();
+            for (Match m : registry.getOpenLobbies(nPlayers, expert)) {
+                Set<String> seated = seated(m, now);
+                if (seated.size() < nPlayers && !seated.contains(username)) {
+                    promise(m, username, now);
+                    return m;
+                }
+            }
+            Match m = registry.create(registry.chooseGameId(), nPlayers, expert);
+            promise(m, username, now);
+            return m;
+        }
+    }
+
+    /**
+     * Forgets the seats promised in the lobby with the given ID. It must be called when the lobby is removed from the
+     * registry, since its ID may be given to a new one.
+     *
+     * @param id the ID of the lobby
+     */
+    void forget(long id) {
+        promises.remove(id);
+    }
+
+    /**
+     * Returns the usernames of the players connected to the given lobby and of the ones that have been promised a seat
+     * in it, dropping the promises that have been kept or have expired. It must be called while holding the lock of
+     * the queue of the lobby.
+     *
+     * @param m   the lobby
+     * @param now the current instant, as returned by {@link System#nanoTime()}
+     * @return the usernames
+     */
+    private Set<String> seated(Match m, long now) {
+        Set<String> seated = new HashSet<>();
+        for (Tuple<?, String> t : m.getDispatchersAndNames())
+            seated.add(t.getSecond());
+        Map<String, Long> promised = promises.get(m.getId());
+        if (promised != null) {
+            promised.entrySet().removeIf(e -> seated.contains(e.getKey()) || now - e.getValue() > 0);
+            if (promised.isEmpty())
+                promises.remove(m.getId(), promised);
+            seated.addAll(promised.keySet());
+        }
+        return seated;
+    }
+
+    /**
+     * Promises a seat in the given lobby to the player with the given username. It must be called while holding the
+     * lock of the queue of the lobby.
+     *
+     * @param m        the lobby
+     * @param username the username of the player
+     * @param now      the current instant, as returned by {@link System#nanoTime()}
+     */
+    private void promise(Match m, String username, long now) {
+        promises.computeIfAbsent(m.getId(), id -> new HashMap<>())
+                .put(username, now + TimeUnit.MILLISECONDS.toNanos(PROMISE_TIMEOUT));
+    }
+
+    /**
+     * Returns the key of the queue of the lobbies with the given number of players and mode.
+     *
+     * @param nPlayers the number of players of the lobbies
+     * @param expert   whether the lobbies are in expert mode
+     * @return the key
+     */
+    private static int key(int nPlayers, boolean expert) {
+        return nPlayers << 1 | (expert ? 1 : 0);
+    }
+}
@@ -7,9 +7,12 @@ import it.polimi.ingsw.functional.Tuple;
 import it.polimi.ingsw.server.controller.commands.UserCommand;
 import it.polimi.ingsw.server.controller.commands.UserCommandType;
 import it.polimi.ingsw.server.model.Game;
+import it.polimi.ingsw.server.model.Phase;
 import it.polimi.ingsw.server.model.PhaseDiff;
 import it.polimi.ingsw.server.net.Dispatcher;
 
+import java.util.List;
+
 import static it.polimi.ingsw.server.controller.CommandUtilities.addPlayer;
 import static it.polimi.ingsw.server.controller.CommandUtilities.removePlayer;
 import static it.polimi.ingsw.server.controller.Messages.buildErrorMessage;
@@ -70,4 +73,49 @@ public class StandardCommandStrategy implements CommandStrategy {
         JsonObject update = buildUpdateMessage(diff.toJson().getAsJsonObject(), match.getId());
         match.sendBroadcast(update);
     }
+
+    /**
+     * Manages a batch of commands on a match, in order. Each command is applied to the model ({@link Game} instance)
+     * and, if it is invalid, its sender is notified with an {@code ERROR} message. The changes of all the valid ones
+     * are then merged into a single {@code UPDATE} message, sent in broadcast, whose {@code cause} lists the causes
+     * of all of them, one per line, and the {@code Game} state is saved on disk once. The commands following the end
+     * of the game are ignored.
+     *
+     * @param commands the {@link UserCommand}s to manage, in order
+     * @param match    the {@link Match} on which to apply the commands
+     */
+    @Override
+    public void manageCommands(List<Tuple<UserCommand, Dispatcher>> commands, Match match) {
+        Game g = match.getGame();
+        Phase before = g.getPhase();
+        StringBuilder causes = new StringBuilder();
+        int applied = 0;
+
+        for (Tuple<UserCommand, Dispatcher> command : commands) {
+            if (g.isEnded())
+                break;
+            try {
+                g.applyUserCommand(command.getFirst());
+            } catch (Exception exc) {
+                command.getSecond().send(buildErrorMessage(match.getId(), exc.getMessage()));
+                continue;
+            }
+            if (applied++ > 0)
+                causes.append('\n');
+            causes.append(command.getFirst().getModificationMessage());
+        }
+        if (applied == 0)
+            return;
+
+        PhaseDiff diff = before.compare(g.getPhase());
+        diff.addAttribute("cause", new JsonPrimitive(causes.toString()));
+
+        if (ProgramOptions.usesPersistence())
+            MatchRegistry.getInstance()
+                    .getPersistenceManager()
+                    .commit(match.getId(), g.getPhase());
+
+        JsonObject update = buildUpdateMessage(diff.toJson().getAsJsonObject(), match.getId());
+        match.sendBroadcast(update);
+    }
 }
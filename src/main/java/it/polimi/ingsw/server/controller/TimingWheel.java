@@ -0,0 +1,249 @@
+package it.polimi.ingsw.server.controller;
+
+import it.polimi.ingsw.server.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A hashed timing wheel: a single thread running, for any number of {@link Match}es, the tasks scheduled after a
+ * delay, such as sending {@code PING}s and checking that the {@code PONG}s arrived in time. Time is divided in ticks
+ * of a fixed length, and each task is put in the bucket of the tick it is due in, on a ring of buckets: scheduling and
+ * cancelling a task take constant time, whatever the number of tasks, and the thread only wakes up once per tick.
+ * <p>
+ * A task never runs before its delay has passed, and it runs at most one tick late, plus the time taken by the tasks
+ * run before it. Tasks run on the wheel's thread, so they must be short and must not block.
+ *
+ * @see Pinger
+ */
+class TimingWheel {
+    /**
+     * The length of a tick of the wheel shared by all the matches, expressed in milliseconds.
+     */
+    private static final long TICK = 10;
+    /**
+     * The number of buckets of the wheel shared by all the matches.
+     */
+    private static final int SIZE = 512;
+    /**
+     * The wheel shared by all the matches.
+     */
+    private static TimingWheel instance = null;
+
+    /**
+     * The length of a tick, expressed in nanoseconds.
+     */
+    private final long tickNanos;
+    /**
+     * The ring of buckets, each one the head of a doubly-linked list of tasks. Guarded by {@code this}.
+     */
+    private final Timeout[] buckets;
+    /**
+     * The instant, as returned by {@link System#nanoTime()}, at which tick 0 started.
+     */
+    private final long start;
+    /**
+     * The thread running the wheel.
+     */
+    private final Thread thread;
+    /**
+     * The next tick to be processed. Guarded by {@code this}.
+     */
+    private long tick;
+    /**
+     * The number of tasks scheduled that have neither expired nor been cancelled yet. Guarded by {@code this}.
+     */
+    private int pending;
+
+    /**
+     * Creates and starts a new TimingWheel.
+     *
+     * @param name       the name of the wheel's thread
+     * @param tickMillis the length of a tick, expressed in milliseconds
+     * @param size       the number of buckets
+     * @throws IllegalArgumentException if {@code name} is null or {@code tickMillis} or {@code size} are not positive
+     */
+    TimingWheel(String name, long tickMillis, int size) {
+        if (name == null) throw new IllegalArgumentException("name shouldn't be null");
+        if (tickMillis <= 0 || size <= 0) throw new IllegalArgumentException("tickMillis and size should be positive");
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.buckets = new Timeout[size];
+        this.start = System.nanoTime();
+        this.tick = 0;
+        this.thread = Threads.start(name, this::run);
+    }
+
+    /**
+     * Getter for the wheel shared by all the matches, started when first used.
+     *
+     * @return the shared {@code TimingWheel}
+     */
+    static synchronized TimingWheel getInstance() {
+        if (instance == null) instance = new TimingWheel("ping-wheel", TICK, SIZE);
+        return instance;
+    }
+
+    /**
+     * Schedules the given task to run on the wheel's thread after the given delay.
+     *
+     * @param delayMillis the delay, expressed in milliseconds
+     * @param task        the task to run
+     * @return the handle of the scheduled task, that can be used to cancel it
+     * @throws IllegalArgumentException if {@code task} is null
+     */
+    Timeout schedule(long delayMillis, Runnable task) {
+        if (task == null) throw new IllegalArgumentException("task shouldn't be null");
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+        long due = Math.floorDiv(deadline - start + tickNanos - 1, tickNanos);
+        Timeout t = new Timeout(task);
+        synchronized (this) {
+            due = Math.max(due, tick);
+            t.rounds = (due - tick) / buckets.length;
+            t.bucket = (int) (due % buckets.length);
+            t.next = buckets[t.bucket];
+            if (t.next != null)
+                t.next.prev = t;
+            buckets[t.bucket] = t;
+            pending++;
+        }
+        return t;
+    }
+
+    /**
+     * Returns the number of tasks scheduled that have neither expired nor been cancelled yet.
+     *
+     * @return the number of pending tasks
+     */
+    synchronized int pending() {
+        return pending;
+    }
+
+    /**
+     * Stops the wheel: the tasks still scheduled never run.
+     */
+    void stop() {
+        thread.interrupt();
+    }
+
+    /**
+     * Main loop of the wheel's thread: waits for the start of each tick and runs the tasks due in it.
+     */
+    private void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                long current;
+                synchronized (this) {
+                    current = tick;
+                }
+                long wait = start + current * tickNanos - System.nanoTime();
+                if (wait > 0)
+                    TimeUnit.NANOSECONDS.sleep(wait);
+
+                for (Timeout t = expire(); t != null; t = t.next) {
+                    try {
+                        t.task.run();
+                    } catch (RuntimeException e) {
+                        System.out.println("Error while running a scheduled task: " + e);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Removes from the bucket of the current tick the tasks due in it, and moves on to the next tick.
+     *
+     * @return the first of the expired tasks, linked through {@link Timeout#next}
+     */
+    private synchronized Timeout expire() {
+        int bucket = (int) (tick % buckets.length);
+        Timeout expired = null;
+        Timeout t = buckets[bucket];
+        while (t != null) {
+            Timeout next = t.next;
+            if (t.rounds > 0) {
+                t.rounds--;
+            } else {
+                unlink(t);
+                t.expired = true;
+                t.next = expired;
+                expired = t;
+            }
+            t = next;
+        }
+        tick++;
+        return expired;
+    }
+
+    /**
+     * Removes the given task from its bucket. It must be called while holding the lock of the wheel.
+     *
+     * @param t the task
+     */
+    private void unlink(Timeout t) {
+        if (t.prev != null)
+            t.prev.next = t.next;
+        else
+            buckets[t.bucket] = t.next;
+        if (t.next != null)
+            t.next.prev = t.prev;
+        t.prev = null;
+        t.next = null;
+        pending--;
+    }
+
+    /**
+     * The handle of a task scheduled on a {@link TimingWheel}.
+     */
+    class Timeout {
+        /**
+         * The task to run.
+         */
+        private final Runnable task;
+        /**
+         * The number of times the wheel has to go round before the task is due.
+         */
+        private long rounds;
+        /**
+         * The bucket the task is in.
+         */
+        private int bucket;
+        /**
+         * The previous task in the bucket.
+         */
+        private Timeout prev;
+        /**
+         * The next task in the bucket, or in the list of expired tasks.
+         */
+        private Timeout next;
+        /**
+         * Whether the task has been removed from its bucket, because it expired or was cancelled.
+         */
+        private boolean expired;
+
+        /**
+         * Creates a new Timeout.
+         *
+         * @param task the task to run
+         */
+        private Timeout(Runnable task) {
+            this.task = task;
+        }
+
+        /**
+         * Cancels the task, if it has not expired yet.
+         *
+         * @return true if the task has been cancelled, false if it has already expired or been cancelled
+         */
+        boolean cancel() {
+            synchronized (TimingWheel.this) {
+                if (expired)
+                    return false;
+                unlink(this);
+                expired = true;
+                return true;
+            }
+        }
+    }
+}
@@ -51,6 +51,25 @@ abstract class AbstractCommand implements UserCommand {
         this.username = retrievedUsername;
     }
 
+    /**
+     * Creates a new AbstractCommand with the given properties, already read from the command sent by the client (see
+     * {@link CommandReader}).
+     *
+     * @param type     the {@link UserCommandType} of the command
+     * @param gameId   the id of the game the command is for
+     * @param username the username of the player sending the command
+     * @throws IllegalArgumentException if {@code gameId} is negative or {@code username} is null or empty
+     */
+    AbstractCommand(UserCommandType type, long gameId, String username) {
+        if (gameId < 0)
+            throw new IllegalArgumentException("gameId should be a positive number");
+        if (username == null || username.equals(""))
+            throw new IllegalArgumentException("username should be a non-null string");
+        this.type = type;
+        this.gameId = gameId;
+        this.username = username;
+    }
+
     /**
      * Returns the username associated with this command
      *
@@ -45,6 +45,20 @@ public class ChooseMageCommand extends SingleArgumentCommand<Mage> {
         super(cmd, type, jsonElement -> Mage.valueOf(asString(jsonElement)));
     }
 
+    /**
+     * Creates a new ChooseMageCommand with the given properties, already read from the command sent by the client (see
+     * {@link CommandReader}).
+     *
+     * @param gameId   the id of the game the command is for
+     * @param username the username of the player sending the command
+     * @param mage     the chosen {@link Mage}
+     * @throws IllegalArgumentException if {@code gameId} is negative, {@code username} is null or empty or
+     *                                  {@code mage} is null
+     */
+    ChooseMageCommand(long gameId, String username, Mage mage) {
+        super(UserCommandType.CHOOSE_MAGE, gameId, username, mage);
+    }
+
     /**
      * Assigns a deck of {@link Assistant} cards with the specified {@link Mage} to the player with the given username.
      *
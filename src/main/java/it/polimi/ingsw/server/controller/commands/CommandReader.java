@@ -0,0 +1,609 @@
+package it.polimi.ingsw.server.controller.commands;
+
+import it.polimi.ingsw.enums.AssistantType;
+import it.polimi.ingsw.enums.CharacterType;
+import it.polimi.ingsw.enums.Mage;
+import it.polimi.ingsw.enums.PieceColor;
+import it.polimi.ingsw.net.PayloadReader;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Reads {@link UserCommand}s straight from the bytes sent by the client, without building a
+ * {@link com.google.gson.JsonObject} first: the fields are scanned in a single pass and only the values needed by the
+ * command (the username and, for {@code PLAY_CHARACTER}, the steps) are allocated.
+ * <p>
+ * The reader only accepts commands that are plainly well-formed: strict JSON without escape sequences, every property
+ * given once, with the expected type and a valid value. Anything else, from messages that are not commands (like
+ * {@code FETCH} or {@code CREATE}) to invalid commands, is not recognized and is left to the JSON parser and
+ * {@link Parser}, so the messages that are read here are exactly the ones that {@link Parser} would accept, with the
+ * same result, and invalid ones still get its error messages.
+ *
+ * @see it.polimi.ingsw.net.FrameDecoder#nextFrame(PayloadReader)
+ */
+public class CommandReader {
+    /**
+     * Thrown, preallocated, when the bytes are not a command this reader recognizes.
+     */
+    private static final RuntimeException UNRECOGNIZED = new RuntimeException(null, null, false, false) {
+    };
+    /**
+     * The maximum nesting of the values skipped by the reader.
+     */
+    private static final int MAX_DEPTH = 32;
+    /**
+     * The maximum number of digits of a game id, so that it is sure to fit in a long.
+     */
+    private static final int LONG_DIGITS = 18;
+    /**
+     * The maximum number of digits of an integer argument, so that it is sure to fit in an int.
+     */
+    private static final int INT_DIGITS = 9;
+    /**
+     * The name of the property holding the type of the command.
+     */
+    private static final byte[] TYPE = ascii("type");
+    /**
+     * The name of the property holding the game id.
+     */
+    private static final byte[] GAME_ID = ascii("gameId");
+    /**
+     * The name of the property holding the username.
+     */
+    private static final byte[] USERNAME = ascii("username");
+    /**
+     * The name of the property holding the arguments.
+     */
+    private static final byte[] ARGUMENTS = ascii("arguments");
+    /**
+     * The name of the destination of a {@code MOVE_STUDENT} argument.
+     */
+    private static final byte[] DESTINATION = ascii("destination");
+    /**
+     * The name of the color of a {@code MOVE_STUDENT} argument.
+     */
+    private static final byte[] COLOR = ascii("color");
+    /**
+     * The name of the island index of a {@code MOVE_STUDENT} argument.
+     */
+    private static final byte[] INDEX = ascii("index");
+    /**
+     * The name of the character of a {@code PLAY_CHARACTER} argument.
+     */
+    private static final byte[] CHARACTER = ascii("character");
+    /**
+     * The name of the steps of a {@code PLAY_CHARACTER} argument.
+     */
+    private static final byte[] STEPS = ascii("steps");
+    /**
+     * The bytes of the {@code true} literal.
+     */
+    private static final byte[] TRUE = ascii("true");
+    /**
+     * The bytes of the {@code false} literal.
+     */
+    private static final byte[] FALSE = ascii("false");
+    /**
+     * The bytes of the {@code null} literal.
+     */
+    private static final byte[] NULL = ascii("null");
+    /**
+     * The command types, in the order of {@link #TYPE_NAMES}.
+     */
+    private static final UserCommandType[] TYPES = UserCommandType.values();
+    /**
+     * The names of {@link #TYPES}.
+     */
+    private static final byte[][] TYPE_NAMES = names(TYPES);
+    /**
+     * The mages, in the order of {@link #MAGE_NAMES}.
+     */
+    private static final Mage[] MAGES = Mage.values();
+    /**
+     * The names of {@link #MAGES}.
+     */
+    private static final byte[][] MAGE_NAMES = names(MAGES);
+    /**
+     * The assistants, in the order of {@link #ASSISTANT_NAMES}.
+     */
+    private static final AssistantType[] ASSISTANTS = AssistantType.values();
+    /**
+     * The names of {@link #ASSISTANTS}.
+     */
+    private static final byte[][] ASSISTANT_NAMES = names(ASSISTANTS);
+    /**
+     * The colors, in the order of {@link #COLOR_NAMES}.
+     */
+    private static final PieceColor[] COLORS = PieceColor.values();
+    /**
+     * The names of {@link #COLORS}.
+     */
+    private static final byte[][] COLOR_NAMES = names(COLORS);
+    /**
+     * The destinations of a student movement, in the order of {@link #DESTINATION_NAMES}.
+     */
+    private static final MoveStudentCommand.MoveDestination[] DESTINATIONS =
+            MoveStudentCommand.MoveDestination.values();
+    /**
+     * The names of {@link #DESTINATIONS}.
+     */
+    private static final byte[][] DESTINATION_NAMES = names(DESTINATIONS);
+    /**
+     * The characters, in the order of {@link #CHARACTER_NAMES}.
+     */
+    private static final CharacterType[] CHARACTERS = CharacterType.values();
+    /**
+     * The names of {@link #CHARACTERS}.
+     */
+    private static final byte[][] CHARACTER_NAMES = names(CHARACTERS);
+
+    /**
+     * The array holding the command.
+     */
+    private final byte[] src;
+    /**
+     * The index following the last byte of the command.
+     */
+    private final int end;
+    /**
+     * The index of the next byte to read.
+     */
+    private int pos;
+
+    /**
+     * Creates a new CommandReader for the given region of the given array.
+     *
+     * @param src    the array holding the command
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     */
+    private CommandReader(byte[] src, int offset, int length) {
+        this.src = src;
+        this.pos = offset;
+        this.end = offset + length;
+    }
+
+    /**
+     * Reads the command held by the given region of the given array. It can be used as a {@link PayloadReader}.
+     *
+     * @param src    the array holding the command
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     * @return the command read, or null if the bytes are not a command this reader recognizes (see the class
+     * documentation)
+     * @throws IllegalArgumentException  if {@code src} is null
+     * @throws IndexOutOfBoundsException if the region is not inside {@code src}
+     */
+    public static UserCommand read(byte[] src, int offset, int length) {
+        if (src == null) throw new IllegalArgumentException("src shouldn't be null");
+        if (offset < 0 || length < 0 || offset + length > src.length)
+            throw new IndexOutOfBoundsException("region out of the array bounds");
+        try {
+            return new CommandReader(src, offset, length).command();
+        } catch (RuntimeException e) {
+            if (e == UNRECOGNIZED) return null;
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the whole command.
+     *
+     * @return the command read
+     */
+    private UserCommand command() {
+        UserCommandType type = null;
+        long gameId = -1;
+        String username = null;
+        int arguments = -1;
+        skipWhitespace();
+        expect('{');
+        skipWhitespace();
+        if (!consume('}')) {
+            do {
+                skipWhitespace();
+                int key = pos + 1;
+                int keyEnd = string();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                if (is(key, keyEnd, TYPE)) {
+                    if (type != null) throw UNRECOGNIZED;
+                    type = constant(TYPES, TYPE_NAMES);
+                } else if (is(key, keyEnd, GAME_ID)) {
+                    if (gameId >= 0) throw UNRECOGNIZED;
+                    gameId = integer(LONG_DIGITS);
+                } else if (is(key, keyEnd, USERNAME)) {
+                    if (username != null) throw UNRECOGNIZED;
+                    username = text();
+                } else if (is(key, keyEnd, ARGUMENTS)) {
+                    if (arguments >= 0) throw UNRECOGNIZED;
+                    arguments = pos;
+                    skipValue(0);
+                } else {
+                    skipValue(0);
+                }
+                skipWhitespace();
+            } while (consume(','));
+            expect('}');
+        }
+        skipWhitespace();
+        if (pos != end || type == null || gameId < 0 || username == null || username.isEmpty())
+            throw UNRECOGNIZED;
+
+        if (type == UserCommandType.JOIN) return new JoinCommand(gameId, username);
+        if (type == UserCommandType.LEAVE) return new LeaveCommand(gameId, username);
+        if (arguments < 0) throw UNRECOGNIZED;
+        pos = arguments;
+        expect('[');
+        skipWhitespace();
+        return switch (type) {
+            case CHOOSE_MAGE -> new ChooseMageCommand(gameId, username, constant(MAGES, MAGE_NAMES));
+            case PLAY_ASSISTANTS -> new PlayAssistantsCommand(gameId, username, constant(ASSISTANTS, ASSISTANT_NAMES));
+            case MOVE_STUDENT -> new MoveStudentCommand(gameId, username, move());
+            case PLAY_CHARACTER -> new PlayCharacterCommand(gameId, username, invocation());
+            case MOVE_MN -> new MoveMnCommand(gameId, username, (int) integer(INT_DIGITS));
+            case PICK_CLOUD -> new PickCloudCommand(gameId, username, (int) integer(INT_DIGITS));
+            default -> throw UNRECOGNIZED;
+        };
+    }
+
+    /**
+     * Reads the argument of a {@code MOVE_STUDENT} command.
+     *
+     * @return the argument read
+     */
+    private MoveStudentCommand.MoveParameter move() {
+        MoveStudentCommand.MoveDestination destination = null;
+        PieceColor color = null;
+        int index = -1;
+        expect('{');
+        skipWhitespace();
+        if (!consume('}')) {
+            do {
+                skipWhitespace();
+                int key = pos + 1;
+                int keyEnd = string();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                if (is(key, keyEnd, DESTINATION)) {
+                    if (destination != null) throw UNRECOGNIZED;
+                    destination = constant(DESTINATIONS, DESTINATION_NAMES);
+                } else if (is(key, keyEnd, COLOR)) {
+                    if (color != null) throw UNRECOGNIZED;
+                    color = constant(COLORS, COLOR_NAMES);
+                } else if (is(key, keyEnd, INDEX)) {
+                    if (index >= 0) throw UNRECOGNIZED;
+                    index = (int) integer(INT_DIGITS);
+                } else {
+                    skipValue(1);
+                }
+                skipWhitespace();
+            } while (consume(','));
+            expect('}');
+        }
+        if (destination == null || color == null ||
+                (destination == MoveStudentCommand.MoveDestination.ISLAND && index < 0))
+            throw UNRECOGNIZED;
+        MoveStudentCommand.MoveParameter move = new MoveStudentCommand.MoveParameter();
+        move.setDestination(destination);
+        move.setColor(color);
+        move.setIndex(index);
+        return move;
+    }
+
+    /**
+     * Reads the argument of a {@code PLAY_CHARACTER} command.
+     *
+     * @return the argument read
+     */
+    private PlayCharacterCommand.CharacterInvocation invocation() {
+        CharacterType character = null;
+        List<HashMap<String, String>> steps = null;
+        expect('{');
+        skipWhitespace();
+        if (!consume('}')) {
+            do {
+                skipWhitespace();
+                int key = pos + 1;
+                int keyEnd = string();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                if (is(key, keyEnd, CHARACTER)) {
+                    if (character != null) throw UNRECOGNIZED;
+                    character = constant(CHARACTERS, CHARACTER_NAMES);
+                } else if (is(key, keyEnd, STEPS)) {
+                    if (steps != null) throw UNRECOGNIZED;
+                    steps = steps();
+                } else {
+                    skipValue(1);
+                }
+                skipWhitespace();
+            } while (consume(','));
+            expect('}');
+        }
+        if (character == null || steps == null) throw UNRECOGNIZED;
+        PlayCharacterCommand.CharacterInvocation invocation = new PlayCharacterCommand.CharacterInvocation();
+        invocation.setCharacter(character);
+        invocation.setSteps(steps);
+        return invocation;
+    }
+
+    /**
+     * Reads the steps of a {@code PLAY_CHARACTER} argument: an array of objects whose values are strings or
+     * integers, which are kept as written.
+     *
+     * @return the steps read
+     */
+    private List<HashMap<String, String>> steps() {
+        List<HashMap<String, String>> steps = new ArrayList<>();
+        expect('[');
+        skipWhitespace();
+        if (consume(']')) return steps;
+        do {
+            skipWhitespace();
+            HashMap<String, String> step = new HashMap<>();
+            expect('{');
+            skipWhitespace();
+            if (!consume('}')) {
+                do {
+                    skipWhitespace();
+                    String key = text();
+                    skipWhitespace();
+                    expect(':');
+                    skipWhitespace();
+                    String value;
+                    if (peek() == '"') {
+                        value = text();
+                    } else {
+                        int start = pos;
+                        integer(LONG_DIGITS);
+                        value = ascii(start, pos);
+                    }
+                    if (step.put(key, value) != null) throw UNRECOGNIZED;
+                    skipWhitespace();
+                } while (consume(','));
+                expect('}');
+            }
+            steps.add(step);
+            skipWhitespace();
+        } while (consume(','));
+        expect(']');
+        return steps;
+    }
+
+    /**
+     * Skips a JSON value of any type.
+     *
+     * @param depth the nesting of the value
+     */
+    private void skipValue(int depth) {
+        if (depth > MAX_DEPTH) throw UNRECOGNIZED;
+        switch (peek()) {
+            case '{' -> {
+                pos++;
+                skipWhitespace();
+                if (consume('}')) return;
+                do {
+                    skipWhitespace();
+                    string();
+                    skipWhitespace();
+                    expect(':');
+                    skipWhitespace();
+                    skipValue(depth + 1);
+                    skipWhitespace();
+                } while (consume(','));
+                expect('}');
+            }
+            case '[' -> {
+                pos++;
+                skipWhitespace();
+                if (consume(']')) return;
+                do {
+                    skipWhitespace();
+                    skipValue(depth + 1);
+                    skipWhitespace();
+                } while (consume(','));
+                expect(']');
+            }
+            case '"' -> string();
+            case 't' -> literal(TRUE);
+            case 'f' -> literal(FALSE);
+            case 'n' -> literal(NULL);
+            default -> skipNumber();
+        }
+    }
+
+    /**
+     * Skips a JSON number.
+     */
+    private void skipNumber() {
+        consume('-');
+        if (!consume('0')) {
+            if (skipDigits() == 0) throw UNRECOGNIZED;
+        }
+        if (consume('.') && skipDigits() == 0) throw UNRECOGNIZED;
+        if (consume('e') || consume('E')) {
+            if (!consume('+')) consume('-');
+            if (skipDigits() == 0) throw UNRECOGNIZED;
+        }
+    }
+
+    /**
+     * Skips a run of decimal digits.
+     *
+     * @return the number of digits skipped
+     */
+    private int skipDigits() {
+        int start = pos;
+        while (pos < end && src[pos] >= '0' && src[pos] <= '9') pos++;
+        return pos - start;
+    }
+
+    /**
+     * Reads a non-negative integer, written without sign, fraction, exponent or leading zeros.
+     *
+     * @param maxDigits the maximum number of digits allowed
+     * @return the integer read
+     */
+    private long integer(int maxDigits) {
+        int start = pos;
+        int digits = skipDigits();
+        if (digits == 0 || digits > maxDigits || (digits > 1 && src[start] == '0'))
+            throw UNRECOGNIZED;
+        if (pos < end && (src[pos] == '.' || src[pos] == 'e' || src[pos] == 'E'))
+            throw UNRECOGNIZED;
+        long n = 0;
+        for (int i = start; i < pos; i++)
+            n = n * 10 + (src[i] - '0');
+        return n;
+    }
+
+    /**
+     * Reads a string and returns its content.
+     *
+     * @return the content of the string
+     */
+    private String text() {
+        int start = pos + 1;
+        int stringEnd = string();
+        return new String(src, start, stringEnd - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a string naming one of the given constants.
+     *
+     * @param constants the constants
+     * @param names     the names of {@code constants}, in the same order
+     * @param <E>       the type of the constants
+     * @return the named constant
+     */
+    private <E> E constant(E[] constants, byte[][] names) {
+        int start = pos + 1;
+        int stringEnd = string();
+        for (int i = 0; i < names.length; i++)
+            if (is(start, stringEnd, names[i])) return constants[i];
+        throw UNRECOGNIZED;
+    }
+
+    /**
+     * Skips a string without escape sequences or control characters.
+     *
+     * @return the index of its closing quote
+     */
+    private int string() {
+        expect('"');
+        while (pos < end) {
+            byte b = src[pos];
+            if (b == '"') return pos++;
+            if (b == '\\' || (b >= 0 && b < ' ')) throw UNRECOGNIZED;
+            pos++;
+        }
+        throw UNRECOGNIZED;
+    }
+
+    /**
+     * Skips the given literal.
+     *
+     * @param literal the bytes of the literal
+     */
+    private void literal(byte[] literal) {
+        if (end - pos < literal.length || !is(pos, pos + literal.length, literal)) throw UNRECOGNIZED;
+        pos += literal.length;
+    }
+
+    /**
+     * Skips any JSON whitespace.
+     */
+    private void skipWhitespace() {
+        while (pos < end && (src[pos] == ' ' || src[pos] == '\n' || src[pos] == '\r' || src[pos] == '\t'))
+            pos++;
+    }
+
+    /**
+     * Returns the next byte, without consuming it.
+     *
+     * @return the next byte
+     */
+    private byte peek() {
+        if (pos >= end) throw UNRECOGNIZED;
+        return src[pos];
+    }
+
+    /**
+     * Consumes the next byte if it is the given one.
+     *
+     * @param c the expected byte
+     * @return true if the byte has been consumed
+     */
+    private boolean consume(char c) {
+        if (pos < end && src[pos] == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Consumes the next byte, which must be the given one.
+     *
+     * @param c the expected byte
+     */
+    private void expect(char c) {
+        if (!consume(c)) throw UNRECOGNIZED;
+    }
+
+    /**
+     * Checks whether the given region of {@link #src} holds exactly the given bytes.
+     *
+     * @param from  the index of the first byte of the region
+     * @param to    the index following the last byte of the region
+     * @param bytes the bytes to look for
+     * @return true if the region holds {@code bytes}
+     */
+    private boolean is(int from, int to, byte[] bytes) {
+        if (to - from != bytes.length) return false;
+        for (int i = 0; i < bytes.length; i++)
+            if (src[from + i] != bytes[i]) return false;
+        return true;
+    }
+
+    /**
+     * Returns the given region of {@link #src} as a string, which must be ASCII.
+     *
+     * @param from the index of the first byte
+     * @param to   the index following the last byte
+     * @return the string
+     */
+    private String ascii(int from, int to) {
+        return new String(src, from, to - from, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Returns the ASCII bytes of the given string.
+     *
+     * @param s the string
+     * @return its bytes
+     */
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Returns the ASCII bytes of the names of the given constants.
+     *
+     * @param constants the constants
+     * @return the bytes of their names, in the same order
+     */
+    private static byte[][] names(Enum<?>[] constants) {
+        byte[][] names = new byte[constants.length][];
+        for (int i = 0; i < constants.length; i++)
+            names[i] = ascii(constants[i].name());
+        return names;
+    }
+}
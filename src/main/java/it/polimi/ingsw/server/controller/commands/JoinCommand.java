@@ -37,6 +37,18 @@ public class JoinCommand extends AbstractCommand {
         super(cmd, type);
     }
 
+    /**
+     * Creates a new JoinCommand with the given properties, already read from the command sent by the client (see
+     * {@link CommandReader}).
+     *
+     * @param gameId   the id of the game the command is for
+     * @param username the username of the player sending the command
+     * @throws IllegalArgumentException if {@code gameId} is negative or {@code username} is null or empty
+     */
+    JoinCommand(long gameId, String username) {
+        super(UserCommandType.JOIN, gameId, username);
+    }
+
     /**
      * Adds a new player with the username specified by {@link JoinCommand (JsonObject)} to the game.
      *
@@ -37,6 +37,18 @@ public class LeaveCommand extends AbstractCommand {
         super(cmd, type);
     }
 
+    /**
+     * Creates a new LeaveCommand with the given properties, already read from the command sent by the client (see
+     * {@link CommandReader}).
+     *
+     * @param gameId   the id of the game the command is for
+     * @param username the username of the player sending the command
+     * @throws IllegalArgumentException if {@code gameId} is negative or {@code username} is null or empty
+     */
+    LeaveCommand(long gameId, String username) {
+        super(UserCommandType.LEAVE, gameId, username);
+    }
+
     /**
      * Remove the player with the username specified by {@link LeaveCommand(JsonObject)} from the game.
      *
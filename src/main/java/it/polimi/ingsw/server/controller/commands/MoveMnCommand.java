@@ -49,6 +49,20 @@ public class MoveMnCommand extends SingleArgumentCommand<Integer> {
         });
     }
 
+    /**
+     * Creates a new MoveMnCommand with the given properties, already read from the command sent by the client (see
+     * {@link CommandReader}).
+     *
+     * @param gameId   the id of the game the command is for
+     * @param username the username of the player sending the command
+     * @param steps    the number of steps, not negative
+     * @throws IllegalArgumentException if {@code gameId} is negative, {@code username} is null or empty or
+     *                                  {@code steps} is negative
+     */
+    MoveMnCommand(long gameId, String username, int steps) {
+        super(UserCommandType.MOVE_MN, gameId, username, checkNotNegative(steps));
+    }
+
     /**
      * Move Mother Nature a certain number of steps on behalf of the {@link Player} with the given username.
      *
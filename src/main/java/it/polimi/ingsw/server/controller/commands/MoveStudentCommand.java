@@ -73,6 +73,20 @@ public class MoveStudentCommand extends SingleArgumentCommand<MoveStudentCommand
         });
     }
 
+    /**
+     * Creates a new MoveStudentCommand with the given properties, already read from the command sent by the client (see
+     * {@link CommandReader}).
+     *
+     * @param gameId   the id of the game the command is for
+     * @param username the username of the player sending the command
+     * @param move     the movement to do, already validated
+     * @throws IllegalArgumentException if {@code gameId} is negative, {@code username} is null or empty or
+     *                                  {@code move} is null
+     */
+    MoveStudentCommand(long gameId, String username, MoveParameter move) {
+        super(UserCommandType.MOVE_STUDENT, gameId, username, move);
+    }
+
     /**
      * Moves a student of the specified color from the entrance of the player with the given username to either theirs
      * hall or to an island.
@@ -49,6 +49,20 @@ public class PickCloudCommand extends SingleArgumentCommand<Integer> {
         });
     }
 
+    /**
+     * Creates a new PickCloudCommand with the given properties, already read from the command sent by the client (see
+     * {@link CommandReader}).
+     *
+     * @param gameId   the id of the game the command is for
+     * @param username the username of the player sending the command
+     * @param cloud    the index of the cloud, not negative
+     * @throws IllegalArgumentException if {@code gameId} is negative, {@code username} is null or empty or
+     *                                  {@code cloud} is negative
+     */
+    PickCloudCommand(long gameId, String username, int cloud) {
+        super(UserCommandType.PICK_CLOUD, gameId, username, checkNotNegative(cloud));
+    }
+
     /**
      * Move the students from the cloud with the specified id to the entrance of the {@link Player} with the specified
      * username
@@ -46,6 +46,20 @@ public class PlayAssistantsCommand extends SingleArgumentCommand<AssistantType>
         super(cmd, type, jsonElement -> AssistantType.valueOf(asString(jsonElement)));
     }
 
+    /**
+     * Creates a new PlayAssistantsCommand with the given properties, already read from the command sent by the client
+     * (see {@link CommandReader}).
+     *
+     * @param gameId    the id of the game the command is for
+     * @param username  the username of the player sending the command
+     * @param assistant the played {@link AssistantType}
+     * @throws IllegalArgumentException if {@code gameId} is negative, {@code username} is null or empty or
+     *                                  {@code assistant} is null
+     */
+    PlayAssistantsCommand(long gameId, String username, AssistantType assistant) {
+        super(UserCommandType.PLAY_ASSISTANTS, gameId, username, assistant);
+    }
+
     /**
      * Plays an Assistant card of the specified {@link AssistantType} on behalf of the {@link Player} with the specified
      * username.
@@ -77,6 +77,20 @@ public class PlayCharacterCommand extends SingleArgumentCommand<PlayCharacterCom
         });
     }
 
+    /**
+     * Creates a new PlayCharacterCommand with the given properties, already read from the command sent by the client
+     * (see {@link CommandReader}).
+     *
+     * @param gameId     the id of the game the command is for
+     * @param username   the username of the player sending the command
+     * @param invocation the character invocation, already validated
+     * @throws IllegalArgumentException if {@code gameId} is negative, {@code username} is null or empty or
+     *                                  {@code invocation} is null
+     */
+    PlayCharacterCommand(long gameId, String username, CharacterInvocation invocation) {
+        super(UserCommandType.PLAY_CHARACTER, gameId, username, invocation);
+    }
+
     /**
      * Invokes a {@link CharacterType} effect with the specified arguments on behalf of the {@link Player} with the
      * given username.
@@ -38,6 +38,36 @@ abstract class SingleArgumentCommand<T> extends AbstractCommand {
         this.arg = extractor.apply(arg);
     }
 
+    /**
+     * Creates a new SingleArgumentCommand with the given properties, already read from the command sent by the client
+     * (see {@link CommandReader}).
+     *
+     * @param type     the {@link UserCommandType} of the command
+     * @param gameId   the id of the game the command is for
+     * @param username the username of the player sending the command
+     * @param arg      the argument of the command
+     * @throws IllegalArgumentException if {@code gameId} is negative, {@code username} is null or empty or
+     *                                  {@code arg} is null
+     */
+    SingleArgumentCommand(UserCommandType type, long gameId, String username, T arg) {
+        super(type, gameId, username);
+        if (arg == null) throw new IllegalArgumentException("arg shouldn't be null");
+        this.arg = arg;
+    }
+
+    /**
+     * Checks that the given integer argument is not negative.
+     *
+     * @param n the argument to check
+     * @return {@code n}
+     * @throws IllegalArgumentException if {@code n} is negative
+     */
+    static int checkNotNegative(int n) {
+        if (n < 0)
+            throw new IllegalArgumentException("integer should be positive");
+        return n;
+    }
+
     /**
      * Getter for the argument retrieved.
      *
@@ -7,6 +7,7 @@ import it.polimi.ingsw.server.model.exceptions.InvalidPhaseUpdateException;
 import it.polimi.ingsw.server.model.exceptions.InvalidPlayerException;
 
 import java.util.List;
+import java.util.Optional;
 
 /**
  * This class is the main class of the game model, representing an instance of a game. Its state is contained inside the
@@ -69,6 +70,21 @@ public class Game {
         return oldPhase.compare(currentPhase);
     }
 
+    /**
+     * Like {@link #executeUserCommand(UserCommand)}, but without calculating the changes, e.g. because they are
+     * calculated once for several commands comparing the {@link Phase}s before and after them (see
+     * {@link Phase#compare(Phase)}).
+     *
+     * @param command the {@link UserCommand} to execute
+     * @throws InvalidPlayerException             if it is not the specified player's turn
+     * @throws InvalidCharacterParameterException if the parameters passed are wrong for the specified character (in
+     *                                            case of a {@link PlayCharacterCommand})
+     * @throws InvalidPhaseUpdateException        if this command leads to a wrong game state
+     */
+    public void applyUserCommand(UserCommand command) throws InvalidPlayerException, InvalidCharacterParameterException, InvalidPhaseUpdateException {
+        currentPhase = command.execute(currentPhase);
+    }
+
     /**
      * Getter for the current {@link Phase} of the {@code Game}.
      *
@@ -131,4 +147,24 @@ public class Game {
     public List<String> getPlayerUsernames() {
         return currentPhase.getPlayerUsernames();
     }
+
+    /**
+     * Returns the name of the current {@link Phase} of this {@code Game} (the one sent in the {@code UPDATE}s).
+     *
+     * @return the name of the current {@link Phase}
+     */
+    public String getPhaseName() {
+        return currentPhase.getName();
+    }
+
+    /**
+     * Returns the username of the player whose turn it is, if the current {@link Phase} has one.
+     *
+     * @return an {@link Optional} containing the username of the current player, empty if the phase has none
+     */
+    public Optional<String> getCurrentPlayerUsername() {
+        if (currentPhase instanceof IteratedPhase p)
+            return Optional.of(p.getCurrentPlayer().getUsername());
+        return Optional.empty();
+    }
 }
\ No newline at end of file
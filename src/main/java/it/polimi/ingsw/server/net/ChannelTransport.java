@@ -0,0 +1,228 @@
+package it.polimi.ingsw.server.net;
+
+import it.polimi.ingsw.ProgramOptions;
+import it.polimi.ingsw.net.FrameDecoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+
+/**
+ * {@link Transport} backed by a non-blocking {@link SocketChannel} driven by an {@link EventLoop}. Incoming bytes are
+ * read into the bound {@link Dispatcher}'s {@link FrameDecoder}, which splits them into messages; outgoing bytes are
+ * queued in an {@link OutboundQueue} and written by the loop whenever the socket is writable, so that callers never
+ * block on the network. If the queue crosses its high-water mark (see {@link ProgramOptions#getSendQueueLimit()}) the
+ * client is considered stalled and the connection is closed.
+ * <p>
+ * Writes are coalesced: a flush is scheduled on the loop only by the first write after the previous flush, so every
+ * message queued in the meantime (for example all the replies to the commands read in the same loop tick) is written
+ * by the same flush, with a single gathering write.
+ */
+class ChannelTransport implements Transport {
+    /**
+     * The maximum number of buffers passed to a single gathering write.
+     */
+    private static final int MAX_GATHER = 64;
+    /**
+     * The wrapped channel.
+     */
+    private final SocketChannel channel;
+    /**
+     * The loop this transport is registered to.
+     */
+    private final EventLoop loop;
+    /**
+     * Buffers waiting to be written to the channel. Guarded by {@code this}.
+     */
+    private final OutboundQueue pending;
+    /**
+     * Scratch array holding the buffers of a gathering write. Guarded by {@code this}.
+     */
+    private final ByteBuffer[] gathered;
+    /**
+     * Whether a flush has already been scheduled on the loop. Guarded by {@code this}.
+     */
+    private boolean flushScheduled;
+    /**
+     * The {@link Dispatcher} that receives the messages read from this transport.
+     */
+    private Dispatcher dispatcher;
+    /**
+     * The registration of {@link #channel} to the loop's selector. Only accessed from the loop's thread.
+     */
+    private SelectionKey key;
+    /**
+     * Whether the transport has been closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Creates a new ChannelTransport for the given channel. The transport must be bound to a {@link Dispatcher} and
+     * then registered with {@link #register()} before it starts reading.
+     *
+     * @param channel the channel to wrap
+     * @param loop    the {@link EventLoop} that will drive the channel
+     * @throws IllegalArgumentException if any parameter is null
+     */
+    ChannelTransport(SocketChannel channel, EventLoop loop) {
+        if (channel == null) throw new IllegalArgumentException("channel shouldn't be null");
+        if (loop == null) throw new IllegalArgumentException("loop shouldn't be null");
+        this.channel = channel;
+        this.loop = loop;
+        this.pending = new OutboundQueue(ProgramOptions.getSendQueueLimit());
+        this.gathered = new ByteBuffer[MAX_GATHER];
+        this.flushScheduled = false;
+        this.closed = false;
+    }
+
+    /**
+     * Binds this transport to the {@link Dispatcher} that will receive the read messages.
+     *
+     * @param dispatcher the {@link Dispatcher} to bind
+     */
+    void bind(Dispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Registers the channel to the loop's selector. It must be called once, after {@link #bind(Dispatcher)}.
+     */
+    void register() {
+        loop.execute(() -> {
+            try {
+                channel.configureBlocking(false);
+                key = channel.register(loop.selector(), SelectionKey.OP_READ, this);
+            } catch (IOException e) {
+                System.out.println("Error while registering channel: " + e);
+                close();
+            }
+        });
+    }
+
+    /**
+     * Called by the loop when the channel has data to read. Reads what is available into the {@link Dispatcher}'s
+     * {@link FrameDecoder} and dispatches any complete message.
+     */
+    void onReadable() {
+        int read;
+        try {
+            read = dispatcher.decoder().readFrom(channel);
+        } catch (IOException e) {
+            System.out.println("Error while doing IO to socket: " + e);
+            close();
+            return;
+        }
+        if (read < 0) {
+            System.out.println("Client disconnected...");
+            close();
+            return;
+        }
+        dispatcher.dispatchBuffered();
+    }
+
+    /**
+     * Called by the loop when the channel can accept more bytes.
+     */
+    void onWritable() {
+        flush();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The bytes are queued and written by the loop's thread. If the queue is over its high-water mark the client is
+     * considered stalled and the connection is closed.
+     */
+    @Override
+    public void write(ByteBuffer data) {
+        if (closed) return;
+        boolean accepted;
+        synchronized (this) {
+            accepted = pending.offer(data);
+            if (accepted) {
+                if (flushScheduled) return;
+                flushScheduled = true;
+            }
+        }
+        if (!accepted) {
+            System.out.println("Client too slow, evicting...");
+            close();
+            return;
+        }
+        loop.execute(this::flush);
+    }
+
+    /**
+     * Writes as much of the pending data as the channel accepts, gathering up to {@link #MAX_GATHER} buffers in each
+     * write. If some data is left, the loop is asked to notify us when the channel becomes writable again. Must be
+     * called on the loop's thread.
+     */
+    private void flush() {
+        if (closed || key == null) return;
+        try {
+            synchronized (this) {
+                flushScheduled = false;
+                while (!pending.isEmpty()) {
+                    int n = pending.gather(gathered);
+                    long written = channel.write(gathered, 0, n);
+                    pending.consumed(written);
+                    boolean partial = gathered[n - 1].hasRemaining();
+                    Arrays.fill(gathered, 0, n, null);
+                    if (partial) break;
+                }
+                if (pending.isEmpty())
+                    key.interestOps(SelectionKey.OP_READ);
+                else
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        } catch (IOException e) {
+            System.out.println("Error while doing IO to socket: " + e);
+            close();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The bound {@link Dispatcher} is notified of the disconnection.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            pending.clear();
+        }
+        if (loop.inLoop())
+            closeChannel();
+        else
+            loop.execute(this::closeChannel);
+    }
+
+    /**
+     * Cancels the registration and closes the channel, then notifies the {@link Dispatcher}. Must be called on the
+     * loop's thread.
+     */
+    private void closeChannel() {
+        if (key != null) key.cancel();
+        try {
+            channel.close();
+        } catch (ClosedChannelException ignored) {
+        } catch (IOException e) {
+            System.out.println("Error while closing channel: " + e);
+        }
+        if (dispatcher != null)
+            dispatcher.disconnected();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+}
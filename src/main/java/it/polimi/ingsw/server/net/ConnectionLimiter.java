@@ -0,0 +1,123 @@
+package it.polimi.ingsw.server.net;
+
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Admission control for incoming connections. It counts the open connections, both in total and for each remote
+ * address, and refuses new ones once either count reaches its limit, so that a single host opening connections in a
+ * loop cannot starve everyone else of sockets, threads and memory.
+ * <p>
+ * Every successful {@link #tryAcquire(InetAddress)} must be matched by a {@link #release(InetAddress)} once the
+ * connection is closed. Connections without a remote address, like the ones through a Unix domain socket, use
+ * {@link #tryAcquire()} and {@link #release()} instead and only count toward the global limit. This class is thread
+ * safe.
+ */
+public class ConnectionLimiter {
+    /**
+     * The maximum number of open connections.
+     */
+    private final int maxConnections;
+    /**
+     * The maximum number of open connections from a single address.
+     */
+    private final int maxPerAddress;
+    /**
+     * The number of open connections for each address that has any. Guarded by {@code this}.
+     */
+    private final Map<InetAddress, Integer> perAddress;
+    /**
+     * The number of open connections. Guarded by {@code this}.
+     */
+    private int connections;
+    /**
+     * The number of open connections without a remote address. Guarded by {@code this}.
+     */
+    private int withoutAddress;
+
+    /**
+     * Creates a new ConnectionLimiter with the given limits.
+     *
+     * @param maxConnections the maximum number of open connections
+     * @param maxPerAddress  the maximum number of open connections from a single address
+     * @throws IllegalArgumentException if any limit is not positive
+     */
+    public ConnectionLimiter(int maxConnections, int maxPerAddress) {
+        if (maxConnections <= 0) throw new IllegalArgumentException("maxConnections should be > 0");
+        if (maxPerAddress <= 0) throw new IllegalArgumentException("maxPerAddress should be > 0");
+        this.maxConnections = maxConnections;
+        this.maxPerAddress = maxPerAddress;
+        this.perAddress = new HashMap<>();
+        this.connections = 0;
+        this.withoutAddress = 0;
+    }
+
+    /**
+     * Accounts for a new connection from the given address, unless it would exceed one of the limits.
+     *
+     * @param address the remote address of the connection
+     * @return true if the connection is admitted, false if it should be refused
+     * @throws IllegalArgumentException if {@code address} is null
+     */
+    public synchronized boolean tryAcquire(InetAddress address) {
+        if (address == null) throw new IllegalArgumentException("address shouldn't be null");
+        if (connections >= maxConnections) return false;
+        int fromAddress = perAddress.getOrDefault(address, 0);
+        if (fromAddress >= maxPerAddress) return false;
+        perAddress.put(address, fromAddress + 1);
+        connections++;
+        return true;
+    }
+
+    /**
+     * Accounts for the closing of a connection from the given address, previously admitted by
+     * {@link #tryAcquire(InetAddress)}.
+     *
+     * @param address the remote address of the connection
+     * @throws IllegalArgumentException if {@code address} is null
+     * @throws IllegalStateException    if there is no open connection from {@code address}
+     */
+    public synchronized void release(InetAddress address) {
+        if (address == null) throw new IllegalArgumentException("address shouldn't be null");
+        Integer fromAddress = perAddress.get(address);
+        if (fromAddress == null) throw new IllegalStateException("no connection open from " + address);
+        if (fromAddress == 1)
+            perAddress.remove(address);
+        else
+            perAddress.put(address, fromAddress - 1);
+        connections--;
+    }
+
+    /**
+     * Accounts for a new connection without a remote address, unless it would exceed the global limit.
+     *
+     * @return true if the connection is admitted, false if it should be refused
+     */
+    public synchronized boolean tryAcquire() {
+        if (connections >= maxConnections) return false;
+        withoutAddress++;
+        connections++;
+        return true;
+    }
+
+    /**
+     * Accounts for the closing of a connection without a remote address, previously admitted by {@link #tryAcquire()}.
+     *
+     * @throws IllegalStateException if there is no open connection
+     */
+    public synchronized void release() {
+        if (withoutAddress == 0) throw new IllegalStateException("no connection open without an address");
+        withoutAddress--;
+        connections--;
+    }
+
+    /**
+     * Returns the number of open connections.
+     *
+     * @return the number of open connections
+     */
+    public synchronized int getConnections() {
+        return connections;
+    }
+}
@@ -1,25 +1,44 @@
 package it.polimi.ingsw.server.net;
 
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
-import com.google.gson.JsonSyntaxException;
+import it.polimi.ingsw.ProgramOptions;
+import it.polimi.ingsw.net.Compression;
+import it.polimi.ingsw.net.ControlFrame;
+import it.polimi.ingsw.net.Encoding;
+import it.polimi.ingsw.net.FrameDecoder;
+import it.polimi.ingsw.net.FrameEncoder;
+import it.polimi.ingsw.net.FrameTooLongException;
+import it.polimi.ingsw.net.Framing;
+import it.polimi.ingsw.net.Handshake;
 import it.polimi.ingsw.server.Logger;
 import it.polimi.ingsw.server.Server;
 import it.polimi.ingsw.server.controller.*;
+import it.polimi.ingsw.server.controller.commands.CommandReader;
+import it.polimi.ingsw.server.controller.commands.UserCommand;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.InputStream;
 import java.net.Socket;
-import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 
 /**
- * Thread that handles IO with a client's {@link Socket}, spawned by {@link Server}. It provides basic IO operations for
- * receiving, sending {@link JsonObject}. It can also notify its users about disconnections via a callback.
+ * Handles IO with a client, spawned by {@link Server}. It provides basic IO operations for receiving, sending
+ * {@link JsonObject}. It can also notify its users about disconnections via a callback.
+ * <p>
+ * A Dispatcher can either wrap a blocking {@link Socket}, in which case it is a thread that reads from it (see
+ * {@link #run()}), or a non-blocking channel driven by an {@link EventLoop} (see {@link EventLoopGroup}), in which case
+ * the loop feeds it the messages it reads.
+ * <p>
+ * Every message received, valid or not, is subject to a rate limit (see {@link ProgramOptions#getCommandRate()}):
+ * messages over the limit are dropped without being looked at, and clients that keep going over it are disconnected.
+ * <p>
+ * Keepalive messages ({@code HEARTBEAT}s and {@code PONG}s) are recognized from their bytes (see {@link ControlFrame})
+ * and handled here, without being parsed or routed through the {@link MatchRegistry}. Well-formed game commands are
+ * read straight from their bytes as well (see {@link CommandReader}), skipping the {@link JsonObject} step.
  */
 public class Dispatcher implements Runnable {
     /**
@@ -27,13 +46,74 @@ public class Dispatcher implements Runnable {
      */
     private final static Runnable NOOP_CB = () -> {};
     /**
-     * The {@link Socket} associated to this Dispatcher.
+     * The answer to a {@code HEARTBEAT}, which is the {@code HEARTBEAT} itself, encoded once for all the clients.
+     */
+    private final static OutgoingMessage HEARTBEAT = heartbeat();
+    /**
+     * The {@link Socket} associated to this Dispatcher, null if it is backed by a channel.
      */
     private final Socket socket;
+    /**
+     * The {@link Transport} used for writing to the client.
+     */
+    private final Transport transport;
+    /**
+     * The {@link FrameDecoder} splitting and parsing the bytes sent by the client.
+     */
+    private final FrameDecoder decoder;
+    /**
+     * The {@link FrameEncoder} used for the messages sent to the client, holding their {@link Framing} and
+     * {@link Compression}.
+     */
+    private volatile FrameEncoder encoder;
+    /**
+     * Lock making compressing a message and queueing it a single step, so that compressed frames are written in the
+     * same order in which the {@link FrameEncoder} builds them.
+     */
+    private final ReentrantLock compressionLock;
+    /**
+     * The {@link Encoding} used for the messages sent to the client.
+     */
+    private volatile Encoding encoding;
+    /**
+     * Whether no message has been received yet. The handshake is only allowed as the first message.
+     */
+    private boolean firstMessage;
+    /**
+     * Limits the rate of the messages accepted from the client.
+     */
+    private final TokenBucket rateLimit;
+    /**
+     * Limits the rate of the messages dropped because of {@link #rateLimit}: once it runs out, the client is
+     * disconnected.
+     */
+    private final TokenBucket dropLimit;
+    /**
+     * Whether the last message was dropped because of {@link #rateLimit}.
+     */
+    private boolean throttled;
+    /**
+     * The instant, as returned by {@link System#nanoTime()}, at which the last message was received from the client, or
+     * at which the Dispatcher was created if none has been received yet.
+     */
+    private volatile long lastReceived;
+    /**
+     * Whether the onDisconnect callback has already been called.
+     */
+    private final AtomicBoolean disconnected;
+    /**
+     * The {@link Match} the client is playing in, null if it isn't in one.
+     */
+    private volatile Match match;
     /**
      * Callback called on client disconnection. By default, it doesn't do anything.
      */
-    private Runnable onDisconnect;
+    private volatile Runnable onDisconnect;
+    /**
+     * Callback called once the connection has been closed, after onDisconnect. Unlike onDisconnect, it doesn't change
+     * with the state of the client. By default, it doesn't do anything.
+     */
+    private volatile Runnable onClose;
 
     /**
      * The default callback for {@link #onReceive}. It routes the command to the {@link MatchRegistry} instance.
@@ -44,7 +124,7 @@ public class Dispatcher implements Runnable {
     /**
      * Callback called after a message from a client arrives.
      */
-    private Consumer<JsonObject> onReceive;
+    private volatile Consumer<JsonObject> onReceive;
 
     /**
      * Creates a new Dispatcher object wrapping the given {@link Socket}.
@@ -53,29 +133,90 @@ public class Dispatcher implements Runnable {
      * @throws IllegalArgumentException if {@code socket} is null
      */
     public Dispatcher(Socket socket) {
-        if (socket == null) throw new IllegalArgumentException("socket shouldn't be null");
+        this(socket, socketTransport(socket));
+    }
+
+    /**
+     * Creates a new Dispatcher object writing to the given {@link ChannelTransport}. Reading is driven by the
+     * transport's {@link EventLoop}.
+     *
+     * @param transport the {@link ChannelTransport} to use
+     * @throws IllegalArgumentException if {@code transport} is null
+     */
+    Dispatcher(ChannelTransport transport) {
+        this(null, transport);
+    }
+
+    /**
+     * Creates a new Dispatcher object writing to the given {@link Transport}. Every other constructor delegates to this
+     * one, which initializes the state of the Dispatcher.
+     *
+     * @param socket    the {@link Socket} to read from, null if reading is driven by an {@link EventLoop}
+     * @param transport the {@link Transport} to use
+     * @throws IllegalArgumentException if {@code transport} is null
+     */
+    private Dispatcher(Socket socket, Transport transport) {
+        if (transport == null) throw new IllegalArgumentException("transport shouldn't be null");
         this.socket = socket;
+        this.transport = transport;
+        this.decoder = new FrameDecoder(ProgramOptions.getMaxFrameSize());
+        this.encoder = new FrameEncoder(Framing.DELIMITED, Compression.NONE);
+        this.compressionLock = new ReentrantLock();
+        this.encoding = Encoding.JSON;
+        this.firstMessage = true;
+        this.rateLimit = newRateLimit();
+        this.dropLimit = newRateLimit();
+        this.throttled = false;
+        this.lastReceived = System.nanoTime();
+        this.disconnected = new AtomicBoolean(false);
         this.onDisconnect = NOOP_CB;
+        this.onClose = NOOP_CB;
         this.onReceive = onReceiveDefault;
     }
 
+    /**
+     * Creates the {@link Transport} writing to the given {@link Socket}.
+     *
+     * @param socket the {@link Socket}
+     * @return the {@link Transport}
+     * @throws IllegalArgumentException if {@code socket} is null
+     */
+    private static Transport socketTransport(Socket socket) {
+        if (socket == null) throw new IllegalArgumentException("socket shouldn't be null");
+        return new SocketTransport(socket);
+    }
+
+    /**
+     * Creates a {@link TokenBucket} allowing {@link ProgramOptions#getCommandRate()} messages per second, with bursts
+     * of twice as many.
+     *
+     * @return the {@link TokenBucket}
+     */
+    private static TokenBucket newRateLimit() {
+        return new TokenBucket(ProgramOptions.getCommandRate(), 2 * ProgramOptions.getCommandRate(), System.nanoTime());
+    }
+
     /**
      * Dispatcher's infinite execution loop. It will read from the socket parsing any JSON it can and pipe it to the
      * message handler until the socket is disconnected.
      * <p>
      * If the socket disconnects, the onDisconnect callback is called and then the thread ends.
-     * If the read object is not a valid {@link JsonObject}, an error message is sent back (see
-     * {@link Messages#buildErrorMessage(String)}).
+     * If the read object is not a valid {@link JsonObject} or is too long, an error message is sent back (see
+     * {@link Messages#buildErrorMessage(String)}). Objects over the rate limit are dropped (see {@link #admit()}).
+     *
+     * @throws IllegalStateException if this Dispatcher is not backed by a {@link Socket}
      */
     @Override
     public void run() {
+        if (socket == null) throw new IllegalStateException("channel backed dispatchers are driven by their event loop");
         try (Socket s = socket) {
             while (!s.isClosed()) {
-                Optional<JsonObject> obj = receive();
-                if (obj.isPresent())
-                    onReceive.accept(obj.get());
-                else
-                    send(Messages.buildErrorMessage("Malformed JSON"));
+                try {
+                    awaitFrame();
+                    handleFrame();
+                } catch (FrameTooLongException e) {
+                    if (admit()) send(Messages.buildErrorMessage("Message too long"));
+                }
             }
         } catch (IOException e) {
             System.out.println("Error while doing IO to socket: " + e);
@@ -84,10 +225,219 @@ public class Dispatcher implements Runnable {
         } catch (Throwable e) {
             e.printStackTrace();
         } finally {
-            Logger.log("Executing callback...");
+            transport.close();
+            disconnected();
+        }
+    }
+
+    /**
+     * Checks whether a message just received from the client is within the rate limit. The first message of a row that
+     * is not gets an error message back, so that well-behaved clients know they are being throttled; the others are
+     * dropped silently. Dropped messages have their own budget, refilled at the same rate: a client that sends on
+     * average more than twice the messages it is allowed to runs out of it and is disconnected.
+     * <p>
+     * Since it is called for every message, it also records the time of its arrival (see {@link #getLastReceived()}).
+     *
+     * @return true if the message should be handled, false if it should be dropped
+     */
+    private boolean admit() {
+        long now = System.nanoTime();
+        lastReceived = now;
+        if (rateLimit.tryTake(now)) {
+            throttled = false;
+            return true;
+        }
+        if (!dropLimit.tryTake(now)) {
+            System.out.println("Client flooding, disconnecting...");
+            transport.close();
+        } else if (!throttled) {
+            throttled = true;
+            send(Messages.buildErrorMessage("Too many messages, slow down"));
+        }
+        return false;
+    }
+
+    /**
+     * Handles the complete frame available in the decoder: control frames are handled on the spot, well-formed game
+     * commands are read straight from their bytes (see {@link CommandReader}) and routed, everything else is parsed
+     * and dispatched (see {@link #dispatch(Optional)}). All of them are subject to the rate limit.
+     * <p>
+     * Commands are only read directly when they would be routed to the {@link MatchRegistry} anyway, that is when the
+     * onReceive callback is the default one or an {@link InMatchCallback}.
+     *
+     * @throws FrameTooLongException if the frame is too long
+     */
+    private void handleFrame() {
+        ControlFrame control = decoder.nextControlFrame();
+        if (control != null) {
+            if (admit()) control(control);
+            return;
+        }
+        Consumer<JsonObject> receiver = onReceive;
+        if (receiver == onReceiveDefault || receiver instanceof InMatchCallback) {
+            UserCommand command = decoder.nextFrame(CommandReader::read);
+            if (command != null) {
+                if (admit()) dispatch(command, receiver);
+                return;
+            }
+        }
+        Optional<JsonObject> obj = decoder.nextFrame();
+        if (admit()) dispatch(obj);
+    }
+
+    /**
+     * Handles a control frame: {@code HEARTBEAT}s are echoed back and {@code PONG}s are notified to the {@link Match}
+     * the client is playing in. {@code PONG}s referring to another match, or sent outside of one, are handled by the
+     * {@link MatchRegistry} like any other message, which answers with the appropriate error.
+     *
+     * @param control the control frame
+     */
+    private void control(ControlFrame control) {
+        firstMessage = false;
+        if (control.getType() == ControlFrame.Type.HEARTBEAT) {
+            send(HEARTBEAT);
+            return;
+        }
+        if (!ProgramOptions.usesPing()) return;
+        Match m = match;
+        if (m != null && m.notifyPong(this, control.getGameId())) return;
+        JsonObject pong = new JsonObject();
+        pong.addProperty("type", "PONG");
+        pong.addProperty("gameId", control.getGameId());
+        onReceive.accept(pong);
+    }
+
+    /**
+     * Builds the answer to {@code HEARTBEAT}s.
+     *
+     * @return the answer to {@code HEARTBEAT}s
+     */
+    private static OutgoingMessage heartbeat() {
+        JsonObject heartbeat = new JsonObject();
+        heartbeat.addProperty("type", "HEARTBEAT");
+        return new OutgoingMessage(heartbeat);
+    }
+
+    /**
+     * Handles a message read from the client: if it is present it is piped to the message handler, otherwise an error
+     * message is sent back. Handshake messages are handled by the Dispatcher itself (see {@link Handshake}).
+     *
+     * @param obj the read message, or an empty {@link Optional} if it could not be parsed
+     */
+    void dispatch(Optional<JsonObject> obj) {
+        boolean first = firstMessage;
+        firstMessage = false;
+        if (obj.isEmpty()) {
+            send(Messages.buildErrorMessage("Malformed JSON"));
+        } else if (Handshake.isHello(obj.get())) {
+            if (first)
+                negotiate(obj.get());
+            else
+                send(Messages.buildErrorMessage("HELLO must be the first message"));
+        } else {
+            onReceive.accept(obj.get());
+        }
+    }
+
+    /**
+     * Routes a command read straight from its bytes like the given onReceive callback would.
+     *
+     * @param command  the command
+     * @param receiver the onReceive callback, either the default one or an {@link InMatchCallback}
+     */
+    private void dispatch(UserCommand command, Consumer<JsonObject> receiver) {
+        firstMessage = false;
+        if (receiver instanceof InMatchCallback callback)
+            callback.accept(command);
+        else
+            MatchRegistry.getInstance().executeCommand(this, command);
+    }
+
+    /**
+     * Answers the client's {@code HELLO} message and switches the connection to the agreed {@link Framing},
+     * {@link Encoding} and {@link Compression}. The answer is still sent with the old ones. Since binary and compressed
+     * payloads cannot be delimited by an empty line, {@link Encoding#BINARY} and {@link Compression#DEFLATE} are only
+     * accepted together with {@link Framing#LENGTH_PREFIXED}.
+     *
+     * @param hello the {@code HELLO} message sent by the client
+     */
+    private void negotiate(JsonObject hello) {
+        Framing requested = Handshake.getFraming(hello);
+        boolean prefixed = requested == Framing.LENGTH_PREFIXED;
+        Encoding accepted = prefixed ? Handshake.getEncoding(hello) : Encoding.JSON;
+        Compression compression = prefixed ? Handshake.getCompression(hello) : Compression.NONE;
+        send(Handshake.buildHello(requested, accepted, compression));
+        compressionLock.lock();
+        try {
+            encoder.close();
+            encoder = new FrameEncoder(requested, compression);
+        } finally {
+            compressionLock.unlock();
+        }
+        encoding = accepted;
+        decoder.setFraming(requested);
+        decoder.setCompression(compression);
+        Logger.log("Negotiated " + requested + " framing, " + accepted + " encoding and " + compression +
+                " compression");
+    }
+
+    /**
+     * Returns the {@link FrameDecoder} used by this Dispatcher, so that channel backed transports can fill it.
+     *
+     * @return the {@link FrameDecoder} used by this Dispatcher
+     */
+    FrameDecoder decoder() {
+        return decoder;
+    }
+
+    /**
+     * Dispatches every complete message currently buffered in the {@link FrameDecoder}. Messages that are too long
+     * are answered with an error message, messages over the rate limit are dropped (see {@link #admit()}).
+     */
+    void dispatchBuffered() {
+        while (!transport.isClosed()) {
+            try {
+                if (!decoder.hasFrame()) return;
+                handleFrame();
+            } catch (FrameTooLongException e) {
+                if (admit()) send(Messages.buildErrorMessage("Message too long"));
+            }
+        }
+    }
+
+    /**
+     * Notifies this Dispatcher that the client has disconnected: the native memory of the {@link FrameDecoder} and
+     * {@link FrameEncoder} is released, then the onDisconnect callback is called, followed by the onClose one.
+     * Subsequent calls have no effect. It must be called by the thread reading from the client, once the
+     * {@link Transport} has been closed.
+     */
+    void disconnected() {
+        if (disconnected.getAndSet(true)) return;
+        decoder.close();
+        compressionLock.lock();
+        try {
+            encoder.close();
+        } finally {
+            compressionLock.unlock();
+        }
+        Logger.log("Executing callback...");
+        try {
             onDisconnect.run();
-            System.out.println("Closing connection...");
+        } finally {
+            onClose.run();
         }
+        System.out.println("Closing connection...");
+    }
+
+    /**
+     * Returns the instant at which the last message was received from the client, valid or not, which proves that the
+     * connection is alive at that time.
+     *
+     * @return the instant, as returned by {@link System#nanoTime()}, at which the last message was received, or at
+     * which this Dispatcher was created if none has been received yet
+     */
+    public long getLastReceived() {
+        return lastReceived;
     }
 
     /**
@@ -100,6 +450,16 @@ public class Dispatcher implements Runnable {
         onDisconnect = Objects.requireNonNullElse(callback, NOOP_CB);
     }
 
+    /**
+     * Sets the onClose callback to the provided {@link Runnable}, called once the connection has been closed, whatever
+     * the state of the client. If null is passed, the default NOOP callback will be assigned.
+     *
+     * @param callback the new callback to use
+     */
+    public void setOnClose(Runnable callback) {
+        onClose = Objects.requireNonNullElse(callback, NOOP_CB);
+    }
+
     /**
      * Sets the onReceive callback to the provided {@code BiConsumer}. If null is passed, the
      * default NOOP callback will be assigned.
@@ -114,27 +474,37 @@ public class Dispatcher implements Runnable {
      * Reads a JSON object from the Socket and parses it into a {@link JsonObject}. If everything goes as planned, the
      * parsed object is returned wrapped in an {@link Optional}, otherwise an empty one is returned. If the socket
      * disconnects while reading, {@link ClientDisconnectedException} is thrown. The method blocks until a full object
-     * has been read. The separator used between objects is an empty line.
+     * has been read. Objects are framed according to the negotiated {@link Framing}.
+     * <p>
+     * Bytes are buffered by a {@link FrameDecoder} that lives as long as this Dispatcher, so any byte read past the end
+     * of the returned object is kept for the following call.
      *
      * @return an {@link Optional} wrapping the parsed {@link JsonObject}.
      * @throws ClientDisconnectedException if the Socket disconnects while reading
+     * @throws FrameTooLongException       if the object exceeds {@link ProgramOptions#getMaxFrameSize()}; it is
+     *                                     discarded and the next call will read the following one
+     * @throws IllegalStateException       if this Dispatcher is not backed by a {@link Socket}
      */
     public Optional<JsonObject> receive() {
+        awaitFrame();
+        return decoder.nextFrame();
+    }
+
+    /**
+     * Blocks until a complete frame has been read from the Socket.
+     *
+     * @throws ClientDisconnectedException if the Socket disconnects while reading
+     * @throws FrameTooLongException       if the frame exceeds {@link ProgramOptions#getMaxFrameSize()}
+     * @throws IllegalStateException       if this Dispatcher is not backed by a {@link Socket}
+     */
+    private void awaitFrame() {
+        if (socket == null) throw new IllegalStateException("channel backed dispatchers are driven by their event loop");
         try {
-            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
-            String read;
-            StringBuilder msg = new StringBuilder();
-            while ((read = in.readLine()) != null) {
-                if (read.equals("")) {
-                    try {
-                        JsonObject obj = JsonParser.parseString(msg.toString()).getAsJsonObject();
-                        return Optional.of(obj);
-                    } catch (JsonSyntaxException | IllegalStateException e) {
-                        return Optional.empty();
-                    }
-                } else
-                    msg.append(read).append('\n');
-            }
+            InputStream in = socket.getInputStream();
+            while (!decoder.hasFrame())
+                if (decoder.readFrom(in) < 0)
+                    throw new ClientDisconnectedException();
+            return;
         } catch (IOException e) {
             System.out.println("Error while doing IO to socket: " + e);
         }
@@ -142,28 +512,62 @@ public class Dispatcher implements Runnable {
     }
 
     /**
-     * Writes to the Socket the {@link JsonObject} passed.
+     * Writes to the client the {@link JsonObject} passed, encoded, compressed and framed according to the negotiated
+     * {@link Encoding}, {@link Compression} and {@link Framing}. The message is queued and the method returns immediately; if too much data
+     * is already waiting for the client (see {@link ProgramOptions#getSendQueueLimit()}), the client is disconnected
+     * instead.
+     *
+     * @param toWrite the object to write to the client
+     * @throws IllegalArgumentException if {@code toWrite} is null
+     */
+    public void send(JsonObject toWrite) {
+        if (toWrite == null) throw new IllegalArgumentException("toWrite shouldn't be null");
+        send(new OutgoingMessage(toWrite));
+    }
+
+    /**
+     * Writes to the client the given {@link OutgoingMessage}, reusing its bytes if another client with the same
+     * {@link Encoding} and {@link Framing} already received it. Compressed frames depend on what the client received
+     * before, so on compressed connections only the encoded payload is reused. Otherwise, it behaves like
+     * {@link #send(JsonObject)}.
      *
-     * @param toWrite the object to write to the Socket
+     * @param toWrite the message to write to the client
      * @throws IllegalArgumentException if {@code toWrite} is null
      */
-    synchronized public void send(JsonObject toWrite) {
+    public void send(OutgoingMessage toWrite) {
         if (toWrite == null) throw new IllegalArgumentException("toWrite shouldn't be null");
+        FrameEncoder e = encoder;
+        if (e.getCompression() == Compression.NONE) {
+            transport.write(toWrite.frame(encoding, e.getFraming()));
+            return;
+        }
+        byte[] payload = toWrite.payload(encoding);
+        compressionLock.lock();
         try {
-            PrintWriter writer = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
-            writer.println(toWrite);
-            writer.println("");
-        } catch (IOException e) {
-            System.out.println("Error while doing IO to socket: " + e);
+            if (transport.isClosed()) return;
+            transport.write(e.frame(payload));
+        } finally {
+            compressionLock.unlock();
         }
     }
 
+    /**
+     * Returns true if the connection with the client has been closed.
+     *
+     * @return true if the connection has been closed
+     */
+    public boolean isClosed() {
+        return transport.isClosed();
+    }
+
     public void setPlayingState(Match match) {
+        this.match = match;
         setOnReceive(new InMatchCallback(this));
         setOnDisconnect(new DisconnectCallback(match));
     }
 
     public void setIdleState() {
+        this.match = null;
         setOnReceive(null);
         setOnDisconnect(null);
     }
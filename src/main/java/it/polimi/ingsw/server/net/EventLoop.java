@@ -0,0 +1,140 @@
+package it.polimi.ingsw.server.net;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A single non-blocking I/O loop. It owns a {@link Selector} and drives all the {@link ChannelTransport}s registered to
+ * it: it reads from them when data is available and flushes their pending writes when the socket can accept more
+ * bytes. Work coming from other threads is submitted through {@link #execute(Runnable)} and run on the loop's thread
+ * between two selections.
+ *
+ * @see EventLoopGroup
+ * @see ChannelTransport
+ */
+class EventLoop implements Runnable {
+    /**
+     * The {@link Selector} multiplexing all the channels owned by this loop.
+     */
+    private final Selector selector;
+    /**
+     * Tasks submitted from other threads, waiting to be executed on the loop's thread.
+     */
+    private final Queue<Runnable> tasks;
+    /**
+     * The thread running this loop.
+     */
+    private final Thread thread;
+
+    /**
+     * Creates and starts a new EventLoop.
+     *
+     * @param name the name to give to the loop's thread
+     * @throws IOException if the {@link Selector} could not be opened
+     */
+    EventLoop(String name) throws IOException {
+        this.selector = Selector.open();
+        this.tasks = new ConcurrentLinkedQueue<>();
+        this.thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns the {@link Selector} used by this loop. It should only be used from the loop's thread.
+     *
+     * @return the {@link Selector} used by this loop
+     */
+    Selector selector() {
+        return selector;
+    }
+
+    /**
+     * Returns true if the caller is running on this loop's thread.
+     *
+     * @return true if the caller is running on this loop's thread
+     */
+    boolean inLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Schedules the given task to be run on this loop's thread. If the caller is already on the loop's thread, the task
+     * is still queued and will run before the next selection.
+     *
+     * @param task the task to run
+     */
+    void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Closes the {@link Selector}, causing the loop to terminate.
+     */
+    void shutdown() {
+        try {
+            selector.close();
+        } catch (IOException e) {
+            System.out.println("Error while closing selector: " + e);
+        }
+    }
+
+    /**
+     * The loop's body. Waits for ready channels, dispatches I/O events to their {@link ChannelTransport} and runs the
+     * queued tasks, until the {@link Selector} is closed.
+     */
+    @Override
+    public void run() {
+        try {
+            while (selector.isOpen()) {
+                selector.select();
+                processSelectedKeys();
+                runTasks();
+            }
+        } catch (ClosedSelectorException ignored) {
+        } catch (IOException e) {
+            System.out.println("Error while selecting: " + e);
+        }
+    }
+
+    /**
+     * Dispatches the I/O events of the last selection to the relative transports.
+     */
+    private void processSelectedKeys() {
+        Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+        while (it.hasNext()) {
+            SelectionKey key = it.next();
+            it.remove();
+            ChannelTransport transport = (ChannelTransport) key.attachment();
+            try {
+                if (key.isValid() && key.isReadable())
+                    transport.onReadable();
+                if (key.isValid() && key.isWritable())
+                    transport.onWritable();
+            } catch (Throwable e) {
+                e.printStackTrace();
+                transport.close();
+            }
+        }
+    }
+
+    /**
+     * Runs all the currently queued tasks.
+     */
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (Throwable e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package it.polimi.ingsw.server.net;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A fixed-size group of {@link EventLoop}s. Accepted connections are spread among the loops in a round-robin fashion,
+ * so that the number of threads needed to serve clients does not depend on the number of connections.
+ */
+public class EventLoopGroup {
+    /**
+     * The loops in this group.
+     */
+    private final EventLoop[] loops;
+    /**
+     * Index of the loop that will receive the next connection.
+     */
+    private int next;
+
+    /**
+     * Creates and starts a new group with the given number of loops.
+     *
+     * @param nLoops the number of loops
+     * @throws IllegalArgumentException if {@code nLoops} is not positive
+     * @throws IOException              if any of the loops could not be started
+     */
+    public EventLoopGroup(int nLoops) throws IOException {
+        if (nLoops <= 0) throw new IllegalArgumentException("nLoops should be positive");
+        this.loops = new EventLoop[nLoops];
+        for (int i = 0; i < nLoops; i++)
+            loops[i] = new EventLoop("io-loop-" + i);
+        this.next = 0;
+    }
+
+    /**
+     * Creates a new {@link Dispatcher} for the given accepted channel and registers it to one of the loops, which will
+     * handle all of its I/O from now on.
+     *
+     * @param channel the newly accepted channel
+     * @param onClose the onClose callback of the {@link Dispatcher} (see {@link Dispatcher#setOnClose(Runnable)}),
+     *                set before the channel starts being served
+     * @return the {@link Dispatcher} serving the channel
+     * @throws IllegalArgumentException if {@code channel} is null
+     */
+    public synchronized Dispatcher register(SocketChannel channel, Runnable onClose) {
+        if (channel == null) throw new IllegalArgumentException("channel shouldn't be null");
+        EventLoop loop = loops[next];
+        next = (next + 1) % loops.length;
+
+        ChannelTransport transport = new ChannelTransport(channel, loop);
+        Dispatcher dispatcher = new Dispatcher(transport);
+        dispatcher.setOnClose(onClose);
+        transport.bind(dispatcher);
+        transport.register();
+        return dispatcher;
+    }
+
+    /**
+     * Stops all the loops in the group.
+     */
+    public void shutdown() {
+        for (EventLoop l : loops)
+            l.shutdown();
+    }
+}
@@ -0,0 +1,119 @@
+package it.polimi.ingsw.server.net;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Bounded queue of the buffers waiting to be written to a connection. The bound is a high-water mark on the number of
+ * queued bytes: a client that reads slower than the server writes to it makes the queue grow until the mark is
+ * crossed, at which point its {@link Transport} gives up on it and closes the connection, instead of buffering without
+ * limits or blocking the threads that send to it.
+ * <p>
+ * This class is not thread safe: {@link Transport}s guard it with their own lock.
+ */
+class OutboundQueue {
+    /**
+     * The maximum number of queued bytes.
+     */
+    private final long highWaterMark;
+    /**
+     * The queued buffers.
+     */
+    private final Deque<ByteBuffer> buffers;
+    /**
+     * The number of bytes still to be written in {@link #buffers}.
+     */
+    private long size;
+
+    /**
+     * Creates a new empty OutboundQueue.
+     *
+     * @param highWaterMark the maximum number of queued bytes
+     * @throws IllegalArgumentException if {@code highWaterMark} is not positive
+     */
+    OutboundQueue(long highWaterMark) {
+        if (highWaterMark <= 0) throw new IllegalArgumentException("highWaterMark should be > 0");
+        this.highWaterMark = highWaterMark;
+        this.buffers = new ArrayDeque<>();
+        this.size = 0;
+    }
+
+    /**
+     * Appends the given buffer to the queue, unless this would bring the queue over its high-water mark. A buffer is
+     * always accepted by an empty queue, so that a single message bigger than the mark does not count as a slow client.
+     *
+     * @param data the buffer to append
+     * @return false if the buffer was not appended because the queue would have crossed the high-water mark
+     */
+    boolean offer(ByteBuffer data) {
+        if (size > 0 && size + data.remaining() > highWaterMark) return false;
+        buffers.add(data);
+        size += data.remaining();
+        return true;
+    }
+
+    /**
+     * Returns the first buffer of the queue without removing it, or null if the queue is empty.
+     *
+     * @return the first buffer of the queue, or null
+     */
+    ByteBuffer peek() {
+        return buffers.peek();
+    }
+
+    /**
+     * Copies the first buffers of the queue, without removing them, into the given array, so that they can be written
+     * with a single gathering write.
+     *
+     * @param into the array receiving the buffers
+     * @return the number of buffers copied, at most {@code into.length}
+     */
+    int gather(ByteBuffer[] into) {
+        int n = 0;
+        for (ByteBuffer b : buffers) {
+            if (n == into.length) break;
+            into[n++] = b;
+        }
+        return n;
+    }
+
+    /**
+     * Accounts for the given number of bytes at the head of the queue having been written, removing the buffers that
+     * have been written completely.
+     *
+     * @param written the number of bytes written
+     */
+    void consumed(long written) {
+        size -= written;
+        ByteBuffer head;
+        while ((head = buffers.peek()) != null && !head.hasRemaining())
+            buffers.poll();
+    }
+
+    /**
+     * Returns true if there is nothing left to write.
+     *
+     * @return true if the queue is empty
+     */
+    boolean isEmpty() {
+        return buffers.isEmpty();
+    }
+
+    /**
+     * Returns the number of bytes still to be written.
+     *
+     * @return the number of queued bytes
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Drops all the queued buffers.
+     */
+    void clear() {
+        buffers.clear();
+        size = 0;
+    }
+}
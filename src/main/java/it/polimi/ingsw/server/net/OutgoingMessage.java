@@ -0,0 +1,81 @@
+package it.polimi.ingsw.server.net;
+
+import com.google.gson.JsonObject;
+import it.polimi.ingsw.net.Encoding;
+import it.polimi.ingsw.net.Framing;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A message ready to be sent to any number of clients. It is serialized at most once per {@link Encoding} and framed at
+ * most once per {@link Encoding}-{@link Framing} pair, the first time a client using them needs it; every recipient
+ * then gets its own view of the same bytes. Sending a message to many clients through a single OutgoingMessage (see
+ * {@link Dispatcher#send(OutgoingMessage)}) costs, therefore, a single serialization.
+ * <p>
+ * The frames are never modified after being built. This class is thread safe.
+ */
+public class OutgoingMessage {
+    /**
+     * The message to send.
+     */
+    private final JsonObject message;
+    /**
+     * The payloads encoded so far, indexed by {@link Encoding} ordinal. Guarded by {@code this}.
+     */
+    private final byte[][] payloads;
+    /**
+     * The frames built so far, indexed by {@link Encoding} and {@link Framing} ordinal. Guarded by {@code this}.
+     */
+    private final ByteBuffer[][] frames;
+
+    /**
+     * Creates a new OutgoingMessage wrapping the given message. The message must not be modified afterwards.
+     *
+     * @param message the message to send
+     * @throws IllegalArgumentException if {@code message} is null
+     */
+    public OutgoingMessage(JsonObject message) {
+        if (message == null) throw new IllegalArgumentException("message shouldn't be null");
+        this.message = message;
+        this.payloads = new byte[Encoding.values().length][];
+        this.frames = new ByteBuffer[Encoding.values().length][Framing.values().length];
+    }
+
+    /**
+     * Returns the message encoded as requested, encoding it if no recipient has needed it yet. Used by recipients whose
+     * frames cannot be shared, like the ones of compressed connections.
+     *
+     * @param encoding the {@link Encoding} of the recipient
+     * @return the payload of the message. The array must not be modified.
+     * @throws IllegalArgumentException if {@code encoding} is null
+     */
+    public synchronized byte[] payload(Encoding encoding) {
+        if (encoding == null) throw new IllegalArgumentException("encoding shouldn't be null");
+        byte[] payload = payloads[encoding.ordinal()];
+        if (payload == null) {
+            payload = encoding.encode(message);
+            payloads[encoding.ordinal()] = payload;
+        }
+        return payload;
+    }
+
+    /**
+     * Returns the message encoded and framed as requested, building the frame if no recipient has needed it yet. The
+     * returned buffer is a new view of the shared frame, so the caller can freely move its position.
+     *
+     * @param encoding the {@link Encoding} of the recipient
+     * @param framing  the {@link Framing} of the recipient
+     * @return a buffer containing the whole frame
+     * @throws IllegalArgumentException if any parameter is null
+     */
+    public synchronized ByteBuffer frame(Encoding encoding, Framing framing) {
+        if (encoding == null) throw new IllegalArgumentException("encoding shouldn't be null");
+        if (framing == null) throw new IllegalArgumentException("framing shouldn't be null");
+        ByteBuffer frame = frames[encoding.ordinal()][framing.ordinal()];
+        if (frame == null) {
+            frame = framing.frame(payload(encoding));
+            frames[encoding.ordinal()][framing.ordinal()] = frame;
+        }
+        return frame.duplicate();
+    }
+}
@@ -0,0 +1,188 @@
+package it.polimi.ingsw.server.net;
+
+import it.polimi.ingsw.ProgramOptions;
+import it.polimi.ingsw.server.Threads;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link Transport} backed by a blocking {@link Socket}. Writes are queued in an {@link OutboundQueue} and performed
+ * by a writer thread, started on the first write, so that callers never block on a client that is slow to read. If
+ * the queue crosses its high-water mark (see {@link ProgramOptions#getSendQueueLimit()}) the socket is closed, which
+ * makes the reading {@link Dispatcher} notice the disconnection.
+ * <p>
+ * Writes are coalesced: every time it wakes up, the writer thread takes all the buffers queued so far (up to
+ * {@link #COALESCE_LIMIT} bytes) and writes them with a single call, so that bursts of messages, like an update
+ * followed by the end of the match, cost one syscall and usually one TCP segment. A message sent alone is written as
+ * soon as the writer wakes up, without waiting for others.
+ * <p>
+ * The queue is guarded by a {@link ReentrantLock} rather than a monitor, so that virtual threads waiting on it do not
+ * pin their carrier.
+ */
+class SocketTransport implements Transport {
+    /**
+     * The maximum number of bytes copied together for a single write.
+     */
+    static final int COALESCE_LIMIT = 64 * 1024;
+    /**
+     * The maximum number of buffers coalesced into a single write.
+     */
+    private static final int MAX_GATHER = 64;
+    /**
+     * The wrapped {@link Socket}.
+     */
+    private final Socket socket;
+    /**
+     * Lock guarding {@link #queue} and {@link #writer}.
+     */
+    private final ReentrantLock lock;
+    /**
+     * Signalled when {@link #queue} stops being empty or the transport is closed.
+     */
+    private final Condition notEmpty;
+    /**
+     * The buffers waiting to be written. Guarded by {@link #lock}.
+     */
+    private final OutboundQueue queue;
+    /**
+     * The thread writing {@link #queue} to the socket, null until the first write. Guarded by {@link #lock}.
+     */
+    private Thread writer;
+    /**
+     * Whether the transport has been closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Creates a new SocketTransport wrapping the given {@link Socket}.
+     *
+     * @param socket the {@link Socket} to use
+     * @throws IllegalArgumentException if {@code socket} is null
+     */
+    SocketTransport(Socket socket) {
+        if (socket == null) throw new IllegalArgumentException("socket shouldn't be null");
+        this.socket = socket;
+        this.lock = new ReentrantLock();
+        this.notEmpty = lock.newCondition();
+        this.queue = new OutboundQueue(ProgramOptions.getSendQueueLimit());
+        this.closed = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The bytes are queued and written by the writer thread. If the queue is over its high-water mark the client is
+     * considered stalled and the socket is closed.
+     */
+    @Override
+    public void write(ByteBuffer data) {
+        if (closed) return;
+        lock.lock();
+        try {
+            if (queue.offer(data)) {
+                if (writer == null)
+                    writer = Threads.start("writer-" + socket.getRemoteSocketAddress(), this::drain);
+                notEmpty.signal();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        System.out.println("Client too slow, evicting...");
+        close();
+    }
+
+    /**
+     * Writer thread's loop: writes the queued buffers to the socket until the transport is closed. The lock is not held
+     * while writing, so that writers are never blocked by the network.
+     */
+    private void drain() {
+        ByteBuffer[] gathered = new ByteBuffer[MAX_GATHER];
+        byte[] scratch = new byte[0];
+        try {
+            OutputStream out = socket.getOutputStream();
+            while (true) {
+                int n;
+                lock.lock();
+                try {
+                    while (queue.isEmpty() && !closed)
+                        notEmpty.await();
+                    if (closed) return;
+                    n = queue.gather(gathered);
+                } finally {
+                    lock.unlock();
+                }
+                ByteBuffer head = gathered[0];
+                int length = head.remaining();
+                int count = 1;
+                while (count < n && length + gathered[count].remaining() <= COALESCE_LIMIT)
+                    length += gathered[count++].remaining();
+                if (count == 1) {
+                    out.write(head.array(), head.arrayOffset() + head.position(), length);
+                } else {
+                    if (scratch.length < length)
+                        scratch = new byte[Math.min(Integer.highestOneBit(length - 1) << 1, COALESCE_LIMIT)];
+                    int offset = 0;
+                    for (int i = 0; i < count; i++) {
+                        ByteBuffer b = gathered[i];
+                        System.arraycopy(b.array(), b.arrayOffset() + b.position(), scratch, offset, b.remaining());
+                        offset += b.remaining();
+                    }
+                    out.write(scratch, 0, length);
+                }
+                out.flush();
+                lock.lock();
+                try {
+                    for (int i = 0; i < count; i++)
+                        gathered[i].position(gathered[i].limit());
+                    queue.consumed(length);
+                } finally {
+                    lock.unlock();
+                }
+                Arrays.fill(gathered, 0, n, null);
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                System.out.println("Error while doing IO to socket: " + e);
+                close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            queue.clear();
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            System.out.println("Error while closing socket: " + e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isClosed() {
+        return closed || socket.isClosed();
+    }
+}
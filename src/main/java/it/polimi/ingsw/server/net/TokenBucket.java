@@ -0,0 +1,82 @@
+package it.polimi.ingsw.server.net;
+
+/**
+ * Token bucket limiting the rate of the messages received from a client. The bucket holds up to {@code capacity}
+ * tokens and is refilled at a constant rate; every message takes a token, and a message that finds the bucket empty is
+ * over the limit. A client can therefore send short bursts of up to {@code capacity} messages, but no more than
+ * {@code rate} messages per second on average.
+ * <p>
+ * Time is passed explicitly, in nanoseconds from an arbitrary origin (like {@link System#nanoTime()}). This class is not
+ * thread safe: each bucket is only used by the thread reading from its connection.
+ */
+class TokenBucket {
+    /**
+     * The number of nanoseconds in a second.
+     */
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    /**
+     * The maximum number of tokens.
+     */
+    private final long capacity;
+    /**
+     * The number of nanoseconds needed for refilling a token.
+     */
+    private final long nanosPerToken;
+    /**
+     * The number of tokens currently available.
+     */
+    private long tokens;
+    /**
+     * The instant of the last refill.
+     */
+    private long lastRefill;
+
+    /**
+     * Creates a new full TokenBucket.
+     *
+     * @param rate     the number of tokens refilled every second
+     * @param capacity the maximum number of tokens
+     * @param now      the current instant, in nanoseconds
+     * @throws IllegalArgumentException if {@code rate} or {@code capacity} is not positive
+     */
+    TokenBucket(int rate, int capacity, long now) {
+        if (rate <= 0) throw new IllegalArgumentException("rate should be > 0");
+        if (capacity <= 0) throw new IllegalArgumentException("capacity should be > 0");
+        this.capacity = capacity;
+        this.nanosPerToken = Math.max(NANOS_PER_SECOND / rate, 1);
+        this.tokens = capacity;
+        this.lastRefill = now;
+    }
+
+    /**
+     * Takes a token from the bucket, if there is any.
+     *
+     * @param now the current instant, in nanoseconds
+     * @return true if a token was taken, false if the bucket is empty
+     */
+    boolean tryTake(long now) {
+        refill(now);
+        if (tokens == 0) return false;
+        tokens--;
+        return true;
+    }
+
+    /**
+     * Adds the tokens accumulated since the last refill. The time that does not make up a whole token is carried over
+     * to the next refill, so that the rate is exact however often the bucket is used.
+     *
+     * @param now the current instant, in nanoseconds
+     */
+    private void refill(long now) {
+        long elapsed = now - lastRefill;
+        if (elapsed < nanosPerToken) return;
+        long refilled = elapsed / nanosPerToken;
+        if (tokens + refilled >= capacity) {
+            tokens = capacity;
+            lastRefill = now;
+        } else {
+            tokens += refilled;
+            lastRefill += refilled * nanosPerToken;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package it.polimi.ingsw.server.net;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The low level byte pipe a {@link Dispatcher} writes its messages to. Writes never block the caller: the bytes are
+ * queued in a bounded {@link OutboundQueue} and written by the I/O layer, and clients that let the queue fill up are
+ * disconnected.
+ *
+ * @see SocketTransport
+ * @see ChannelTransport
+ */
+interface Transport {
+    /**
+     * Queues the given bytes for writing to the underlying connection. The buffer must not be modified by the caller
+     * after this method has been called. If the queue is full the connection is closed.
+     *
+     * @param data the bytes to write
+     */
+    void write(ByteBuffer data);
+
+    /**
+     * Closes the underlying connection. Closing an already closed transport has no effect.
+     */
+    void close();
+
+    /**
+     * Returns whether the underlying connection has been closed.
+     *
+     * @return whether the underlying connection has been closed
+     */
+    boolean isClosed();
+}
@@ -2,6 +2,8 @@ package it.polimi.ingsw;
 
 import org.junit.jupiter.api.Test;
 
+import java.nio.file.Path;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -18,8 +20,21 @@ class MainTest {
         assertThrows(ParameterParsingException.class, () -> Main.fromCli(new String[]{"--port", "not a number"}));
         assertThrows(ParameterParsingException.class, () -> Main.fromCli(new String[]{"--address"}));
         assertThrows(ParameterParsingException.class, () -> Main.fromCli(new String[]{"--address", "0.1263.5...456"}));
+        assertThrows(ParameterParsingException.class, () -> Main.fromCli(new String[]{"--unix-socket"}));
         assertThrows(ParameterParsingException.class, () -> Main.fromCli(new String[]{"--persistence-store"}));
         assertThrows(ParameterParsingException.class, () -> Main.fromCli(new String[]{"--persistence-store", "./.gitignore"}));
+        assertThrows(ParameterParsingException.class, () -> Main.fromCli(new String[]{"--io-threads"}));
+        assertThrows(ParameterParsingException.class, () -> Main.fromCli(new String[]{"--io-threads", "0"}));
+        assertThrows(ParameterParsingException.class, () -> Main.fromCli(new String[]{"--max-frame-size"}));
+        assertThrows(ParameterParsingException.class, () -> Main.fromCli(new String[]{"--max-frame-size", "10"}));
+        assertThrows(ParameterParsingException.class, () -> Main.fromCli(new String[]{"--send-queue-limit"}));
+        assertThrows(ParameterParsingException.class, () -> Main.fromCli(new String[]{"--send-queue-limit", "100"}));
+        assertThrows(ParameterParsingException.class, () -> Main.fromCli(new String[]{"--max-connections"}));
+        assertThrows(ParameterParsingException.class, () -> Main.fromCli(new String[]{"--max-connections", "0"}));
+        assertThrows(ParameterParsingException.class, () -> Main.fromCli(new String[]{"--max-connections-per-ip"}));
+        assertThrows(ParameterParsingException.class, () -> Main.fromCli(new String[]{"--max-connections-per-ip", "0"}));
+        assertThrows(ParameterParsingException.class, () -> Main.fromCli(new String[]{"--command-rate"}));
+        assertThrows(ParameterParsingException.class, () -> Main.fromCli(new String[]{"--command-rate", "-1"}));
     }
 
     /**
@@ -46,6 +61,102 @@ class MainTest {
         assertEquals(1234, ProgramOptions.getPort());
     }
 
+    /**
+     * Checks that the number of I/O loops is correctly set
+     */
+    @Test
+    void setIoThreads() throws ParameterParsingException {
+        Main.fromCli(new String[]{"--io-threads", "3"});
+        assertEquals(3, ProgramOptions.getIoThreads());
+    }
+
+    /**
+     * Checks that the maximum frame size is correctly set
+     */
+    @Test
+    void setMaxFrameSize() throws ParameterParsingException {
+        Main.fromCli(new String[]{"--max-frame-size", "65536"});
+        assertEquals(65536, ProgramOptions.getMaxFrameSize());
+    }
+
+    /**
+     * Checks that the send queue limit is correctly set
+     */
+    @Test
+    void setSendQueueLimit() throws ParameterParsingException {
+        Main.fromCli(new String[]{"--send-queue-limit", "1048576"});
+        assertEquals(1048576, ProgramOptions.getSendQueueLimit());
+    }
+
+    /**
+     * Checks that the connection limits are correctly set
+     */
+    @Test
+    void setConnectionLimits() throws ParameterParsingException {
+        Main.fromCli(new String[]{"--max-connections", "1024", "--max-connections-per-ip", "32"});
+        assertEquals(1024, ProgramOptions.getMaxConnections());
+        assertEquals(32, ProgramOptions.getMaxConnectionsPerIp());
+    }
+
+    /**
+     * Checks that the command rate is correctly set
+     */
+    @Test
+    void setCommandRate() throws ParameterParsingException {
+        Main.fromCli(new String[]{"--command-rate", "20"});
+        assertEquals(20, ProgramOptions.getCommandRate());
+    }
+
+    /**
+     * Checks that length-prefixed framing is correctly requested
+     */
+    @Test
+    void setLengthPrefixed() throws ParameterParsingException {
+        Main.fromCli(new String[]{"--length-prefixed"});
+        assertTrue(ProgramOptions.usesLengthPrefix());
+        ProgramOptions.setUseLengthPrefix(false);
+    }
+
+    /**
+     * Checks that the binary encoding of updates is correctly requested
+     */
+    @Test
+    void setBinaryUpdates() throws ParameterParsingException {
+        Main.fromCli(new String[]{"--binary-updates"});
+        assertTrue(ProgramOptions.usesBinaryEncoding());
+        ProgramOptions.setUseBinaryEncoding(false);
+    }
+
+    /**
+     * Checks that compression is correctly requested
+     */
+    @Test
+    void setCompress() throws ParameterParsingException {
+        Main.fromCli(new String[]{"--compress"});
+        assertTrue(ProgramOptions.usesCompression());
+        ProgramOptions.setUseCompression(false);
+    }
+
+    /**
+     * Checks that the Unix domain socket path is correctly set
+     */
+    @Test
+    void setUnixSocket() throws ParameterParsingException {
+        Main.fromCli(new String[]{"--unix-socket", "/tmp/eryantis.sock"});
+        assertEquals(Path.of("/tmp/eryantis.sock"), ProgramOptions.getUnixSocket());
+        ProgramOptions.setUnixSocket(null);
+    }
+
+    /**
+     * Checks that virtual threads are correctly enabled
+     */
+    @Test
+    void setVirtualThreads() throws ParameterParsingException {
+        Main.fromCli(new String[]{"--virtual-threads"});
+        assertTrue(ProgramOptions.usesVirtualThreads());
+        ProgramOptions.setUseVirtualThreads(false);
+    }
+
     /**
      * Checks that the InetAddress is correctly set
      */
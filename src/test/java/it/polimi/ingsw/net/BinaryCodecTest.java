@@ -0,0 +1,170 @@
+package it.polimi.ingsw.net;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import it.polimi.ingsw.enums.PieceColor;
+import it.polimi.ingsw.server.controller.Messages;
+import it.polimi.ingsw.server.controller.RecordedMatch;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link BinaryCodec}.
+ */
+class BinaryCodecTest {
+    /**
+     * The keys whose values are lists of students.
+     */
+    private static final Set<String> STUDENT_LISTS = Set.of("entrance", "hall", "students");
+
+    /**
+     * Returns a copy of the given element where lists of students are sorted by color, like the decoder lists them.
+     *
+     * @param e the element
+     * @return the normalized copy
+     */
+    private static JsonElement normalize(JsonElement e) {
+        if (e.isJsonArray()) {
+            JsonArray ret = new JsonArray();
+            e.getAsJsonArray().forEach(x -> ret.add(normalize(x)));
+            return ret;
+        }
+        if (!e.isJsonObject()) return e;
+        JsonObject ret = new JsonObject();
+        e.getAsJsonObject().entrySet().forEach(entry -> {
+            if (STUDENT_LISTS.contains(entry.getKey()) && entry.getValue().isJsonArray()) {
+                List<JsonElement> students = new ArrayList<>();
+                entry.getValue().getAsJsonArray().forEach(students::add);
+                students.sort(Comparator.comparing(s -> PieceColor.valueOf(s.getAsString())));
+                JsonArray sorted = new JsonArray();
+                students.forEach(sorted::add);
+                ret.add(entry.getKey(), sorted);
+            } else {
+                ret.add(entry.getKey(), normalize(entry.getValue()));
+            }
+        });
+        return ret;
+    }
+
+    /**
+     * Encodes and decodes the given message.
+     *
+     * @param message the message
+     * @return the decoded message
+     */
+    private static JsonObject roundTrip(JsonObject message) {
+        byte[] encoded = BinaryCodec.encode(message).orElseThrow();
+        assertTrue(BinaryCodec.isBinary(encoded[0]));
+        return BinaryCodec.decode(encoded, 0, encoded.length);
+    }
+
+    /**
+     * Checks that every message of whole matches, full-state dumps included, survives a round trip and gets smaller.
+     */
+    @Test
+    void recordedMatches() {
+        for (int nPlayers = 2; nPlayers <= 3; nPlayers++) {
+            List<JsonObject> messages = RecordedMatch.play(nPlayers, true, nPlayers);
+            assertEquals("END", messages.get(messages.size() - 1).get("type").getAsString());
+            for (JsonObject m : messages) {
+                byte[] encoded = BinaryCodec.encode(m).orElseThrow();
+                assertTrue(encoded.length < m.toString().getBytes(StandardCharsets.UTF_8).length);
+                assertEquals(normalize(m), BinaryCodec.decode(encoded, 0, encoded.length));
+            }
+        }
+    }
+
+    /**
+     * Checks that error and end messages survive a round trip unchanged.
+     */
+    @Test
+    void errorAndEndMessages() {
+        JsonObject error = Messages.buildErrorMessage("Malformed JSON");
+        assertEquals(error, roundTrip(error));
+        JsonObject gameError = Messages.buildErrorMessage(42, "Wrong phase: èé");
+        assertEquals(gameError, roundTrip(gameError));
+        JsonObject end = Messages.buildEndMessage(300, "A winner has been found.", List.of("ann", "bob"));
+        assertEquals(end, roundTrip(end));
+    }
+
+    /**
+     * Checks that messages that the format cannot represent are not encoded.
+     */
+    @Test
+    void unencodableMessages() {
+        assertTrue(BinaryCodec.encode(Messages.buildPingMessage(1)).isEmpty());
+        assertTrue(BinaryCodec.encode(Messages.buildErrorMessage(-1, "negative id")).isEmpty());
+        assertTrue(BinaryCodec.encode(Handshake.buildHello(Framing.LENGTH_PREFIXED, Encoding.BINARY,
+                Compression.NONE)).isEmpty());
+
+        JsonObject unknownKey = JsonParser.parseString("{\"newKey\":1}").getAsJsonObject();
+        assertTrue(BinaryCodec.encode(Messages.buildUpdateMessage(unknownKey, 1)).isEmpty());
+        JsonObject mixedTowers = JsonParser.parseString(
+                "{\"islands\":[{\"ids\":[0],\"students\":[],\"towers\":[\"WHITE\",\"BLACK\"],\"blocks\":0}]}"
+        ).getAsJsonObject();
+        assertTrue(BinaryCodec.encode(Messages.buildUpdateMessage(mixedTowers, 1)).isEmpty());
+        JsonObject unknownColor = JsonParser.parseString("{\"clouds\":[{\"id\":0,\"students\":[\"ORANGE\"]}]}")
+                .getAsJsonObject();
+        assertTrue(BinaryCodec.encode(Messages.buildUpdateMessage(unknownColor, 1)).isEmpty());
+        JsonObject unsortedDeck = JsonParser.parseString("{\"boards\":[{\"username\":\"ann\",\"coins\":0," +
+                "\"entrance\":[],\"hall\":[],\"towers\":[],\"assistants\":[\"CAT\",\"CHEETAH\"]}]}").getAsJsonObject();
+        assertTrue(BinaryCodec.encode(Messages.buildUpdateMessage(unsortedDeck, 1)).isEmpty());
+
+        assertEquals("{\"type\":\"PING\",\"id\":1}",
+                new String(Encoding.BINARY.encode(Messages.buildPingMessage(1)), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Checks that corrupted messages are rejected.
+     */
+    @Test
+    void malformedMessages() {
+        byte[] encoded = BinaryCodec.encode(RecordedMatch.play(2, false, 0).get(1)).orElseThrow();
+        for (int length = 0; length < encoded.length; length++) {
+            int l = length;
+            assertThrows(IllegalArgumentException.class, () -> BinaryCodec.decode(encoded, 0, l));
+        }
+        byte[] trailing = Arrays.copyOf(encoded, encoded.length + 1);
+        assertThrows(IllegalArgumentException.class, () -> BinaryCodec.decode(trailing, 0, trailing.length));
+        assertThrows(IllegalArgumentException.class, () -> BinaryCodec.decode(new byte[]{0x7F}, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> BinaryCodec.decode(encoded, 1, encoded.length));
+        byte[] hugeCount = {BinaryCodec.ERROR, 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x7F};
+        assertThrows(IllegalArgumentException.class, () -> BinaryCodec.decode(hugeCount, 0, hugeCount.length));
+    }
+
+    /**
+     * Checks that length-prefixed frames holding binary messages are decoded by {@link FrameDecoder}, and that
+     * corrupted ones are reported as empty frames.
+     */
+    @Test
+    void frameDecoderDecodesBinaryFrames() throws IOException {
+        JsonObject end = Messages.buildEndMessage(3, "Everyone left", List.of());
+        ByteBuffer good = Framing.LENGTH_PREFIXED.frame(Encoding.BINARY.encode(end));
+        ByteBuffer bad = Framing.LENGTH_PREFIXED.frame(new byte[]{BinaryCodec.UPDATE});
+        ByteBuffer json = Framing.LENGTH_PREFIXED.frame(Encoding.JSON.encode(end));
+        ByteBuffer all = ByteBuffer.allocate(good.remaining() + bad.remaining() + json.remaining())
+                .put(good).put(bad).put(json);
+
+        FrameDecoder d = new FrameDecoder(1024);
+        d.setFraming(Framing.LENGTH_PREFIXED);
+        d.readFrom(new ByteArrayInputStream(all.array()));
+        assertTrue(d.hasFrame());
+        assertEquals(end, d.nextFrame().orElseThrow());
+        assertTrue(d.nextFrame().isEmpty());
+        assertEquals(end, d.nextFrame().orElseThrow());
+        assertFalse(d.hasFrame());
+    }
+}
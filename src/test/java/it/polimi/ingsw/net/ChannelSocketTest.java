@@ -0,0 +1,122 @@
+package it.polimi.ingsw.net;
+
+import it.polimi.ingsw.server.net.Dispatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link ChannelSocket}, over a Unix domain socket.
+ */
+class ChannelSocketTest {
+    /**
+     * The directory holding the socket.
+     */
+    private Path dir;
+    /**
+     * The listening socket.
+     */
+    private ServerSocketChannel server;
+
+    /**
+     * Opens a Unix domain socket in a temporary directory.
+     */
+    @BeforeEach
+    void listen() throws IOException {
+        dir = Files.createTempDirectory("eryantis");
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(dir.resolve("sock")));
+    }
+
+    /**
+     * Closes the socket and removes the temporary directory.
+     */
+    @AfterEach
+    void close() throws IOException {
+        server.close();
+        Files.deleteIfExists(dir.resolve("sock"));
+        Files.delete(dir);
+    }
+
+    /**
+     * Reads exactly the given number of bytes from the given stream.
+     *
+     * @param in the stream
+     * @param n  the number of bytes
+     * @return the bytes read, as a string
+     */
+    private static String read(InputStream in, int n) throws IOException {
+        return new String(in.readNBytes(n), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks that a thread blocked reading from a socket doesn't prevent another one from writing to it.
+     */
+    @Test
+    void concurrentReadAndWrite() throws Exception {
+        try (ChannelSocket client = ChannelSocket.connect(dir.resolve("sock"));
+             ChannelSocket accepted = new ChannelSocket(server.accept())) {
+            assertTrue(client.isConnected());
+            CompletableFuture<String> reply = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return read(client.getInputStream(), 4);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            Thread.sleep(100);
+            client.getOutputStream().write("ping".getBytes(StandardCharsets.UTF_8));
+            assertEquals("ping", read(accepted.getInputStream(), 4));
+            accepted.getOutputStream().write("pong".getBytes(StandardCharsets.UTF_8));
+            assertEquals("pong", reply.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * Checks that a {@link Dispatcher} serves a local connection like a TCP one, and that it notices its closing.
+     */
+    @Test
+    void dispatcherOverUnixSocket() throws Exception {
+        ChannelSocket client = ChannelSocket.connect(dir.resolve("sock"));
+        try {
+            Dispatcher d = new Dispatcher(new ChannelSocket(server.accept()));
+            CompletableFuture<Void> closed = new CompletableFuture<>();
+            d.setOnClose(() -> closed.complete(null));
+            Thread reader = new Thread(d);
+            reader.start();
+
+            client.getOutputStream().write("x\n\n".getBytes(StandardCharsets.UTF_8));
+            String expected = "{\"type\":\"ERROR\",\"reason\":\"Malformed JSON\"}\n\n";
+            assertEquals(expected, read(client.getInputStream(), expected.length()));
+            client.close();
+            assertTrue(client.isClosed());
+            closed.get(5, TimeUnit.SECONDS);
+            reader.join(5000);
+            assertFalse(reader.isAlive());
+        } finally {
+            client.close();
+        }
+    }
+
+    /**
+     * Checks that connecting to a path nobody listens on fails.
+     */
+    @Test
+    void connectionRefused() {
+        assertThrows(IOException.class, () -> ChannelSocket.connect(dir.resolve("nobody")));
+        assertThrows(IllegalArgumentException.class, () -> ChannelSocket.connect((Path) null));
+    }
+}
@@ -0,0 +1,154 @@
+package it.polimi.ingsw.net;
+
+import com.google.gson.JsonObject;
+import it.polimi.ingsw.server.controller.RecordedMatch;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.Deflater;
+
+/**
+ * Benchmark measuring the bandwidth saved by {@link Compression#DEFLATE} on the traffic of whole recorded matches
+ * (see {@link RecordedMatch}), in both directions and for both {@link Encoding}s, and its CPU cost. Each match is sent
+ * through its own {@link FrameEncoder} and {@link FrameDecoder}, like a real connection; the same stream compressed
+ * without the preset dictionary is reported for comparison, both as a whole and for the first messages of the
+ * connection, where the dictionary matters the most. The matches used here are not the ones the dictionary was built
+ * from (see {@link DictionaryBuilder}).
+ * <p>
+ * Usage: {@code java -cp ... CompressionBenchmark [seeds]}
+ */
+public class CompressionBenchmark {
+    /**
+     * The number of messages at the start of each connection reported separately.
+     */
+    private static final int FIRST = 10;
+    /**
+     * The first seed used, so that the matches differ from the ones of the dictionary.
+     */
+    private static final int FIRST_SEED = 100;
+
+    /**
+     * Entry point of the benchmark.
+     *
+     * @param args optionally, the number of matches to record for each configuration
+     * @throws IOException if decoding fails
+     */
+    public static void main(String[] args) throws IOException {
+        int seeds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        report(2, true, 3, false);
+        for (int nPlayers = 2; nPlayers <= 3; nPlayers++)
+            for (boolean expert : new boolean[]{false, true})
+                report(nPlayers, expert, seeds, true);
+    }
+
+    /**
+     * Records the given number of matches with the given configuration and prints the size of their traffic, with and
+     * without compression, and the time spent compressing and decompressing it.
+     *
+     * @param nPlayers the number of players
+     * @param expert   whether the matches are in expert mode
+     * @param seeds    the number of matches to record
+     * @param print    whether to print the results, false for warming up
+     * @throws IOException if decoding fails
+     */
+    private static void report(int nPlayers, boolean expert, int seeds, boolean print) throws IOException {
+        if (print) System.out.println("nPlayers=" + nPlayers + " expert=" + expert + " matches=" + seeds);
+        List<List<byte[]>> down = new ArrayList<>(), downBinary = new ArrayList<>(), up = new ArrayList<>();
+        for (int seed = FIRST_SEED; seed < FIRST_SEED + seeds; seed++) {
+            List<JsonObject> commands = new ArrayList<>();
+            List<JsonObject> messages = RecordedMatch.play(nPlayers, expert, seed, commands);
+            down.add(messages.stream().map(Encoding.JSON::encode).toList());
+            downBinary.add(messages.stream().map(Encoding.BINARY::encode).toList());
+            up.add(commands.stream().map(c -> c.toString().getBytes(StandardCharsets.UTF_8)).toList());
+        }
+        measure("server json", down, print);
+        measure("server binary", downBinary, print);
+        measure("client json", up, print);
+    }
+
+    /**
+     * Compresses and decompresses the given connections and prints the results.
+     *
+     * @param name        the name of the traffic
+     * @param connections the payloads sent on each connection
+     * @param print       whether to print the results
+     * @throws IOException if decoding fails
+     */
+    private static void measure(String name, List<List<byte[]>> connections, boolean print) throws IOException {
+        long raw = 0, plain = 0, dict = 0, rawFirst = 0, plainFirst = 0, dictFirst = 0, count = 0;
+        long deflateNanos = 0, inflateNanos = 0, frameNanos = 0, parseNanos = 0;
+        for (List<byte[]> payloads : connections) {
+            FrameEncoder encoder = new FrameEncoder(Framing.LENGTH_PREFIXED, Compression.DEFLATE);
+            FrameDecoder decoder = new FrameDecoder(16 * 1024 * 1024);
+            decoder.setFraming(Framing.LENGTH_PREFIXED);
+            decoder.setCompression(Compression.DEFLATE);
+            FrameEncoder plainEncoder = new FrameEncoder(Framing.LENGTH_PREFIXED, Compression.NONE);
+            FrameDecoder plainDecoder = new FrameDecoder(16 * 1024 * 1024);
+            plainDecoder.setFraming(Framing.LENGTH_PREFIXED);
+            Deflater noDictionary = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            byte[] out = new byte[1024 * 1024];
+            for (int i = 0; i < payloads.size(); i++) {
+                byte[] payload = payloads.get(i);
+                long start = System.nanoTime();
+                ByteBuffer frame = encoder.frame(payload);
+                long middle = System.nanoTime();
+                if (decode(decoder, frame).isEmpty())
+                    throw new IllegalStateException("message " + i + " not decoded");
+                inflateNanos += System.nanoTime() - middle;
+                deflateNanos += middle - start;
+
+                start = System.nanoTime();
+                ByteBuffer plainFrame = plainEncoder.frame(payload);
+                middle = System.nanoTime();
+                if (decode(plainDecoder, plainFrame).isEmpty())
+                    throw new IllegalStateException("message " + i + " not decoded");
+                parseNanos += System.nanoTime() - middle;
+                frameNanos += middle - start;
+
+                noDictionary.setInput(payload);
+                int plainSize = noDictionary.deflate(out, 0, out.length, Deflater.SYNC_FLUSH);
+                int dictSize = frame.limit() - Framing.HEADER_SIZE;
+                raw += payload.length;
+                plain += plainSize;
+                dict += dictSize;
+                if (i < FIRST) {
+                    rawFirst += payload.length;
+                    plainFirst += plainSize;
+                    dictFirst += dictSize;
+                }
+                count++;
+            }
+            noDictionary.end();
+        }
+        if (!print) return;
+        System.out.printf("  %-13s messages=%5d raw=%8dB deflate=%7dB (%.3f) deflate+dictionary=%7dB (%.3f)%n",
+                name, count, raw, plain, (double) plain / raw, dict, (double) dict / raw);
+        System.out.printf("  %-13s first %d per connection: raw=%6dB deflate=%6dB (%.3f) " +
+                        "deflate+dictionary=%6dB (%.3f)%n", "", FIRST, rawFirst, plainFirst,
+                (double) plainFirst / rawFirst, dictFirst, (double) dictFirst / rawFirst);
+        System.out.printf("  %-13s per message: deflate+frame=%.1fus inflate+parse=%.1fus " +
+                        "(uncompressed: frame=%.1fus parse=%.1fus)%n", "", deflateNanos / 1000.0 / count,
+                inflateNanos / 1000.0 / count, frameNanos / 1000.0 / count, parseNanos / 1000.0 / count);
+    }
+
+    /**
+     * Feeds the given frame to the given decoder and decodes it.
+     *
+     * @param decoder the decoder
+     * @param frame   the frame
+     * @return the decoded message
+     * @throws IOException if reading fails
+     */
+    private static Optional<JsonObject> decode(FrameDecoder decoder, ByteBuffer frame) throws IOException {
+        InputStream in = new ByteArrayInputStream(frame.array(), 0, frame.limit());
+        while (!decoder.hasFrame())
+            decoder.readFrom(in);
+        return decoder.nextFrame();
+    }
+}
@@ -0,0 +1,87 @@
+package it.polimi.ingsw.net;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link ControlFrame}.
+ */
+class ControlFrameTest {
+    /**
+     * Matches the given string.
+     *
+     * @param s the payload
+     * @return the matched frame, or null
+     */
+    private static ControlFrame match(String s) {
+        byte[] padded = ("xx" + s + "yy").getBytes(StandardCharsets.UTF_8);
+        return ControlFrame.match(padded, 2, padded.length - 4);
+    }
+
+    /**
+     * Matches the given string as if it were sent by the server.
+     *
+     * @param s the payload
+     * @return the matched frame, or null
+     */
+    private static ControlFrame matchFromServer(String s) {
+        byte[] padded = ("xx" + s + "yy").getBytes(StandardCharsets.UTF_8);
+        return ControlFrame.matchFromServer(padded, 2, padded.length - 4);
+    }
+
+    /**
+     * Checks that the messages sent by the client are recognized, with or without their delimiter.
+     */
+    @Test
+    void recognized() {
+        assertSame(ControlFrame.HEARTBEAT, match("{\"type\":\"HEARTBEAT\"}"));
+        assertSame(ControlFrame.HEARTBEAT, match("{\"type\":\"HEARTBEAT\"}\r\n\r\n"));
+        ControlFrame pong = match("{\"type\":\"PONG\",\"gameId\":42}\n\n");
+        assertNotNull(pong);
+        assertEquals(ControlFrame.Type.PONG, pong.getType());
+        assertEquals(42, pong.getGameId());
+        assertEquals(0, match("{\"type\":\"PONG\",\"gameId\":0}").getGameId());
+        assertEquals(999_999_999_999_999_999L, match("{\"type\":\"PONG\",\"gameId\":999999999999999999}").getGameId());
+    }
+
+    /**
+     * Checks that anything that is not exactly a control frame is left to the parser.
+     */
+    @Test
+    void notRecognized() {
+        assertNull(match(""));
+        assertNull(match("{\"type\":\"HEARTBEAT\"} "));
+        assertNull(match("{ \"type\":\"HEARTBEAT\"}"));
+        assertNull(match("{\"type\":\"HEARTBEAT\",\"x\":1}"));
+        assertNull(match("{\"type\":\"PONG\",\"gameId\":}"));
+        assertNull(match("{\"type\":\"PONG\",\"gameId\":-1}"));
+        assertNull(match("{\"type\":\"PONG\",\"gameId\":1.5}"));
+        assertNull(match("{\"type\":\"PONG\",\"gameId\":\"1\"}"));
+        assertNull(match("{\"type\":\"PONG\",\"gameId\":1,\"x\":2}"));
+        assertNull(match("{\"type\":\"PONG\",\"gameId\":1234567890123456789}"));
+        assertNull(match("{\"gameId\":1,\"type\":\"PONG\"}"));
+        assertNull(match("{\"type\":\"FETCH\"}"));
+    }
+
+    /**
+     * Checks that the messages sent by the server are recognized, and that they are told apart from the ones sent by
+     * the client.
+     */
+    @Test
+    void fromServer() {
+        assertSame(ControlFrame.HEARTBEAT, matchFromServer("{\"type\":\"HEARTBEAT\"}\n\n"));
+        ControlFrame ping = matchFromServer("{\"type\":\"PING\",\"id\":7}\r\n\r\n");
+        assertNotNull(ping);
+        assertEquals(ControlFrame.Type.PING, ping.getType());
+        assertEquals(7, ping.getGameId());
+        assertNull(matchFromServer("{\"type\":\"PONG\",\"gameId\":7}"));
+        assertNull(matchFromServer("{\"type\":\"PING\",\"gameId\":7}"));
+        assertNull(matchFromServer("{\"type\":\"PING\",\"id\":-7}"));
+        assertNull(matchFromServer("{\"type\":\"PING\",\"id\":7,\"x\":1}"));
+        assertNull(matchFromServer("{\"id\":7,\"type\":\"PING\"}"));
+        assertNull(match("{\"type\":\"PING\",\"id\":7}"));
+    }
+}
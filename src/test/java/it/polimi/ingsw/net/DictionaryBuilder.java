@@ -0,0 +1,223 @@
+package it.polimi.ingsw.net;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonStreamParser;
+import it.polimi.ingsw.ProgramOptions;
+import it.polimi.ingsw.server.controller.Messages;
+import it.polimi.ingsw.server.controller.MatchRegistry;
+import it.polimi.ingsw.server.controller.RecordedMatch;
+import it.polimi.ingsw.server.net.Dispatcher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+
+/**
+ * Tool generating the preset dictionary used by {@link Compression#DEFLATE} from real protocol traffic:
+ * <ul>
+ *     <li>the commands of {@code docs/example-commands.txt}, replayed against the {@link MatchRegistry}, together with
+ *     the answers the server sends back (lobby lists, errors, the updates of the lobby phase);</li>
+ *     <li>the commands and the messages of whole matches recorded with {@link RecordedMatch}, keeping one sample for
+ *     each kind of message.</li>
+ * </ul>
+ * Samples are written from the least to the most frequent kind, so that the most common strings end up closest to
+ * the data being compressed, where DEFLATE encodes references to them in fewer bits. Since students are drawn at
+ * random, the output differs slightly between runs. It should be regenerated (and both ends of the protocol updated)
+ * whenever the format of the messages changes.
+ * <p>
+ * Usage: {@code java -cp ... DictionaryBuilder [examples] [output]}
+ */
+public class DictionaryBuilder {
+    /**
+     * The maximum size of the dictionary: DEFLATE can't refer further back than this.
+     */
+    private static final int MAX_SIZE = 32 * 1024;
+
+    /**
+     * Entry point of the tool.
+     *
+     * @param args optionally, the path of the example commands and of the output file
+     * @throws Exception if the dictionary can't be generated
+     */
+    public static void main(String[] args) throws Exception {
+        Path examples = Path.of(args.length > 0 ? args[0] : "docs/example-commands.txt");
+        Path output = Path.of(args.length > 1 ? args[1] : "src/main/resources/net/deflate-dictionary.txt");
+
+        Map<String, String> replayed = new LinkedHashMap<>();
+        replay(examples, replayed);
+        List<String> rare = new ArrayList<>(replayed.values());
+        List<String> frequent = new ArrayList<>();
+        rare.add(Messages.buildEndMessage(0, "A winner has been found.", List.of("player0")).toString());
+        rare.add(Handshake.buildHello(Framing.LENGTH_PREFIXED, Encoding.JSON, Compression.DEFLATE).toString());
+
+        Map<String, String> diffs = new LinkedHashMap<>();
+        Map<String, String> commands = new LinkedHashMap<>();
+        String dump = null;
+        for (int nPlayers = 2; nPlayers <= 3; nPlayers++) {
+            List<JsonObject> played = new ArrayList<>();
+            for (JsonObject m : RecordedMatch.play(nPlayers, nPlayers == 2, 0, played)) {
+                if (!m.get("type").getAsString().equals("UPDATE")) continue;
+                if (m.get("rejoining").getAsBoolean())
+                    dump = m.toString();
+                else
+                    diffs.putIfAbsent(shape(m), m.toString());
+            }
+            for (JsonObject c : played)
+                commands.putIfAbsent(c.get("type").getAsString(), c.toString());
+        }
+        frequent.addAll(diffs.values());
+        frequent.add(dump);
+        frequent.addAll(commands.values());
+        frequent.add("{\"type\":\"HEARTBEAT\"}");
+        frequent.add(Messages.buildPingMessage(0).toString());
+        frequent.add("{\"type\":\"PONG\",\"gameId\":0}");
+
+        StringBuilder dictionary = new StringBuilder();
+        for (String s : rare) dictionary.append(s).append('\n');
+        for (String s : frequent) dictionary.append(s).append('\n');
+        byte[] bytes = dictionary.toString().getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_SIZE)
+            bytes = Arrays.copyOfRange(bytes, bytes.length - MAX_SIZE, bytes.length);
+        Files.createDirectories(output.getParent());
+        Files.write(output, bytes);
+        System.out.println("Wrote " + bytes.length + " bytes (" + rare.size() + " rare and " + frequent.size() +
+                " frequent samples) to " + output);
+        System.exit(0);
+    }
+
+    /**
+     * Returns a string identifying the kind of the given message: its type and, for updates, the keys of the diff.
+     *
+     * @param message the message
+     * @return the kind of the message
+     */
+    private static String shape(JsonObject message) {
+        String type = message.get("type").getAsString();
+        JsonObject update = message.getAsJsonObject("update");
+        if (update == null) return type;
+        return type + ":" + new TreeSet<>(update.keySet());
+    }
+
+    /**
+     * Replays the given example commands against the {@link MatchRegistry}, one connection per username, and puts in
+     * the given map the commands, as sent by a client, and the messages received by the connections, one for each
+     * kind.
+     *
+     * @param examples the path of the example commands
+     * @param samples  the map receiving the samples, keyed by kind
+     * @throws IOException          if the examples can't be read
+     * @throws InterruptedException if interrupted while waiting for the answers
+     */
+    private static void replay(Path examples, Map<String, String> samples) throws IOException, InterruptedException {
+        ProgramOptions.setUsePersistence(false);
+        ProgramOptions.setUsePing(false);
+        String text = Files.readAllLines(examples).stream()
+                .filter(l -> !l.trim().startsWith("//"))
+                .collect(Collectors.joining("\n"));
+        Map<String, CaptureSocket> sockets = new LinkedHashMap<>();
+        Map<String, Dispatcher> dispatchers = new LinkedHashMap<>();
+        JsonStreamParser parser = new JsonStreamParser(text);
+        while (parser.hasNext()) {
+            JsonObject command = parser.next().getAsJsonObject();
+            samples.putIfAbsent(shape(command), command.toString());
+            String user = command.has("username") ? command.get("username").getAsString() : "";
+            Dispatcher d = dispatchers.computeIfAbsent(user, u -> {
+                CaptureSocket s = new CaptureSocket();
+                sockets.put(u, s);
+                return new Dispatcher(s);
+            });
+            MatchRegistry.getInstance().executeCommand(d, command);
+            Thread.sleep(100);
+        }
+        for (CaptureSocket s : sockets.values())
+            for (String frame : s.received().split("\n\n"))
+                if (!frame.isBlank()) {
+                    JsonObject message = JsonParser.parseString(frame).getAsJsonObject();
+                    samples.putIfAbsent(shape(message), message.toString());
+                }
+    }
+
+    /**
+     * A {@link Socket} whose input blocks until it is closed and whose output is captured.
+     */
+    private static class CaptureSocket extends Socket {
+        /**
+         * Released when the socket is closed.
+         */
+        private final CountDownLatch closed = new CountDownLatch(1);
+        /**
+         * The bytes written to the socket.
+         */
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+        /**
+         * Returns what has been written to the socket so far.
+         *
+         * @return the bytes written, as a string
+         */
+        String received() {
+            synchronized (written) {
+                return written.toString(StandardCharsets.UTF_8);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public InputStream getInputStream() {
+            return new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    try {
+                        closed.await();
+                    } catch (InterruptedException ignored) {
+                    }
+                    return -1;
+                }
+            };
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public OutputStream getOutputStream() {
+            return new OutputStream() {
+                @Override
+                public void write(int b) {
+                    write(new byte[]{(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    synchronized (written) {
+                        written.write(b, off, len);
+                    }
+                }
+            };
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public synchronized void close() {
+            closed.countDown();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package it.polimi.ingsw.net;
+
+import com.google.gson.JsonObject;
+import it.polimi.ingsw.server.controller.RecordedMatch;
+
+import java.util.List;
+
+/**
+ * Benchmark comparing the size of the messages sent during whole recorded matches (see {@link RecordedMatch}) when
+ * encoded as JSON and with {@link BinaryCodec}. Diffs, full-state dumps (the {@code UPDATE} messages sent to rejoining
+ * players) and the final {@code END} message are reported separately, together with the time spent encoding.
+ * <p>
+ * Usage: {@code java -cp ... EncodingSizeBenchmark [seeds]}
+ */
+public class EncodingSizeBenchmark {
+    /**
+     * Entry point of the benchmark.
+     *
+     * @param args optionally, the number of matches to record for each configuration
+     */
+    public static void main(String[] args) {
+        int seeds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        for (int nPlayers = 2; nPlayers <= 3; nPlayers++)
+            for (boolean expert : new boolean[]{false, true})
+                report(nPlayers, expert, seeds);
+    }
+
+    /**
+     * Records the given number of matches with the given configuration and prints the sizes of their messages.
+     *
+     * @param nPlayers the number of players
+     * @param expert   whether the matches are in expert mode
+     * @param seeds    the number of matches to record
+     */
+    private static void report(int nPlayers, boolean expert, int seeds) {
+        long[] json = new long[3];
+        long[] binary = new long[3];
+        long[] count = new long[3];
+        long jsonNanos = 0, binaryNanos = 0;
+        for (int seed = 0; seed < seeds; seed++) {
+            List<JsonObject> messages = RecordedMatch.play(nPlayers, expert, seed);
+            for (JsonObject m : messages) {
+                int kind = m.get("type").getAsString().equals("END") ? 2 :
+                        m.get("rejoining").getAsBoolean() ? 1 : 0;
+                long start = System.nanoTime();
+                json[kind] += Encoding.JSON.encode(m).length;
+                long middle = System.nanoTime();
+                binary[kind] += Encoding.BINARY.encode(m).length;
+                binaryNanos += System.nanoTime() - middle;
+                jsonNanos += middle - start;
+                count[kind]++;
+            }
+        }
+        String[] kinds = {"diffs", "dumps", "end"};
+        System.out.println("nPlayers=" + nPlayers + " expert=" + expert + " matches=" + seeds);
+        for (int k = 0; k < kinds.length; k++)
+            System.out.printf("  %-5s messages=%5d json=%8dB binary=%7dB ratio=%.3f%n",
+                    kinds[k], count[k], json[k], binary[k], (double) binary[k] / json[k]);
+        long totalJson = json[0] + json[1] + json[2];
+        long totalBinary = binary[0] + binary[1] + binary[2];
+        System.out.printf("  total json=%8dB binary=%7dB ratio=%.3f encodeJson=%dms encodeBinary=%dms%n",
+                totalJson, totalBinary, (double) totalBinary / totalJson,
+                jsonNanos / 1_000_000, binaryNanos / 1_000_000);
+    }
+}
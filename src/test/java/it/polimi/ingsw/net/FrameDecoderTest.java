@@ -0,0 +1,218 @@
+package it.polimi.ingsw.net;
+
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link FrameDecoder}.
+ */
+class FrameDecoderTest {
+    /**
+     * Reads everything from the given stream, one byte at a time, collecting all the decoded frames.
+     *
+     * @param decoder the decoder to use
+     * @param in      the stream to read from
+     * @return a string describing the decoded frames: "E" for an empty Optional, "L" for a frame too long, the type
+     * of the object otherwise
+     */
+    private static String decodeAll(FrameDecoder decoder, InputStream in) throws IOException {
+        StringBuilder result = new StringBuilder();
+        do {
+            while (true) {
+                try {
+                    if (!decoder.hasFrame()) break;
+                    Optional<JsonObject> frame = decoder.nextFrame();
+                    result.append(frame.map(o -> o.get("type").getAsString()).orElse("E")).append(' ');
+                } catch (FrameTooLongException e) {
+                    result.append("L ");
+                }
+            }
+        } while (decoder.readFrom(in) >= 0);
+        return result.toString().trim();
+    }
+
+    /**
+     * Returns a stream that hands out the given string, encoded in UTF-8, one byte per read.
+     *
+     * @param s the content of the stream
+     * @return the stream
+     */
+    private static InputStream trickle(String s) {
+        return trickle(new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Wraps the given stream so that it hands out a byte per read.
+     *
+     * @param in the stream to wrap
+     * @return the wrapped stream
+     */
+    private static InputStream trickle(InputStream in) {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                return in.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return len == 0 ? 0 : in.read(b, off, 1);
+            }
+        };
+    }
+
+    /**
+     * Checks that frames are split on empty lines, whether they arrive all at once or split across reads.
+     */
+    @Test
+    void splitsOnEmptyLines() throws IOException {
+        String stream = "{\"type\":\"A\"}\n\n{\n\"type\":\"B\"\n}\r\n\r\n{\"type\":\"C\"}\n\n";
+        assertEquals("A B C",
+                decodeAll(new FrameDecoder(1024), new ByteArrayInputStream(stream.getBytes(StandardCharsets.UTF_8))));
+        assertEquals("A B C", decodeAll(new FrameDecoder(1024), trickle(stream)));
+    }
+
+    /**
+     * Checks that frames that aren't JSON objects are reported as empty.
+     */
+    @Test
+    void malformedFrames() throws IOException {
+        String stream = "{\"type\":\n\n\n[1, 2]\n\n{\"type\":\"è\"}\n\n";
+        assertEquals("E E E è", decodeAll(new FrameDecoder(1024), trickle(stream)));
+    }
+
+    /**
+     * Checks that frames longer than the limit are discarded without compromising the following ones.
+     */
+    @Test
+    void oversizeFrames() throws IOException {
+        String big = "{\"type\":\"" + "x".repeat(300) + "\"}\n\n";
+        String stream = "{\"type\":\"A\"}\n\n" + big + "{\"type\":\"B\"}\n\n" + big + big + "{\"type\":\"C\"}\n\n";
+        assertEquals("A L B L L C", decodeAll(new FrameDecoder(256), trickle(stream)));
+        assertEquals("A L B L L C",
+                decodeAll(new FrameDecoder(256), new ByteArrayInputStream(stream.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    /**
+     * Concatenates the given messages, each one framed with the given {@link Framing}.
+     *
+     * @param framing  the {@link Framing} to use
+     * @param messages the messages
+     * @return the resulting stream
+     */
+    private static String framed(Framing framing, String... messages) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String m : messages) {
+            ByteBuffer b = framing.frame(m.getBytes(StandardCharsets.UTF_8));
+            out.write(b.array(), b.position(), b.remaining());
+        }
+        return out.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Checks that length-prefixed frames are decoded, and that the ones that are too long are skipped.
+     */
+    @Test
+    void lengthPrefixedFrames() throws IOException {
+        String big = "{\"type\":\"" + "x".repeat(300) + "\"}";
+        String stream = framed(Framing.LENGTH_PREFIXED,
+                "{\"type\":\"A\"}", big, "{\"type\":\"B\"}", "", "{\n\n\"type\":\"C\"}", big, big);
+        FrameDecoder d = new FrameDecoder(256);
+        d.setFraming(Framing.LENGTH_PREFIXED);
+        assertEquals("A L B E C L L", decodeAll(d, latin1(stream, true)));
+        d = new FrameDecoder(256);
+        d.setFraming(Framing.LENGTH_PREFIXED);
+        assertEquals("A L B E C L L", decodeAll(d, latin1(stream, false)));
+    }
+
+    /**
+     * Checks that the framing can be switched between two frames, even if the following bytes have already been read.
+     */
+    @Test
+    void switchFraming() throws IOException {
+        String stream = framed(Framing.DELIMITED, "{\"type\":\"HELLO\"}")
+                + framed(Framing.LENGTH_PREFIXED, "{\"type\":\"A\"}", "{\"type\":\"B\"}");
+        FrameDecoder d = new FrameDecoder(256);
+        d.readFrom(latin1(stream, false));
+        assertTrue(d.hasFrame());
+        assertThrows(IllegalStateException.class, () -> d.setFraming(Framing.LENGTH_PREFIXED));
+        assertEquals("HELLO", d.nextFrame().orElseThrow().get("type").getAsString());
+        d.setFraming(Framing.LENGTH_PREFIXED);
+        assertEquals("A B", decodeAll(d, InputStream.nullInputStream()));
+    }
+
+    /**
+     * Returns a stream containing the given string, whose characters are taken as bytes.
+     *
+     * @param s       the content of the stream
+     * @param trickle whether the stream should hand out a byte per read
+     * @return the stream
+     */
+    private static InputStream latin1(String s, boolean trickle) {
+        if (trickle) return trickle(new ByteArrayInputStream(s.getBytes(StandardCharsets.ISO_8859_1)));
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Checks that control frames are consumed without being parsed, and that other frames are left for
+     * {@link FrameDecoder#nextFrame()}.
+     */
+    @Test
+    void controlFrames() throws IOException {
+        FrameDecoder d = new FrameDecoder(1024);
+        d.readFrom(new ByteArrayInputStream(("{\"type\":\"HEARTBEAT\"}\n\n{\"type\":\"FETCH\"}\n\n" +
+                "{\"type\":\"PONG\",\"gameId\":3}\n\n").getBytes(StandardCharsets.UTF_8)));
+        assertSame(ControlFrame.HEARTBEAT, d.nextControlFrame());
+        assertNull(d.nextControlFrame());
+        assertNull(d.nextControlFrame());
+        assertEquals("FETCH", d.nextFrame().orElseThrow().get("type").getAsString());
+        assertEquals(3, d.nextControlFrame().getGameId());
+        assertFalse(d.hasFrame());
+        assertThrows(IllegalStateException.class, d::nextControlFrame);
+    }
+
+    /**
+     * Checks that a frame is consumed by a {@link PayloadReader} only if it recognizes it, and that binary payloads are
+     * never passed to it.
+     */
+    @Test
+    void payloadReader() throws IOException {
+        PayloadReader<String> reader = (src, offset, length) -> src[offset + 2] == 'a' ?
+                new String(src, offset, length, StandardCharsets.UTF_8).strip() : null;
+        FrameDecoder d = new FrameDecoder(1024);
+        d.readFrom(new ByteArrayInputStream("{\"a\":1}\n\n{\"b\":2}\n\n".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("{\"a\":1}", d.nextFrame(reader));
+        assertNull(d.nextFrame(reader));
+        assertEquals(2, d.nextFrame().orElseThrow().get("b").getAsInt());
+        assertThrows(IllegalStateException.class, () -> d.nextFrame(reader));
+        assertThrows(IllegalArgumentException.class, () -> d.nextFrame(null));
+
+        JsonObject error = new JsonObject();
+        error.addProperty("type", "ERROR");
+        error.addProperty("reason", "a");
+        ByteBuffer binary = Framing.LENGTH_PREFIXED.frame(BinaryCodec.encode(error).orElseThrow());
+        d.setFraming(Framing.LENGTH_PREFIXED);
+        d.readFrom(new ByteArrayInputStream(binary.array(), binary.position(), binary.remaining()));
+        assertNull(d.nextFrame((src, offset, length) -> "read"));
+        assertEquals(error, d.nextFrame().orElseThrow());
+    }
+
+    /**
+     * Checks that {@link FrameDecoder#nextFrame()} can't be called if no frame is available.
+     */
+    @Test
+    void noFrameAvailable() {
+        assertThrows(IllegalArgumentException.class, () -> new FrameDecoder(0));
+        assertThrows(IllegalStateException.class, () -> new FrameDecoder(256).nextFrame());
+    }
+}
@@ -0,0 +1,204 @@
+package it.polimi.ingsw.net;
+
+import com.google.gson.JsonObject;
+import it.polimi.ingsw.server.controller.Messages;
+import it.polimi.ingsw.server.controller.RecordedMatch;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link FrameEncoder}, and for the decompression performed by {@link FrameDecoder}.
+ */
+class FrameEncoderTest {
+    /**
+     * Builds a decoder expecting length-prefixed frames with the given compression.
+     *
+     * @param maxFrameSize the maximum size of a frame
+     * @param compression  the compression of the frames
+     * @return the decoder
+     */
+    private static FrameDecoder decoder(int maxFrameSize, Compression compression) {
+        FrameDecoder d = new FrameDecoder(maxFrameSize);
+        d.setFraming(Framing.LENGTH_PREFIXED);
+        d.setCompression(compression);
+        return d;
+    }
+
+    /**
+     * Concatenates the given frames.
+     *
+     * @param frames the frames
+     * @return a stream containing all the frames, in order
+     */
+    private static ByteArrayInputStream concat(List<ByteBuffer> frames) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (ByteBuffer f : frames)
+            out.write(f.array(), f.arrayOffset() + f.position(), f.remaining());
+        return new ByteArrayInputStream(out.toByteArray());
+    }
+
+    /**
+     * Checks that uncompressed frames are the same built by the {@link Framing}.
+     */
+    @Test
+    void uncompressedFrames() {
+        byte[] payload = Encoding.JSON.encode(Messages.buildPingMessage(3));
+        for (Framing f : Framing.values())
+            assertEquals(f.frame(payload), new FrameEncoder(f, Compression.NONE).frame(payload));
+    }
+
+    /**
+     * Checks that compression requires length-prefixed framing.
+     */
+    @Test
+    void compressionNeedsLengthPrefix() {
+        assertThrows(IllegalArgumentException.class, () -> new FrameEncoder(Framing.DELIMITED, Compression.DEFLATE));
+        assertThrows(IllegalArgumentException.class, () -> new FrameEncoder(null, Compression.NONE));
+        assertThrows(IllegalArgumentException.class, () -> new FrameEncoder(Framing.DELIMITED, null));
+    }
+
+    /**
+     * Decodes all the given frames.
+     *
+     * @param decoder the decoder to use
+     * @param frames  the frames
+     * @return the decoded messages
+     */
+    private static List<JsonObject> decodeAll(FrameDecoder decoder, List<ByteBuffer> frames) throws IOException {
+        ByteArrayInputStream in = concat(frames);
+        List<JsonObject> decoded = new ArrayList<>();
+        do {
+            while (decoder.hasFrame())
+                decoded.add(decoder.nextFrame().orElseThrow());
+        } while (decoder.readFrom(in) >= 0);
+        return decoded;
+    }
+
+    /**
+     * Checks that a whole match, in both encodings, survives compression and arrives in order, and that it is less
+     * than half the size of the uncompressed one.
+     */
+    @Test
+    void recordedMatchRoundTrip() throws IOException {
+        List<JsonObject> messages = RecordedMatch.play(3, true, 7);
+        for (Encoding e : Encoding.values()) {
+            FrameEncoder encoder = new FrameEncoder(Framing.LENGTH_PREFIXED, Compression.DEFLATE);
+            List<ByteBuffer> compressed = new ArrayList<>();
+            List<ByteBuffer> uncompressed = new ArrayList<>();
+            long compressedSize = 0, uncompressedSize = 0;
+            for (JsonObject m : messages) {
+                byte[] payload = e.encode(m);
+                compressed.add(encoder.frame(payload));
+                uncompressed.add(Framing.LENGTH_PREFIXED.frame(payload));
+                compressedSize += compressed.get(compressed.size() - 1).remaining();
+                uncompressedSize += uncompressed.get(uncompressed.size() - 1).remaining();
+            }
+            assertTrue(compressedSize < uncompressedSize / 2, e + ": " + compressedSize + " vs " + uncompressedSize);
+
+            FrameDecoder decoder = decoder(16 * 1024 * 1024, Compression.DEFLATE);
+            assertEquals(Compression.DEFLATE, decoder.getCompression());
+            List<JsonObject> expected = decodeAll(decoder(16 * 1024 * 1024, Compression.NONE), uncompressed);
+            assertEquals(messages.size(), expected.size());
+            assertEquals(expected, decodeAll(decoder, compressed));
+            encoder.close();
+            decoder.close();
+        }
+    }
+
+    /**
+     * Checks that encoders and decoders can be closed whatever their compression, and more than once.
+     */
+    @Test
+    void close() {
+        for (Compression c : Compression.values()) {
+            FrameEncoder encoder = new FrameEncoder(Framing.LENGTH_PREFIXED, c);
+            encoder.frame(Encoding.JSON.encode(Messages.buildPingMessage(3)));
+            assertDoesNotThrow(encoder::close);
+            assertDoesNotThrow(encoder::close);
+            FrameDecoder decoder = decoder(1024, c);
+            assertDoesNotThrow(decoder::close);
+            assertDoesNotThrow(decoder::close);
+        }
+    }
+
+    /**
+     * Checks that a frame inflating past the maximum frame size is reported as too long, and that the following
+     * frames are still decoded.
+     */
+    @Test
+    void tooLongAfterInflating() throws IOException {
+        JsonObject big = new JsonObject();
+        big.addProperty("type", "UPDATE");
+        big.addProperty("payload", "x".repeat(10_000));
+        JsonObject small = Messages.buildPingMessage(1);
+        FrameEncoder encoder = new FrameEncoder(Framing.LENGTH_PREFIXED, Compression.DEFLATE);
+        List<ByteBuffer> frames = List.of(encoder.frame(Encoding.JSON.encode(small)),
+                encoder.frame(Encoding.JSON.encode(big)), encoder.frame(Encoding.JSON.encode(small)));
+        assertTrue(frames.get(1).remaining() < 1024);
+
+        FrameDecoder decoder = decoder(1024, Compression.DEFLATE);
+        decoder.readFrom(concat(frames));
+        assertEquals(small, decoder.nextFrame().orElseThrow());
+        assertThrows(FrameTooLongException.class, decoder::nextFrame);
+        assertEquals(small, decoder.nextFrame().orElseThrow());
+        assertFalse(decoder.hasFrame());
+    }
+
+    /**
+     * Checks that frames that are not valid DEFLATE data are reported as empty frames.
+     */
+    @Test
+    void corruptedFrame() throws IOException {
+        FrameDecoder decoder = decoder(1024, Compression.DEFLATE);
+        decoder.readFrom(concat(List.of(Framing.LENGTH_PREFIXED.frame(new byte[]{(byte) 0xFF, (byte) 0xFF}))));
+        assertEquals(Optional.empty(), decoder.nextFrame());
+    }
+
+    /**
+     * Checks that compressed control frames are recognized, and that frames that are not are inflated only once, so
+     * that the DEFLATE stream stays in sync.
+     */
+    @Test
+    void compressedControlFrames() throws IOException {
+        FrameEncoder encoder = new FrameEncoder(Framing.LENGTH_PREFIXED, Compression.DEFLATE);
+        byte[] heartbeat = "{\"type\":\"HEARTBEAT\"}".getBytes(StandardCharsets.UTF_8);
+        JsonObject fetch = new JsonObject();
+        fetch.addProperty("type", "FETCH");
+        List<ByteBuffer> frames = List.of(encoder.frame(heartbeat), encoder.frame(Encoding.JSON.encode(fetch)),
+                encoder.frame(heartbeat), Framing.LENGTH_PREFIXED.frame(new byte[]{(byte) 0xFF, (byte) 0xFF}));
+
+        FrameDecoder decoder = decoder(1024, Compression.DEFLATE);
+        decoder.readFrom(concat(frames));
+        assertSame(ControlFrame.HEARTBEAT, decoder.nextControlFrame());
+        assertNull(decoder.nextControlFrame());
+        assertNull(decoder.nextControlFrame());
+        assertEquals(fetch, decoder.nextFrame().orElseThrow());
+        assertSame(ControlFrame.HEARTBEAT, decoder.nextControlFrame());
+        assertNull(decoder.nextControlFrame());
+        assertEquals(Optional.empty(), decoder.nextFrame());
+        assertFalse(decoder.hasFrame());
+    }
+
+    /**
+     * Checks that the compression is negotiated through the {@code HELLO} message.
+     */
+    @Test
+    void handshake() {
+        JsonObject hello = Handshake.buildHello(Framing.LENGTH_PREFIXED, Encoding.JSON, Compression.DEFLATE);
+        assertEquals(Compression.DEFLATE, Handshake.getCompression(hello));
+        hello.remove("compression");
+        assertEquals(Compression.NONE, Handshake.getCompression(hello));
+        hello.addProperty("compression", "BROTLI");
+        assertEquals(Compression.NONE, Handshake.getCompression(hello));
+    }
+}
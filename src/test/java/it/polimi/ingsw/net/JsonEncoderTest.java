@@ -0,0 +1,88 @@
+package it.polimi.ingsw.net;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import it.polimi.ingsw.server.controller.RecordedMatch;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link JsonEncoder}.
+ */
+class JsonEncoderTest {
+    /**
+     * Checks that the given element is encoded into the UTF-8 bytes of its string representation.
+     *
+     * @param element the element to encode
+     */
+    private static void assertSameAsToString(JsonElement element) {
+        assertArrayEquals(element.toString().getBytes(StandardCharsets.UTF_8), JsonEncoder.encode(element),
+                element.toString());
+    }
+
+    /**
+     * Checks that the messages sent during a whole match are encoded like Gson does.
+     */
+    @Test
+    void recordedMessages() {
+        for (JsonObject m : RecordedMatch.play(3, true, 0))
+            assertSameAsToString(m);
+    }
+
+    /**
+     * Checks that strings are escaped and encoded like Gson does, including control characters, characters outside
+     * the Basic Multilingual Plane and malformed surrogate pairs.
+     */
+    @Test
+    void strings() {
+        StringBuilder controls = new StringBuilder();
+        for (char c = 0; c < 0x80; c++)
+            controls.append(c);
+        String[] strings = {"", controls.toString(), "zo\u00EB \u20ACuro", "\u2028\u2029", "\uD83D\uDE00 smile",
+                "lone \uD83D high", "lone \uDE00 low", "ends high \uD83D", "\uDE00\uD83D reversed", "ab\u07FF\u0800\uFFFF"};
+        for (String s : strings) {
+            JsonObject o = new JsonObject();
+            o.addProperty(s, s);
+            assertSameAsToString(o);
+        }
+    }
+
+    /**
+     * Checks that every other kind of value is encoded like Gson does.
+     */
+    @Test
+    void values() {
+        JsonObject o = new JsonObject();
+        o.addProperty("int", 42);
+        o.addProperty("long", Long.MIN_VALUE);
+        o.addProperty("double", 1.5);
+        o.addProperty("big", 1e300);
+        o.addProperty("negativeZero", -0.0);
+        o.addProperty("nan", Double.NaN);
+        o.addProperty("decimal", new BigDecimal("123.4500"));
+        o.addProperty("true", true);
+        o.addProperty("false", false);
+        o.add("null", JsonNull.INSTANCE);
+        o.add("emptyObject", new JsonObject());
+        o.add("emptyArray", new JsonArray());
+        JsonArray nested = new JsonArray();
+        nested.add(1);
+        nested.add("a");
+        nested.add(JsonNull.INSTANCE);
+        nested.add(new JsonArray());
+        nested.add(o.deepCopy());
+        o.add("nested", nested);
+        o.add("parsed", JsonParser.parseString("{\"n\":1.50e3,\"m\":[-0,7]}"));
+        assertSameAsToString(o);
+        assertSameAsToString(nested);
+        assertSameAsToString(JsonNull.INSTANCE);
+        assertThrows(IllegalArgumentException.class, () -> JsonEncoder.encode(null));
+    }
+}
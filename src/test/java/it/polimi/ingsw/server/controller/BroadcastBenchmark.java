@@ -0,0 +1,117 @@
+package it.polimi.ingsw.server.controller;
+
+import com.google.gson.JsonObject;
+import it.polimi.ingsw.ProgramOptions;
+import it.polimi.ingsw.server.model.Game;
+import it.polimi.ingsw.server.net.Dispatcher;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.Socket;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Microbenchmark measuring the CPU time spent by the broadcasting thread for each broadcast of a full-state
+ * {@code UPDATE}, as the number of recipients grows. It compares {@link Match#sendBroadcast(JsonObject)}, which
+ * serializes the message once, with sending the {@link JsonObject} to each {@link Dispatcher} separately, which
+ * serializes it once per recipient. The bytes are discarded by the recipients' writer threads, whose time is not
+ * counted.
+ * <p>
+ * Usage: {@code java -cp ... BroadcastBenchmark [broadcasts]}
+ */
+public class BroadcastBenchmark {
+    /**
+     * The recipient counts to measure.
+     */
+    private static final int[] RECIPIENTS = {1, 2, 3, 4, 8, 16, 32};
+
+    /**
+     * Entry point of the benchmark.
+     *
+     * @param args optionally, the number of broadcasts to time for each recipient count
+     */
+    public static void main(String[] args) {
+        int broadcasts = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        ProgramOptions.setSendQueueLimit(Integer.MAX_VALUE);
+        ProgramOptions.setMaximumPing(3000);
+        List<JsonObject> recorded = RecordedMatch.play(3, true, 0);
+        JsonObject update = recorded.stream()
+                .filter(m -> m.get("type").getAsString().equals("UPDATE"))
+                .max(Comparator.comparingInt(m -> m.toString().length()))
+                .orElseThrow();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        out.println("message=" + update.toString().length() + "B broadcasts=" + broadcasts);
+        Match warmUp = match(4);
+        for (int i = 0; i < 5; i++) {
+            time(threads, broadcasts, () -> warmUp.sendBroadcast(update));
+            time(threads, broadcasts, () -> warmUp.getDispatchers().forEach(d -> d.send(update)));
+        }
+        warmUp.stop();
+
+        for (int n : RECIPIENTS) {
+            Match match = match(n);
+            long once = time(threads, broadcasts, () -> match.sendBroadcast(update));
+            long each = time(threads, broadcasts, () -> match.getDispatchers().forEach(d -> d.send(update)));
+            out.printf("recipients=%2d serializeOnce=%6.1fus/broadcast serializeEach=%6.1fus/broadcast%n",
+                    n, once / 1000.0 / broadcasts, each / 1000.0 / broadcasts);
+            match.stop();
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Creates a match with the given number of connected recipients.
+     *
+     * @param recipients the number of recipients
+     * @return the match
+     */
+    private static Match match(int recipients) {
+        Match match = new Match(recipients, new Game(3, false));
+        for (int i = 0; i < recipients; i++)
+            match.addDispatcher(new Dispatcher(new SinkSocket()), "player" + i);
+        return match;
+    }
+
+    /**
+     * Runs the given broadcast the given number of times and returns the CPU time used by the current thread.
+     *
+     * @param threads   the {@link ThreadMXBean} used for measuring
+     * @param times     the number of broadcasts
+     * @param broadcast the broadcast to run
+     * @return the CPU time in nanoseconds
+     */
+    private static long time(ThreadMXBean threads, int times, Runnable broadcast) {
+        long start = threads.getCurrentThreadCpuTime();
+        for (int i = 0; i < times; i++)
+            broadcast.run();
+        return threads.getCurrentThreadCpuTime() - start;
+    }
+
+    /**
+     * A {@link Socket} that never sends anything and discards what is written to it.
+     */
+    private static class SinkSocket extends Socket {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public InputStream getInputStream() {
+            return InputStream.nullInputStream();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public OutputStream getOutputStream() {
+            return OutputStream.nullOutputStream();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package it.polimi.ingsw.server.controller;
+
+import com.google.gson.JsonObject;
+import it.polimi.ingsw.net.Encoding;
+import it.polimi.ingsw.net.FrameDecoder;
+import it.polimi.ingsw.server.controller.commands.CommandReader;
+import it.polimi.ingsw.server.controller.commands.Parser;
+import it.polimi.ingsw.server.controller.commands.UserCommand;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Microbenchmark measuring the CPU time and the memory allocated by the server for each message of a recorded match.
+ * Inbound, it compares reading the commands sent by the players straight from their bytes ({@link CommandReader})
+ * with parsing them into {@link JsonObject}s and then {@link UserCommand}s ({@link Parser}); both read the frames
+ * through a {@link FrameDecoder}. Outbound, it compares encoding the messages sent by the server with
+ * {@link Encoding#JSON} with converting them to a string and then to bytes.
+ * <p>
+ * Usage: {@code java -cp ... CodecBenchmark [rounds]}
+ */
+public class CodecBenchmark {
+    /**
+     * A value depending on every result, so that no work can be optimized away.
+     */
+    private static long sink;
+
+    /**
+     * Entry point of the benchmark.
+     *
+     * @param args optionally, the number of times the recorded messages are processed
+     */
+    public static void main(String[] args) throws IOException {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        List<JsonObject> commands = new ArrayList<>();
+        List<JsonObject> messages = RecordedMatch.play(3, true, 0, commands);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        for (JsonObject c : commands)
+            stream.write((c + "\n\n").getBytes(StandardCharsets.UTF_8));
+        byte[] inbound = stream.toByteArray();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        Consumer<FrameDecoder> parsed = d -> sink += Parser.parse(d.nextFrame().orElseThrow()).getGameId();
+        Consumer<FrameDecoder> read = d -> sink += d.nextFrame(CommandReader::read).getGameId();
+        Runnable toString = () -> messages.forEach(m -> sink += m.toString().getBytes(StandardCharsets.UTF_8).length);
+        Runnable encoded = () -> messages.forEach(m -> sink += Encoding.JSON.encode(m).length);
+        for (int i = 0; i < 5; i++) {
+            time(threads, rounds, () -> decode(inbound, parsed));
+            time(threads, rounds, () -> decode(inbound, read));
+            time(threads, rounds, toString);
+            time(threads, rounds, encoded);
+        }
+
+        long in = (long) rounds * commands.size();
+        long out = (long) rounds * messages.size();
+        System.out.println("commands=" + commands.size() + " (" + inbound.length / commands.size() + "B avg) " +
+                "messages=" + messages.size() + " rounds=" + rounds);
+        print("inbound  JsonObject+Parser", time(threads, rounds, () -> decode(inbound, parsed)), in);
+        print("inbound  CommandReader    ", time(threads, rounds, () -> decode(inbound, read)), in);
+        print("outbound toString+getBytes", time(threads, rounds, toString), out);
+        print("outbound Encoding.JSON    ", time(threads, rounds, encoded), out);
+        System.out.println(sink == 42 ? "" : "done");
+    }
+
+    /**
+     * Reads all the frames of the given stream, handing each one to the given reader.
+     *
+     * @param stream the bytes of the frames
+     * @param reader consumes the frame available in the decoder
+     */
+    private static void decode(byte[] stream, Consumer<FrameDecoder> reader) {
+        FrameDecoder decoder = new FrameDecoder(1 << 16);
+        InputStream in = new ByteArrayInputStream(stream);
+        try {
+            while (decoder.readFrom(in) > 0)
+                while (decoder.hasFrame())
+                    reader.accept(decoder);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Runs the given task the given number of times and returns the CPU time used and the memory allocated by the
+     * current thread.
+     *
+     * @param threads the {@link com.sun.management.ThreadMXBean} used for measuring
+     * @param times   the number of runs
+     * @param task    the task to run
+     * @return the CPU time in nanoseconds and the allocated bytes
+     */
+    private static long[] time(com.sun.management.ThreadMXBean threads, int times, Runnable task) {
+        long start = threads.getCurrentThreadCpuTime();
+        long allocated = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < times; i++)
+            task.run();
+        return new long[]{threads.getCurrentThreadCpuTime() - start,
+                threads.getCurrentThreadAllocatedBytes() - allocated};
+    }
+
+    /**
+     * Prints a measurement.
+     *
+     * @param name     the name of the measured path
+     * @param measured the CPU time and the allocated bytes
+     * @param messages the number of messages processed
+     */
+    private static void print(String name, long[] measured, long messages) {
+        System.out.printf("%s %8.0fns/message %8.0fB/message%n", name,
+                (double) measured[0] / messages, (double) measured[1] / messages);
+    }
+}
@@ -1,6 +1,7 @@
 package it.polimi.ingsw.server.controller;
 
 import com.google.gson.JsonObject;
+import it.polimi.ingsw.ProgramOptions;
 import it.polimi.ingsw.functional.Tuple;
 import it.polimi.ingsw.server.controller.commands.Parser;
 import it.polimi.ingsw.server.model.Game;
@@ -14,8 +15,10 @@ import org.junit.jupiter.api.Test;
 
 import java.lang.reflect.Field;
 import java.net.Socket;
+import java.util.List;
+import java.util.Map;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * Test class for the {@link CommandManager} class.
@@ -66,6 +69,52 @@ class CommandManagerTest {
         assertEquals(RejoiningCommandStrategy.class, strategy.getClass());
     }
 
+    /**
+     * Tests that the consecutive game commands waiting in the queue are applied together: their senders receive a
+     * single {@code UPDATE} listing all their causes, while the sender of an invalid one receives an {@code ERROR}.
+     */
+    @Test
+    @DisplayName("Batch test")
+    void batchTest() {
+        boolean usesPing = ProgramOptions.usesPing(), usesPersistence = ProgramOptions.usesPersistence();
+        ProgramOptions.setUsePing(false);
+        ProgramOptions.setUsePersistence(false);
+        try {
+            Match m = new Match(998, new Game(2, false));
+            CommandManager c = new CommandManager(m);
+            Map<String, RecordingDispatcher> players = Map.of("alice", new RecordingDispatcher(),
+                    "bob", new RecordingDispatcher());
+            for (String name : List.of("alice", "bob"))
+                c.manageCommand(new Tuple<>(Parser.parse(ControllerTestUtils.generateJoin(name, 998)),
+                        players.get(name)));
+
+            JsonObject lastUpdate = players.get("alice").received.get(players.get("alice").received.size() - 1);
+            String first = lastUpdate.getAsJsonObject("update").get("currentPlayer").getAsString();
+            String second = first.equals("alice") ? "bob" : "alice";
+            players.values().forEach(d -> d.received.clear());
+
+            m.getCommands().add(new Tuple<>(Parser.parse(ControllerTestUtils.generateChooseMage(first, 998, "FAIRY")),
+                    players.get(first)));
+            m.getCommands().add(new Tuple<>(Parser.parse(ControllerTestUtils.generateChooseMage(second, 998, "FAIRY")),
+                    players.get(second)));
+            m.getCommands().add(new Tuple<>(Parser.parse(ControllerTestUtils.generateChooseMage(second, 998, "SAGE")),
+                    players.get(second)));
+            c.runPending(32);
+
+            assertTrue(m.getCommands().isEmpty());
+            List<JsonObject> toFirst = players.get(first).received, toSecond = players.get(second).received;
+            assertEquals(1, toFirst.size());
+            assertEquals("UPDATE", toFirst.get(0).get("type").getAsString());
+            assertEquals(2, toFirst.get(0).getAsJsonObject("update").get("cause").getAsString().split("\n").length);
+            assertEquals(2, toSecond.size());
+            assertEquals("ERROR", toSecond.get(0).get("type").getAsString());
+            assertEquals(toFirst.get(0), toSecond.get(1));
+        } finally {
+            ProgramOptions.setUsePing(usesPing);
+            ProgramOptions.setUsePersistence(usesPersistence);
+        }
+    }
+
     /**
      * Deletes the created persistence files.
      */
@@ -48,6 +48,27 @@ public class ControllerTestUtils {
         return command;
     }
 
+    /**
+     * Helper method for creating a CHOOSE_MAGE command
+     * @param name the name of the player
+     * @param id the id of the Match
+     * @param mage the chosen mage
+     * @return the CHOOSE_MAGE command
+     */
+    public static JsonObject generateChooseMage(String name, int id, String mage) {
+        JsonObject command = new JsonObject();
+        command.addProperty("type", "CHOOSE_MAGE");
+        command.addProperty("username", name);
+        command.addProperty("gameId", id);
+
+        JsonArray arguments = new JsonArray();
+        arguments.add(mage);
+
+        command.add("arguments", arguments);
+
+        return command;
+    }
+
     /**
      * Helper method for creating a LEAVE command
      * @param name the name of the player
@@ -0,0 +1,80 @@
+package it.polimi.ingsw.server.controller;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link GameIdAllocator}.
+ */
+class GameIdAllocatorTest {
+    /**
+     * Checks that new IDs are handed out in order, and that released ones are reused first.
+     */
+    @Test
+    void allocateAndRelease() {
+        GameIdAllocator ids = new GameIdAllocator();
+        assertEquals(0, ids.allocate());
+        assertEquals(1, ids.allocate());
+        assertEquals(2, ids.allocate());
+        ids.release(1);
+        assertFalse(ids.isTaken(1));
+        ids.release(0);
+        assertEquals(0, ids.allocate());
+        assertEquals(1, ids.allocate());
+        assertEquals(3, ids.allocate());
+        assertTrue(ids.isTaken(3));
+        assertThrows(IllegalArgumentException.class, () -> ids.release(4));
+        assertThrows(IllegalArgumentException.class, () -> ids.release(-1));
+        ids.release(3);
+        assertThrows(IllegalArgumentException.class, () -> ids.release(3));
+    }
+
+    /**
+     * Checks that reserved IDs are never handed out, while the ones skipped to reach them are.
+     */
+    @Test
+    void reserve() {
+        GameIdAllocator ids = new GameIdAllocator();
+        ids.reserve(3);
+        ids.reserve(1);
+        ids.reserve(3);
+        Set<Integer> allocated = new HashSet<>();
+        for (int i = 0; i < 3; i++)
+            allocated.add(ids.allocate());
+        assertEquals(Set.of(0, 2, 4), allocated);
+        assertThrows(IllegalArgumentException.class, () -> ids.reserve(-1));
+    }
+
+    /**
+     * Checks that concurrent allocations never hand out the same ID twice.
+     */
+    @Test
+    void concurrentAllocations() throws InterruptedException {
+        GameIdAllocator ids = new GameIdAllocator();
+        Set<Integer> allocated = ConcurrentHashMap.newKeySet();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    int id = ids.allocate();
+                    assertTrue(allocated.add(id));
+                    if (i % 2 == 0) {
+                        allocated.remove(id);
+                        ids.release(id);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads)
+            t.join();
+        assertEquals(2000, allocated.size());
+        for (int id : allocated)
+            assertTrue(ids.isTaken(id));
+    }
+}
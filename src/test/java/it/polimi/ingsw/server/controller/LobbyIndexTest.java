@@ -0,0 +1,137 @@
+package it.polimi.ingsw.server.controller;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link LobbyIndex} and {@link LobbyQuery}.
+ */
+class LobbyIndexTest {
+    /**
+     * Builds a lobby in the format of {@link Match#toJson()}.
+     *
+     * @param id        the id of the lobby
+     * @param nPlayers  the number of players
+     * @param expert    whether the lobby is in expert mode
+     * @param connected the number of players connected
+     * @param rejoining whether the lobby is waiting for its players to rejoin
+     * @return the lobby
+     */
+    private static JsonObject lobby(long id, int nPlayers, boolean expert, int connected, boolean rejoining) {
+        JsonObject j = new JsonObject();
+        j.addProperty("id", id);
+        j.addProperty("nPlayers", nPlayers);
+        j.addProperty("expert", expert);
+        j.addProperty("playersConnected", connected);
+        j.addProperty("rejoining", rejoining);
+        return j;
+    }
+
+    /**
+     * Builds a {@code FETCH} command with the given arguments and reads its query.
+     *
+     * @param arguments the arguments, as a JSON object
+     * @return the query
+     */
+    private static LobbyQuery query(String arguments) {
+        JsonObject fetch = new JsonObject();
+        fetch.addProperty("type", "FETCH");
+        JsonArray args = new JsonArray();
+        args.add(JsonParser.parseString(arguments));
+        fetch.add("arguments", args);
+        return LobbyQuery.fromFetch(fetch);
+    }
+
+    /**
+     * Returns the IDs of the given lobbies.
+     *
+     * @param lobbies the lobbies
+     * @return their IDs
+     */
+    private static long[] ids(List<JsonObject> lobbies) {
+        return lobbies.stream().mapToLong(l -> l.get("id").getAsLong()).toArray();
+    }
+
+    /**
+     * Checks that queries list, by increasing ID, only the lobbies matching their filters.
+     */
+    @Test
+    void filters() {
+        LobbyIndex index = new LobbyIndex();
+        index.put(0, lobby(0, 2, false, 1, false));
+        index.put(1, lobby(1, 3, true, 1, false));
+        index.put(2, lobby(2, 2, true, 2, false));
+        index.put(3, lobby(3, 2, false, 0, true));
+        index.put(4, lobby(4, 3, false, 3, false));
+
+        assertArrayEquals(new long[]{0, 1, 2, 3, 4}, ids(index.query(LobbyQuery.ALL)));
+        assertArrayEquals(new long[]{0, 2, 3}, ids(index.query(query("{\"nPlayers\":2}"))));
+        assertArrayEquals(new long[]{1, 2}, ids(index.query(query("{\"expert\":true}"))));
+        assertArrayEquals(new long[]{0, 1, 3}, ids(index.query(query("{\"open\":true}"))));
+        assertArrayEquals(new long[]{3}, ids(index.query(query("{\"rejoining\":true}"))));
+        assertArrayEquals(new long[]{0, 3}, ids(index.query(query("{\"nPlayers\":2,\"expert\":false,\"open\":true}"))));
+        assertArrayEquals(new long[]{}, ids(index.query(query("{\"nPlayers\":4}"))));
+    }
+
+    /**
+     * Checks that pages start after the cursor and hold one lobby more than the limit, if there are enough.
+     */
+    @Test
+    void pagination() {
+        LobbyIndex index = new LobbyIndex();
+        for (int i = 0; i < 10; i++)
+            index.put(i, lobby(i, 2 + i % 2, i % 3 == 0, 0, false));
+
+        assertArrayEquals(new long[]{0, 1, 2, 3}, ids(index.query(query("{\"limit\":3}"))));
+        assertArrayEquals(new long[]{3, 4, 5, 6}, ids(index.query(query("{\"after\":2,\"limit\":3}"))));
+        assertArrayEquals(new long[]{8, 9}, ids(index.query(query("{\"after\":7,\"limit\":3}"))));
+        assertArrayEquals(new long[]{5, 7, 9}, ids(index.query(query("{\"nPlayers\":3,\"after\":4}"))));
+        assertArrayEquals(new long[]{}, ids(index.query(query("{\"after\":9}"))));
+    }
+
+    /**
+     * Checks that updated lobbies move to the buckets matching their new state, and that removed ones disappear.
+     */
+    @Test
+    void updates() {
+        LobbyIndex index = new LobbyIndex();
+        index.put(0, lobby(0, 2, false, 0, false));
+        index.put(1, lobby(1, 2, false, 1, false));
+        LobbyQuery open = query("{\"open\":true}");
+        assertArrayEquals(new long[]{0, 1}, ids(index.query(open)));
+
+        index.put(1, lobby(1, 2, false, 2, false));
+        assertArrayEquals(new long[]{0}, ids(index.query(open)));
+        assertArrayEquals(new long[]{0, 1}, ids(index.query(LobbyQuery.ALL)));
+        assertEquals(2, index.query(LobbyQuery.ALL).get(1).get("playersConnected").getAsInt());
+
+        index.remove(0);
+        index.remove(7);
+        assertArrayEquals(new long[]{}, ids(index.query(open)));
+        assertArrayEquals(new long[]{1}, ids(index.query(LobbyQuery.ALL)));
+    }
+
+    /**
+     * Checks that badly formatted queries are rejected.
+     */
+    @Test
+    void illegalQueries() {
+        JsonObject fetch = new JsonObject();
+        fetch.addProperty("type", "FETCH");
+        assertTrue(LobbyQuery.fromFetch(fetch).isAll());
+        assertFalse(query("{\"limit\":3}").isAll());
+        assertThrows(IllegalArgumentException.class, () -> LobbyQuery.fromFetch(null));
+        assertThrows(IllegalArgumentException.class, () -> query("{\"limit\":0}"));
+        assertThrows(IllegalArgumentException.class, () -> query("{\"after\":-2}"));
+        assertThrows(IllegalArgumentException.class, () -> query("{\"expert\":3}"));
+        assertThrows(IllegalArgumentException.class, () -> query("3"));
+        assertThrows(IllegalArgumentException.class, () -> new LobbyIndex().put(0, null));
+        assertThrows(IllegalArgumentException.class, () -> new LobbyIndex().query(null));
+    }
+}
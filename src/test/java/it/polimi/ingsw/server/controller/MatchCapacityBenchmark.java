@@ -0,0 +1,135 @@
+package it.polimi.ingsw.server.controller;
+
+import it.polimi.ingsw.ProgramOptions;
+import it.polimi.ingsw.server.Threads;
+import it.polimi.ingsw.server.model.Game;
+import it.polimi.ingsw.server.net.Dispatcher;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Benchmark that counts how many 3-player matches (each one with its command loop, its pinger and a blocking
+ * {@link Dispatcher} per player) the server can host in the current heap, either on platform or on virtual threads.
+ * Matches are created until the heap is {@link #HEAP_FULL} full, the thread limit is hit or the cap is reached.
+ * <p>
+ * Usage: {@code java -Xmx256m -cp ... MatchCapacityBenchmark platform|virtual [maxMatches]}
+ */
+public class MatchCapacityBenchmark {
+    /**
+     * Released when the benchmark is over, unblocking all the fake sockets.
+     */
+    private static final CountDownLatch done = new CountDownLatch(1);
+    /**
+     * Fraction of the maximum heap after which the heap is considered full.
+     */
+    private static final double HEAP_FULL = 0.8;
+
+    /**
+     * Entry point of the benchmark.
+     *
+     * @param args the thread mode ({@code platform} or {@code virtual}) and, optionally, the maximum number of matches
+     */
+    public static void main(String[] args) {
+        boolean virtual = args.length > 0 && args[0].equals("virtual");
+        int maxMatches = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        ProgramOptions.setUseVirtualThreads(virtual);
+        ProgramOptions.setMaximumPing(3000);
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        List<Match> matches = new ArrayList<>();
+        String stoppedBy = "cap reached";
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < maxMatches; i++) {
+                Match m = new Match(i, new Game(3, false));
+                m.start();
+                for (int p = 0; p < 3; p++) {
+                    Dispatcher d = new Dispatcher(new IdleSocket());
+                    Threads.start("bench-dispatcher-" + i + "-" + p, d);
+                    m.addDispatcher(d, "player" + p);
+                }
+                matches.add(m);
+                if (heapFull()) {
+                    stoppedBy = "heap full";
+                    break;
+                }
+            }
+        } catch (OutOfMemoryError e) {
+            stoppedBy = "OutOfMemoryError: " + e.getMessage();
+        }
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        System.gc();
+
+        Runtime rt = Runtime.getRuntime();
+        long used = (rt.totalMemory() - rt.freeMemory()) / (1024 * 1024);
+        System.setOut(out);
+        System.out.println("mode=" + (virtual ? "virtual" : "platform") +
+                " maxHeap=" + rt.maxMemory() / (1024 * 1024) + "MB" +
+                " matches=" + matches.size() +
+                " heapUsed=" + used + "MB" +
+                " platformThreads=" + threads.getThreadCount() +
+                " elapsed=" + elapsed + "ms" +
+                " stoppedBy=" + stoppedBy);
+
+        matches.forEach(Match::stop);
+        done.countDown();
+        System.exit(0);
+    }
+
+    /**
+     * Returns true if, even after a collection, more than {@link #HEAP_FULL} of the maximum heap is in use.
+     *
+     * @return true if the heap is full
+     */
+    private static boolean heapFull() {
+        Runtime rt = Runtime.getRuntime();
+        if (rt.totalMemory() - rt.freeMemory() < HEAP_FULL * rt.maxMemory()) return false;
+        System.gc();
+        return rt.totalMemory() - rt.freeMemory() >= HEAP_FULL * rt.maxMemory();
+    }
+
+    /**
+     * A {@link Socket} whose input blocks until the benchmark ends and whose output is discarded.
+     */
+    private static class IdleSocket extends Socket {
+        /**
+         * Input stream blocking until {@link #done} is released.
+         */
+        private final InputStream in = new InputStream() {
+            @Override
+            public int read() {
+                try {
+                    done.await();
+                } catch (InterruptedException ignored) {
+                }
+                return -1;
+            }
+        };
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public InputStream getInputStream() {
+            return in;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public OutputStream getOutputStream() {
+            return OutputStream.nullOutputStream();
+        }
+    }
+}
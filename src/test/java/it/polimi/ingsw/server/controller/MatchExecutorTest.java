@@ -0,0 +1,118 @@
+package it.polimi.ingsw.server.controller;
+
+import it.polimi.ingsw.ProgramOptions;
+import it.polimi.ingsw.functional.Tuple;
+import it.polimi.ingsw.server.controller.commands.Parser;
+import it.polimi.ingsw.server.controller.commands.UserCommand;
+import it.polimi.ingsw.server.model.Game;
+import it.polimi.ingsw.server.net.Dispatcher;
+import org.junit.jupiter.api.Test;
+
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link MatchExecutor}.
+ */
+class MatchExecutorTest {
+    /**
+     * Checks that the commands of each match run in order and always on the same worker, that every worker gets
+     * matches, and that no thread is started per match.
+     */
+    @Test
+    void ordering() throws InterruptedException {
+        boolean usesPing = ProgramOptions.usesPing();
+        ProgramOptions.setUsePing(false);
+        int nMatches = 20, nCommands = 100;
+        CountDownLatch done = new CountDownLatch(nMatches * nCommands);
+        MatchExecutor executor = new MatchExecutor(3);
+
+        int threads = Thread.activeCount();
+        List<RecordingMatch> matches = new ArrayList<>();
+        for (int i = 0; i < nMatches; i++)
+            matches.add(new RecordingMatch(i, done));
+        assertTrue(Thread.activeCount() <= threads);
+
+        Dispatcher dispatcher = new Dispatcher(new Socket());
+        for (int c = 0; c < nCommands; c++) {
+            for (RecordingMatch m : matches) {
+                UserCommand join = Parser.parse(ControllerTestUtils.generateJoin(String.valueOf(c), (int) m.getId()));
+                m.getCommands().add(new Tuple<>(join, dispatcher));
+                executor.schedule(m);
+            }
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        Set<String> workers = new HashSet<>();
+        for (RecordingMatch m : matches) {
+            assertEquals(nCommands, m.executed.size());
+            for (int c = 0; c < nCommands; c++)
+                assertEquals(String.valueOf(c), m.executed.get(c));
+            assertEquals(1, m.threads.size());
+            workers.addAll(m.threads);
+        }
+        assertEquals(3, workers.size());
+        ProgramOptions.setUsePing(usesPing);
+    }
+
+    /**
+     * Checks that the arguments are checked.
+     */
+    @Test
+    void illegalArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new MatchExecutor(0));
+        assertThrows(IllegalArgumentException.class, () -> MatchExecutor.getInstance().schedule(null));
+    }
+
+    /**
+     * A {@link Match} whose {@link CommandManager} only records the usernames of the commands it runs and the threads
+     * running them.
+     */
+    private static class RecordingMatch extends Match {
+        /**
+         * The usernames of the commands run, in order.
+         */
+        private final List<String> executed = new ArrayList<>();
+        /**
+         * The names of the threads that ran the commands.
+         */
+        private final Set<String> threads = new HashSet<>();
+        /**
+         * The recording {@link CommandManager}.
+         */
+        private final CommandManager manager;
+
+        /**
+         * Creates a new RecordingMatch.
+         *
+         * @param id   the id of the match
+         * @param done counted down for every command run
+         */
+        RecordingMatch(int id, CountDownLatch done) {
+            super(id, new Game(2, false));
+            this.manager = new CommandManager(this) {
+                @Override
+                void manageCommand(Tuple<UserCommand, Dispatcher> command) {
+                    executed.add(command.getFirst().getUsername());
+                    threads.add(Thread.currentThread().getName());
+                    done.countDown();
+                }
+            };
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        CommandManager getCommandManager() {
+            return manager;
+        }
+    }
+}
@@ -1,23 +1,28 @@
 package it.polimi.ingsw.server.controller;
 
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import it.polimi.ingsw.ProgramOptions;
+import it.polimi.ingsw.net.Encoding;
 import it.polimi.ingsw.server.controller.commands.UserCommand;
 import it.polimi.ingsw.server.controller.commands.UserCommandType;
 import it.polimi.ingsw.server.model.Game;
 import it.polimi.ingsw.server.model.PhaseDiff;
 import it.polimi.ingsw.server.net.Dispatcher;
+import it.polimi.ingsw.server.net.OutgoingMessage;
 import org.junit.jupiter.api.*;
 
 import java.io.File;
 import java.lang.reflect.Field;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import static it.polimi.ingsw.server.controller.ControllerTestUtils.*;
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * Test class for the {@link MatchRegistry}.
@@ -99,6 +104,265 @@ class MatchRegistryTest {
         assertIterableEquals(List.of(d2),
                 MatchRegistry.getInstance().get(0).getDispatchers());
     }
+
+    /**
+     * Test for the reuse of the IDs of terminated matches. The matches used in these tests are never saved, so
+     * persistence is disabled while they are terminated.
+     */
+    @Test
+    @DisplayName("Game ID reuse test")
+    void gameIdReuseTest() {
+        ProgramOptions.setUsePersistence(false);
+        MatchRegistry.getInstance().executeCommand(d1, generateCreate("alice", 2, false));
+        MatchRegistry.getInstance().executeCommand(d2, generateCreate("bob", 2, false));
+        MatchRegistry.getInstance().terminate(0);
+        assertThrows(NoSuchElementException.class, () -> MatchRegistry.getInstance().get(0));
+        assertThrows(NoSuchElementException.class, () -> MatchRegistry.getInstance().terminate(0));
+
+        MatchRegistry.getInstance().executeCommand(d3, generateCreate("carl", 3, false));
+        assertEquals(2, MatchRegistry.getInstance().getAll().size());
+        assertIterableEquals(List.of(d3), MatchRegistry.getInstance().get(0).getDispatchers());
+        assertIterableEquals(List.of(d2), MatchRegistry.getInstance().get(1).getDispatchers());
+        assertThrows(IllegalArgumentException.class, () -> MatchRegistry.getInstance().create(1, 2, false));
+        ProgramOptions.setUsePersistence(true);
+    }
+
+    /**
+     * Test for the caching of the {@code LOBBIES} message: it must be shared until the lobbies change.
+     */
+    @Test
+    @DisplayName("Lobbies snapshot test")
+    void lobbiesSnapshotTest() {
+        ProgramOptions.setUsePersistence(false);
+        MatchRegistry registry = MatchRegistry.getInstance();
+        OutgoingMessage empty = registry.getLobbies();
+        assertSame(empty, registry.getLobbies());
+        assertEquals(0, lobbies(empty).size());
+
+        registry.executeCommand(d1, generateCreate("alice", 2, false));
+        OutgoingMessage created = registry.getLobbies();
+        assertNotSame(empty, created);
+        assertSame(created, registry.getLobbies());
+        assertEquals(1, lobbies(created).get(0).getAsJsonObject().get("playersConnected").getAsInt());
+
+        registry.executeCommand(d2, generateJoin("bob", 0));
+        OutgoingMessage joined = registry.getLobbies();
+        assertNotSame(created, joined);
+        assertEquals(2, lobbies(joined).get(0).getAsJsonObject().get("playersConnected").getAsInt());
+
+        registry.terminate(0);
+        assertEquals(0, lobbies(registry.getLobbies()).size());
+        ProgramOptions.setUsePersistence(true);
+    }
+
+    /**
+     * Test for the subscriptions to the lobbies: subscribers get the list of lobbies, then every change to it, until
+     * they unsubscribe.
+     */
+    @Test
+    @DisplayName("Lobbies subscription test")
+    void lobbiesSubscriptionTest() {
+        ProgramOptions.setUsePersistence(false);
+        MatchRegistry registry = MatchRegistry.getInstance();
+        RecordingDispatcher subscriber = new RecordingDispatcher();
+        JsonObject subscribe = new JsonObject();
+        subscribe.addProperty("type", "SUBSCRIBE_LOBBIES");
+        registry.executeCommand(subscriber, subscribe);
+
+        registry.executeCommand(d1, generateCreate("alice", 2, false));
+        registry.executeCommand(d2, generateJoin("bob", 0));
+        registry.terminate(0);
+
+        List<JsonObject> received = subscriber.received;
+        assertEquals(5, received.size());
+        assertEquals("LOBBIES", received.get(0).get("type").getAsString());
+        assertEquals(0, received.get(0).getAsJsonArray("lobbies").size());
+        String[] ops = {"ADD", "UPDATE", "UPDATE", "REMOVE"};
+        for (int i = 0; i < ops.length; i++) {
+            assertEquals("LOBBIES_DELTA", received.get(i + 1).get("type").getAsString());
+            assertEquals(ops[i], received.get(i + 1).get("op").getAsString());
+        }
+        for (int i = 0; i < 3; i++)
+            assertEquals(i, received.get(i + 1).getAsJsonObject("lobby").get("playersConnected").getAsInt());
+        assertEquals(0, received.get(4).get("id").getAsLong());
+
+        JsonObject unsubscribe = new JsonObject();
+        unsubscribe.addProperty("type", "UNSUBSCRIBE_LOBBIES");
+        registry.executeCommand(subscriber, unsubscribe);
+        registry.executeCommand(d1, generateCreate("alice", 2, false));
+        assertEquals(5, received.size());
+        ProgramOptions.setUsePersistence(true);
+    }
+
+    /**
+     * Test for {@code SUBSCRIBE_LOBBIES} sent by a player already inside a match: it is refused, and the player does
+     * not receive the changes to the lobbies.
+     */
+    @Test
+    @DisplayName("Lobbies subscription while playing test")
+    void lobbiesSubscriptionWhilePlayingTest() {
+        ProgramOptions.setUsePersistence(false);
+        try {
+            MatchRegistry registry = MatchRegistry.getInstance();
+            RecordingDispatcher client = new RecordingDispatcher();
+            registry.executeCommand(client, generateCreate("alice", 2, false));
+            int sent = client.received.size();
+
+            JsonObject subscribe = new JsonObject();
+            subscribe.addProperty("type", "SUBSCRIBE_LOBBIES");
+            new InMatchCallback(client).accept(subscribe);
+            assertEquals(sent + 1, client.received.size());
+            JsonObject error = client.received.get(sent);
+            assertEquals("ERROR", error.get("type").getAsString());
+            assertEquals("Already inside a game on this client.", error.get("reason").getAsString());
+
+            registry.executeCommand(d2, generateCreate("bob", 2, false));
+            assertEquals(sent + 1, client.received.size());
+            registry.terminate(0);
+            registry.terminate(1);
+        } finally {
+            ProgramOptions.setUsePersistence(true);
+        }
+    }
+
+    /**
+     * Test for the filtered and paginated {@code FETCH}: only the matching lobbies are listed, a page at a time, each
+     * one pointing to the next, while malformed queries are answered with an error.
+     */
+    @Test
+    @DisplayName("Filtered fetch test")
+    void filteredFetchTest() {
+        ProgramOptions.setUsePersistence(false);
+        MatchRegistry registry = MatchRegistry.getInstance();
+        for (int i = 0; i < 5; i++)
+            registry.executeCommand(new Dispatcher(new Socket()), generateCreate("p" + i, 2 + i % 2, false));
+        registry.executeCommand(d2, generateJoin("bob", 0));
+        RecordingDispatcher client = new RecordingDispatcher();
+
+        registry.executeCommand(client, fetch("{\"nPlayers\":2,\"open\":true,\"limit\":1}"));
+        JsonObject page = client.received.get(0);
+        assertEquals("LOBBIES", page.get("type").getAsString());
+        assertEquals(1, page.getAsJsonArray("lobbies").size());
+        assertEquals(2, page.getAsJsonArray("lobbies").get(0).getAsJsonObject().get("id").getAsLong());
+        assertEquals(2, page.get("next").getAsLong());
+
+        registry.executeCommand(client, fetch("{\"nPlayers\":2,\"open\":true,\"limit\":1,\"after\":2}"));
+        page = client.received.get(1);
+        assertEquals(4, page.getAsJsonArray("lobbies").get(0).getAsJsonObject().get("id").getAsLong());
+        assertFalse(page.has("next"));
+
+        registry.executeCommand(client, fetch("{\"open\":false}"));
+        assertEquals(1, client.received.get(2).getAsJsonArray("lobbies").size());
+
+        registry.executeCommand(client, fetch("{\"limit\":-1}"));
+        assertEquals("ERROR", client.received.get(3).get("type").getAsString());
+        for (int i = 0; i < 5; i++)
+            registry.terminate(i);
+        ProgramOptions.setUsePersistence(true);
+    }
+
+    /**
+     * Test for {@code QUICK_MATCH}: players fill the open lobbies with the requested rules first, lowest ID first, and
+     * new lobbies are created only when there are none; a player is never sent to a lobby where its username is taken.
+     */
+    @Test
+    @DisplayName("Quick match test")
+    void quickMatchTest() {
+        ProgramOptions.setUsePersistence(false);
+        MatchRegistry registry = MatchRegistry.getInstance();
+        registry.executeCommand(d1, generateCreate("alice", 3, false));
+        registry.executeCommand(d2, generateCreate("bob", 2, true));
+
+        List<Dispatcher> players = new ArrayList<>();
+        String[] names = {"p0", "alice", "p2", "p3"};
+        for (String name : names) {
+            Dispatcher d = new Dispatcher(new Socket());
+            players.add(d);
+            registry.executeCommand(d, quickMatch(name, 3, false));
+        }
+
+        assertEquals(3, registry.getAll().size());
+        assertEquals(List.of(d1, players.get(0), players.get(2)), registry.get(0).getDispatchers());
+        assertEquals(List.of(d2), registry.get(1).getDispatchers());
+        assertEquals(List.of(players.get(1), players.get(3)), registry.get(2).getDispatchers());
+
+        JsonObject wrong = quickMatch("carl", 4, false);
+        RecordingDispatcher client = new RecordingDispatcher();
+        registry.executeCommand(client, wrong);
+        wrong.remove("arguments");
+        registry.executeCommand(client, wrong);
+        assertEquals("ERROR", client.received.get(0).get("type").getAsString());
+        assertEquals("ERROR", client.received.get(1).get("type").getAsString());
+        for (Match m : registry.getAll())
+            registry.terminate(m.getId());
+        ProgramOptions.setUsePersistence(true);
+    }
+
+    /**
+     * Test for {@code QUICK_MATCH} sent by a player already inside a match: it is refused, and no lobby is created.
+     */
+    @Test
+    @DisplayName("Quick match while playing test")
+    void quickMatchWhilePlayingTest() {
+        ProgramOptions.setUsePersistence(false);
+        try {
+            MatchRegistry registry = MatchRegistry.getInstance();
+            RecordingDispatcher client = new RecordingDispatcher();
+            registry.executeCommand(client, generateCreate("alice", 2, false));
+            int sent = client.received.size();
+
+            new InMatchCallback(client).accept(quickMatch("alice", 2, false));
+            assertEquals(sent + 1, client.received.size());
+            JsonObject error = client.received.get(sent);
+            assertEquals("ERROR", error.get("type").getAsString());
+            assertEquals("Already inside a game on this client.", error.get("reason").getAsString());
+            assertEquals(1, registry.getAll().size());
+            assertEquals(List.of(client), registry.get(0).getDispatchers());
+            registry.terminate(0);
+        } finally {
+            ProgramOptions.setUsePersistence(true);
+        }
+    }
+
+    /**
+     * Builds a {@code QUICK_MATCH} command with the given parameters.
+     *
+     * @param name     the username of the player
+     * @param nPlayers the number of players of the match
+     * @param expert   whether the match is in expert mode
+     * @return the command
+     */
+    private static JsonObject quickMatch(String name, int nPlayers, boolean expert) {
+        JsonObject command = generateCreate(name, nPlayers, expert);
+        command.addProperty("type", "QUICK_MATCH");
+        return command;
+    }
+
+    /**
+     * Builds a {@code FETCH} command with the given query.
+     *
+     * @param query the query, as a JSON object
+     * @return the command
+     */
+    private static JsonObject fetch(String query) {
+        JsonObject fetch = new JsonObject();
+        fetch.addProperty("type", "FETCH");
+        JsonArray args = new JsonArray();
+        args.add(JsonParser.parseString(query));
+        fetch.add("arguments", args);
+        return fetch;
+    }
+
+    /**
+     * Returns the lobbies listed by the given {@code LOBBIES} message.
+     *
+     * @param message the message
+     * @return the array of lobbies
+     */
+    private static JsonArray lobbies(OutgoingMessage message) {
+        String json = new String(message.payload(Encoding.JSON), StandardCharsets.UTF_8);
+        return JsonParser.parseString(json).getAsJsonObject().getAsJsonArray("lobbies");
+    }
 }
 
 /**
@@ -136,4 +400,4 @@ class SynchronousMatch extends Match {
         for (Dispatcher d : new ArrayList<>(getDispatchers()))
             d.send(res);
     }
-}
\ No newline at end of file
+}
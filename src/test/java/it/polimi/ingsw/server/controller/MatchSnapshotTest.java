@@ -0,0 +1,207 @@
+package it.polimi.ingsw.server.controller;
+
+import com.google.gson.JsonObject;
+import it.polimi.ingsw.ProgramOptions;
+import it.polimi.ingsw.server.controller.commands.Parser;
+import it.polimi.ingsw.server.controller.commands.UserCommand;
+import it.polimi.ingsw.server.model.Game;
+import it.polimi.ingsw.server.model.Phase;
+import it.polimi.ingsw.server.net.OutgoingMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link MatchSnapshot}.
+ */
+class MatchSnapshotTest {
+    /**
+     * The maximum number of commands played by {@link #sameErrorsAsGame()}.
+     */
+    private static final int MAX_COMMANDS = 150;
+
+    /**
+     * Plays a match with random legal moves and checks, at every step and for every command a player could send, that
+     * the commands refused by the snapshot are refused by the {@link Game} too, with the same error. Refused commands
+     * fail before changing anything, so they can be tried on a copy of the game.
+     */
+    @Test
+    void sameErrorsAsGame() {
+        List<String> players = List.of("alice", "bob", "carl");
+        Match m = joinedMatch(players);
+        List<UserCommand> candidates = new ArrayList<>(RecordedMatch.candidates(players).stream()
+                .map(Parser::parse)
+                .toList());
+        Random random = new Random(1);
+        int refused = 0;
+
+        for (int i = 0; i < MAX_COMMANDS && !m.getGame().isEnded(); i++) {
+            MatchSnapshot snapshot = new MatchSnapshot(m, 0);
+            Phase phase = m.getGame().getPhase();
+            List<UserCommand> notRefused = new ArrayList<>();
+            for (UserCommand c : candidates) {
+                Optional<String> error = snapshot.check(c);
+                if (error.isEmpty()) {
+                    notRefused.add(c);
+                    continue;
+                }
+                Exception e = assertThrows(Exception.class, () -> new Game(phase).executeUserCommand(c));
+                assertEquals(e.getMessage(), error.get());
+                refused++;
+            }
+
+            Collections.shuffle(notRefused, random);
+            boolean played = false;
+            for (UserCommand c : notRefused) {
+                try {
+                    m.getGame().executeUserCommand(c);
+                    played = true;
+                    break;
+                } catch (Exception ignored) {
+                }
+            }
+            assertTrue(played);
+        }
+        assertTrue(refused > 0);
+    }
+
+    /**
+     * Checks that {@code JOIN}s, {@code LEAVE}s and the commands received while the match is waiting for its players to
+     * rejoin are never refused, and that in the lobby every game command is.
+     */
+    @Test
+    void notChecked() {
+        Match lobby = new Match(997, new Game(2, false));
+        MatchSnapshot snapshot = new MatchSnapshot(lobby, 0);
+        assertTrue(snapshot.check(Parser.parse(ControllerTestUtils.generateJoin("alice", 997))).isEmpty());
+        assertTrue(snapshot.check(Parser.parse(ControllerTestUtils.generateLeave("alice", 997))).isEmpty());
+        assertEquals(Optional.of("Action not supported in this game phase."),
+                snapshot.check(Parser.parse(ControllerTestUtils.generateChooseMage("alice", 997, "FAIRY"))));
+
+        Match rejoining = new Match(997, joinedMatch(List.of("alice", "bob")).getGame().getPhase());
+        assertTrue(rejoining.isRejoiningState());
+        for (String p : List.of("alice", "bob")) {
+            UserCommand command = Parser.parse(ControllerTestUtils.generateChooseMage(p, 997, "FAIRY"));
+            assertTrue(new MatchSnapshot(rejoining, 0).check(command).isEmpty());
+        }
+    }
+
+    /**
+     * Checks that a {@link Match} answers a command refused by its snapshot right away, without queueing it, and still
+     * queues the valid ones, which are then run.
+     */
+    @Test
+    void refusedBeforeQueueing() throws InterruptedException {
+        boolean usesPersistence = ProgramOptions.usesPersistence();
+        ProgramOptions.setUsePersistence(false);
+        try {
+            Match m = joinedMatch(List.of("alice", "bob"));
+            m.publishSnapshot();
+            String current = m.getGame().getCurrentPlayerUsername().orElseThrow();
+            String other = current.equals("alice") ? "bob" : "alice";
+            RecordingDispatcher otherDispatcher = dispatcherOf(m, other);
+
+            UserCommand invalid = Parser.parse(ControllerTestUtils.generateChooseMage(other, 997, "FAIRY"));
+            m.executeUserCommand(invalid, otherDispatcher);
+            assertTrue(m.getCommands().isEmpty());
+            assertEquals(1, otherDispatcher.received.size());
+            JsonObject error = otherDispatcher.received.get(0);
+            assertEquals("ERROR", error.get("type").getAsString());
+            assertEquals(997, error.get("id").getAsLong());
+            assertEquals("It is not " + other + "'s turn", error.get("reason").getAsString());
+
+            UserCommand valid = Parser.parse(ControllerTestUtils.generateChooseMage(current, 997, "FAIRY"));
+            assertDoesNotThrow(() -> m.executeUserCommand(valid, dispatcherOf(m, current)));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (otherDispatcher.received.size() < 2 && System.nanoTime() - deadline < 0)
+                Thread.sleep(10);
+            assertEquals("UPDATE", otherDispatcher.received.get(1).get("type").getAsString());
+        } finally {
+            ProgramOptions.setUsePersistence(usesPersistence);
+        }
+    }
+
+    /**
+     * Checks that, when managing a batch fails unexpectedly, its senders are notified and a new snapshot is still
+     * published, so that the commands received afterwards are still checked before being queued.
+     */
+    @Test
+    void checkedAfterFailure() {
+        boolean usesPersistence = ProgramOptions.usesPersistence();
+        ProgramOptions.setUsePersistence(false);
+        try {
+            AtomicBoolean fail = new AtomicBoolean();
+            Match m = new Match(997, new Game(2, false));
+            Map<String, RecordingDispatcher> players = new HashMap<>();
+            for (String p : List.of("alice", "bob")) {
+                RecordingDispatcher d = new RecordingDispatcher() {
+                    @Override
+                    public void send(OutgoingMessage toWrite) {
+                        if (fail.getAndSet(false))
+                            throw new IllegalStateException("Broken connection");
+                        super.send(toWrite);
+                    }
+                };
+                players.put(p, d);
+                assertTrue(m.enqueue(Parser.parse(ControllerTestUtils.generateJoin(p, 997)), d));
+            }
+            m.getCommandManager().runPending(32);
+
+            String current = m.getGame().getCurrentPlayerUsername().orElseThrow();
+            RecordingDispatcher sender = players.get(current);
+            assertTrue(m.enqueue(Parser.parse(ControllerTestUtils.generateChooseMage(current, 997, "FAIRY")), sender));
+            fail.set(true);
+            m.getCommandManager().runPending(32);
+            JsonObject error = sender.received.get(sender.received.size() - 1);
+            assertEquals("Internal error while executing the command.", error.get("reason").getAsString());
+
+            assertFalse(m.enqueue(Parser.parse(ControllerTestUtils.generateChooseMage(current, 997, "FAIRY")), sender));
+            assertTrue(m.getCommands().isEmpty());
+            error = sender.received.get(sender.received.size() - 1);
+            assertEquals("It is not " + current + "'s turn", error.get("reason").getAsString());
+        } finally {
+            ProgramOptions.setUsePersistence(usesPersistence);
+        }
+    }
+
+    /**
+     * Creates a match whose players have all joined, each one through a {@link RecordingDispatcher}.
+     *
+     * @param players the usernames of the players
+     * @return the match
+     */
+    private static Match joinedMatch(List<String> players) {
+        Match m = new Match(997, new Game(players.size(), false));
+        for (String p : players) {
+            UserCommand join = Parser.parse(ControllerTestUtils.generateJoin(p, 997));
+            assertDoesNotThrow(() -> m.getGame().executeUserCommand(join));
+            m.addDispatcher(new RecordingDispatcher(), p);
+        }
+        return m;
+    }
+
+    /**
+     * Returns the {@link RecordingDispatcher} of the given player.
+     *
+     * @param m        the match
+     * @param username the username of the player
+     * @return the dispatcher
+     */
+    private static RecordingDispatcher dispatcherOf(Match m, String username) {
+        return m.getDispatchersAndNames().stream()
+                .filter(t -> t.getSecond().equals(username))
+                .map(t -> (RecordingDispatcher) t.getFirst())
+                .findFirst()
+                .orElseThrow();
+    }
+}
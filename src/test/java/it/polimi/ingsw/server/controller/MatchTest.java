@@ -1,5 +1,9 @@
 package it.polimi.ingsw.server.controller;
 
+import it.polimi.ingsw.ProgramOptions;
+import it.polimi.ingsw.functional.Tuple;
+import it.polimi.ingsw.server.controller.commands.Parser;
+import it.polimi.ingsw.server.controller.commands.UserCommand;
 import it.polimi.ingsw.server.model.Game;
 import it.polimi.ingsw.server.model.MockPhase;
 import it.polimi.ingsw.server.model.Phase;
@@ -8,9 +12,11 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.lang.reflect.Field;
 import java.net.Socket;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -18,6 +24,10 @@ import static org.junit.jupiter.api.Assertions.*;
  * Test class for {@link Match}.
  */
 class MatchTest {
+    /**
+     * The number of matches created and terminated by {@link #lifecycleSoakTest()}.
+     */
+    private static final int SOAK_MATCHES = 3000;
 
     Dispatcher d1 = new Dispatcher(new Socket()),
             d2 = new Dispatcher(new Socket()),
@@ -77,4 +87,90 @@ class MatchTest {
         assertIterableEquals(new ArrayList<>(), m.getDispatchers());
         assertThrows(IllegalArgumentException.class, () -> m.removeDispatcher(d2, "bob"));
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests the lifecycle of a Match: a drained Match refuses new commands, while a stopped one has released its
+     * players, has discarded its queued commands and refuses new players.
+     */
+    @Test
+    @DisplayName("Lifecycle test")
+    void lifecycleTest() {
+        assertEquals(Match.State.CREATED, m.getState());
+        m.start();
+        assertEquals(Match.State.RUNNING, m.getState());
+
+        m.addDispatcher(d1, "alice");
+        UserCommand join = Parser.parse(ControllerTestUtils.generateJoin("bob", 0));
+        m.getCommands().add(new Tuple<>(join, d2));
+        m.drain();
+        assertEquals(Match.State.DRAINING, m.getState());
+        assertFalse(m.hasEnded());
+        assertThrows(IllegalArgumentException.class, () -> m.executeUserCommand(join, d2));
+        assertEquals(1, m.getCommands().size());
+
+        assertIterableEquals(List.of(d1), m.stop());
+        assertEquals(Match.State.STOPPED, m.getState());
+        assertTrue(m.hasEnded());
+        assertTrue(m.getDispatchers().isEmpty());
+        assertTrue(m.getCommands().isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> m.addDispatcher(d2, "bob"));
+
+        assertTrue(m.stop().isEmpty());
+        m.start();
+        m.drain();
+        assertEquals(Match.State.STOPPED, m.getState());
+    }
+
+    /**
+     * Creates and terminates thousands of matches through the {@link MatchRegistry}, with pinging enabled and players
+     * joining them while they are terminated, and checks that each one releases its players and its commands, and that
+     * the number of live threads and of tasks scheduled on the shared {@link TimingWheel} go back to their baseline.
+     */
+    @Test
+    @DisplayName("Lifecycle soak test")
+    void lifecycleSoakTest() throws Exception {
+        boolean usesPing = ProgramOptions.usesPing(), usesPersistence = ProgramOptions.usesPersistence();
+        ProgramOptions.setUsePing(true);
+        ProgramOptions.setUsePersistence(false);
+        Field instance = MatchRegistry.class.getDeclaredField("registryInstance");
+        instance.setAccessible(true);
+        instance.set(null, null);
+        try {
+            MatchRegistry registry = MatchRegistry.getInstance(Match::new);
+            TimingWheel wheel = TimingWheel.getInstance();
+            MatchExecutor.getInstance();
+            int threads = Thread.activeCount(), timers = wheel.pending();
+
+            List<Match> matches = new ArrayList<>();
+            for (int i = 0; i < SOAK_MATCHES; i++) {
+                Match match = registry.create(registry.chooseGameId(), 2, false);
+                for (String name : List.of("alice", "bob"))
+                    match.executeUserCommand(Parser.parse(ControllerTestUtils.generateJoin(name, (int) match.getId())),
+                            new RecordingDispatcher());
+                if (i % 2 == 0)
+                    registry.terminate(match.getId());
+                else
+                    registry.terminate(match.getId(), "Soak test.");
+                matches.add(match);
+            }
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (System.nanoTime() - deadline < 0 && (Thread.activeCount() > threads ||
+                    matches.stream().anyMatch(match -> !match.getCommands().isEmpty())))
+                Thread.sleep(10);
+
+            for (Match match : matches) {
+                assertTrue(match.hasEnded());
+                assertTrue(match.getDispatchers().isEmpty());
+                assertTrue(match.getCommands().isEmpty());
+            }
+            assertTrue(registry.getAll().isEmpty());
+            assertTrue(Thread.activeCount() <= threads, Thread.activeCount() + " threads, expected " + threads);
+            assertTrue(wheel.pending() <= timers, wheel.pending() + " pending tasks, expected " + timers);
+        } finally {
+            instance.set(null, null);
+            ProgramOptions.setUsePing(usesPing);
+            ProgramOptions.setUsePersistence(usesPersistence);
+        }
+    }
+}
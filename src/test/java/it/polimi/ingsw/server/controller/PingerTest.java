@@ -0,0 +1,117 @@
+package it.polimi.ingsw.server.controller;
+
+import it.polimi.ingsw.ProgramOptions;
+import it.polimi.ingsw.server.model.Game;
+import it.polimi.ingsw.server.net.Dispatcher;
+import org.junit.jupiter.api.Test;
+
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link Pinger}.
+ */
+class PingerTest {
+    /**
+     * Checks that only the dispatchers that have been quiet long enough are selected, and that the next check is
+     * scheduled when the first of the others becomes quiet.
+     */
+    @Test
+    void selectIdle() throws InterruptedException {
+        Dispatcher older = new Dispatcher(new Socket());
+        Thread.sleep(20);
+        Dispatcher newer = new Dispatcher(new Socket());
+        long a = older.getLastReceived(), b = newer.getLastReceived();
+        assertTrue(b - a > 0);
+
+        List<Dispatcher> idle = new ArrayList<>();
+        long quiet = b - a;
+        assertEquals(b + quiet, Pinger.selectIdle(List.of(older, newer), b, quiet, idle));
+        assertEquals(List.of(older), idle);
+
+        idle.clear();
+        assertEquals(a + 2 * quiet, Pinger.selectIdle(List.of(older, newer), a, 2 * quiet, idle));
+        assertTrue(idle.isEmpty());
+
+        idle.clear();
+        long later = b + 10 * quiet;
+        assertEquals(later + quiet, Pinger.selectIdle(List.of(older, newer), later, quiet, idle));
+        assertEquals(List.of(older, newer), idle);
+
+        idle.clear();
+        assertEquals(later + quiet, Pinger.selectIdle(List.of(), later, quiet, idle));
+        assertTrue(idle.isEmpty());
+    }
+
+    /**
+     * Checks that a wave pings the given dispatchers, and that it is answered only once all of them respond before the
+     * deadline.
+     */
+    @Test
+    void answeredWave() throws InterruptedException {
+        TimingWheel wheel = new TimingWheel("test-wheel", 10, 8);
+        Match match = newMatch();
+        RecordingDispatcher a = new RecordingDispatcher(), b = new RecordingDispatcher();
+        AtomicInteger answered = new AtomicInteger();
+        Pinger pinger = new Pinger(match, 200, List.of(a, b), wheel, answered::incrementAndGet);
+
+        pinger.run();
+        assertEquals("PING", a.received.get(0).get("type").getAsString());
+        assertEquals(990, b.received.get(0).get("id").getAsLong());
+        pinger.notifyResponse(a);
+        pinger.notifyResponse(a);
+        assertEquals(0, answered.get());
+        pinger.notifyResponse(b);
+        assertEquals(1, answered.get());
+        pinger.notifyResponse(b);
+        Thread.sleep(300);
+        assertEquals(1, answered.get());
+        wheel.stop();
+    }
+
+    /**
+     * Checks that a wave that is not answered in time, or that is cancelled, is never answered, and that a wave with
+     * nobody to ping is answered right away.
+     */
+    @Test
+    void unansweredWave() throws InterruptedException {
+        TimingWheel wheel = new TimingWheel("test-wheel", 10, 8);
+        Match match = newMatch();
+        RecordingDispatcher a = new RecordingDispatcher(), b = new RecordingDispatcher();
+        AtomicInteger answered = new AtomicInteger();
+
+        Pinger late = new Pinger(match, 50, List.of(a, b), wheel, answered::incrementAndGet);
+        late.run();
+        late.notifyResponse(a);
+        Thread.sleep(200);
+        late.notifyResponse(b);
+        assertEquals(0, answered.get());
+
+        Pinger cancelled = new Pinger(match, 50, List.of(a), wheel, answered::incrementAndGet);
+        cancelled.run();
+        cancelled.cancel();
+        cancelled.notifyResponse(a);
+        assertEquals(0, answered.get());
+
+        new Pinger(match, 50, List.of(), wheel, answered::incrementAndGet).run();
+        assertEquals(1, answered.get());
+        wheel.stop();
+    }
+
+    /**
+     * Creates a match that pings nobody by itself.
+     *
+     * @return the match
+     */
+    private static Match newMatch() {
+        boolean usesPing = ProgramOptions.usesPing();
+        ProgramOptions.setUsePing(false);
+        Match match = new Match(990, new Game(2, false));
+        ProgramOptions.setUsePing(usesPing);
+        return match;
+    }
+}
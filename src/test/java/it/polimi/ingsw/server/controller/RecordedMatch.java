@@ -0,0 +1,184 @@
+package it.polimi.ingsw.server.controller;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import it.polimi.ingsw.enums.AssistantType;
+import it.polimi.ingsw.enums.Mage;
+import it.polimi.ingsw.enums.PieceColor;
+import it.polimi.ingsw.server.controller.commands.Parser;
+import it.polimi.ingsw.server.controller.commands.UserCommand;
+import it.polimi.ingsw.server.model.Game;
+import it.polimi.ingsw.server.model.PhaseDiff;
+import it.polimi.ingsw.server.model.Player;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Plays a whole match with random (but legal) moves and records the messages the server would send to the players:
+ * the {@code UPDATE} following each command, a full-state dump like the one sent to rejoining players at the start of
+ * every round and the final {@code END} message. Used by tests and benchmarks that need realistic protocol traffic.
+ */
+public class RecordedMatch {
+    /**
+     * The ID of the recorded match.
+     */
+    private static final int GAME_ID = 0;
+    /**
+     * The maximum number of commands played before giving up on the match ending.
+     */
+    private static final int MAX_COMMANDS = 2000;
+
+    /**
+     * Class shouldn't be instantiated.
+     */
+    private RecordedMatch() {
+    }
+
+    /**
+     * Plays a match and returns the messages sent by the server, in order.
+     *
+     * @param nPlayers the number of players
+     * @param expert   whether the match is in expert mode
+     * @param seed     the seed used for choosing the moves
+     * @return the list of messages sent by the server
+     */
+    public static List<JsonObject> play(int nPlayers, boolean expert, long seed) {
+        return play(nPlayers, expert, seed, new ArrayList<>());
+    }
+
+    /**
+     * Plays a match and returns the messages sent by the server, in order. The legal commands sent by the players are
+     * appended, in order, to the given list.
+     *
+     * @param nPlayers the number of players
+     * @param expert   whether the match is in expert mode
+     * @param seed     the seed used for choosing the moves
+     * @param commands the list receiving the commands sent by the players
+     * @return the list of messages sent by the server
+     */
+    public static List<JsonObject> play(int nPlayers, boolean expert, long seed, List<JsonObject> commands) {
+        Random random = new Random(seed);
+        Game game = new Game(nPlayers, expert);
+        List<String> players = new ArrayList<>();
+        for (int i = 0; i < nPlayers; i++)
+            players.add("player" + i);
+
+        List<JsonObject> messages = new ArrayList<>();
+        for (String p : players)
+            execute(game, command(p, "JOIN", null), messages, commands);
+
+        String round = null;
+        for (int i = 0; i < MAX_COMMANDS && !game.isEnded(); i++) {
+            String phase = game.dumpPhase().toJson().getAsJsonObject().get("phase").getAsString();
+            if (phase.equals("PlanningPhase") && !phase.equals(round))
+                messages.add(Messages.buildUpdateMessage(game.dumpPhase().toJson().getAsJsonObject(), GAME_ID,
+                        true, List.of(players.get(0))));
+            round = phase;
+
+            List<JsonObject> candidates = candidates(players);
+            Collections.shuffle(candidates, random);
+            boolean played = false;
+            for (JsonObject c : candidates)
+                if (execute(game, c, messages, commands)) {
+                    played = true;
+                    break;
+                }
+            if (!played) throw new IllegalStateException("no legal move in " + phase);
+        }
+        if (game.isEnded())
+            messages.add(Messages.buildEndMessage(GAME_ID, "A winner has been found.",
+                    game.getWinners().stream().map(Player::getUsername).toList()));
+        return messages;
+    }
+
+    /**
+     * Tries to execute the given command, recording it and the resulting {@code UPDATE} if it succeeds.
+     *
+     * @param game     the game
+     * @param command  the command
+     * @param messages the recorded messages
+     * @param commands the recorded commands
+     * @return true if the command was legal
+     */
+    private static boolean execute(Game game, JsonObject command, List<JsonObject> messages, List<JsonObject> commands) {
+        try {
+            UserCommand parsed = Parser.parse(command);
+            PhaseDiff diff = game.executeUserCommand(parsed);
+            diff.addAttribute("cause", new JsonPrimitive(parsed.getModificationMessage()));
+            messages.add(Messages.buildUpdateMessage(diff.toJson().getAsJsonObject(), GAME_ID));
+            commands.add(command);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Builds every command a player could send, except for {@code PLAY_CHARACTER} and {@code LEAVE}.
+     *
+     * @param players the usernames of the players
+     * @return the list of commands
+     */
+    static List<JsonObject> candidates(List<String> players) {
+        List<JsonObject> candidates = new ArrayList<>();
+        for (String p : players) {
+            for (Mage m : Mage.values())
+                candidates.add(command(p, "CHOOSE_MAGE", new JsonPrimitive(m.toString())));
+            for (AssistantType a : AssistantType.values())
+                candidates.add(command(p, "PLAY_ASSISTANTS", new JsonPrimitive(a.toString())));
+            for (PieceColor c : PieceColor.values()) {
+                candidates.add(command(p, "MOVE_STUDENT", move(c, "HALL", -1)));
+                for (int i = 0; i < 12; i++)
+                    candidates.add(command(p, "MOVE_STUDENT", move(c, "ISLAND", i)));
+            }
+            for (int steps = 1; steps <= 7; steps++)
+                candidates.add(command(p, "MOVE_MN", new JsonPrimitive(steps)));
+            for (int cloud = 0; cloud < 4; cloud++)
+                candidates.add(command(p, "PICK_CLOUD", new JsonPrimitive(cloud)));
+        }
+        return candidates;
+    }
+
+    /**
+     * Builds the argument of a {@code MOVE_STUDENT} command.
+     *
+     * @param color       the color of the student
+     * @param destination the destination of the student
+     * @param index       the index of the destination island, ignored if negative
+     * @return the argument
+     */
+    private static JsonObject move(PieceColor color, String destination, int index) {
+        JsonObject arg = new JsonObject();
+        arg.addProperty("source", "ENTRANCE");
+        arg.addProperty("destination", destination);
+        arg.addProperty("color", color.toString());
+        if (index >= 0) arg.addProperty("index", index);
+        return arg;
+    }
+
+    /**
+     * Builds a command.
+     *
+     * @param username the sender
+     * @param type     the type of the command
+     * @param argument the only argument of the command, or null if it has none
+     * @return the command
+     */
+    private static JsonObject command(String username, String type, JsonElement argument) {
+        JsonObject command = new JsonObject();
+        command.addProperty("gameId", GAME_ID);
+        command.addProperty("username", username);
+        command.addProperty("type", type);
+        if (argument != null) {
+            JsonArray arguments = new JsonArray();
+            arguments.add(argument);
+            command.add("arguments", arguments);
+        }
+        return command;
+    }
+}
@@ -0,0 +1,41 @@
+package it.polimi.ingsw.server.controller;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import it.polimi.ingsw.net.Encoding;
+import it.polimi.ingsw.server.net.Dispatcher;
+import it.polimi.ingsw.server.net.OutgoingMessage;
+
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Mock class for the {@link Dispatcher} class that records the messages sent to it instead of writing them. Messages
+ * can be sent from any thread, e.g. the workers running the matches' commands, while the test reads them.
+ */
+class RecordingDispatcher extends Dispatcher {
+    /**
+     * The messages sent so far.
+     */
+    final List<JsonObject> received = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates a new RecordingDispatcher.
+     */
+    RecordingDispatcher() {
+        super(new Socket());
+    }
+
+    /**
+     * Records the message.
+     *
+     * @param toWrite the message
+     */
+    @Override
+    public void send(OutgoingMessage toWrite) {
+        String json = new String(toWrite.payload(Encoding.JSON), StandardCharsets.UTF_8);
+        received.add(JsonParser.parseString(json).getAsJsonObject());
+    }
+}
@@ -0,0 +1,131 @@
+package it.polimi.ingsw.server.controller;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link TimingWheel}.
+ */
+class TimingWheelTest {
+    /**
+     * The length of a tick of the tested wheels, in milliseconds.
+     */
+    private static final long TICK = 10;
+    /**
+     * How late a task may run, beyond one tick, in milliseconds. It is generous, since the thread of the wheel may not
+     * be scheduled for a while on a loaded machine: tasks running early are what the tests are strict about.
+     */
+    private static final long SLACK = 1000;
+
+    /**
+     * Checks that tasks never run before their delay, and not much later than a tick after it, also when their delay is
+     * longer than a round of the wheel.
+     */
+    @Test
+    void accuracy() throws InterruptedException {
+        TimingWheel wheel = new TimingWheel("test-wheel", TICK, 8);
+        long[] delays = {0, 5, 10, 35, 79, 80, 81, 250};
+        long[] ran = new long[delays.length];
+        long[] scheduled = new long[delays.length];
+        CountDownLatch done = new CountDownLatch(delays.length);
+        for (int i = 0; i < delays.length; i++) {
+            int n = i;
+            scheduled[i] = System.nanoTime();
+            wheel.schedule(delays[i], () -> {
+                ran[n] = System.nanoTime();
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < delays.length; i++) {
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(ran[i] - scheduled[i]);
+            assertTrue(elapsed >= delays[i], "delay " + delays[i] + " ran after " + elapsed + "ms");
+            assertTrue(elapsed <= delays[i] + TICK + SLACK, "delay " + delays[i] + " ran after " + elapsed + "ms");
+        }
+        wheel.stop();
+    }
+
+    /**
+     * Checks that cancelled tasks never run, and that tasks can be cancelled only once and only before running.
+     */
+    @Test
+    void cancel() throws InterruptedException {
+        TimingWheel wheel = new TimingWheel("test-wheel", TICK, 8);
+        AtomicInteger runs = new AtomicInteger();
+        TimingWheel.Timeout cancelled = wheel.schedule(50, runs::incrementAndGet);
+        TimingWheel.Timeout far = wheel.schedule(500, runs::incrementAndGet);
+        CountDownLatch done = new CountDownLatch(1);
+        TimingWheel.Timeout kept = wheel.schedule(20, done::countDown);
+        assertEquals(3, wheel.pending());
+
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        assertTrue(far.cancel());
+        assertEquals(1, wheel.pending());
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertFalse(kept.cancel());
+        assertEquals(0, wheel.pending());
+        Thread.sleep(150);
+        assertEquals(0, runs.get());
+        wheel.stop();
+    }
+
+    /**
+     * Checks that many tasks, scheduled and cancelled from several threads, all run on time or not at all: never
+     * early, and not much later than a tick after their delay.
+     */
+    @Test
+    void manyTasks() throws InterruptedException {
+        TimingWheel wheel = new TimingWheel("test-wheel", TICK, 16);
+        int nThreads = 4, perThread = 2500;
+        AtomicInteger early = new AtomicInteger(), ran = new AtomicInteger(), cancelled = new AtomicInteger();
+        AtomicLong latest = new AtomicLong();
+        Thread[] threads = new Thread[nThreads];
+        for (int t = 0; t < nThreads; t++) {
+            Random random = new Random(t);
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    long delay = random.nextInt(300);
+                    long due = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+                    TimingWheel.Timeout timeout = wheel.schedule(delay, () -> {
+                        long now = System.nanoTime();
+                        if (now - due < 0) early.incrementAndGet();
+                        latest.accumulateAndGet(now - due, Math::max);
+                        ran.incrementAndGet();
+                    });
+                    if (i % 3 == 0 && timeout.cancel())
+                        cancelled.incrementAndGet();
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads)
+            t.join();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300 + TICK + SLACK);
+        while (ran.get() + cancelled.get() < nThreads * perThread && System.nanoTime() - deadline < 0)
+            Thread.sleep(10);
+
+        assertEquals(nThreads * perThread, ran.get() + cancelled.get());
+        assertEquals(0, early.get());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(latest.get()) <= TICK + SLACK, latest.get() + "ns late");
+        wheel.stop();
+    }
+
+    /**
+     * Checks that the arguments are checked.
+     */
+    @Test
+    void illegalArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel(null, TICK, 8));
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel("test-wheel", 0, 8));
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel("test-wheel", TICK, 0));
+        assertThrows(IllegalArgumentException.class, () -> TimingWheel.getInstance().schedule(10, null));
+    }
+}
@@ -0,0 +1,170 @@
+package it.polimi.ingsw.server.controller.commands;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import it.polimi.ingsw.server.controller.RecordedMatch;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link CommandReader}. Every command it reads is compared with the one built by {@link Parser}.
+ */
+class CommandReaderTest {
+    /**
+     * Reads the given string, surrounded by other bytes that must be ignored.
+     *
+     * @param s the command
+     * @return the command read, or null
+     */
+    private static UserCommand read(String s) {
+        byte[] padded = ("xx" + s + "yy").getBytes(StandardCharsets.UTF_8);
+        return CommandReader.read(padded, 2, padded.length - 4);
+    }
+
+    /**
+     * Checks that the given string is read into the same command built by {@link Parser}.
+     *
+     * @param s the command
+     */
+    private static void assertSameAsParser(String s) {
+        UserCommand expected = Parser.parse(JsonParser.parseString(s).getAsJsonObject());
+        UserCommand actual = read(s);
+        assertNotNull(actual, s);
+        assertEquals(expected.getClass(), actual.getClass());
+        assertEquals(expected.getType(), actual.getType());
+        assertEquals(expected.getGameId(), actual.getGameId());
+        assertEquals(expected.getUsername(), actual.getUsername());
+        assertEquals(expected.getModificationMessage(), actual.getModificationMessage());
+        if (expected instanceof SingleArgumentCommand<?> e && actual instanceof SingleArgumentCommand<?> a) {
+            if (e.getArg() instanceof MoveStudentCommand.MoveParameter m) {
+                MoveStudentCommand.MoveParameter n = (MoveStudentCommand.MoveParameter) a.getArg();
+                assertEquals(m.getDestination(), n.getDestination());
+                assertEquals(m.getColor(), n.getColor());
+                assertEquals(m.getIndex(), n.getIndex());
+            } else if (e.getArg() instanceof PlayCharacterCommand.CharacterInvocation i) {
+                PlayCharacterCommand.CharacterInvocation j = (PlayCharacterCommand.CharacterInvocation) a.getArg();
+                assertEquals(i.getCharacter(), j.getCharacter());
+                assertEquals(i.getSteps(), j.getSteps());
+            } else {
+                assertEquals(e.getArg(), a.getArg());
+            }
+        }
+    }
+
+    /**
+     * Checks that every command sent during some recorded matches is read like {@link Parser} does.
+     */
+    @Test
+    void recordedCommands() {
+        for (int seed = 0; seed < 3; seed++) {
+            List<JsonObject> commands = new ArrayList<>();
+            RecordedMatch.play(2 + seed % 2, seed % 2 == 0, seed, commands);
+            assertFalse(commands.isEmpty());
+            for (JsonObject c : commands)
+                assertSameAsParser(c + "\n\n");
+        }
+    }
+
+    /**
+     * Checks that well-formed commands are read whatever the order of their properties, the whitespace and the extra
+     * properties and arguments they contain.
+     */
+    @Test
+    void wellFormed() {
+        assertSameAsParser("{\"type\":\"JOIN\",\"gameId\":0,\"username\":\"ann\"}");
+        assertSameAsParser("{\"username\":\"zo\u00EB\",\"gameId\":999999999999999999,\"type\":\"LEAVE\",\"arguments\":{}}");
+        assertSameAsParser(" {\r\n\t\"arguments\" : [ 3 , {\"x\":[1,-2.5e3,true,false,null,\"y\"]} ] ,\n" +
+                "\"type\" : \"MOVE_MN\" , \"gameId\" : 4 , \"username\" : \"ann\" , \"extra\" : {\"a\":[]} } \r\n\r\n");
+        assertSameAsParser("{\"type\":\"PICK_CLOUD\",\"gameId\":1,\"username\":\"ann\",\"arguments\":[0]}");
+        assertSameAsParser("{\"type\":\"CHOOSE_MAGE\",\"gameId\":1,\"username\":\"ann\",\"arguments\":[\"SAGE\"]}");
+        assertSameAsParser("{\"type\":\"PLAY_ASSISTANTS\",\"gameId\":1,\"username\":\"ann\",\"arguments\":[\"CHEETAH\"]}");
+        assertSameAsParser("{\"type\":\"MOVE_STUDENT\",\"gameId\":1,\"username\":\"ann\",\"arguments\":" +
+                "[{\"source\":\"ENTRANCE\",\"destination\":\"HALL\",\"color\":\"RED\"}]}");
+        assertSameAsParser("{\"type\":\"MOVE_STUDENT\",\"gameId\":1,\"username\":\"ann\",\"arguments\":" +
+                "[{\"index\":11,\"color\":\"PINK\",\"destination\":\"ISLAND\"}]}");
+        assertSameAsParser("{\"type\":\"PLAY_CHARACTER\",\"gameId\":1,\"username\":\"ann\",\"arguments\":" +
+                "[{\"character\":\"PRIEST\",\"steps\":[{\"card\":\"RED\",\"island\":3},{}]}]}");
+        assertSameAsParser("{\"type\":\"PLAY_CHARACTER\",\"gameId\":1,\"username\":\"ann\",\"arguments\":" +
+                "[{\"steps\":[],\"character\":\"KNIGHT\",\"other\":1}]}");
+    }
+
+    /**
+     * Checks that messages that are not commands, or that are not plainly well-formed, are left to the parser.
+     */
+    @Test
+    void unrecognized() {
+        String[] messages = {
+                "",
+                "{}",
+                "{\"type\":\"FETCH\"}",
+                "{\"type\":\"CREATE\",\"username\":\"ann\",\"arguments\":[{\"nPlayers\":2,\"expert\":false}]}",
+                "{\"type\":\"HELLO\",\"framing\":\"DELIMITED\"}",
+                "{\"type\":\"PONG\",\"gameId\":1}",
+                "{\"type\":\"JOIN\",\"gameId\":1}",
+                "{\"type\":\"JOIN\",\"username\":\"ann\"}",
+                "{\"type\":\"JOIN\",\"gameId\":-1,\"username\":\"ann\"}",
+                "{\"type\":\"JOIN\",\"gameId\":\"1\",\"username\":\"ann\"}",
+                "{\"type\":\"JOIN\",\"gameId\":1.0,\"username\":\"ann\"}",
+                "{\"type\":\"JOIN\",\"gameId\":1e2,\"username\":\"ann\"}",
+                "{\"type\":\"JOIN\",\"gameId\":01,\"username\":\"ann\"}",
+                "{\"type\":\"JOIN\",\"gameId\":1234567890123456789,\"username\":\"ann\"}",
+                "{\"type\":\"JOIN\",\"gameId\":1,\"username\":\"\"}",
+                "{\"type\":\"JOIN\",\"gameId\":1,\"username\":\"a\\\"b\"}",
+                "{\"type\":\"JOIN\",\"gameId\":1,\"username\":\"a\tb\"}",
+                "{\"type\":\"JOIN\",\"gameId\":1,\"username\":null}",
+                "{\"type\":\"JOIN\",\"type\":\"JOIN\",\"gameId\":1,\"username\":\"ann\"}",
+                "{\"type\":\"JOIN\",\"gameId\":1,\"gameId\":2,\"username\":\"ann\"}",
+                "{\"type\":\"JOIN\",\"gameId\":1,\"username\":\"ann\",}",
+                "{\"type\":\"JOIN\",\"gameId\":1,\"username\":\"ann\"} x",
+                "{\"type\":\"JOIN\",\"gameId\":1,\"username\":\"ann\"",
+                "{'type':'JOIN','gameId':1,'username':'ann'}",
+                "{type:\"JOIN\",\"gameId\":1,\"username\":\"ann\"}",
+                "{\"type\":\"join\",\"gameId\":1,\"username\":\"ann\"}",
+                "{\"type\":\"JOIN\",\"gameId\":1,\"username\":\"ann\",\"x\":tru}",
+                "{\"type\":\"JOIN\",\"gameId\":1,\"username\":\"ann\",\"x\":" + "[".repeat(40) + "]".repeat(40) + "}",
+                "{\"type\":\"MOVE_MN\",\"gameId\":1,\"username\":\"ann\"}",
+                "{\"type\":\"MOVE_MN\",\"gameId\":1,\"username\":\"ann\",\"arguments\":[]}",
+                "{\"type\":\"MOVE_MN\",\"gameId\":1,\"username\":\"ann\",\"arguments\":3}",
+                "{\"type\":\"MOVE_MN\",\"gameId\":1,\"username\":\"ann\",\"arguments\":[-3]}",
+                "{\"type\":\"MOVE_MN\",\"gameId\":1,\"username\":\"ann\",\"arguments\":[\"3\"]}",
+                "{\"type\":\"MOVE_MN\",\"gameId\":1,\"username\":\"ann\",\"arguments\":[1234567890]}",
+                "{\"type\":\"MOVE_MN\",\"gameId\":1,\"username\":\"ann\",\"arguments\":[3],\"arguments\":[3]}",
+                "{\"type\":\"CHOOSE_MAGE\",\"gameId\":1,\"username\":\"ann\",\"arguments\":[\"MAGE_9\"]}",
+                "{\"type\":\"CHOOSE_MAGE\",\"gameId\":1,\"username\":\"ann\",\"arguments\":[1]}",
+                "{\"type\":\"MOVE_STUDENT\",\"gameId\":1,\"username\":\"ann\",\"arguments\":" +
+                        "[{\"destination\":\"ISLAND\",\"color\":\"RED\"}]}",
+                "{\"type\":\"MOVE_STUDENT\",\"gameId\":1,\"username\":\"ann\",\"arguments\":" +
+                        "[{\"destination\":\"HALL\"}]}",
+                "{\"type\":\"MOVE_STUDENT\",\"gameId\":1,\"username\":\"ann\",\"arguments\":" +
+                        "[{\"destination\":\"HALL\",\"color\":\"RED\",\"color\":\"RED\"}]}",
+                "{\"type\":\"MOVE_STUDENT\",\"gameId\":1,\"username\":\"ann\",\"arguments\":[null]}",
+                "{\"type\":\"PLAY_CHARACTER\",\"gameId\":1,\"username\":\"ann\",\"arguments\":" +
+                        "[{\"character\":\"MONK\"}]}",
+                "{\"type\":\"PLAY_CHARACTER\",\"gameId\":1,\"username\":\"ann\",\"arguments\":" +
+                        "[{\"character\":\"MONK\",\"steps\":[null]}]}",
+                "{\"type\":\"PLAY_CHARACTER\",\"gameId\":1,\"username\":\"ann\",\"arguments\":" +
+                        "[{\"character\":\"MONK\",\"steps\":[{\"a\":\"1\",\"a\":\"2\"}]}]}",
+                "{\"type\":\"PLAY_CHARACTER\",\"gameId\":1,\"username\":\"ann\",\"arguments\":" +
+                        "[{\"character\":\"MONK\",\"steps\":[{\"a\":true}]}]}",
+                "{\"type\":\"PLAY_CHARACTER\",\"gameId\":1,\"username\":\"ann\",\"arguments\":" +
+                        "[{\"character\":\"MONK\",\"steps\":[{\"a\":1.5}]}]}",
+        };
+        for (String m : messages)
+            assertNull(read(m), m);
+    }
+
+    /**
+     * Checks that the arguments are checked.
+     */
+    @Test
+    void illegalArguments() {
+        assertThrows(IllegalArgumentException.class, () -> CommandReader.read(null, 0, 0));
+        assertThrows(IndexOutOfBoundsException.class, () -> CommandReader.read(new byte[4], 2, 3));
+        assertThrows(IndexOutOfBoundsException.class, () -> CommandReader.read(new byte[4], -1, 2));
+    }
+}
@@ -0,0 +1,74 @@
+package it.polimi.ingsw.server.net;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link ConnectionLimiter}.
+ */
+class ConnectionLimiterTest {
+    /**
+     * Checks that the limit on connections from the same address is enforced, and that other addresses are not
+     * affected by it.
+     */
+    @Test
+    void perAddressLimit() throws UnknownHostException {
+        InetAddress a = InetAddress.getByName("10.0.0.1"), b = InetAddress.getByName("10.0.0.2");
+        ConnectionLimiter l = new ConnectionLimiter(10, 2);
+        assertTrue(l.tryAcquire(a));
+        assertTrue(l.tryAcquire(a));
+        assertFalse(l.tryAcquire(a));
+        assertTrue(l.tryAcquire(b));
+        l.release(a);
+        assertTrue(l.tryAcquire(a));
+        assertEquals(3, l.getConnections());
+    }
+
+    /**
+     * Checks that the global limit is enforced and that released connections make room for new ones.
+     */
+    @Test
+    void globalLimit() throws UnknownHostException {
+        ConnectionLimiter l = new ConnectionLimiter(3, 3);
+        for (int i = 1; i <= 3; i++)
+            assertTrue(l.tryAcquire(InetAddress.getByName("10.0.0." + i)));
+        assertFalse(l.tryAcquire(InetAddress.getByName("10.0.0.4")));
+        l.release(InetAddress.getByName("10.0.0.2"));
+        assertTrue(l.tryAcquire(InetAddress.getByName("10.0.0.4")));
+        assertEquals(3, l.getConnections());
+    }
+
+    /**
+     * Checks that connections without an address only count toward the global limit.
+     */
+    @Test
+    void withoutAddress() throws UnknownHostException {
+        ConnectionLimiter l = new ConnectionLimiter(3, 1);
+        assertTrue(l.tryAcquire());
+        assertTrue(l.tryAcquire());
+        assertTrue(l.tryAcquire(InetAddress.getByName("10.0.0.1")));
+        assertFalse(l.tryAcquire());
+        l.release();
+        assertTrue(l.tryAcquire());
+        l.release();
+        l.release();
+        assertThrows(IllegalStateException.class, l::release);
+        assertEquals(1, l.getConnections());
+    }
+
+    /**
+     * Checks that releasing a connection that was never admitted is an error.
+     */
+    @Test
+    void unbalancedRelease() throws UnknownHostException {
+        ConnectionLimiter l = new ConnectionLimiter(3, 3);
+        assertThrows(IllegalStateException.class, () -> l.release(InetAddress.getByName("10.0.0.1")));
+        assertThrows(IllegalArgumentException.class, () -> l.release(null));
+        assertThrows(IllegalArgumentException.class, () -> l.tryAcquire(null));
+        assertThrows(IllegalArgumentException.class, () -> new ConnectionLimiter(0, 1));
+    }
+}
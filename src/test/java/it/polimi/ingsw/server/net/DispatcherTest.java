@@ -0,0 +1,273 @@
+package it.polimi.ingsw.server.net;
+
+import it.polimi.ingsw.ProgramOptions;
+import it.polimi.ingsw.net.Compression;
+import it.polimi.ingsw.net.Encoding;
+import it.polimi.ingsw.net.Framing;
+import it.polimi.ingsw.net.Handshake;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link Dispatcher}.
+ */
+class DispatcherTest {
+    /**
+     * Restores the default command rate.
+     */
+    @AfterEach
+    void reset() {
+        ProgramOptions.setCommandRate(20);
+    }
+
+    /**
+     * Counts the occurrences of the given string in the given text.
+     *
+     * @param text   the text
+     * @param needle the string to count
+     * @return the number of occurrences
+     */
+    private static int count(String text, String needle) {
+        int n = 0;
+        for (int i = text.indexOf(needle); i >= 0; i = text.indexOf(needle, i + 1))
+            n++;
+        return n;
+    }
+
+    /**
+     * Waits until the given socket has received the given number of occurrences of the given string, or a few seconds
+     * have passed.
+     *
+     * @param socket the socket
+     * @param needle the string to look for
+     * @param n      the number of occurrences
+     */
+    private static void await(ScriptedSocket socket, String needle, int n) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (count(socket.received(), needle) < n && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+    }
+
+    /**
+     * Checks that a client flooding the server with messages is disconnected, and that the connection is accounted
+     * for as closed.
+     */
+    @Test
+    void floodingClientIsDisconnected() throws InterruptedException {
+        ProgramOptions.setCommandRate(20);
+        ScriptedSocket socket = new ScriptedSocket("x\n\n".repeat(1000));
+        Dispatcher d = new Dispatcher(socket);
+        CountDownLatch closed = new CountDownLatch(1);
+        d.setOnClose(closed::countDown);
+        Thread reader = new Thread(d);
+        reader.start();
+
+        assertTrue(closed.await(5, TimeUnit.SECONDS));
+        reader.join(5000);
+        assertFalse(reader.isAlive());
+        assertTrue(socket.isClosed());
+    }
+
+    /**
+     * Checks that a client going over the rate limit for a short while gets a burst of messages answered, is told
+     * once that it is being throttled, has the rest dropped and is not disconnected.
+     */
+    @Test
+    void burstingClientIsThrottled() throws InterruptedException {
+        ProgramOptions.setCommandRate(20);
+        ScriptedSocket socket = new ScriptedSocket("x\n\n".repeat(70));
+        Dispatcher d = new Dispatcher(socket);
+        Thread reader = new Thread(d);
+        reader.start();
+
+        await(socket, "Too many messages", 1);
+        Thread.sleep(200);
+        String received = socket.received();
+        int answered = count(received, "Malformed JSON");
+        assertTrue(answered >= 40 && answered <= 45, answered + " messages answered");
+        assertEquals(1, count(received, "Too many messages"));
+        assertFalse(socket.isClosed());
+        socket.close();
+        reader.join(5000);
+    }
+
+    /**
+     * Checks that a client staying within the rate limit gets every message answered.
+     */
+    @Test
+    void wellBehavedClientIsServed() throws InterruptedException {
+        ProgramOptions.setCommandRate(20);
+        ScriptedSocket socket = new ScriptedSocket("x\n\n".repeat(40));
+        Dispatcher d = new Dispatcher(socket);
+        Thread reader = new Thread(d);
+        reader.start();
+
+        await(socket, "Malformed JSON", 40);
+        assertEquals(40, count(socket.received(), "Malformed JSON"));
+        assertEquals(0, count(socket.received(), "Too many messages"));
+        assertFalse(socket.isClosed());
+        socket.close();
+        reader.join(5000);
+    }
+
+    /**
+     * Checks that keepalive messages are answered like before, whether they take the fast path or not, and that they
+     * count as the first message of the connection.
+     */
+    @Test
+    void keepaliveMessages() throws InterruptedException {
+        ProgramOptions.setUsePing(true);
+        ScriptedSocket socket = new ScriptedSocket("{\"type\":\"HEARTBEAT\"}\n\n" +
+                "{ \"type\": \"HEARTBEAT\" }\n\n" +
+                "{\"type\":\"PONG\",\"gameId\":123456}\n\n" +
+                Handshake.buildHello(Framing.LENGTH_PREFIXED, Encoding.JSON, Compression.NONE) + "\n\n");
+        Dispatcher d = new Dispatcher(socket);
+        Thread reader = new Thread(d);
+        reader.start();
+
+        await(socket, "HELLO must be the first message", 1);
+        assertEquals("{\"type\":\"HEARTBEAT\"}\n\n{\"type\":\"HEARTBEAT\"}\n\n" +
+                "{\"type\":\"ERROR\",\"reason\":\"No game with such ID.\"}\n\n" +
+                "{\"type\":\"ERROR\",\"reason\":\"HELLO must be the first message\"}\n\n", socket.received());
+        socket.close();
+        reader.join(5000);
+    }
+
+    /**
+     * Checks that game commands are answered like before, whether they are read straight from their bytes or parsed,
+     * and that invalid ones still get the parser's error messages.
+     */
+    @Test
+    void gameCommands() throws InterruptedException {
+        ScriptedSocket socket = new ScriptedSocket(
+                "{\"type\":\"MOVE_MN\",\"gameId\":123456,\"username\":\"ann\",\"arguments\":[2]}\n\n" +
+                        "{\"type\":\"MOVE_MN\",\"gameId\":\"123456\",\"username\":\"ann\",\"arguments\":[2]}\n\n" +
+                        "{\"type\":\"MOVE_MN\",\"gameId\":123456,\"username\":\"\",\"arguments\":[2]}\n\n" +
+                        "{\"type\":\"CHOOSE_MAGE\",\"gameId\":1,\"username\":\"ann\",\"arguments\":[\"X\"]}\n\n");
+        Dispatcher d = new Dispatcher(socket);
+        Thread reader = new Thread(d);
+        reader.start();
+
+        await(socket, "No enum constant", 1);
+        assertEquals("{\"type\":\"ERROR\",\"reason\":\"Wrong game ID.\"}\n\n" +
+                "{\"type\":\"ERROR\",\"reason\":\"Wrong game ID.\"}\n\n" +
+                "{\"type\":\"ERROR\",\"reason\":\"username should be a non-null string\"}\n\n" +
+                "{\"type\":\"ERROR\",\"reason\":\"No enum constant it.polimi.ingsw.enums.Mage.X\"}\n\n",
+                socket.received());
+        socket.close();
+        reader.join(5000);
+    }
+
+    /**
+     * A {@link Socket} whose input is the given script, after which it blocks until the socket is closed, and whose
+     * output is captured.
+     */
+    private static class ScriptedSocket extends Socket {
+        /**
+         * Released when the socket is closed.
+         */
+        private final CountDownLatch closed = new CountDownLatch(1);
+        /**
+         * The bytes sent by the client.
+         */
+        private final InputStream script;
+        /**
+         * The bytes written by the server.
+         */
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+        /**
+         * Creates a new ScriptedSocket.
+         *
+         * @param script what the client sends
+         */
+        ScriptedSocket(String script) {
+            this.script = new ByteArrayInputStream(script.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Returns what has been written to the socket so far.
+         *
+         * @return the bytes written, as a string
+         */
+        String received() {
+            synchronized (written) {
+                return written.toString(StandardCharsets.UTF_8);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public InputStream getInputStream() {
+            return new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    byte[] b = new byte[1];
+                    return read(b, 0, 1) < 0 ? -1 : b[0];
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    if (isClosed()) throw new IOException("Socket closed");
+                    int read = script.read(b, off, len);
+                    if (read > 0) return read;
+                    try {
+                        closed.await();
+                    } catch (InterruptedException ignored) {
+                    }
+                    throw new IOException("Socket closed");
+                }
+            };
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public OutputStream getOutputStream() {
+            return new OutputStream() {
+                @Override
+                public void write(int b) {
+                    write(new byte[]{(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    synchronized (written) {
+                        written.write(b, off, len);
+                    }
+                }
+            };
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public synchronized void close() {
+            closed.countDown();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isClosed() {
+            return closed.getCount() == 0;
+        }
+    }
+}
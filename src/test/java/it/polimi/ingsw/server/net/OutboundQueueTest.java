@@ -0,0 +1,83 @@
+package it.polimi.ingsw.server.net;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link OutboundQueue}.
+ */
+class OutboundQueueTest {
+    /**
+     * Checks that buffers are accepted until the high-water mark would be crossed.
+     */
+    @Test
+    void highWaterMark() {
+        assertThrows(IllegalArgumentException.class, () -> new OutboundQueue(0));
+        OutboundQueue q = new OutboundQueue(10);
+        assertTrue(q.isEmpty());
+        assertTrue(q.offer(ByteBuffer.allocate(6)));
+        assertTrue(q.offer(ByteBuffer.allocate(4)));
+        assertEquals(10, q.size());
+        assertFalse(q.offer(ByteBuffer.allocate(1)));
+        assertEquals(10, q.size());
+        q.clear();
+        assertTrue(q.isEmpty());
+        assertEquals(0, q.size());
+        assertTrue(q.offer(ByteBuffer.allocate(25)), "an empty queue should accept a buffer bigger than the mark");
+        assertFalse(q.offer(ByteBuffer.allocate(1)));
+    }
+
+    /**
+     * Checks that partially written buffers stay at the head of the queue and count for the bytes left.
+     */
+    @Test
+    void consumed() {
+        OutboundQueue q = new OutboundQueue(10);
+        ByteBuffer first = ByteBuffer.allocate(6);
+        ByteBuffer second = ByteBuffer.allocate(4);
+        q.offer(first);
+        q.offer(second);
+
+        first.position(4);
+        q.consumed(4);
+        assertSame(first, q.peek());
+        assertEquals(6, q.size());
+        assertTrue(q.offer(ByteBuffer.allocate(4)));
+
+        first.position(6);
+        q.consumed(2);
+        assertSame(second, q.peek());
+        assertEquals(8, q.size());
+    }
+
+    /**
+     * Checks that gathering returns the first buffers in order, and that a gathering write consuming some of them
+     * removes all the completed ones.
+     */
+    @Test
+    void gather() {
+        OutboundQueue q = new OutboundQueue(100);
+        ByteBuffer[] buffers = {ByteBuffer.allocate(3), ByteBuffer.allocate(4), ByteBuffer.allocate(5)};
+        for (ByteBuffer b : buffers) q.offer(b);
+
+        ByteBuffer[] gathered = new ByteBuffer[2];
+        assertEquals(2, q.gather(gathered));
+        assertSame(buffers[0], gathered[0]);
+        assertSame(buffers[1], gathered[1]);
+
+        buffers[0].position(3);
+        buffers[1].position(2);
+        q.consumed(5);
+        assertSame(buffers[1], q.peek());
+        assertEquals(7, q.size());
+
+        buffers[1].position(4);
+        buffers[2].position(5);
+        q.consumed(7);
+        assertTrue(q.isEmpty());
+        assertEquals(0, q.gather(gathered));
+    }
+}
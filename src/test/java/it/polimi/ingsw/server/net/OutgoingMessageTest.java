@@ -0,0 +1,38 @@
+package it.polimi.ingsw.server.net;
+
+import com.google.gson.JsonObject;
+import it.polimi.ingsw.net.Encoding;
+import it.polimi.ingsw.net.Framing;
+import it.polimi.ingsw.server.controller.Messages;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link OutgoingMessage}.
+ */
+class OutgoingMessageTest {
+    /**
+     * Checks that every recipient gets the same bytes it would get by framing the message itself, and that the views
+     * handed out are independent.
+     */
+    @Test
+    void framesMatchDirectEncoding() {
+        JsonObject end = Messages.buildEndMessage(7, "A winner has been found.", List.of("ann"));
+        OutgoingMessage message = new OutgoingMessage(end);
+        for (Encoding e : Encoding.values())
+            for (Framing f : Framing.values())
+                assertEquals(f.frame(e.encode(end)), message.frame(e, f));
+
+        ByteBuffer first = message.frame(Encoding.JSON, Framing.DELIMITED);
+        first.position(first.limit());
+        ByteBuffer second = message.frame(Encoding.JSON, Framing.DELIMITED);
+        assertEquals(0, second.position());
+        assertSame(first.array(), second.array(), "the frame should be built only once");
+        assertThrows(IllegalArgumentException.class, () -> new OutgoingMessage(null));
+        assertThrows(IllegalArgumentException.class, () -> message.frame(null, Framing.DELIMITED));
+    }
+}
@@ -0,0 +1,229 @@
+package it.polimi.ingsw.server.net;
+
+import com.google.gson.JsonObject;
+import it.polimi.ingsw.ProgramOptions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link SocketTransport}, driven through a {@link Dispatcher}.
+ */
+class SocketTransportTest {
+    /**
+     * Restores the default send queue limit.
+     */
+    @AfterEach
+    void reset() {
+        ProgramOptions.setSendQueueLimit(1024 * 1024);
+    }
+
+    /**
+     * Builds a message of roughly the given size.
+     *
+     * @param size the size of the message
+     * @return the message
+     */
+    private static JsonObject message(int size) {
+        JsonObject o = new JsonObject();
+        o.addProperty("type", "UPDATE");
+        o.addProperty("payload", "x".repeat(size));
+        return o;
+    }
+
+    /**
+     * Checks that sending to a client that never reads doesn't block the sender and that the client is disconnected,
+     * through the onDisconnect callback, once its queue crosses the high-water mark.
+     */
+    @Test
+    void stalledClientIsEvicted() throws InterruptedException {
+        ProgramOptions.setSendQueueLimit(4096);
+        FakeSocket socket = new FakeSocket(null);
+        Dispatcher d = new Dispatcher(socket);
+        CountDownLatch disconnected = new CountDownLatch(1);
+        d.setOnDisconnect(disconnected::countDown);
+        Thread reader = new Thread(d);
+        reader.start();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++)
+            d.send(message(100));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(elapsed < 1000, "sending took " + elapsed + "ms");
+        assertTrue(disconnected.await(5, TimeUnit.SECONDS));
+        assertTrue(socket.isClosed());
+        reader.join(5000);
+        assertFalse(reader.isAlive());
+    }
+
+    /**
+     * Checks that every message reaches a client that keeps up, in order.
+     */
+    @Test
+    void messagesAreWrittenInOrder() throws InterruptedException {
+        ProgramOptions.setSendQueueLimit(4096);
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        FakeSocket socket = new FakeSocket(received);
+        Dispatcher d = new Dispatcher(socket);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            JsonObject m = new JsonObject();
+            m.addProperty("n", i);
+            expected.append(m).append("\n\n");
+            d.send(m);
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (received.size() < expected.length() && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertEquals(expected.toString(), received.toString());
+        assertFalse(socket.isClosed());
+        socket.close();
+    }
+
+    /**
+     * Checks that messages queued while the writer is busy are written together, with far fewer writes than messages,
+     * and still in order.
+     */
+    @Test
+    void queuedMessagesAreCoalesced() throws InterruptedException {
+        CountDownLatch firstWrite = new CountDownLatch(1);
+        CountDownLatch allQueued = new CountDownLatch(1);
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        int[] writes = {0};
+        OutputStream sink = new OutputStream() {
+            @Override
+            public void write(int b) {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                writes[0]++;
+                received.write(b, off, len);
+                firstWrite.countDown();
+                try {
+                    allQueued.await();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        };
+        FakeSocket socket = new FakeSocket(sink);
+        Dispatcher d = new Dispatcher(socket);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            JsonObject m = new JsonObject();
+            m.addProperty("n", i);
+            expected.append(m).append("\n\n");
+            d.send(m);
+            if (i == 0) assertTrue(firstWrite.await(5, TimeUnit.SECONDS));
+        }
+        allQueued.countDown();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (received.size() < expected.length() && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        synchronized (sink) {
+            assertEquals(expected.toString(), received.toString());
+            assertTrue(writes[0] <= 5, writes[0] + " writes");
+        }
+        socket.close();
+    }
+
+    /**
+     * A {@link Socket} whose input blocks until it is closed and whose output goes to the given stream, or blocks until
+     * it is closed if none is given.
+     */
+    private static class FakeSocket extends Socket {
+        /**
+         * Released when the socket is closed.
+         */
+        private final CountDownLatch closed = new CountDownLatch(1);
+        /**
+         * The stream receiving the written bytes, null if writes should block.
+         */
+        private final OutputStream sink;
+
+        /**
+         * Creates a new FakeSocket.
+         *
+         * @param sink the stream receiving the written bytes, null if writes should block
+         */
+        FakeSocket(OutputStream sink) {
+            this.sink = sink;
+        }
+
+        /**
+         * Blocks until the socket is closed.
+         *
+         * @throws SocketException once the socket is closed
+         */
+        private void awaitClose() throws SocketException {
+            try {
+                closed.await();
+            } catch (InterruptedException ignored) {
+            }
+            throw new SocketException("Socket closed");
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public InputStream getInputStream() {
+            return new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    awaitClose();
+                    return -1;
+                }
+            };
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public OutputStream getOutputStream() {
+            return new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[]{(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    if (sink == null) awaitClose();
+                    sink.write(b, off, len);
+                }
+            };
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public synchronized void close() {
+            closed.countDown();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isClosed() {
+            return closed.getCount() == 0;
+        }
+    }
+}
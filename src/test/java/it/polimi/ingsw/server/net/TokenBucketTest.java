@@ -0,0 +1,62 @@
+package it.polimi.ingsw.server.net;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for {@link TokenBucket}.
+ */
+class TokenBucketTest {
+    /**
+     * One second, in nanoseconds.
+     */
+    private static final long SECOND = 1_000_000_000L;
+
+    /**
+     * Checks that a full bucket allows a burst as big as its capacity and then nothing more until it refills.
+     */
+    @Test
+    void burst() {
+        TokenBucket b = new TokenBucket(10, 20, 0);
+        for (int i = 0; i < 20; i++)
+            assertTrue(b.tryTake(0));
+        assertFalse(b.tryTake(0));
+        assertFalse(b.tryTake(SECOND / 10 - 1));
+        assertTrue(b.tryTake(SECOND / 10));
+        assertFalse(b.tryTake(SECOND / 10));
+    }
+
+    /**
+     * Checks that the average rate is respected however often the bucket is polled.
+     */
+    @Test
+    void rate() {
+        TokenBucket b = new TokenBucket(10, 5, 0);
+        int taken = 0;
+        for (long t = 0; t <= 10 * SECOND; t += SECOND / 37)
+            if (b.tryTake(t)) taken++;
+        // the 5 initial tokens, plus the 99 refilled by the last poll, which happens just before the 10th second
+        assertEquals(104, taken);
+    }
+
+    /**
+     * Checks that an idle bucket never holds more than its capacity.
+     */
+    @Test
+    void capacity() {
+        TokenBucket b = new TokenBucket(10, 5, 0);
+        int taken = 0;
+        while (b.tryTake(100 * SECOND)) taken++;
+        assertEquals(5, taken);
+    }
+
+    /**
+     * Checks that invalid parameters are rejected.
+     */
+    @Test
+    void invalidParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1, 0));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, 0, 0));
+    }
+}